@@ -2,6 +2,8 @@ package com.danphe.emr;
 
 import com.danphe.emr.model.User;
 import com.danphe.emr.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -10,6 +12,8 @@ import org.springframework.context.annotation.Bean;
 @SpringBootApplication
 public class DanpheEmrApplication {
 
+	private static final Logger logger = LoggerFactory.getLogger(DanpheEmrApplication.class);
+
 	public static void main(String[] args) {
 		SpringApplication.run(DanpheEmrApplication.class, args);
 	}
@@ -27,7 +31,7 @@ public class DanpheEmrApplication {
 				h.setAddress("Tech Park");
 				h.setIsActive(true);
 				hospitalRepository.save(h);
-				System.out.println("Default Hospital seeded.");
+				logger.info("Default Hospital seeded.");
 			}
 
 			// 2. Seed Super Admin (Trikaar)
@@ -52,7 +56,7 @@ public class DanpheEmrApplication {
 				superUser.setHospitalId(1);
 				superUser.setIsActive(true);
 				userRepository.save(superUser);
-				System.out.println("Super Admin seeded: trikaar_admin/root");
+				logger.info("Super Admin seeded: trikaar_admin/root");
 			}
 
 			// 3. Ensure Regular Admin Exists (Legacy support)
@@ -67,7 +71,7 @@ public class DanpheEmrApplication {
 				adminEmp.setIsActive(true);
 				adminEmp.setHospitalId(1); // Default to HQ for now
 				employeeRepository.save(adminEmp);
-				System.out.println("Admin Employee seeded.");
+				logger.info("Admin Employee seeded.");
 			}
 
 			// 4. Ensure Admin User exists
@@ -77,7 +81,7 @@ public class DanpheEmrApplication {
 						admin.setEmployeeId(1);
 						admin.setHospitalId(1);
 						userRepository.save(admin);
-						System.out.println("Admin user updated.");
+						logger.info("Admin user updated.");
 					},
 					() -> {
 						User admin = new User();
@@ -87,7 +91,7 @@ public class DanpheEmrApplication {
 						admin.setHospitalId(1);
 						admin.setIsActive(true);
 						userRepository.save(admin);
-						System.out.println("New Admin user seeded: admin/pass1");
+						logger.info("New Admin user seeded: admin/pass1");
 					});
 		};
 	}
@@ -0,0 +1,73 @@
+package com.danphe.emr.config;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Wraps the application DataSource so every statement is counted and timed
+ * against the current request (see {@link RequestStats}) and, when the thread
+ * has a {@link StatementDeadline}, given a query timeout. SQL text is only
+ * logged for requests that were sampled for it.
+ */
+@Configuration
+public class DataSourceProxyConfig {
+
+    private static final Logger sqlLogger = LoggerFactory.getLogger("sql");
+
+    @Bean
+    public static BeanPostProcessor dataSourceProxyPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource ds && !(bean instanceof ProxyDataSource)) {
+                    return ProxyDataSourceBuilder.create(ds)
+                            .name(beanName)
+                            .listener(new RequestStatsListener())
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+
+    static class RequestStatsListener implements QueryExecutionListener {
+
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            int timeoutSeconds = StatementDeadline.remainingSeconds();
+            if (timeoutSeconds > 0) {
+                try {
+                    execInfo.getStatement().setQueryTimeout(timeoutSeconds);
+                } catch (SQLException e) {
+                    sqlLogger.debug("Could not set a query timeout: {}", e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            RequestStats stats = RequestStats.current();
+            if (stats == null) {
+                return;
+            }
+            stats.recordQuery(execInfo.getElapsedTime());
+            if (stats.isLogSql()) {
+                sqlLogger.info("durationMs={} success={} sql={}", execInfo.getElapsedTime(), execInfo.isSuccess(),
+                        queryInfoList.stream().map(QueryInfo::getQuery).collect(Collectors.joining("; ")));
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.danphe.emr.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+/**
+ * Reports virtual threads that block while pinned to their carrier (inside
+ * synchronized or native frames), using the JDK's own jdk.VirtualThreadPinned
+ * JFR event: each occurrence is counted in jvm.threads.virtual.pinned and
+ * logged with the top of its stack so the offending lock can be found.
+ */
+public class PinnedThreadMonitor implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PinnedThreadMonitor.class);
+
+    private static final int FRAMES = 8;
+
+    private final RecordingStream stream = new RecordingStream();
+
+    public PinnedThreadMonitor(MeterRegistry meterRegistry, Duration threshold) {
+        Counter pinned = meterRegistry != null ? Counter.builder("jvm.threads.virtual.pinned")
+                .description("Virtual threads that blocked while pinned to a carrier thread")
+                .register(meterRegistry) : null;
+
+        stream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+        stream.onEvent("jdk.VirtualThreadPinned", event -> {
+            if (pinned != null) {
+                pinned.increment();
+            }
+            String frames = event.getStackTrace() == null ? "?"
+                    : event.getStackTrace().getFrames().stream().limit(FRAMES)
+                            .map(PinnedThreadMonitor::describe).collect(Collectors.joining(" <- "));
+            logger.warn("Virtual thread pinned for {}ms at {}", event.getDuration().toMillis(), frames);
+        });
+        stream.startAsync();
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":"
+                + frame.getLineNumber();
+    }
+
+    @Override
+    public void destroy() {
+        stream.close();
+    }
+}
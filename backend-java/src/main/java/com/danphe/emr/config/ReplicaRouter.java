@@ -0,0 +1,134 @@
+package com.danphe.emr.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Owns the primary and replica pools and decides, per transaction, which one
+ * serves it: read-only transactions go round-robin to replicas that are
+ * reachable and no further behind than {@code maxLag}; everything else (and
+ * read-only work when no replica qualifies) goes to the primary.
+ *
+ * Replica health is polled in the background so routing never waits on it.
+ */
+public class ReplicaRouter implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRouter.class);
+
+    static final String PRIMARY = "primary";
+
+    private final HikariDataSource primary;
+    private final Map<String, HikariDataSource> replicas;
+    private final Duration maxLag;
+    private final ScheduledExecutorService monitor;
+
+    private volatile List<String> healthy = List.of();
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRouter(HikariDataSource primary, Map<String, HikariDataSource> replicas, Duration maxLag,
+            Duration checkInterval) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.maxLag = maxLag;
+        this.monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replica-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        checkReplicas();
+        monitor.scheduleWithFixedDelay(this::checkReplicas, checkInterval.toMillis(), checkInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public DataSource routingDataSource() {
+        AbstractRoutingDataSource routing = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return route();
+            }
+        };
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    String route() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        List<String> candidates = healthy;
+        if (candidates.isEmpty()) {
+            return PRIMARY;
+        }
+        return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+    }
+
+    private void checkReplicas() {
+        List<String> ok = new ArrayList<>();
+        for (Map.Entry<String, HikariDataSource> e : replicas.entrySet()) {
+            try {
+                Long lagSeconds = lagSeconds(e.getValue());
+                if (lagSeconds != null && lagSeconds <= maxLag.toSeconds()) {
+                    ok.add(e.getKey());
+                } else {
+                    logger.warn("Replica {} excluded from reads: lag={}s (max {}s)", e.getKey(),
+                            lagSeconds != null ? lagSeconds : "unknown", maxLag.toSeconds());
+                }
+            } catch (SQLException ex) {
+                logger.warn("Replica {} excluded from reads: {}", e.getKey(), ex.getMessage());
+            }
+        }
+        if (!ok.equals(healthy)) {
+            logger.info("Read replicas in rotation: {}", ok);
+        }
+        healthy = List.copyOf(ok);
+    }
+
+    // Seconds behind the source; null (unknown, so excluded) while replication is stopped or
+    // when the server reports no replication at all, e.g. after RESET REPLICA or a misconfigured URL
+    static Long lagSeconds(DataSource replica) throws SQLException {
+        try (Connection con = replica.getConnection(); Statement st = con.createStatement()) {
+            try {
+                return lagSeconds(st, "SHOW REPLICA STATUS", "Seconds_Behind_Source");
+            } catch (SQLException preMySql8022) {
+                return lagSeconds(st, "SHOW SLAVE STATUS", "Seconds_Behind_Master");
+            }
+        }
+    }
+
+    static Long lagSeconds(Statement st, String sql, String column) throws SQLException {
+        try (ResultSet rs = st.executeQuery(sql)) {
+            if (!rs.next()) {
+                return null;
+            }
+            long lag = rs.getLong(column);
+            return rs.wasNull() ? null : lag;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        monitor.shutdownNow();
+        replicas.values().forEach(HikariDataSource::close);
+        primary.close();
+    }
+}
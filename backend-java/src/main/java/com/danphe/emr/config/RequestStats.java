@@ -0,0 +1,64 @@
+package com.danphe.emr.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-request database counters, bound to the request thread by
+ * RequestLoggingFilter and fed by the DataSource proxy listener. Worker
+ * threads doing part of a request's work attach the same instance, so the
+ * counters are atomic.
+ */
+public final class RequestStats {
+
+    private static final ThreadLocal<RequestStats> CURRENT = new ThreadLocal<>();
+
+    private final boolean logSql;
+    private final AtomicInteger queryCount = new AtomicInteger();
+    private final AtomicLong dbMillis = new AtomicLong();
+
+    private RequestStats(boolean logSql) {
+        this.logSql = logSql;
+    }
+
+    public static RequestStats start(boolean logSql) {
+        RequestStats stats = new RequestStats(logSql);
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    // Null outside a request (startup jobs, background threads)
+    public static RequestStats current() {
+        return CURRENT.get();
+    }
+
+    // Binds another thread's request (or clears with null) on a worker thread
+    public static void attach(RequestStats stats) {
+        if (stats != null) {
+            CURRENT.set(stats);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    void recordQuery(long elapsedMillis) {
+        queryCount.incrementAndGet();
+        dbMillis.addAndGet(elapsedMillis);
+    }
+
+    public boolean isLogSql() {
+        return logSql;
+    }
+
+    public int getQueryCount() {
+        return queryCount.get();
+    }
+
+    public long getDbMillis() {
+        return dbMillis.get();
+    }
+}
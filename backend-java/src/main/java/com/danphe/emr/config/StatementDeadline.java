@@ -0,0 +1,40 @@
+package com.danphe.emr.config;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A per-thread deadline that the DataSource proxy turns into a JDBC query
+ * timeout on every statement run before it, so a query the caller has given
+ * up on is stopped by the driver instead of holding its thread and
+ * connection until the database finishes.
+ */
+public final class StatementDeadline {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private StatementDeadline() {
+    }
+
+    // deadlineNanos is a System.nanoTime() value; null clears
+    public static void set(Long deadlineNanos) {
+        if (deadlineNanos != null) {
+            DEADLINE.set(deadlineNanos);
+        } else {
+            DEADLINE.remove();
+        }
+    }
+
+    public static Long current() {
+        return DEADLINE.get();
+    }
+
+    // Whole seconds left (JDBC's unit), rounded up and at least 1; 0 (no timeout) without a deadline
+    static int remainingSeconds() {
+        Long deadline = DEADLINE.get();
+        if (deadline == null) {
+            return 0;
+        }
+        long remaining = deadline - System.nanoTime();
+        return (int) Math.max(1, (remaining + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+}
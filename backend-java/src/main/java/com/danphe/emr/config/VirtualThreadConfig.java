@@ -0,0 +1,52 @@
+package com.danphe.emr.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Extras for the virtual-thread mode ({@code spring.threads.virtual.enabled=true}
+ * on a Java 21+ runtime; on older runtimes Spring Boot ignores the flag and so
+ * does this class): a connection budget in front of the DataSource and
+ * pinned-thread reporting. The mode moves Tomcat request handling onto virtual
+ * threads; the app's own background pools (composite queries, SSE sends, the
+ * audit writer) keep their platform threads, and it has no @Async work.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    @Bean
+    public static BeanPostProcessor connectionBudgetPostProcessor(Environment environment) {
+        // Defaults to the pool size: anything beyond it would only wait inside the pool
+        int permits = environment.getProperty("app.db.connection-budget.permits", Integer.class,
+                environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10));
+        Duration maxWait = environment.getProperty("app.db.connection-budget.max-wait", Duration.class,
+                Duration.ofSeconds(5));
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if ("dataSource".equals(beanName) && bean instanceof DataSource ds
+                        && !(bean instanceof ConnectionBudgetDataSource)) {
+                    return new ConnectionBudgetDataSource(ds, permits, maxWait);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public PinnedThreadMonitor pinnedThreadMonitor(ObjectProvider<MeterRegistry> meterRegistry,
+            Environment environment) {
+        return new PinnedThreadMonitor(meterRegistry.getIfAvailable(),
+                environment.getProperty("app.threads.pinned-threshold", Duration.class, Duration.ofMillis(20)));
+    }
+}
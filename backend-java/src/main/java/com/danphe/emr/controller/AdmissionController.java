@@ -21,10 +21,13 @@ public class AdmissionController {
     AdmissionRepository admissionRepository;
 
     @Autowired
-    com.danphe.emr.repository.PatientRepository patientRepository;
+    com.danphe.emr.repository.BedRepository bedRepository;
 
     @Autowired
-    com.danphe.emr.repository.BedRepository bedRepository;
+    com.danphe.emr.service.PatientEnrichmentService patientEnrichmentService;
+
+    @Autowired
+    com.danphe.emr.service.ClinicalSummaryService clinicalSummaryService;
 
     @GetMapping("/AdmittedPatients")
     public ResponseEntity<DanpheHttpResponse<List<Admission>>> getAdmittedPatients(
@@ -44,19 +47,13 @@ public class AdmissionController {
         }
 
         // Populate patient info
-        for (Admission adm : list) {
-            if (adm.getPatientId() != null) {
-                patientRepository.findByHospitalIdAndPatientId(hospitalId, adm.getPatientId()).ifPresent(p -> {
-                    adm.setPatientName(p.getFirstName() + " " + p.getLastName());
-                    adm.setPatientCode(p.getPatientCode());
-                });
-            }
-        }
+        patientEnrichmentService.enrichAdmissions(hospitalId, list);
 
         return ResponseEntity.ok(DanpheHttpResponse.ok(list));
     }
 
     @PostMapping("/Admission")
+    @org.springframework.transaction.annotation.Transactional
     public ResponseEntity<DanpheHttpResponse<?>> createAdmission(@RequestBody Admission admission) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         if (hospitalId == null)
@@ -84,6 +81,7 @@ public class AdmissionController {
         }
 
         Admission saved = admissionRepository.save(admission);
+        clinicalSummaryService.recordAdmission(saved);
         return ResponseEntity.ok(DanpheHttpResponse.ok(saved));
     }
 
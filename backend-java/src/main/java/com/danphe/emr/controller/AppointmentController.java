@@ -23,6 +23,15 @@ public class AppointmentController {
     @Autowired
     com.danphe.emr.repository.PatientRepository patientRepository;
 
+    @Autowired
+    com.danphe.emr.service.PatientEnrichmentService patientEnrichmentService;
+
+    @Autowired
+    com.danphe.emr.service.DoctorQueueService doctorQueueService;
+
+    @Autowired
+    com.danphe.emr.service.AuditLogWriter auditLogWriter;
+
     @GetMapping("/Appointments")
     public ResponseEntity<?> getAppointments(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime FromDate,
@@ -42,15 +51,7 @@ public class AppointmentController {
         }
 
         // Ensure patient details are snapshots
-        for (Appointment apt : list) {
-            if (apt.getPatientId() != null && (apt.getPatientCode() == null)) {
-                patientRepository.findByHospitalIdAndPatientId(hospitalId, apt.getPatientId()).ifPresent(p -> {
-                    apt.setPatientCode(p.getPatientCode());
-                    apt.setFirstName(p.getFirstName());
-                    apt.setLastName(p.getLastName());
-                });
-            }
-        }
+        patientEnrichmentService.enrichAppointments(hospitalId, list);
 
         return ResponseEntity.ok(DanpheHttpResponse.ok(list));
     }
@@ -91,6 +92,10 @@ public class AppointmentController {
 
         appointment.setAppointmentStatus("booked");
         Appointment saved = appointmentRepository.save(appointment);
+        doctorQueueService.appointmentAdded(saved);
+        auditLogWriter.log("CREATE", "Appointment", String.valueOf(saved.getAppointmentId()),
+                saved.getFirstName() != null ? (saved.getFirstName() + " " + saved.getLastName()).trim() : null,
+                "Appointment booked for " + saved.getAppointmentDate());
         return ResponseEntity.ok(DanpheHttpResponse.ok(saved));
     }
 }
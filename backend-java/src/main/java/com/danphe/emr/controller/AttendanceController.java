@@ -3,15 +3,20 @@ package com.danphe.emr.controller;
 import com.danphe.emr.model.Attendance;
 import com.danphe.emr.model.DanpheHttpResponse;
 import com.danphe.emr.model.Employee;
+import com.danphe.emr.model.PageCursor;
 import com.danphe.emr.repository.AttendanceRepository;
 import com.danphe.emr.repository.EmployeeRepository;
 import com.danphe.emr.security.SecurityUtil;
+import com.danphe.emr.service.BulkMutationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import com.fasterxml.jackson.annotation.JsonFormat;
 
@@ -20,12 +25,17 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 @CrossOrigin(origins = "*", maxAge = 3600)
 public class AttendanceController {
 
+    private static final Logger logger = LoggerFactory.getLogger(AttendanceController.class);
+
     @Autowired
     private AttendanceRepository attendanceRepository;
 
     @Autowired
     private EmployeeRepository employeeRepository;
 
+    @Autowired
+    private BulkMutationService bulkMutationService;
+
     @PostMapping("/ScanRecord")
     public ResponseEntity<?> recordAttendance(@RequestBody AttendanceRequest request) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
@@ -44,8 +54,9 @@ public class AttendanceController {
         }
 
         Employee emp = empOpt.get();
-        List<Attendance> lastRecords = attendanceRepository
-                .findByHospitalIdAndEmployeeIdOrderByTimestampDesc(hospitalId, emp.getEmployeeId());
+        Optional<Attendance> lastRecord = attendanceRepository
+                .findFirstByHospitalIdAndEmployeeIdOrderByTimestampDescAttendanceIdDesc(hospitalId,
+                        emp.getEmployeeId());
 
         String nextType = (request.getType() != null && !request.getType().isEmpty())
                 ? request.getType()
@@ -53,11 +64,8 @@ public class AttendanceController {
 
         // Auto-toggle only if type is NOT explicitly provided
         if (request.getType() == null || request.getType().isEmpty()) {
-            if (!lastRecords.isEmpty()) {
-                Attendance last = lastRecords.get(0);
-                if ("ClockIn".equals(last.getType())) {
-                    nextType = "ClockOut";
-                }
+            if (lastRecord.isPresent() && "ClockIn".equals(lastRecord.get().getType())) {
+                nextType = "ClockOut";
             }
         }
 
@@ -73,27 +81,50 @@ public class AttendanceController {
         attendance.setRemarks(request.getRemarks());
 
         attendanceRepository.save(attendance);
-        System.out.println("Attendance: " + nextType + " recorded for " + emp.getFullName() + " at " + time);
+        logger.debug("Attendance {} recorded for employee {} at {}", nextType, emp.getEmployeeId(), time);
         return ResponseEntity.ok(DanpheHttpResponse.ok(attendance));
     }
 
     @GetMapping("/Employee/{id}")
-    public ResponseEntity<?> getEmployeeAttendance(@PathVariable Integer id) {
+    public ResponseEntity<?> getEmployeeAttendance(@PathVariable Integer id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         if (hospitalId == null)
             return ResponseEntity.status(401).body("Hospital ID not found");
 
-        return ResponseEntity.ok(DanpheHttpResponse
-                .ok(attendanceRepository.findByHospitalIdAndEmployeeIdOrderByTimestampDesc(hospitalId, id)));
+        return ResponseEntity.ok(attendancePage(hospitalId, id, cursor, size));
     }
 
     @GetMapping("/All")
-    public ResponseEntity<?> getAllAttendance() {
+    public ResponseEntity<?> getAllAttendance(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         if (hospitalId == null)
             return ResponseEntity.status(401).body("Hospital ID not found");
 
-        return ResponseEntity.ok(DanpheHttpResponse.ok(attendanceRepository.findByHospitalId(hospitalId)));
+        return ResponseEntity.ok(attendancePage(hospitalId, null, cursor, size));
+    }
+
+    // Who is clocked in right now, however far back their ClockIn is
+    @GetMapping("/OpenShifts")
+    public ResponseEntity<?> getOpenShifts() {
+        Integer hospitalId = SecurityUtil.getCurrentHospitalId();
+        if (hospitalId == null)
+            return ResponseEntity.status(401).body("Hospital ID not found");
+
+        return ResponseEntity.ok(DanpheHttpResponse.ok(attendanceRepository.findOpenShifts(hospitalId)));
+    }
+
+    private DanpheHttpResponse<List<Attendance>> attendancePage(Integer hospitalId, Integer employeeId,
+            String cursor, Integer size) {
+        int pageSize = PageCursor.size(size);
+        PageCursor after = PageCursor.decode(cursor);
+        return DanpheHttpResponse.page(
+                attendanceRepository.findPage(hospitalId, employeeId, after.key(), after.intId(),
+                        PageCursor.fetch(pageSize)),
+                pageSize, a -> PageCursor.of(a.getTimestamp(), a.getAttendanceId()));
     }
 
     @DeleteMapping("/ClearAll")
@@ -102,9 +133,10 @@ public class AttendanceController {
         if (hospitalId == null)
             return ResponseEntity.status(401).body("Hospital ID not found");
 
-        List<Attendance> list = attendanceRepository.findByHospitalId(hospitalId);
-        attendanceRepository.deleteAll(list);
-        return ResponseEntity.ok(DanpheHttpResponse.ok("Records for this hospital cleared."));
+        // Chunked set-based delete: no entities loaded, no single huge transaction
+        long deleted = bulkMutationService.inChunks("Clear attendance",
+                limit -> attendanceRepository.deleteChunk(hospitalId, limit));
+        return ResponseEntity.ok(DanpheHttpResponse.ok(Map.of("deleted", deleted)));
     }
 
     @PutMapping("/{id}")
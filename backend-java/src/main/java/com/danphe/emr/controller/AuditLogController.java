@@ -2,11 +2,18 @@ package com.danphe.emr.controller;
 
 import com.danphe.emr.model.AuditLog;
 import com.danphe.emr.model.DanpheHttpResponse;
+import com.danphe.emr.model.PageCursor;
 import com.danphe.emr.repository.AuditLogRepository;
+import com.danphe.emr.repository.AuditLogSpecs;
+import com.danphe.emr.repository.GroupCount;
 import com.danphe.emr.security.SecurityUtil;
-import com.danphe.emr.security.UserDetailsImpl;
+import com.danphe.emr.service.AuditLogWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
@@ -21,90 +28,100 @@ import java.util.stream.Collectors;
 @CrossOrigin(origins = "*", maxAge = 3600)
 public class AuditLogController {
 
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogController.class);
+
+    private static final int STATS_DEFAULT_DAYS = 30;
+
     @Autowired
     private AuditLogRepository auditLogRepository;
 
+    @Autowired
+    private AuditLogWriter auditLogWriter;
+
     @GetMapping("")
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getAuditLogs(
             @RequestParam(required = false) String module,
             @RequestParam(required = false) String action,
             @RequestParam(required = false) String severity,
+            @RequestParam(required = false) Integer userId,
+            @RequestParam(required = false) String entityId,
             @RequestParam(required = false) String dateFrom,
-            @RequestParam(required = false) String dateTo) {
+            @RequestParam(required = false) String dateTo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
 
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         if (hospitalId == null) {
             return ResponseEntity.status(401).body(DanpheHttpResponse.error("Unauthorized"));
         }
 
-        List<AuditLog> logs;
-
-        if (dateFrom != null && dateTo != null) {
-            LocalDateTime start = LocalDate.parse(dateFrom).atStartOfDay();
-            LocalDateTime end = LocalDate.parse(dateTo).atTime(LocalTime.MAX);
-            logs = auditLogRepository.findByHospitalIdAndTimestampBetweenOrderByTimestampDesc(hospitalId, start, end);
-        } else if (module != null && !module.isBlank()) {
-            logs = auditLogRepository.findByHospitalIdAndModuleOrderByTimestampDesc(hospitalId, module);
-        } else if (action != null && !action.isBlank()) {
-            logs = auditLogRepository.findByHospitalIdAndActionOrderByTimestampDesc(hospitalId, action);
-        } else if (severity != null && !severity.isBlank()) {
-            logs = auditLogRepository.findByHospitalIdAndSeverityOrderByTimestampDesc(hospitalId, severity);
-        } else {
-            logs = auditLogRepository.findTop200ByHospitalIdOrderByTimestampDesc(hospitalId);
-        }
-
-        return ResponseEntity.ok(DanpheHttpResponse.ok(logs));
+        // Filters combine; each end of the date range is optional
+        int pageSize = PageCursor.size(size);
+        PageCursor after = PageCursor.decode(cursor);
+        Specification<AuditLog> spec = AuditLogSpecs.hospital(hospitalId)
+                .and(AuditLogSpecs.module(module))
+                .and(AuditLogSpecs.action(action))
+                .and(AuditLogSpecs.severity(severity))
+                .and(AuditLogSpecs.userId(userId))
+                .and(AuditLogSpecs.entityId(entityId))
+                .and(AuditLogSpecs.from(startOf(dateFrom)))
+                .and(AuditLogSpecs.to(endOf(dateTo)))
+                .and(AuditLogSpecs.after(after.key(), after.id()));
+        // No count query: one extra row tells whether there is a next page
+        List<AuditLog> logs = auditLogRepository.findBy(spec,
+                q -> q.sortBy(AuditLogSpecs.NEWEST_FIRST).limit(pageSize + 1).all());
+
+        return ResponseEntity.ok(DanpheHttpResponse.page(logs, pageSize,
+                l -> PageCursor.of(l.getTimestamp(), l.getLogId())));
     }
 
+    // Grouped counts over a window (default: the last 30 days), computed in the database
     @GetMapping("/Stats")
-    public ResponseEntity<?> getStats() {
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> getStats(
+            @RequestParam(required = false) String dateFrom,
+            @RequestParam(required = false) String dateTo) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         if (hospitalId == null) {
             return ResponseEntity.status(401).body(DanpheHttpResponse.error("Unauthorized"));
         }
 
-        List<AuditLog> allLogs = auditLogRepository.findTop200ByHospitalIdOrderByTimestampDesc(hospitalId);
+        LocalDateTime end = endOf(dateTo);
+        if (end == null) {
+            end = LocalDateTime.now();
+        }
+        LocalDateTime start = startOf(dateFrom);
+        if (start == null) {
+            start = end.toLocalDate().minusDays(STATS_DEFAULT_DAYS - 1).atStartOfDay();
+        }
+        if (start.isAfter(end)) {
+            return ResponseEntity.ok(DanpheHttpResponse.error("dateFrom must not be after dateTo"));
+        }
 
-        Map<String, Long> byModule = allLogs.stream()
-                .filter(l -> l.getModule() != null)
-                .collect(Collectors.groupingBy(AuditLog::getModule, Collectors.counting()));
+        return ResponseEntity.ok(DanpheHttpResponse.ok(Map.of(
+                "from", start,
+                "to", end,
+                "total", auditLogRepository.countByHospitalIdAndTimestampBetween(hospitalId, start, end),
+                "byModule", toMap(auditLogRepository.countByModule(hospitalId, start, end)),
+                "byAction", toMap(auditLogRepository.countByAction(hospitalId, start, end)),
+                "bySeverity", toMap(auditLogRepository.countBySeverity(hospitalId, start, end)))));
+    }
 
-        Map<String, Long> byAction = allLogs.stream()
-                .filter(l -> l.getAction() != null)
-                .collect(Collectors.groupingBy(AuditLog::getAction, Collectors.counting()));
+    private static Map<String, Long> toMap(List<GroupCount> groups) {
+        return groups.stream().collect(Collectors.toMap(GroupCount::getGroupKey, GroupCount::getTotal, Long::sum));
+    }
 
-        Map<String, Long> bySeverity = allLogs.stream()
-                .filter(l -> l.getSeverity() != null)
-                .collect(Collectors.groupingBy(AuditLog::getSeverity, Collectors.counting()));
+    private static LocalDateTime startOf(String date) {
+        return date != null && !date.isBlank() ? LocalDate.parse(date).atStartOfDay() : null;
+    }
 
-        return ResponseEntity.ok(DanpheHttpResponse.ok(Map.of(
-                "total", allLogs.size(),
-                "byModule", byModule,
-                "byAction", byAction,
-                "bySeverity", bySeverity)));
+    private static LocalDateTime endOf(String date) {
+        return date != null && !date.isBlank() ? LocalDate.parse(date).atTime(LocalTime.MAX) : null;
     }
 
-    // Helper: log an action (called from other controllers)
+    // Helper: log an action (called from other controllers); queued, see AuditLogWriter
     public void log(String action, String module, String entityId, String entityName, String description) {
-        try {
-            UserDetailsImpl user = SecurityUtil.getCurrentUser();
-            Integer hospitalId = SecurityUtil.getCurrentHospitalId();
-
-            AuditLog log = new AuditLog();
-            log.setHospitalId(hospitalId);
-            log.setUserName(user != null ? user.getUsername() : "System");
-            log.setUserRole(user != null ? user.getRole() : "System");
-            log.setUserId(user != null ? user.getId() : null);
-            log.setAction(action);
-            log.setModule(module);
-            log.setEntityId(entityId);
-            log.setEntityName(entityName);
-            log.setDescription(description);
-            log.setSeverity("info");
-
-            auditLogRepository.save(log);
-        } catch (Exception e) {
-            System.err.println("Audit log failed: " + e.getMessage());
-        }
+        auditLogWriter.log(action, module, entityId, entityName, description);
     }
 }
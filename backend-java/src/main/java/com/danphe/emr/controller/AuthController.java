@@ -4,9 +4,14 @@ import com.danphe.emr.model.DanpheHttpResponse;
 import com.danphe.emr.model.User;
 import com.danphe.emr.repository.UserRepository;
 import com.danphe.emr.security.JwtUtils;
+import com.danphe.emr.security.SecurityUtil;
+import com.danphe.emr.security.StreamTicketService;
+import com.danphe.emr.security.UserDetailsImpl;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -15,11 +20,15 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/Account")
 public class AuthController {
 
+    private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
+
     @Autowired
     AuthenticationManager authenticationManager;
 
@@ -32,6 +41,9 @@ public class AuthController {
     @Autowired
     JwtUtils jwtUtils;
 
+    @Autowired
+    StreamTicketService streamTicketService;
+
     // Login DTO - camelCase to match Modern Frontend Axios calls
     public static class LoginRequest {
         @NotBlank(message = "Username is required")
@@ -48,17 +60,7 @@ public class AuthController {
             String username = (loginRequest.userName != null) ? loginRequest.userName.trim() : "";
             String password = (loginRequest.password != null) ? loginRequest.password : "";
 
-            System.out.println("--- LOGIN ATTEMPT ---");
-            System.out.println("Username: [" + username + "]");
-            System.out.println("Password length: " + password.length());
-
-            userRepository.findByUserName(username).ifPresentOrElse(
-                    u -> {
-                        System.out.println("User exists in DB.");
-                        System.out.println("DB Password: [" + u.getPassword() + "]");
-                        System.out.println("Match: " + u.getPassword().equals(password));
-                    },
-                    () -> System.out.println("User NOT FOUND in DB."));
+            logger.debug("Login attempt for [{}]", username);
 
             Authentication authentication = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(username, password));
@@ -66,14 +68,24 @@ public class AuthController {
             SecurityContextHolder.getContext().setAuthentication(authentication);
             String jwt = jwtUtils.generateJwtToken(authentication);
 
-            System.out.println("Login Success!");
+            logger.info("Login success for [{}]", username);
             return ResponseEntity.ok(DanpheHttpResponse.ok(jwt));
         } catch (Exception e) {
-            System.out.println("Login Failure: " + e.getMessage());
+            logger.info("Login failure: {}", e.getMessage());
             return ResponseEntity.ok(DanpheHttpResponse.error("Invalid Username or Password"));
         }
     }
 
+    // Single-use ticket for the ?ticket= parameter of an event stream (EventSource cannot send headers)
+    @PostMapping("/StreamTicket")
+    public ResponseEntity<?> streamTicket() {
+        UserDetailsImpl user = SecurityUtil.getCurrentUser();
+        if (user == null) {
+            return ResponseEntity.status(401).body(DanpheHttpResponse.error("Unauthorized"));
+        }
+        return ResponseEntity.ok(DanpheHttpResponse.ok(Map.of("ticket", streamTicketService.issue(user))));
+    }
+
     @PostMapping("/seed")
     public ResponseEntity<?> seedUser() {
         com.danphe.emr.model.User existing = userRepository.findByUserName("trikaar_admin").orElse(null);
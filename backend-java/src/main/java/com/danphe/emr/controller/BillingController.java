@@ -4,6 +4,12 @@ import com.danphe.emr.model.*;
 import com.danphe.emr.repository.*;
 import com.danphe.emr.security.SecurityUtil;
 import com.danphe.emr.security.UserDetailsImpl;
+import com.danphe.emr.service.BillItemService;
+import com.danphe.emr.service.CompositeQueryExecutor;
+import com.danphe.emr.service.PatientEnrichmentService;
+import com.danphe.emr.service.RevenueRollupService;
+import com.danphe.emr.service.SequenceAllocator;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
@@ -16,6 +22,9 @@ import java.util.*;
 @CrossOrigin(origins = "*", maxAge = 3600)
 public class BillingController {
 
+    @Autowired
+    private CompositeQueryExecutor compositeQueryExecutor;
+
     @Autowired
     private BillingRepository billingRepository;
 
@@ -37,6 +46,23 @@ public class BillingController {
     @Autowired
     private PrescriptionRepository prescriptionRepository;
 
+    @Autowired
+    private PatientEnrichmentService patientEnrichmentService;
+
+    @Autowired
+    private RevenueRollupService revenueRollupService;
+
+    @Autowired
+    private RevenueRollupRepository revenueRollupRepository;
+
+    @Autowired
+    private BillItemService billItemService;
+
+    @Autowired
+    private SequenceAllocator sequenceAllocator;
+
+    private static final String BILL_SEQUENCE = "bill";
+
     // =========================================================================
     // 0. PATIENT TREATMENT HISTORY (for smart billing)
     // =========================================================================
@@ -47,25 +73,47 @@ public class BillingController {
             return ResponseEntity.ok(DanpheHttpResponse.error("Hospital context not found"));
         }
 
-        Optional<Patient> patOpt = patientRepository.findByHospitalIdAndPatientId(hospitalId, patientId);
-        if (patOpt.isEmpty()) {
-            return ResponseEntity.ok(DanpheHttpResponse.error("Patient not found"));
+        // The patient and each history section are independent queries, run side by side
+        try (CompositeQueryExecutor.Composite q = compositeQueryExecutor.open()) {
+            var patientPart = q.submit("patient",
+                    () -> patientRepository.findByHospitalIdAndPatientId(hospitalId, patientId), Optional.<Patient>empty());
+            var appointmentsPart = q.submit("appointments", () -> appointmentRepository
+                    .findByHospitalIdAndPatientIdOrderByAppointmentDateDesc(hospitalId, patientId), List.<Appointment>of());
+            var admissionsPart = q.submit("admissions", () -> admissionRepository
+                    .findByHospitalIdAndPatientIdOrderByAdmissionDateDesc(hospitalId, patientId), List.<Admission>of());
+            var prescriptionsPart = q.submit("prescriptions", () -> prescriptionRepository
+                    .findByHospitalIdAndPatientIdOrderByCreatedOnDesc(hospitalId, patientId), List.<Prescription>of());
+            var billsPart = q.submit("existingBills", () -> billingRepository
+                    .findByHospitalIdAndPatientIdOrderByCreatedAtDesc(hospitalId, patientId), List.<Billing>of());
+
+            Optional<Patient> patOpt = patientPart.get();
+            if (patOpt.isEmpty()) {
+                return ResponseEntity.ok(DanpheHttpResponse.error(patientPart.failed()
+                        ? "Patient could not be loaded"
+                        : "Patient not found"));
+            }
+
+            Map<String, Object> history = buildHistory(patOpt.get(), appointmentsPart.get(), admissionsPart.get());
+            history.put("prescriptions", prescriptionsPart.get());
+            history.put("existingBills", billsPart.get());
+
+            // Sections that failed or timed out are returned empty and named here
+            if (!q.errors().isEmpty()) {
+                history.put("partialErrors", q.errors());
+            }
+            return ResponseEntity.ok(DanpheHttpResponse.ok(history));
         }
+    }
 
-        Patient patient = patOpt.get();
+    private Map<String, Object> buildHistory(Patient patient, List<Appointment> appointments,
+            List<Admission> admissions) {
         Map<String, Object> history = new HashMap<>();
         history.put("patient", patient);
 
         // OPD Appointments
-        List<Appointment> appointments = appointmentRepository
-                .findByHospitalIdAndPatientIdOrderByAppointmentDateDesc(hospitalId, patientId);
         history.put("appointments", appointments);
         history.put("opdVisitCount", appointments.size());
 
-        // IPD Admissions
-        List<Admission> admissions = admissionRepository
-                .findByHospitalIdAndPatientIdOrderByAdmissionDateDesc(hospitalId, patientId);
-
         // Calculate IPD days for each admission
         List<Map<String, Object>> admissionDetails = new ArrayList<>();
         int totalIpdDays = 0;
@@ -89,54 +137,35 @@ public class BillingController {
         history.put("admissions", admissionDetails);
         history.put("ipdAdmissionCount", admissions.size());
         history.put("totalIpdDays", totalIpdDays);
-
-        // Prescriptions
-        List<Prescription> prescriptions = prescriptionRepository
-                .findByHospitalIdAndPatientIdOrderByCreatedOnDesc(hospitalId, patientId);
-        history.put("prescriptions", prescriptions);
-
-        // Existing bills for this patient
-        List<Billing> existingBills = billingRepository
-                .findByHospitalIdAndPatientIdOrderByCreatedAtDesc(hospitalId, patientId);
-        history.put("existingBills", existingBills);
-
-        return ResponseEntity.ok(DanpheHttpResponse.ok(history));
+        return history;
     }
 
     // =========================================================================
     // 1. LIST BILLS (OPD / IPD / All)
     // =========================================================================
     @GetMapping
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getBills(
             @RequestParam(required = false) String billType,
-            @RequestParam(required = false) Integer patientId) {
+            @RequestParam(required = false) Integer patientId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         if (hospitalId == null) {
             return ResponseEntity.ok(DanpheHttpResponse.error("Hospital context not found"));
         }
 
-        List<Billing> bills;
-        if (patientId != null && billType != null) {
-            bills = billingRepository.findByHospitalIdAndPatientIdAndBillTypeOrderByCreatedAtDesc(hospitalId, patientId,
-                    billType);
-        } else if (patientId != null) {
-            bills = billingRepository.findByHospitalIdAndPatientIdOrderByCreatedAtDesc(hospitalId, patientId);
-        } else if (billType != null) {
-            bills = billingRepository.findByHospitalIdAndBillTypeOrderByCreatedAtDesc(hospitalId, billType);
-        } else {
-            bills = billingRepository.findByHospitalIdOrderByCreatedAtDesc(hospitalId);
-        }
+        int pageSize = PageCursor.size(size);
+        PageCursor after = PageCursor.decode(cursor);
+        DanpheHttpResponse<List<Billing>> page = DanpheHttpResponse.page(
+                billingRepository.findPage(hospitalId, patientId, billType, after.key(), after.intId(),
+                        PageCursor.fetch(pageSize)),
+                pageSize, b -> PageCursor.of(b.getCreatedAt(), b.getBillId()));
 
         // Enrich with patient names
-        for (Billing b : bills) {
-            patientRepository.findByHospitalIdAndPatientId(hospitalId, b.getPatientId())
-                    .ifPresent(pat -> {
-                        b.setPatientName(pat.getFirstName() + " " + pat.getLastName());
-                        b.setPatientCode(pat.getPatientCode());
-                    });
-        }
+        patientEnrichmentService.enrichBills(hospitalId, page.getResults());
 
-        return ResponseEntity.ok(DanpheHttpResponse.ok(bills));
+        return ResponseEntity.ok(page);
     }
 
     // =========================================================================
@@ -169,6 +198,7 @@ public class BillingController {
     // =========================================================================
     @PostMapping
     @Transactional
+    @Timed(value = "billing.create", histogram = true)
     public ResponseEntity<?> createBill(@RequestBody Billing billing) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         UserDetailsImpl user = SecurityUtil.getCurrentUser();
@@ -225,6 +255,8 @@ public class BillingController {
         billing.setBillNumber(generateBillNumber(hospitalId));
 
         Billing saved = billingRepository.save(billing);
+        billItemService.saveLines(saved);
+        revenueRollupService.record(saved);
         return ResponseEntity.ok(DanpheHttpResponse.ok(saved));
     }
 
@@ -232,13 +264,14 @@ public class BillingController {
     // 4. UPDATE BILL
     // =========================================================================
     @PutMapping("/{billId}")
+    @Transactional
     public ResponseEntity<?> updateBill(@PathVariable Integer billId, @RequestBody Billing updated) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         if (hospitalId == null) {
             return ResponseEntity.ok(DanpheHttpResponse.error("Hospital context not found"));
         }
 
-        Optional<Billing> opt = billingRepository.findByHospitalIdAndBillId(hospitalId, billId);
+        Optional<Billing> opt = billingRepository.lockByHospitalIdAndBillId(hospitalId, billId);
         if (opt.isEmpty()) {
             return ResponseEntity.ok(DanpheHttpResponse.error("Bill not found"));
         }
@@ -260,6 +293,8 @@ public class BillingController {
             return ResponseEntity.ok(DanpheHttpResponse.error("Tax percent cannot be negative"));
         }
 
+        RevenueRollupService.Contribution before = revenueRollupService.contributionOf(existing);
+
         existing.setBillItems(updated.getBillItems());
         existing.setSubtotal(updated.getSubtotal());
         existing.setDiscountPercent(updated.getDiscountPercent());
@@ -272,6 +307,8 @@ public class BillingController {
         calculateBillAmounts(existing);
 
         billingRepository.save(existing);
+        billItemService.saveLines(existing);
+        revenueRollupService.replace(before, revenueRollupService.contributionOf(existing));
         return ResponseEntity.ok(DanpheHttpResponse.ok(existing));
     }
 
@@ -279,18 +316,20 @@ public class BillingController {
     // 5. UPDATE PAYMENT STATUS
     // =========================================================================
     @PutMapping("/{billId}/Payment")
+    @Transactional
     public ResponseEntity<?> updatePayment(@PathVariable Integer billId, @RequestBody Map<String, Object> body) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         if (hospitalId == null) {
             return ResponseEntity.ok(DanpheHttpResponse.error("Hospital context not found"));
         }
 
-        Optional<Billing> opt = billingRepository.findByHospitalIdAndBillId(hospitalId, billId);
+        Optional<Billing> opt = billingRepository.lockByHospitalIdAndBillId(hospitalId, billId);
         if (opt.isEmpty()) {
             return ResponseEntity.ok(DanpheHttpResponse.error("Bill not found"));
         }
 
         Billing bill = opt.get();
+        RevenueRollupService.Contribution before = revenueRollupService.contributionOf(bill);
         if (body.containsKey("paymentStatus")) {
             bill.setPaymentStatus((String) body.get("paymentStatus"));
         }
@@ -302,6 +341,7 @@ public class BillingController {
         }
 
         billingRepository.save(bill);
+        revenueRollupService.replace(before, revenueRollupService.contributionOf(bill, before.categoryTotals()));
         return ResponseEntity.ok(DanpheHttpResponse.ok(bill));
     }
 
@@ -310,6 +350,7 @@ public class BillingController {
     // =========================================================================
     @PostMapping("/FinalBill")
     @Transactional
+    @Timed(value = "billing.final_bill", histogram = true)
     public ResponseEntity<?> generateFinalBill(@RequestBody Map<String, Object> request) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         UserDetailsImpl user = SecurityUtil.getCurrentUser();
@@ -330,32 +371,16 @@ public class BillingController {
             return ResponseEntity.ok(DanpheHttpResponse.error("No bills found for this patient"));
         }
 
-        // Merge all bill items
-        StringBuilder mergedItems = new StringBuilder("[");
-        boolean first = true;
+        // Combine subtotals; the items themselves are merged in SQL once the final bill has an ID
         double combinedSubtotal = 0;
-        List<String> billIds = new ArrayList<>();
+        List<Integer> billIds = new ArrayList<>();
 
         for (Billing bill : allBills) {
-            billIds.add(String.valueOf(bill.getBillId()));
+            billIds.add(bill.getBillId());
             if (bill.getSubtotal() != null) {
                 combinedSubtotal += bill.getSubtotal();
             }
-            if (bill.getBillItems() != null && !bill.getBillItems().isBlank()) {
-                String items = bill.getBillItems().trim();
-                if (items.startsWith("["))
-                    items = items.substring(1);
-                if (items.endsWith("]"))
-                    items = items.substring(0, items.length() - 1);
-                if (!items.isBlank()) {
-                    if (!first)
-                        mergedItems.append(",");
-                    mergedItems.append(items);
-                    first = false;
-                }
-            }
         }
-        mergedItems.append("]");
 
         // Apply discount and tax from request
         Double discountPercent = request.get("discountPercent") != null
@@ -396,8 +421,7 @@ public class BillingController {
         FinalBill finalBill = new FinalBill();
         finalBill.setHospitalId(hospitalId);
         finalBill.setPatientId(patientId);
-        finalBill.setSourceBillIds(String.join(",", billIds));
-        finalBill.setBillItems(mergedItems.toString());
+        finalBill.setSourceBillIds(billIds.stream().map(String::valueOf).collect(java.util.stream.Collectors.joining(",")));
         finalBill.setSubtotal(combinedSubtotal);
         finalBill.setDiscountPercent(finalDiscountPercent);
         finalBill.setDiscountAmount(finalDiscountAmount);
@@ -416,6 +440,7 @@ public class BillingController {
         }
 
         FinalBill saved = finalBillRepository.save(finalBill);
+        saved.setBillItems(billItemService.mergeIntoFinalBill(saved, billIds));
 
         // Enrich
         patientRepository.findByHospitalIdAndPatientId(hospitalId, patientId)
@@ -428,25 +453,25 @@ public class BillingController {
     // 7. GET FINAL BILLS
     // =========================================================================
     @GetMapping("/FinalBills")
-    public ResponseEntity<?> getFinalBills(@RequestParam(required = false) Integer patientId) {
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> getFinalBills(@RequestParam(required = false) Integer patientId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         if (hospitalId == null) {
             return ResponseEntity.ok(DanpheHttpResponse.error("Hospital context not found"));
         }
 
-        List<FinalBill> bills;
-        if (patientId != null) {
-            bills = finalBillRepository.findByHospitalIdAndPatientIdOrderByCreatedAtDesc(hospitalId, patientId);
-        } else {
-            bills = finalBillRepository.findByHospitalIdOrderByCreatedAtDesc(hospitalId);
-        }
+        int pageSize = PageCursor.size(size);
+        PageCursor after = PageCursor.decode(cursor);
+        DanpheHttpResponse<List<FinalBill>> page = DanpheHttpResponse.page(
+                finalBillRepository.findPage(hospitalId, patientId, after.key(), after.intId(),
+                        PageCursor.fetch(pageSize)),
+                pageSize, b -> PageCursor.of(b.getCreatedAt(), b.getFinalBillId()));
 
-        for (FinalBill b : bills) {
-            patientRepository.findByHospitalIdAndPatientId(hospitalId, b.getPatientId())
-                    .ifPresent(pat -> b.setPatientName(pat.getFirstName() + " " + pat.getLastName()));
-        }
+        patientEnrichmentService.enrichFinalBills(hospitalId, page.getResults());
 
-        return ResponseEntity.ok(DanpheHttpResponse.ok(bills));
+        return ResponseEntity.ok(page);
     }
 
     // =========================================================================
@@ -475,6 +500,7 @@ public class BillingController {
     // 9. BILLING SUMMARY / DASHBOARD
     // =========================================================================
     @GetMapping("/Summary")
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getBillingSummary() {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         if (hospitalId == null) {
@@ -487,16 +513,16 @@ public class BillingController {
         summary.put("unpaidBills", billingRepository.countByHospitalIdAndPaymentStatus(hospitalId, "Unpaid"));
         summary.put("partialBills", billingRepository.countByHospitalIdAndPaymentStatus(hospitalId, "Partial"));
 
-        // Total revenue
-        List<Billing> allBills = billingRepository.findByHospitalIdOrderByCreatedAtDesc(hospitalId);
-        double totalRevenue = allBills.stream()
-                .filter(b -> "Paid".equals(b.getPaymentStatus()))
-                .mapToDouble(b -> b.getGrandTotal() != null ? b.getGrandTotal() : 0)
-                .sum();
-        double totalPending = allBills.stream()
-                .filter(b -> !"Paid".equals(b.getPaymentStatus()))
-                .mapToDouble(b -> b.getGrandTotal() != null ? b.getGrandTotal() : 0)
-                .sum();
+        // Total revenue (from the revenue rollup)
+        double totalRevenue = 0;
+        double totalPending = 0;
+        for (var t : revenueRollupRepository.sumByPaymentStatus(hospitalId)) {
+            if ("Paid".equals(t.getPaymentStatus())) {
+                totalRevenue += t.getAmount();
+            } else {
+                totalPending += t.getAmount();
+            }
+        }
 
         summary.put("totalRevenue", totalRevenue);
         summary.put("totalPending", totalPending);
@@ -530,24 +556,17 @@ public class BillingController {
         billing.setGrandTotal(Math.round(grandTotal * 100.0) / 100.0);
     }
 
-    @Transactional
-    private synchronized String generateBillNumber(Integer hospitalId) {
+    // Number comes from the hospital's "bill" sequence; legacy lastBillNumber only seeds it
+    private String generateBillNumber(Integer hospitalId) {
         Optional<HospitalSettings> opt = settingsRepository.findByHospitalId(hospitalId);
-        String code = "HSP";
-        int nextNum = 1;
-
-        if (opt.isPresent()) {
-            HospitalSettings settings = opt.get();
-            if (settings.getHospitalCode() != null) {
-                code = settings.getHospitalCode();
-            }
-            if (settings.getLastBillNumber() != null) {
-                nextNum = settings.getLastBillNumber() + 1;
-            }
-            settings.setLastBillNumber(nextNum);
-            settingsRepository.save(settings);
+        String code = opt.map(HospitalSettings::getHospitalCode).orElse(null);
+        if (code == null) {
+            code = "HSP";
         }
 
+        long nextNum = sequenceAllocator.next(hospitalId, BILL_SEQUENCE,
+                () -> opt.map(HospitalSettings::getLastBillNumber).orElse(0) + 1L);
+
         return String.format("BILL-%s-%05d", code, nextNum);
     }
 }
@@ -4,8 +4,12 @@ import com.danphe.emr.model.DanpheHttpResponse;
 import com.danphe.emr.repository.AdmissionRepository;
 import com.danphe.emr.repository.AppointmentRepository;
 import com.danphe.emr.repository.PatientRepository;
+import com.danphe.emr.service.TimeSeriesService;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -33,7 +37,11 @@ public class DashboardController {
     @Autowired
     AdmissionRepository admissionRepository;
 
+    @Autowired
+    TimeSeriesService timeSeriesService;
+
     @GetMapping("/Summary")
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getDashboardSummary(@RequestParam(required = false) Integer performerId) {
         Integer hospitalId = com.danphe.emr.security.SecurityUtil.getCurrentHospitalId();
         if (hospitalId == null)
@@ -50,25 +58,21 @@ public class DashboardController {
 
         long apptCount;
         if (performerId != null) {
-            apptCount = appointmentRepository
-                    .findByHospitalIdAndAppointmentDateBetweenAndPerformerId(hospitalId, startOfDay, endOfDay,
-                            performerId)
-                    .size();
+            apptCount = appointmentRepository.countByHospitalIdAndAppointmentDateBetweenAndPerformerId(hospitalId,
+                    startOfDay, endOfDay, performerId);
         } else {
-            apptCount = appointmentRepository
-                    .findByHospitalIdAndAppointmentDateBetween(hospitalId, startOfDay, endOfDay).size();
+            apptCount = appointmentRepository.countByHospitalIdAndAppointmentDateBetween(hospitalId, startOfDay,
+                    endOfDay);
         }
         stats.put("appointmentsToday", apptCount);
 
         // Active Admissions (Filter by doctor if provided)
         long activeAdmissions;
         if (performerId != null) {
-            // Find active admissions scoped by hospital
-            activeAdmissions = admissionRepository.findByHospitalIdAndAdmissionStatus(hospitalId, "admitted").stream()
-                    .filter(a -> performerId.equals(a.getAdmittingDoctorId()))
-                    .count();
+            activeAdmissions = admissionRepository.countByHospitalIdAndAdmissionStatusAndAdmittingDoctorId(hospitalId,
+                    "admitted", performerId);
         } else {
-            activeAdmissions = admissionRepository.findByHospitalIdAndAdmissionStatus(hospitalId, "admitted").size();
+            activeAdmissions = admissionRepository.countByHospitalIdAndAdmissionStatus(hospitalId, "admitted");
         }
         stats.put("activeAdmissions", activeAdmissions);
 
@@ -76,6 +80,7 @@ public class DashboardController {
     }
 
     @GetMapping("/Analytics")
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getAnalytics(@RequestParam(defaultValue = "week") String range) {
         Integer hospitalId = com.danphe.emr.security.SecurityUtil.getCurrentHospitalId();
         if (hospitalId == null)
@@ -94,9 +99,7 @@ public class DashboardController {
 
         // 1. Summary Counts
         long newPatients = patientRepository.countByHospitalIdAndCreatedOnBetween(hospitalId, start, end);
-        List<com.danphe.emr.model.Appointment> appts = appointmentRepository
-                .findByHospitalIdAndAppointmentDateBetween(hospitalId, start, end);
-        long newAppts = appts.size();
+        long newAppts = appointmentRepository.countByHospitalIdAndAppointmentDateBetween(hospitalId, start, end);
 
         Map<String, Long> summary = new HashMap<>();
         summary.put("newPatients", newPatients);
@@ -108,58 +111,46 @@ public class DashboardController {
                 start, end);
         response.put("patients", patients);
 
-        // 3. Chart Data (Group by Date)
-        Map<LocalDate, Map<String, Integer>> dailyStats = new HashMap<>();
-
-        // Initialize map for each day in range
-        long days = java.time.temporal.ChronoUnit.DAYS.between(start, end);
-        for (int i = 0; i <= days; i++) {
-            LocalDate d = start.plusDays(i).toLocalDate();
-            Map<String, Integer> dayCounts = new HashMap<>();
-            dayCounts.put("patients", 0);
-            dayCounts.put("appointments", 0);
-            dailyStats.put(d, dayCounts);
-        }
+        // 3. Chart Data (one GROUP BY per metric, gaps filled)
+        List<Map<String, Object>> chartData = timeSeriesService.rows(hospitalId,
+                List.of(TimeSeriesService.Metric.PATIENTS, TimeSeriesService.Metric.APPOINTMENTS),
+                start.toLocalDate(), end.toLocalDate(), TimeSeriesService.Granularity.DAY);
 
-        // Fill Patient Counts
-        for (com.danphe.emr.model.Patient p : patients) {
-            if (p.getCreatedOn() != null) {
-                LocalDate d = p.getCreatedOn().toLocalDate();
-                if (dailyStats.containsKey(d)) {
-                    dailyStats.get(d).put("patients", dailyStats.get(d).get("patients") + 1);
-                }
-            }
-        }
+        response.put("chartData", chartData);
+
+        return ResponseEntity.ok(DanpheHttpResponse.ok(response));
+    }
+
+    // Chart series for any range/granularity, e.g.
+    // /TimeSeries?metrics=patients,appointments,admissions,revenue&from=2024-01-01&to=2024-03-31&granularity=week
+    @GetMapping("/TimeSeries")
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> getTimeSeries(@RequestParam(defaultValue = "patients,appointments") String metrics,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "day") String granularity) {
+        Integer hospitalId = com.danphe.emr.security.SecurityUtil.getCurrentHospitalId();
+        if (hospitalId == null)
+            return ResponseEntity.status(401).body("Hospital ID not found");
 
-        // Fill Appointment Counts
-        for (com.danphe.emr.model.Appointment a : appts) {
-            if (a.getAppointmentDate() != null) {
-                LocalDate d = a.getAppointmentDate().toLocalDate();
-                if (dailyStats.containsKey(d)) {
-                    dailyStats.get(d).put("appointments", dailyStats.get(d).get("appointments") + 1);
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate begin = from != null ? from : end.minusDays(29);
+        try {
+            List<TimeSeriesService.Metric> metricList = new java.util.ArrayList<>();
+            for (String m : metrics.split(",")) {
+                if (!m.isBlank()) {
+                    metricList.add(TimeSeriesService.Metric.parse(m));
                 }
             }
+            return ResponseEntity.ok(DanpheHttpResponse.ok(timeSeriesService.rows(hospitalId, metricList, begin, end,
+                    TimeSeriesService.Granularity.parse(granularity))));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.ok(DanpheHttpResponse.error("Invalid time series request: " + e.getMessage()));
         }
-
-        // Convert to sorted list
-        java.util.List<Map<String, Object>> chartData = dailyStats.entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .map(e -> {
-                    Map<String, Object> item = new HashMap<>();
-                    item.put("date", e.getKey().toString());
-                    item.put("patients", e.getValue().get("patients"));
-                    item.put("appointments", e.getValue().get("appointments"));
-                    return item;
-                })
-                .collect(java.util.stream.Collectors.toList());
-
-        response.put("chartData", chartData);
-
-        return ResponseEntity.ok(DanpheHttpResponse.ok(response));
     }
 
     @Autowired
-    com.danphe.emr.repository.BillingRepository billingRepository;
+    com.danphe.emr.repository.RevenueRollupRepository revenueRollupRepository;
 
     @Autowired
     com.danphe.emr.repository.BedRepository bedRepository;
@@ -168,6 +159,8 @@ public class DashboardController {
     com.danphe.emr.repository.EmployeeRepository employeeRepository;
 
     @GetMapping("/FullAnalytics")
+    @Timed(value = "dashboard.full_analytics", histogram = true)
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getFullAnalytics() {
         Integer hospitalId = com.danphe.emr.security.SecurityUtil.getCurrentHospitalId();
         if (hospitalId == null)
@@ -178,15 +171,20 @@ public class DashboardController {
         LocalDateTime thirtyDaysAgo = now.minusDays(30);
         LocalDateTime sevenDaysAgo = now.minusDays(7);
 
-        // 1. Revenue Data
-        var allBills = billingRepository.findByHospitalId(hospitalId);
-        double totalRevenue = allBills.stream().mapToDouble(b -> b.getGrandTotal() != null ? b.getGrandTotal() : 0)
-                .sum();
-        double paidRevenue = allBills.stream().filter(b -> "paid".equalsIgnoreCase(b.getPaymentStatus()))
-                .mapToDouble(b -> b.getGrandTotal() != null ? b.getGrandTotal() : 0).sum();
+        // 1. Revenue Data (from the daily revenue rollup, not the billing table)
+        double totalRevenue = 0;
+        double paidRevenue = 0;
+        long totalBills = 0;
+        long paidBills = 0;
+        for (var t : revenueRollupRepository.sumByPaymentStatus(hospitalId)) {
+            totalRevenue += t.getAmount();
+            totalBills += t.getBillCount();
+            if ("paid".equalsIgnoreCase(t.getPaymentStatus())) {
+                paidRevenue += t.getAmount();
+                paidBills += t.getBillCount();
+            }
+        }
         double pendingRevenue = totalRevenue - paidRevenue;
-        long totalBills = allBills.size();
-        long paidBills = allBills.stream().filter(b -> "paid".equalsIgnoreCase(b.getPaymentStatus())).count();
         long pendingBills = totalBills - paidBills;
 
         Map<String, Object> revenue = new HashMap<>();
@@ -199,63 +197,42 @@ public class DashboardController {
         data.put("revenue", revenue);
 
         // 2. Monthly Revenue Chart (last 6 months)
+        LocalDate firstMonth = LocalDate.now().minusMonths(5).withDayOfMonth(1);
+        Map<java.time.YearMonth, double[]> byMonth = new HashMap<>();
+        for (var m : revenueRollupRepository.sumByMonthSince(hospitalId, firstMonth)) {
+            double[] totals = byMonth.computeIfAbsent(java.time.YearMonth.of(m.getYear(), m.getMonth()),
+                    k -> new double[2]);
+            totals[0] += m.getAmount();
+            if ("paid".equalsIgnoreCase(m.getPaymentStatus())) {
+                totals[1] += m.getAmount();
+            }
+        }
         java.util.List<Map<String, Object>> monthlyRevenue = new java.util.ArrayList<>();
         for (int i = 5; i >= 0; i--) {
-            LocalDateTime mStart = now.minusMonths(i).withDayOfMonth(1).with(LocalTime.MIN);
-            LocalDateTime mEnd = i == 0 ? now : mStart.plusMonths(1).minusSeconds(1);
-            double monthTotal = allBills.stream()
-                    .filter(b -> b.getCreatedAt() != null && !b.getCreatedAt().isBefore(mStart)
-                            && !b.getCreatedAt().isAfter(mEnd))
-                    .mapToDouble(b -> b.getGrandTotal() != null ? b.getGrandTotal() : 0).sum();
-            double monthPaid = allBills.stream()
-                    .filter(b -> b.getCreatedAt() != null && !b.getCreatedAt().isBefore(mStart)
-                            && !b.getCreatedAt().isAfter(mEnd) && "paid".equalsIgnoreCase(b.getPaymentStatus()))
-                    .mapToDouble(b -> b.getGrandTotal() != null ? b.getGrandTotal() : 0).sum();
+            java.time.YearMonth ym = java.time.YearMonth.from(firstMonth).plusMonths(5 - i);
+            double[] totals = byMonth.getOrDefault(ym, new double[2]);
             Map<String, Object> m = new HashMap<>();
-            m.put("month", mStart.getMonth().toString().substring(0, 3));
-            m.put("revenue", monthTotal);
-            m.put("collected", monthPaid);
+            m.put("month", ym.getMonth().toString().substring(0, 3));
+            m.put("revenue", totals[0]);
+            m.put("collected", totals[1]);
             monthlyRevenue.add(m);
         }
         data.put("monthlyRevenue", monthlyRevenue);
 
         // 3. Department-wise Revenue
-        Map<String, Double> deptRevenue = new HashMap<>();
-        for (var b : allBills) {
-            if (b.getBillItems() != null) {
-                try {
-                    var items = new com.fasterxml.jackson.databind.ObjectMapper().readValue(b.getBillItems(),
-                            java.util.List.class);
-                    for (Object item : items) {
-                        if (item instanceof Map) {
-                            Map<?, ?> it = (Map<?, ?>) item;
-                            String cat = it.get("category") != null ? it.get("category").toString() : "General";
-                            double amt = 0;
-                            try {
-                                amt = Double.parseDouble(it.get("total") != null ? it.get("total").toString() : "0");
-                            } catch (Exception ignore) {
-                            }
-                            deptRevenue.merge(cat, amt, Double::sum);
-                        }
-                    }
-                } catch (Exception ignore) {
-                }
-            }
-        }
         java.util.List<Map<String, Object>> deptList = new java.util.ArrayList<>();
-        deptRevenue.forEach((k, v) -> {
+        for (var c : revenueRollupRepository.sumByCategory(hospitalId)) {
             Map<String, Object> d = new HashMap<>();
-            d.put("department", k);
-            d.put("amount", v);
+            d.put("department", c.getCategory());
+            d.put("amount", c.getAmount());
             deptList.add(d);
-        });
-        deptList.sort((a, b) -> Double.compare((Double) b.get("amount"), (Double) a.get("amount")));
+        }
         data.put("departmentRevenue", deptList);
 
         // 4. Bed Occupancy
-        var allBeds = bedRepository.findByHospitalId(hospitalId);
-        long totalBeds = allBeds.size();
-        long occupiedBeds = allBeds.stream().filter(b -> "occupied".equalsIgnoreCase(b.getStatus())).count();
+        var bedsByStatus = bedRepository.countByStatus(hospitalId);
+        long totalBeds = countOf(bedsByStatus, null);
+        long occupiedBeds = countOf(bedsByStatus, "occupied");
         long availableBeds = totalBeds - occupiedBeds;
         Map<String, Object> beds = new HashMap<>();
         beds.put("total", totalBeds);
@@ -275,39 +252,36 @@ public class DashboardController {
         data.put("patientStats", patientStats);
 
         // 6. Appointment Stats
-        var todayAppts = appointmentRepository.findByHospitalIdAndAppointmentDateBetween(hospitalId,
+        long todayAppts = appointmentRepository.countByHospitalIdAndAppointmentDateBetween(hospitalId,
                 LocalDateTime.of(LocalDate.now(), LocalTime.MIN), LocalDateTime.of(LocalDate.now(), LocalTime.MAX));
-        var weekAppts = appointmentRepository.findByHospitalIdAndAppointmentDateBetween(hospitalId, sevenDaysAgo, now);
+        var weekByStatus = appointmentRepository.countByStatus(hospitalId, sevenDaysAgo, now, null);
         Map<String, Object> apptStats = new HashMap<>();
-        apptStats.put("today", todayAppts.size());
-        apptStats.put("thisWeek", weekAppts.size());
-        long completed = weekAppts.stream().filter(a -> "completed".equalsIgnoreCase(a.getAppointmentStatus())).count();
-        long cancelled = weekAppts.stream().filter(a -> "cancelled".equalsIgnoreCase(a.getAppointmentStatus())).count();
-        apptStats.put("completed", completed);
-        apptStats.put("cancelled", cancelled);
+        apptStats.put("today", todayAppts);
+        apptStats.put("thisWeek", countOf(weekByStatus, null));
+        apptStats.put("completed", countOf(weekByStatus, "completed"));
+        apptStats.put("cancelled", countOf(weekByStatus, "cancelled"));
         data.put("appointmentStats", apptStats);
 
         // 7. Active Admissions
-        var admissions = admissionRepository.findByHospitalIdAndAdmissionStatus(hospitalId, "admitted");
-        data.put("activeAdmissions", admissions.size());
+        data.put("activeAdmissions", admissionRepository.countByHospitalIdAndAdmissionStatus(hospitalId, "admitted"));
 
         // 8. Daily patient trend (last 7 days)
-        java.util.List<Map<String, Object>> dailyTrend = new java.util.ArrayList<>();
-        for (int i = 6; i >= 0; i--) {
-            LocalDate d = LocalDate.now().minusDays(i);
-            LocalDateTime ds = LocalDateTime.of(d, LocalTime.MIN);
-            LocalDateTime de = LocalDateTime.of(d, LocalTime.MAX);
-            long pc = patientRepository.countByHospitalIdAndCreatedOnBetween(hospitalId, ds, de);
-            long ac = appointmentRepository.findByHospitalIdAndAppointmentDateBetween(hospitalId, ds, de).size();
-            Map<String, Object> dd = new HashMap<>();
-            dd.put("day", d.getDayOfWeek().toString().substring(0, 3));
-            dd.put("date", d.toString());
-            dd.put("patients", pc);
-            dd.put("appointments", ac);
-            dailyTrend.add(dd);
+        List<Map<String, Object>> dailyTrend = timeSeriesService.rows(hospitalId,
+                List.of(TimeSeriesService.Metric.PATIENTS, TimeSeriesService.Metric.APPOINTMENTS),
+                LocalDate.now().minusDays(6), LocalDate.now(), TimeSeriesService.Granularity.DAY);
+        for (Map<String, Object> dd : dailyTrend) {
+            dd.put("day", LocalDate.parse((String) dd.get("date")).getDayOfWeek().toString().substring(0, 3));
         }
         data.put("dailyTrend", dailyTrend);
 
         return ResponseEntity.ok(DanpheHttpResponse.ok(data));
     }
+
+    // Sum of a grouped count for one key (case-insensitive), or of all groups when key is null
+    private static long countOf(List<com.danphe.emr.repository.GroupCount> groups, String key) {
+        return groups.stream()
+                .filter(g -> key == null || key.equalsIgnoreCase(g.getGroupKey()))
+                .mapToLong(com.danphe.emr.repository.GroupCount::getTotal)
+                .sum();
+    }
 }
@@ -29,6 +29,9 @@ public class DoctorController {
     @Autowired
     private com.danphe.emr.repository.EmployeeLogRepository logRepository;
 
+    @Autowired
+    private com.danphe.emr.security.PrincipalCache principalCache;
+
     @GetMapping("")
     public ResponseEntity<?> getDoctors(@RequestParam(required = false) Boolean isActive) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
@@ -278,6 +281,7 @@ public class DoctorController {
                     "UPDATED",
                     "System",
                     "Doctor profile updated."));
+            principalCache.invalidateEmployee(doc.getEmployeeId());
 
             return ResponseEntity.ok(DanpheHttpResponse.ok(doc));
         }).orElse(ResponseEntity.ok(DanpheHttpResponse.error("Doctor not found")));
@@ -317,6 +321,7 @@ public class DoctorController {
                     "STATUS_CHANGED",
                     "System",
                     "Doctor " + (newStatus ? "activated" : "deactivated")));
+            principalCache.invalidateEmployee(doc.getEmployeeId());
 
             return ResponseEntity.ok(DanpheHttpResponse.ok("Doctor " + (newStatus ? "activated" : "deactivated")));
         }).orElse(ResponseEntity.ok(DanpheHttpResponse.error("Doctor not found")));
@@ -351,6 +356,7 @@ public class DoctorController {
                     hospitalId, doc.getEmployeeId(), doc.getFullName(),
                     "PASSWORD_RESET", "Admin",
                     "Password reset by admin"));
+            principalCache.invalidateEmployee(doc.getEmployeeId());
 
             return ResponseEntity.ok(DanpheHttpResponse.ok("Password reset to: " + newPassword));
         }).orElse(ResponseEntity.ok(DanpheHttpResponse.error("Doctor not found")));
@@ -380,6 +386,7 @@ public class DoctorController {
                     userRepository.save(user);
                 });
             }
+            principalCache.invalidateEmployee(doc.getEmployeeId());
 
             return ResponseEntity.ok(DanpheHttpResponse.ok("Doctor deactivated successfully"));
         }).orElse(ResponseEntity.ok(DanpheHttpResponse.error("Doctor not found")));
@@ -4,9 +4,19 @@ import com.danphe.emr.model.*;
 import com.danphe.emr.repository.*;
 import com.danphe.emr.security.SecurityUtil;
 import com.danphe.emr.security.UserDetailsImpl;
+import com.danphe.emr.service.ClinicalSummaryService;
+import com.danphe.emr.service.CompositeQueryExecutor;
+import com.danphe.emr.service.DoctorQueueService;
+import com.danphe.emr.service.PatientEnrichmentService;
+import com.danphe.emr.service.PatientSearchService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -40,6 +50,21 @@ public class DoctorPortalController {
     @Autowired
     private DoctorRepository doctorRepository;
 
+    @Autowired
+    private PatientEnrichmentService patientEnrichmentService;
+
+    @Autowired
+    private PatientSearchService patientSearchService;
+
+    @Autowired
+    private CompositeQueryExecutor compositeQueryExecutor;
+
+    @Autowired
+    private ClinicalSummaryService clinicalSummaryService;
+
+    @Autowired
+    private DoctorQueueService doctorQueueService;
+
     // =========================================================================
     // 1. DOCTOR DASHBOARD
     // =========================================================================
@@ -54,34 +79,21 @@ public class DoctorPortalController {
         LocalDateTime startOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MIN);
         LocalDateTime endOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MAX);
 
-        // Today's Appointments
-        List<Appointment> todaysAppts;
-        if (doctorId != null) {
-            todaysAppts = appointmentRepository
-                    .findByHospitalIdAndAppointmentDateBetweenAndPerformerId(hospitalId, startOfDay, endOfDay,
-                            doctorId);
-        } else {
-            todaysAppts = appointmentRepository
-                    .findByHospitalIdAndAppointmentDateBetween(hospitalId, startOfDay, endOfDay);
+        // Today's Appointments, broken down by status (doctorId == null counts all doctors)
+        Map<String, Long> statusBreakdown = new HashMap<>();
+        for (GroupCount g : appointmentRepository.countByStatus(hospitalId, startOfDay, endOfDay, doctorId)) {
+            statusBreakdown.merge(g.getGroupKey(), g.getTotal(), Long::sum);
         }
-        dashboard.put("appointmentsToday", todaysAppts.size());
-
-        // Appointment status breakdown
-        Map<String, Long> statusBreakdown = todaysAppts.stream()
-                .collect(Collectors.groupingBy(
-                        a -> a.getAppointmentStatus() != null ? a.getAppointmentStatus() : "unknown",
-                        Collectors.counting()));
+        long appointmentsToday = statusBreakdown.values().stream().mapToLong(Long::longValue).sum();
+        dashboard.put("appointmentsToday", appointmentsToday);
         dashboard.put("statusBreakdown", statusBreakdown);
 
         // Active Admissions (IPD)
-        List<Admission> activeAdmissions = admissionRepository
-                .findByHospitalIdAndAdmissionStatus(hospitalId, "admitted");
-        if (doctorId != null) {
-            activeAdmissions = activeAdmissions.stream()
-                    .filter(a -> doctorId.equals(a.getAdmittingDoctorId()))
-                    .collect(Collectors.toList());
-        }
-        dashboard.put("activeAdmissions", activeAdmissions.size());
+        long activeAdmissions = doctorId != null
+                ? admissionRepository.countByHospitalIdAndAdmissionStatusAndAdmittingDoctorId(hospitalId, "admitted",
+                        doctorId)
+                : admissionRepository.countByHospitalIdAndAdmissionStatus(hospitalId, "admitted");
+        dashboard.put("activeAdmissions", activeAdmissions);
 
         // Pending Lab Results
         long pendingLabs = 0;
@@ -101,10 +113,10 @@ public class DoctorPortalController {
         dashboard.put("followUps", todaysFollowUps);
 
         // Emergency appointments (those with type containing "emergency")
-        long emergencyCount = todaysAppts.stream()
-                .filter(a -> a.getAppointmentType() != null
-                        && a.getAppointmentType().toLowerCase().contains("emergency"))
-                .count();
+        long emergencyCount = appointmentRepository.countByType(hospitalId, startOfDay, endOfDay, doctorId).stream()
+                .filter(g -> g.getGroupKey().toLowerCase().contains("emergency"))
+                .mapToLong(GroupCount::getTotal)
+                .sum();
         dashboard.put("emergencyCount", emergencyCount);
 
         return ResponseEntity.ok(DanpheHttpResponse.ok(dashboard));
@@ -116,49 +128,43 @@ public class DoctorPortalController {
     @GetMapping("/Queue")
     public ResponseEntity<?> getPatientQueue() {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
+        if (hospitalId == null) {
+            return ResponseEntity.status(401).body(DanpheHttpResponse.error("Unauthorized"));
+        }
         UserDetailsImpl user = SecurityUtil.getCurrentUser();
         Integer doctorId = user != null ? user.getDoctorId() : null;
 
-        LocalDateTime startOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MIN);
-        LocalDateTime endOfDay = LocalDateTime.of(LocalDate.now(), LocalTime.MAX);
+        // One query, ordered by the database: emergencies first, then by appointment time
+        return ResponseEntity.ok(DanpheHttpResponse.ok(doctorQueueService.queue(hospitalId, doctorId)));
+    }
 
-        List<Appointment> queue;
-        if (doctorId != null) {
-            queue = appointmentRepository
-                    .findByHospitalIdAndAppointmentDateBetweenAndPerformerId(hospitalId, startOfDay, endOfDay,
-                            doctorId);
-        } else {
-            queue = appointmentRepository
-                    .findByHospitalIdAndAppointmentDateBetween(hospitalId, startOfDay, endOfDay);
-        }
-
-        // Sort: emergency first, then by appointment date
-        queue.sort((a, b) -> {
-            boolean aEmergency = a.getAppointmentType() != null
-                    && a.getAppointmentType().toLowerCase().contains("emergency");
-            boolean bEmergency = b.getAppointmentType() != null
-                    && b.getAppointmentType().toLowerCase().contains("emergency");
-            if (aEmergency && !bEmergency)
-                return -1;
-            if (!aEmergency && bEmergency)
-                return 1;
-            return a.getAppointmentDate().compareTo(b.getAppointmentDate());
-        });
-
-        return ResponseEntity.ok(DanpheHttpResponse.ok(queue));
+    // Server-Sent Events: a "snapshot" of the queue on connect, then "inserted", "status" and
+    // "moved" events. A reconnect simply starts from a new snapshot.
+    @GetMapping(value = "/Queue/Stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPatientQueue(HttpServletResponse response) {
+        Integer hospitalId = SecurityUtil.getCurrentHospitalId();
+        if (hospitalId == null) {
+            response.setStatus(401);
+            return null;
+        }
+        UserDetailsImpl user = SecurityUtil.getCurrentUser();
+        response.setHeader("X-Accel-Buffering", "no");
+        return doctorQueueService.subscribe(hospitalId, user.getDoctorId());
     }
 
     @PutMapping("/Queue/{appointmentId}/Status")
     public ResponseEntity<?> updateAppointmentStatus(@PathVariable Integer appointmentId,
             @RequestBody Map<String, String> body) {
+        Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         String newStatus = body.get("status");
         Optional<Appointment> optAppt = appointmentRepository.findById(appointmentId);
-        if (optAppt.isEmpty()) {
+        if (optAppt.isEmpty() || !Objects.equals(optAppt.get().getHospitalId(), hospitalId)) {
             return ResponseEntity.ok(DanpheHttpResponse.error("Appointment not found"));
         }
         Appointment appt = optAppt.get();
         appt.setAppointmentStatus(newStatus);
-        appointmentRepository.save(appt);
+        Appointment saved = appointmentRepository.save(appt);
+        doctorQueueService.statusChanged(saved);
         return ResponseEntity.ok(DanpheHttpResponse.ok("Status updated to " + newStatus));
     }
 
@@ -168,59 +174,82 @@ public class DoctorPortalController {
     @GetMapping("/Patient/{patientId}")
     public ResponseEntity<?> getPatientProfile(@PathVariable Integer patientId) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
-
-        Optional<Patient> optPatient = patientRepository.findByHospitalIdAndPatientId(hospitalId, patientId);
-        if (optPatient.isEmpty()) {
-            return ResponseEntity.ok(DanpheHttpResponse.error("Patient not found"));
+        if (hospitalId == null) {
+            return ResponseEntity.status(401).body(DanpheHttpResponse.error("Unauthorized"));
         }
 
-        Patient patient = optPatient.get();
-        Map<String, Object> profile = new HashMap<>();
-        profile.put("patient", patient);
-
-        // Medical Records (Timeline)
-        List<MedicalRecord> records = medicalRecordRepository
-                .findByHospitalIdAndPatientIdOrderByCreatedOnDesc(hospitalId, patientId);
-        profile.put("medicalHistory", records);
-
-        // Past Prescriptions
-        List<Prescription> prescriptions = prescriptionRepository
-                .findByHospitalIdAndPatientIdOrderByCreatedOnDesc(hospitalId, patientId);
-        profile.put("prescriptions", prescriptions);
-
-        // Follow-ups
-        List<FollowUp> followUps = followUpRepository
-                .findByHospitalIdAndPatientIdOrderByFollowUpDateDesc(hospitalId, patientId);
-        profile.put("followUps", followUps);
-
-        // Allergies & Risk Flags (aggregate from medical records)
-        Set<String> allergies = new LinkedHashSet<>();
-        Set<String> riskFlags = new LinkedHashSet<>();
-        for (MedicalRecord r : records) {
-            if (r.getAllergies() != null && !r.getAllergies().isBlank()) {
-                Arrays.stream(r.getAllergies().split(",")).map(String::trim).forEach(allergies::add);
+        // All sections depend only on the patient ID, so they are queried side by side
+        try (CompositeQueryExecutor.Composite q = compositeQueryExecutor.open()) {
+            var patientPart = q.submit("patient",
+                    () -> patientRepository.findByHospitalIdAndPatientId(hospitalId, patientId), Optional.<Patient>empty());
+            var recordsPart = q.submit("medicalHistory", () -> medicalRecordRepository
+                    .findByHospitalIdAndPatientIdOrderByCreatedOnDesc(hospitalId, patientId), List.<MedicalRecord>of());
+            var prescriptionsPart = q.submit("prescriptions", () -> prescriptionRepository
+                    .findByHospitalIdAndPatientIdOrderByCreatedOnDesc(hospitalId, patientId), List.<Prescription>of());
+            var summaryPart = q.submit("summary",
+                    () -> clinicalSummaryService.get(hospitalId, patientId), Optional.<PatientClinicalSummary>empty());
+            var followUpsPart = q.submit("followUps", () -> followUpRepository
+                    .findByHospitalIdAndPatientIdOrderByFollowUpDateDesc(hospitalId, patientId), List.<FollowUp>of());
+            var admissionPart = q.submit("activeAdmission", () -> admissionRepository
+                    .findByHospitalIdAndPatientIdAndAdmissionStatus(hospitalId, patientId, "admitted"),
+                    Optional.<Admission>empty());
+
+            Optional<Patient> optPatient = patientPart.get();
+            if (optPatient.isEmpty()) {
+                return ResponseEntity.ok(DanpheHttpResponse.error(patientPart.failed()
+                        ? "Patient could not be loaded"
+                        : "Patient not found"));
+            }
+
+            // A section that failed or timed out is null, never empty, and named in "unavailable":
+            // an empty allergy list would read as "no known allergies"
+            Map<String, Object> profile = new HashMap<>();
+            List<String> unavailable = new ArrayList<>();
+            profile.put("patient", optPatient.get());
+            profile.put("medicalHistory", section(recordsPart, "medicalHistory", unavailable));
+            profile.put("prescriptions", section(prescriptionsPart, "prescriptions", unavailable));
+            profile.put("followUps", section(followUpsPart, "followUps", unavailable));
+            Optional<Admission> admission = section(admissionPart, "activeAdmission", unavailable);
+            profile.put("activeAdmission", admission != null ? admission.orElse(null) : null);
+
+            // Header figures, allergies and risk flags come from the patient's single summary row
+            Optional<PatientClinicalSummary> summaryRow = section(summaryPart, "summary", unavailable);
+            if (summaryRow != null) {
+                PatientClinicalSummary summary = summaryRow.orElse(null);
+                profile.put("summary", summary);
+                profile.put("allergies", ClinicalSummaryService.splitFlags(summary != null ? summary.getAllergies() : null));
+                profile.put("riskFlags", ClinicalSummaryService.splitFlags(summary != null ? summary.getRiskFlags() : null));
+            } else {
+                profile.put("summary", null);
+                profile.put("allergies", null);
+                profile.put("riskFlags", null);
+                unavailable.add("allergies");
+                unavailable.add("riskFlags");
             }
-            if (r.getRiskFlags() != null && !r.getRiskFlags().isBlank()) {
-                Arrays.stream(r.getRiskFlags().split(",")).map(String::trim).forEach(riskFlags::add);
+
+            profile.put("unavailable", unavailable);
+            if (!q.errors().isEmpty()) {
+                profile.put("partialErrors", q.errors());
             }
+            return ResponseEntity.ok(DanpheHttpResponse.ok(profile));
         }
-        profile.put("allergies", allergies);
-        profile.put("riskFlags", riskFlags);
-
-        // Active Admission
-        Optional<Admission> activeAdmission = admissionRepository
-                .findByHospitalIdAndPatientIdAndAdmissionStatus(hospitalId, patientId, "admitted");
-        profile.put("activeAdmission", activeAdmission.orElse(null));
+    }
 
-        return ResponseEntity.ok(DanpheHttpResponse.ok(profile));
+    // The part's value, or null (with its name added to unavailable) when it failed or timed out
+    private static <T> T section(CompositeQueryExecutor.Composite.Part<T> part, String name, List<String> unavailable) {
+        if (part.failed()) {
+            unavailable.add(name);
+            return null;
+        }
+        return part.get();
     }
 
     // Search patients for doctor
     @GetMapping("/SearchPatient")
-    public ResponseEntity<?> searchPatient(@RequestParam String query) {
+    public ResponseEntity<?> searchPatient(@RequestParam String query,
+            @RequestParam(required = false) Integer limit) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
-        String search = "%" + query + "%";
-        List<Patient> patients = patientRepository.searchPatients(search, hospitalId);
+        List<Patient> patients = patientSearchService.search(hospitalId, query, limit);
         return ResponseEntity.ok(DanpheHttpResponse.ok(patients));
     }
 
@@ -228,29 +257,32 @@ public class DoctorPortalController {
     // 4. PRESCRIPTION MANAGEMENT
     // =========================================================================
     @GetMapping("/Prescriptions")
-    public ResponseEntity<?> getPrescriptions() {
+    public ResponseEntity<?> getPrescriptions(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
+        if (hospitalId == null) {
+            return ResponseEntity.status(401).body(DanpheHttpResponse.error("Unauthorized"));
+        }
         UserDetailsImpl user = SecurityUtil.getCurrentUser();
         Integer doctorId = user != null ? user.getDoctorId() : null;
 
-        List<Prescription> prescriptions;
-        if (doctorId != null) {
-            prescriptions = prescriptionRepository.findByHospitalIdAndDoctorIdOrderByCreatedOnDesc(hospitalId,
-                    doctorId);
-        } else {
-            prescriptions = prescriptionRepository.findAll();
-        }
+        // Doctors see their own; other staff see the whole hospital
+        int pageSize = PageCursor.size(size);
+        PageCursor after = PageCursor.decode(cursor);
+        DanpheHttpResponse<List<Prescription>> page = DanpheHttpResponse.page(
+                prescriptionRepository.findPage(hospitalId, doctorId, after.key(), after.intId(),
+                        PageCursor.fetch(pageSize)),
+                pageSize, p -> PageCursor.of(p.getCreatedOn(), p.getPrescriptionId()));
 
         // Enrich with patient names
-        for (Prescription p : prescriptions) {
-            patientRepository.findByHospitalIdAndPatientId(hospitalId, p.getPatientId())
-                    .ifPresent(pat -> p.setPatientName(pat.getFirstName() + " " + pat.getLastName()));
-        }
+        patientEnrichmentService.enrichPrescriptions(hospitalId, page.getResults());
 
-        return ResponseEntity.ok(DanpheHttpResponse.ok(prescriptions));
+        return ResponseEntity.ok(page);
     }
 
     @PostMapping("/Prescriptions")
+    @Transactional
     public ResponseEntity<?> createPrescription(@RequestBody Prescription prescription) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         UserDetailsImpl user = SecurityUtil.getCurrentUser();
@@ -262,6 +294,7 @@ public class DoctorPortalController {
         }
 
         Prescription saved = prescriptionRepository.save(prescription);
+        clinicalSummaryService.recordPrescription(saved);
         return ResponseEntity.ok(DanpheHttpResponse.ok(saved));
     }
 
@@ -306,31 +339,42 @@ public class DoctorPortalController {
     // 5. FOLLOW-UP & CARE PLANNING
     // =========================================================================
     @GetMapping("/FollowUps")
-    public ResponseEntity<?> getFollowUps(@RequestParam(required = false) String status) {
+    public ResponseEntity<?> getFollowUps(@RequestParam(required = false) String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
+        if (hospitalId == null) {
+            return ResponseEntity.status(401).body(DanpheHttpResponse.error("Unauthorized"));
+        }
         UserDetailsImpl user = SecurityUtil.getCurrentUser();
         Integer doctorId = user != null ? user.getDoctorId() : null;
 
-        List<FollowUp> followUps;
-        if (doctorId != null && status != null && !status.isBlank()) {
-            followUps = followUpRepository.findByHospitalIdAndDoctorIdAndStatusOrderByFollowUpDateAsc(hospitalId,
-                    doctorId, status);
-        } else if (doctorId != null) {
-            followUps = followUpRepository.findByHospitalIdAndDoctorIdOrderByFollowUpDateAsc(hospitalId, doctorId);
-        } else {
-            followUps = followUpRepository.findAll();
+        // Dated follow-ups first, then undated ones by id. A cursor with an id but no date points into
+        // the undated tail; FIRST (neither) starts at the top
+        int pageSize = PageCursor.size(size);
+        PageCursor after = PageCursor.decode(cursor);
+        String statusFilter = status != null && !status.isBlank() ? status : null;
+        boolean inUndated = after.id() != null && after.key() == null;
+        List<FollowUp> rows = new ArrayList<>();
+        if (!inUndated) {
+            rows.addAll(followUpRepository.findPage(hospitalId, doctorId, statusFilter, after.dateKey(),
+                    after.intId(), PageCursor.fetch(pageSize)));
         }
+        if (rows.size() <= pageSize) {
+            rows.addAll(followUpRepository.findUndatedPage(hospitalId, doctorId, statusFilter,
+                    inUndated ? after.intId() : null, PageRequest.of(0, pageSize + 1 - rows.size())));
+        }
+        DanpheHttpResponse<List<FollowUp>> page = DanpheHttpResponse.page(rows, pageSize,
+                f -> PageCursor.of(f.getFollowUpDate(), f.getFollowUpId()));
 
         // Enrich with patient names
-        for (FollowUp f : followUps) {
-            patientRepository.findByHospitalIdAndPatientId(hospitalId, f.getPatientId())
-                    .ifPresent(pat -> f.setPatientName(pat.getFirstName() + " " + pat.getLastName()));
-        }
+        patientEnrichmentService.enrichFollowUps(hospitalId, page.getResults());
 
-        return ResponseEntity.ok(DanpheHttpResponse.ok(followUps));
+        return ResponseEntity.ok(page);
     }
 
     @PostMapping("/FollowUps")
+    @Transactional
     public ResponseEntity<?> createFollowUp(@RequestBody FollowUp followUp) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         UserDetailsImpl user = SecurityUtil.getCurrentUser();
@@ -342,10 +386,12 @@ public class DoctorPortalController {
         }
 
         FollowUp saved = followUpRepository.save(followUp);
+        clinicalSummaryService.recordFollowUp(saved, null);
         return ResponseEntity.ok(DanpheHttpResponse.ok(saved));
     }
 
     @PutMapping("/FollowUps/{id}")
+    @Transactional
     public ResponseEntity<?> updateFollowUp(@PathVariable Integer id, @RequestBody FollowUp updated) {
         Optional<FollowUp> opt = followUpRepository.findById(id);
         if (opt.isEmpty()) {
@@ -353,6 +399,7 @@ public class DoctorPortalController {
         }
 
         FollowUp existing = opt.get();
+        String previousStatus = existing.getStatus();
         existing.setFollowUpDate(updated.getFollowUpDate());
         existing.setCareInstructions(updated.getCareInstructions());
         existing.setTreatmentPlan(updated.getTreatmentPlan());
@@ -361,6 +408,7 @@ public class DoctorPortalController {
         existing.setPriority(updated.getPriority());
 
         followUpRepository.save(existing);
+        clinicalSummaryService.recordFollowUp(existing, previousStatus);
         return ResponseEntity.ok(DanpheHttpResponse.ok(existing));
     }
 
@@ -389,6 +437,7 @@ public class DoctorPortalController {
     }
 
     @PostMapping("/MedicalRecords")
+    @Transactional
     public ResponseEntity<?> createMedicalRecord(@RequestBody MedicalRecord record) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         UserDetailsImpl user = SecurityUtil.getCurrentUser();
@@ -400,6 +449,7 @@ public class DoctorPortalController {
         }
 
         MedicalRecord saved = medicalRecordRepository.save(record);
+        clinicalSummaryService.recordMedicalRecord(saved);
         return ResponseEntity.ok(DanpheHttpResponse.ok(saved));
     }
 
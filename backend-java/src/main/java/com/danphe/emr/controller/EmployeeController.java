@@ -3,8 +3,11 @@ package com.danphe.emr.controller;
 import com.danphe.emr.model.DanpheHttpResponse;
 import com.danphe.emr.model.Employee;
 import com.danphe.emr.model.EmployeeLog;
+import com.danphe.emr.model.PageCursor;
 import com.danphe.emr.repository.EmployeeRepository;
 import com.danphe.emr.security.SecurityUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -18,6 +21,8 @@ import java.util.List;
 @CrossOrigin(origins = "*", maxAge = 3600)
 public class EmployeeController {
 
+    private static final Logger logger = LoggerFactory.getLogger(EmployeeController.class);
+
     @Autowired
     private EmployeeRepository employeeRepository;
 
@@ -30,6 +35,9 @@ public class EmployeeController {
     @Autowired
     private com.danphe.emr.repository.DoctorRepository doctorRepository;
 
+    @Autowired
+    private com.danphe.emr.security.PrincipalCache principalCache;
+
     private String getCurrentUser() {
         org.springframework.security.core.Authentication auth = org.springframework.security.core.context.SecurityContextHolder
                 .getContext().getAuthentication();
@@ -45,11 +53,17 @@ public class EmployeeController {
     }
 
     @GetMapping("/Logs")
-    public ResponseEntity<DanpheHttpResponse<List<EmployeeLog>>> getStaffLogs() {
+    public ResponseEntity<DanpheHttpResponse<List<EmployeeLog>>> getStaffLogs(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         if (hospitalId == null)
             return ResponseEntity.status(401).body(DanpheHttpResponse.error("Unauthorized: No hospital context."));
-        return ResponseEntity.ok(DanpheHttpResponse.ok(logRepository.findByHospitalIdOrderByTimestampDesc(hospitalId)));
+        int pageSize = PageCursor.size(size);
+        PageCursor after = PageCursor.decode(cursor);
+        return ResponseEntity.ok(DanpheHttpResponse.page(
+                logRepository.findPage(hospitalId, after.key(), after.intId(), PageCursor.fetch(pageSize)),
+                pageSize, l -> PageCursor.of(l.getTimestamp(), l.getLogId())));
     }
 
     @GetMapping("/{id}")
@@ -127,7 +141,7 @@ public class EmployeeController {
 
             return ResponseEntity.ok(DanpheHttpResponse.ok(saved));
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Could not save staff record", e);
             return ResponseEntity.ok(DanpheHttpResponse.error("Could not save staff record: " + e.getMessage()));
         }
     }
@@ -181,11 +195,12 @@ public class EmployeeController {
                         getCurrentUser(),
                         statusSwitched ? "Status changed to " + (saved.getIsActive() ? "Active" : "Inactive")
                                 : "Profile updated."));
+                principalCache.invalidateEmployee(saved.getEmployeeId());
 
                 return ResponseEntity.ok(DanpheHttpResponse.ok(saved));
             }).orElse(ResponseEntity.ok(DanpheHttpResponse.error("Employee not found")));
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Employee update failed", e);
             return ResponseEntity.ok(DanpheHttpResponse.error("Update failed: " + e.getMessage()));
         }
     }
@@ -215,6 +230,7 @@ public class EmployeeController {
 
             // 3. Delete Employee record
             employeeRepository.delete(emp);
+            principalCache.invalidateEmployee(id);
 
             return ResponseEntity.ok(DanpheHttpResponse.ok("Staff member deleted successfully"));
         }).orElse(ResponseEntity.ok(DanpheHttpResponse.error("Employee not found")));
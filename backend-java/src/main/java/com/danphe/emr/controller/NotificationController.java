@@ -5,11 +5,16 @@ import com.danphe.emr.model.Notification;
 import com.danphe.emr.repository.NotificationRepository;
 import com.danphe.emr.security.SecurityUtil;
 import com.danphe.emr.security.UserDetailsImpl;
+import com.danphe.emr.service.NotificationStreamService;
+import com.danphe.emr.service.UnreadCounterService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.time.LocalDateTime;
 import java.util.*;
 
 @RestController
@@ -20,7 +25,15 @@ public class NotificationController {
     @Autowired
     private NotificationRepository notificationRepository;
 
+    @Autowired
+    private NotificationStreamService notificationStreamService;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    // Read-only: isRead on role broadcasts is overwritten with this user's receipt state for display
     @GetMapping("")
+    @Transactional(readOnly = true)
     public ResponseEntity<?> getMyNotifications() {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         UserDetailsImpl user = SecurityUtil.getCurrentUser();
@@ -46,6 +59,7 @@ public class NotificationController {
                 merged.add(n);
         }
         merged.sort((a, b) -> b.getCreatedOn().compareTo(a.getCreatedOn()));
+        unreadCounterService.applyReadState(merged, user);
 
         return ResponseEntity.ok(DanpheHttpResponse.ok(merged));
     }
@@ -58,24 +72,52 @@ public class NotificationController {
             return ResponseEntity.status(401).body(DanpheHttpResponse.error("Unauthorized"));
         }
 
-        long userCount = notificationRepository.countByHospitalIdAndTargetUserIdAndIsRead(hospitalId, user.getId(),
-                false);
-        long roleCount = notificationRepository.countByHospitalIdAndTargetRoleAndIsRead(hospitalId, user.getRole(),
-                false);
+        long unread = unreadCounterService.unreadCount(hospitalId, user.getId(), user.getRole());
+        return ResponseEntity.ok(DanpheHttpResponse.ok(Map.of("unread", unread)));
+    }
 
-        return ResponseEntity.ok(DanpheHttpResponse.ok(Map.of("unread", userCount + roleCount)));
+    // Server-Sent Events: "notification" events carry new notifications (id = notificationId),
+    // "unread" events carry {"unread": n} on connect and {"delta": d} afterwards.
+    // EventSource cannot set headers: it authenticates with ?ticket= (see /api/Account/StreamTicket) and,
+    // since a used ticket cannot reconnect by itself, the client passes the resume point as ?lastEventId=
+    @GetMapping(value = "/Stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) String lastEventIdParam,
+            HttpServletResponse response) {
+        String lastEventId = lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
+        UserDetailsImpl user = SecurityUtil.getCurrentUser();
+        if (user == null || user.getHospitalId() == null) {
+            response.setStatus(401);
+            return null;
+        }
+        Long after = null;
+        try {
+            after = lastEventId != null && !lastEventId.isBlank() ? Long.valueOf(lastEventId.trim()) : null;
+        } catch (NumberFormatException e) {
+            // Not one of ours; start without replay
+        }
+        // Stops nginx buffering the stream
+        response.setHeader("X-Accel-Buffering", "no");
+        return notificationStreamService.subscribe(user, after);
     }
 
     @PutMapping("/{id}/Read")
     public ResponseEntity<?> markAsRead(@PathVariable Long id) {
-        Optional<Notification> opt = notificationRepository.findById(id);
+        UserDetailsImpl user = SecurityUtil.getCurrentUser();
+        if (user == null) {
+            return ResponseEntity.status(401).body(DanpheHttpResponse.error("Unauthorized"));
+        }
+        // Only the recipient (or a member of the target role) can mark it read
+        Optional<Notification> opt = notificationRepository.findById(id)
+                .filter(n -> Objects.equals(n.getHospitalId(), user.getHospitalId()))
+                .filter(n -> Objects.equals(n.getTargetUserId(), user.getId())
+                        || (n.getTargetRole() != null && n.getTargetRole().equals(user.getRole())));
         if (opt.isEmpty()) {
             return ResponseEntity.ok(DanpheHttpResponse.error("Notification not found"));
         }
-        Notification n = opt.get();
-        n.setIsRead(true);
-        n.setReadOn(LocalDateTime.now());
-        notificationRepository.save(n);
+        if (unreadCounterService.markRead(opt.get(), user)) {
+            notificationStreamService.unreadChanged(user.getHospitalId(), user.getId(), -1);
+        }
         return ResponseEntity.ok(DanpheHttpResponse.ok("Marked as read"));
     }
 
@@ -87,21 +129,21 @@ public class NotificationController {
             return ResponseEntity.status(401).body(DanpheHttpResponse.error("Unauthorized"));
         }
 
-        List<Notification> unread = notificationRepository
-                .findByHospitalIdAndTargetUserIdAndIsReadOrderByCreatedOnDesc(hospitalId, user.getId(), false);
-        for (Notification n : unread) {
-            n.setIsRead(true);
-            n.setReadOn(LocalDateTime.now());
+        long marked = unreadCounterService.markAllRead(user);
+        if (marked > 0) {
+            notificationStreamService.unreadChanged(hospitalId, user.getId(), -marked);
         }
-        notificationRepository.saveAll(unread);
-        return ResponseEntity.ok(DanpheHttpResponse.ok("All marked as read"));
+        return ResponseEntity.ok(DanpheHttpResponse.ok(Map.of("updated", marked)));
     }
 
     @PostMapping("")
+    @Transactional
     public ResponseEntity<?> createNotification(@RequestBody Notification notification) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         notification.setHospitalId(hospitalId);
         Notification saved = notificationRepository.save(notification);
+        unreadCounterService.created(saved);
+        notificationStreamService.publish(saved);
         return ResponseEntity.ok(DanpheHttpResponse.ok(saved));
     }
 }
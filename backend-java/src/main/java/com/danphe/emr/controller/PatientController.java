@@ -1,10 +1,15 @@
 package com.danphe.emr.controller;
 
 import com.danphe.emr.model.DanpheHttpResponse;
+import com.danphe.emr.model.PageCursor;
 import com.danphe.emr.model.Patient;
 import com.danphe.emr.repository.PatientRepository;
 import com.danphe.emr.security.SecurityUtil;
+import com.danphe.emr.service.PatientNumberService;
+import com.danphe.emr.service.PatientSearchService;
 import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,18 +21,38 @@ import java.util.List;
 @CrossOrigin(origins = "*", maxAge = 3600)
 public class PatientController {
 
+    private static final Logger logger = LoggerFactory.getLogger(PatientController.class);
+
     @Autowired
     PatientRepository patientRepository;
 
+    @Autowired
+    PatientSearchService patientSearchService;
+
+    @Autowired
+    PatientNumberService patientNumberService;
+
     @GetMapping("")
     public ResponseEntity<?> getPatients(
-            @RequestParam(required = false, defaultValue = "") String search) {
+            @RequestParam(required = false, defaultValue = "") String search,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
         Integer hospitalId = SecurityUtil.getCurrentHospitalId();
         if (hospitalId == null)
             return ResponseEntity.status(401).body("Hospital ID not found");
 
-        List<Patient> list = patientRepository.searchPatients("%" + search + "%", hospitalId);
-        return ResponseEntity.ok(DanpheHttpResponse.ok(list));
+        // Searches are ranked and capped by limit; the plain list is keyset-paged newest first
+        if (!search.isBlank()) {
+            return ResponseEntity.ok(DanpheHttpResponse.ok(patientSearchService.search(hospitalId, search, limit)));
+        }
+        int pageSize = PageCursor.size(limit);
+        PageCursor after = PageCursor.decode(cursor);
+        List<Patient> rows = after.id() == null
+                ? patientRepository.findByHospitalIdOrderByPatientIdDesc(hospitalId, PageCursor.fetch(pageSize))
+                : patientRepository.findByHospitalIdAndPatientIdLessThanOrderByPatientIdDesc(hospitalId,
+                        after.intId(), PageCursor.fetch(pageSize));
+        return ResponseEntity.ok(DanpheHttpResponse.page(rows, pageSize,
+                p -> PageCursor.ofId(p.getPatientId())));
     }
 
     @GetMapping("/{id}")
@@ -50,15 +75,11 @@ public class PatientController {
 
             patient.setHospitalId(hospitalId);
 
-            System.out.println("Registering patient: " + patient.getFirstName() + " " + patient.getLastName());
-
-            Integer maxId = patientRepository.getMaxPatientId();
-            int nextId = (maxId == null) ? 1 : maxId + 1;
-
             // Set derived fields
-            patient.setPatientCode("PAT" + String.format("%05d", nextId));
+            int patientNo = patientNumberService.next(hospitalId);
+            patient.setPatientCode(PatientNumberService.codeOf(patientNo));
             if (patient.getPatientNo() == null || patient.getPatientNo() == 0) {
-                patient.setPatientNo(nextId);
+                patient.setPatientNo(patientNo);
             }
 
             // Calculate DOB if missing but Age is present
@@ -69,15 +90,14 @@ public class PatientController {
                     patient.setDateOfBirth(java.time.LocalDate.now().minusYears(age));
                 } catch (Exception e) {
                     // Ignore parsing error, leave DOB null
-                    System.out.println("Could not parse age: " + patient.getAge());
+                    logger.debug("Could not parse age: {}", patient.getAge());
                 }
             }
 
             Patient saved = patientRepository.save(patient);
             return ResponseEntity.ok(DanpheHttpResponse.ok(saved));
         } catch (Exception e) {
-            System.out.println("Error registering patient: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("Error registering patient", e);
             return ResponseEntity.ok(DanpheHttpResponse.error("Registration failed: " + e.getMessage()));
         }
     }
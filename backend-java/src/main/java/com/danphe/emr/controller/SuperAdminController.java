@@ -21,6 +21,12 @@ public class SuperAdminController {
     @Autowired
     com.danphe.emr.repository.UserRepository userRepository;
 
+    @Autowired
+    com.danphe.emr.security.PrincipalCache principalCache;
+
+    @Autowired
+    com.danphe.emr.service.RevenueRollupService revenueRollupService;
+
     @GetMapping("/Hospitals")
     public ResponseEntity<?> getAllHospitals() {
         return ResponseEntity.ok(DanpheHttpResponse.ok(hospitalRepository.findAll()));
@@ -90,7 +96,9 @@ public class SuperAdminController {
             h.setContactNumber(details.getContactNumber());
             h.setEmail(details.getEmail());
             h.setIsActive(details.getIsActive());
-            return ResponseEntity.ok(DanpheHttpResponse.ok(hospitalRepository.save(h)));
+            Hospital saved = hospitalRepository.save(h);
+            principalCache.invalidateHospital(id);
+            return ResponseEntity.ok(DanpheHttpResponse.ok(saved));
         }).orElse(ResponseEntity.ok(DanpheHttpResponse.error("Hospital not found")));
     }
 
@@ -105,6 +113,15 @@ public class SuperAdminController {
         return ResponseEntity.ok(DanpheHttpResponse.ok(summary));
     }
 
+    // Repair path: recomputes the hospital's dashboard revenue rollup from its bills and bill items
+    @PostMapping("/Hospitals/{id}/RebuildRevenueRollup")
+    public ResponseEntity<?> rebuildRevenueRollup(@PathVariable Integer id) {
+        if (!hospitalRepository.existsById(id)) {
+            return ResponseEntity.ok(DanpheHttpResponse.error("Hospital not found"));
+        }
+        return ResponseEntity.ok(DanpheHttpResponse.ok(revenueRollupService.rebuild(id)));
+    }
+
     // DTO for updating credentials
     public static class UpdateCredentialsRequest {
         public String newUsername;
@@ -147,6 +164,7 @@ public class SuperAdminController {
 
         userRepository.save(user);
         employeeRepository.save(adminEmp);
+        principalCache.invalidateEmployee(adminEmp.getEmployeeId());
 
         return ResponseEntity.ok(DanpheHttpResponse.ok("Credentials updated successfully"));
     }
@@ -23,6 +23,11 @@ public class GlobalExceptionHandler {
         return ResponseEntity.ok(DanpheHttpResponse.error("Validation failed: " + errors));
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<DanpheHttpResponse<String>> handleInvalidCursor(InvalidCursorException ex) {
+        return ResponseEntity.ok(DanpheHttpResponse.error(ex.getMessage()));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<DanpheHttpResponse<String>> handleAllExceptions(Exception ex) {
         return ResponseEntity.ok(DanpheHttpResponse.error("Server error: " + ex.getMessage()));
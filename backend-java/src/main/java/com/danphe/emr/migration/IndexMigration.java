@@ -0,0 +1,55 @@
+package com.danphe.emr.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Base for migrations that add indexes. MySQL has no CREATE INDEX IF NOT
+ * EXISTS, and databases first built by ddl-auto already carry some indexes
+ * (under generated names), so an index is only created when no existing
+ * index covers exactly the same columns in the same order.
+ */
+abstract class IndexMigration extends BaseJavaMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexMigration.class);
+
+    protected void index(Context context, String table, String name, String... columns) throws SQLException {
+        create(context.getConnection(), table, name, false, columns);
+    }
+
+    protected void unique(Context context, String table, String name, String... columns) throws SQLException {
+        create(context.getConnection(), table, name, true, columns);
+    }
+
+    private void create(Connection connection, String table, String name, boolean unique, String... columns)
+            throws SQLException {
+        String wanted = String.join(",", columns);
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT MIN(non_unique) AS non_unique, GROUP_CONCAT(column_name ORDER BY seq_in_index) AS cols"
+                        + " FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = ?"
+                        + " GROUP BY index_name")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    // A unique index also serves a plain one; not the other way round
+                    if (wanted.equalsIgnoreCase(rs.getString("cols")) && (!unique || rs.getInt("non_unique") == 0)) {
+                        return;
+                    }
+                }
+            }
+        }
+        try (Statement st = connection.createStatement()) {
+            st.execute((unique ? "ALTER TABLE " + table + " ADD CONSTRAINT " + name + " UNIQUE (" + wanted + ")"
+                    : "CREATE INDEX " + name + " ON " + table + " (" + wanted + ")"));
+        }
+        logger.info("Created {} {} on {} ({})", unique ? "unique key" : "index", name, table, wanted);
+    }
+}
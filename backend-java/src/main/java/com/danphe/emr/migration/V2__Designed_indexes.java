@@ -0,0 +1,83 @@
+package com.danphe.emr.migration;
+
+import org.flywaydb.core.api.migration.Context;
+
+/**
+ * The index set, table by table. Each index leads with hospital_id and then
+ * follows the equality filters and sort/range column of the repository
+ * queries it serves, so tenant-scoped lists, counts and keyset pages are
+ * index range scans.
+ */
+public class V2__Designed_indexes extends IndexMigration {
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        // Unique keys that ddl-auto used to create
+        unique(context, "billing", "uk_billing_bill_number", "bill_number");
+        unique(context, "final_bill", "uk_final_bill_bill_number", "bill_number");
+        unique(context, "hospital", "uk_hospital_name", "name");
+        unique(context, "hospital_settings", "uk_hospital_settings_hospital", "hospital_id");
+        unique(context, "rbac_user", "uk_rbac_user_user_name", "user_name");
+        unique(context, "number_sequence", "uk_number_sequence", "hospital_id", "sequence_name");
+        unique(context, "revenue_rollup", "uk_revenue_rollup_key", "hospital_id", "rollup_date", "bill_type",
+                "payment_status", "category");
+
+        // Patient search (PatientSearchService), newest-first list, registration date counts
+        index(context, "patient", "idx_patient_first_name", "hospital_id", "first_name", "last_name");
+        index(context, "patient", "idx_patient_last_name", "hospital_id", "last_name", "first_name");
+        index(context, "patient", "idx_patient_phone", "hospital_id", "phone_number");
+        index(context, "patient", "idx_patient_recent", "hospital_id", "patient_id");
+        index(context, "patient", "idx_patient_created", "hospital_id", "created_on");
+
+        // Day/range lists and dashboard counts, per doctor or whole hospital; patient history
+        index(context, "appointment", "idx_appointment_date", "hospital_id", "appointment_date");
+        index(context, "appointment", "idx_appointment_performer", "hospital_id", "performer_id", "appointment_date");
+        index(context, "appointment", "idx_appointment_patient", "hospital_id", "patient_id", "appointment_date");
+
+        index(context, "admission", "idx_admission_status", "hospital_id", "admission_status", "admitting_doctor_id");
+        index(context, "admission", "idx_admission_date", "hospital_id", "admission_date");
+        index(context, "admission", "idx_admission_patient", "hospital_id", "patient_id", "admission_date");
+
+        index(context, "bed", "idx_bed_status", "hospital_id", "status", "is_active");
+
+        index(context, "billing", "idx_billing_created", "hospital_id", "created_at", "bill_id");
+        index(context, "billing", "idx_billing_patient", "hospital_id", "patient_id", "created_at", "bill_id");
+        index(context, "billing", "idx_billing_payment_status", "hospital_id", "payment_status");
+        index(context, "final_bill", "idx_final_bill_created", "hospital_id", "created_at", "final_bill_id");
+        index(context, "final_bill", "idx_final_bill_patient", "hospital_id", "patient_id", "created_at",
+                "final_bill_id");
+        index(context, "bill_item", "idx_bill_item_bill", "bill_id");
+        index(context, "bill_item", "idx_bill_item_final_bill", "final_bill_id");
+        index(context, "bill_item", "idx_bill_item_hospital_category", "hospital_id", "category");
+
+        index(context, "prescription", "idx_prescription_created", "hospital_id", "created_on", "prescription_id");
+        index(context, "prescription", "idx_prescription_doctor", "hospital_id", "doctor_id", "created_on",
+                "prescription_id");
+        index(context, "prescription", "idx_prescription_patient", "hospital_id", "patient_id", "created_on");
+
+        index(context, "follow_up", "idx_follow_up_date", "hospital_id", "follow_up_date", "follow_up_id");
+        index(context, "follow_up", "idx_follow_up_doctor", "hospital_id", "doctor_id", "follow_up_date",
+                "follow_up_id");
+        index(context, "follow_up", "idx_follow_up_patient", "hospital_id", "patient_id", "follow_up_date");
+
+        index(context, "medical_record", "idx_medical_record_patient", "hospital_id", "patient_id", "record_type",
+                "created_on");
+        index(context, "medical_record", "idx_medical_record_doctor", "hospital_id", "doctor_id", "created_on");
+        index(context, "medical_record", "idx_medical_record_lab", "hospital_id", "doctor_id", "lab_status");
+
+        index(context, "notification", "idx_notification_user", "hospital_id", "target_user_id", "created_on");
+        index(context, "notification", "idx_notification_role", "hospital_id", "target_role", "created_on");
+
+        index(context, "attendance", "idx_attendance_timestamp", "hospital_id", "timestamp", "attendance_id");
+        index(context, "attendance", "idx_attendance_employee", "hospital_id", "employee_id", "timestamp",
+                "attendance_id");
+        index(context, "employee_log", "idx_employee_log_timestamp", "hospital_id", "timestamp", "log_id");
+        index(context, "audit_log", "idx_audit_log_timestamp", "hospital_id", "timestamp", "log_id");
+
+        index(context, "employee", "idx_employee_role", "hospital_id", "role");
+        index(context, "doctor", "idx_doctor_active", "hospital_id", "is_active");
+        index(context, "rbac_user", "idx_rbac_user_employee", "employee_id");
+        index(context, "service_catalog", "idx_service_catalog_category", "hospital_id", "category",
+                "service_name");
+    }
+}
@@ -0,0 +1,83 @@
+package com.danphe.emr.migration;
+
+import com.danphe.emr.service.PatientNumberService;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Makes patient codes unique per hospital. Codes used to come from a global
+ * MAX(patientId) that concurrent registrations could duplicate, so later
+ * duplicates are first renumbered from the hospital's "patient" sequence
+ * (reserving through number_sequence exactly as SequenceAllocator does, so
+ * running instances never hand out the same numbers).
+ */
+public class V3__Unique_patient_code extends IndexMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(V3__Unique_patient_code.class);
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+
+        List<int[]> duplicates = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT p.patient_id, p.hospital_id FROM patient p WHERE EXISTS (SELECT 1 FROM patient k"
+                        + " WHERE k.hospital_id = p.hospital_id AND k.patient_code = p.patient_code"
+                        + " AND k.patient_id < p.patient_id) ORDER BY p.patient_id");
+                ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                duplicates.add(new int[] { rs.getInt(1), rs.getInt(2) });
+            }
+        }
+
+        for (int[] d : duplicates) {
+            int patientNo = reserve(connection, d[1]);
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "UPDATE patient SET patient_no = ?, patient_code = ? WHERE patient_id = ?")) {
+                ps.setInt(1, patientNo);
+                ps.setString(2, PatientNumberService.codeOf(patientNo));
+                ps.setInt(3, d[0]);
+                ps.executeUpdate();
+            }
+            logger.warn("Renumbered patient {} of hospital {} to {}: duplicate patient code", d[0], d[1],
+                    PatientNumberService.codeOf(patientNo));
+        }
+
+        unique(context, "patient", "uk_patient_code", "hospital_id", "patient_code");
+    }
+
+    private int reserve(Connection connection, int hospitalId) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT IGNORE INTO number_sequence (hospital_id, sequence_name, next_value)"
+                        + " SELECT ?, ?, COALESCE(MAX(CAST(SUBSTRING(patient_code, 4) AS UNSIGNED)), 0) + 1"
+                        + " FROM patient WHERE hospital_id = ? AND patient_code REGEXP '^PAT[0-9]+$'")) {
+            ps.setInt(1, hospitalId);
+            ps.setString(2, PatientNumberService.PATIENT_SEQUENCE);
+            ps.setInt(3, hospitalId);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = connection.prepareStatement(
+                "UPDATE number_sequence SET next_value = next_value + 1 WHERE hospital_id = ? AND sequence_name = ?")) {
+            ps.setInt(1, hospitalId);
+            ps.setString(2, PatientNumberService.PATIENT_SEQUENCE);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT next_value - 1 FROM number_sequence WHERE hospital_id = ? AND sequence_name = ?")) {
+            ps.setInt(1, hospitalId);
+            ps.setString(2, PatientNumberService.PATIENT_SEQUENCE);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.danphe.emr.migration;
+
+import org.flywaydb.core.api.migration.Context;
+
+/**
+ * Audit log filters and Stats. A module/action/severity filter is an
+ * equality followed by the timestamp keyset, so each gets its own index; the
+ * Stats window is a timestamp range whose grouped counts are answered from
+ * one covering index without reading rows.
+ */
+public class V6__Audit_log_indexes extends IndexMigration {
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        index(context, "audit_log", "idx_audit_log_module", "hospital_id", "module", "timestamp", "log_id");
+        index(context, "audit_log", "idx_audit_log_action", "hospital_id", "action", "timestamp", "log_id");
+        index(context, "audit_log", "idx_audit_log_severity", "hospital_id", "severity", "timestamp", "log_id");
+        index(context, "audit_log", "idx_audit_log_stats", "hospital_id", "timestamp", "module", "action",
+                "severity");
+    }
+}
@@ -0,0 +1,113 @@
+package com.danphe.emr.migration;
+
+import com.danphe.emr.model.BillItem;
+import com.danphe.emr.model.RevenueRollup;
+import com.danphe.emr.service.BillItemService;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Fills bill_item and revenue_rollup for bills saved before those tables
+ * existed. This used to run on every application start, racing live billing
+ * and other instances; as a migration it runs once, under Flyway's lock and
+ * before the application takes writes. A table that is already populated
+ * (by the old startup backfill) is left alone.
+ */
+public class V7__Backfill_bill_items_and_revenue_rollup extends BaseJavaMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(V7__Backfill_bill_items_and_revenue_rollup.class);
+
+    private static final int PAGE_SIZE = 500;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+
+        if (isEmpty(connection, "bill_item")) {
+            int bills = splitLines(connection, "billing", "bill_id");
+            int finalBills = splitLines(connection, "final_bill", "final_bill_id");
+            logger.info("Bill items backfilled from {} bills and {} final bills", bills, finalBills);
+        }
+
+        // The category totals aggregate the bill_item rows filled above
+        if (isEmpty(connection, "revenue_rollup")) {
+            try (Statement st = connection.createStatement()) {
+                int rows = st.executeUpdate("INSERT INTO revenue_rollup (hospital_id, rollup_date, bill_type,"
+                        + " payment_status, category, bill_count, amount)"
+                        + " SELECT b.hospital_id, COALESCE(DATE(b.created_at), CURRENT_DATE),"
+                        + " COALESCE(NULLIF(TRIM(b.bill_type), ''), 'Unknown'),"
+                        + " COALESCE(NULLIF(TRIM(b.payment_status), ''), 'Unpaid'),"
+                        + " '" + RevenueRollup.ALL_CATEGORIES + "', COUNT(*), COALESCE(SUM(b.grand_total), 0)"
+                        + " FROM billing b GROUP BY 1, 2, 3, 4");
+                rows += st.executeUpdate("INSERT INTO revenue_rollup (hospital_id, rollup_date, bill_type,"
+                        + " payment_status, category, bill_count, amount)"
+                        + " SELECT b.hospital_id, COALESCE(DATE(b.created_at), CURRENT_DATE),"
+                        + " COALESCE(NULLIF(TRIM(b.bill_type), ''), 'Unknown'),"
+                        + " COALESCE(NULLIF(TRIM(b.payment_status), ''), 'Unpaid'),"
+                        + " COALESCE(NULLIF(TRIM(i.category), ''), 'General'), COUNT(DISTINCT b.bill_id),"
+                        + " COALESCE(SUM(i.total), 0)"
+                        + " FROM bill_item i JOIN billing b ON b.bill_id = i.bill_id"
+                        + " WHERE i.final_bill_id IS NULL GROUP BY 1, 2, 3, 4, 5");
+                logger.info("Revenue rollup backfilled: {} rows", rows);
+            }
+        }
+    }
+
+    private static boolean isEmpty(Connection connection, String table) throws SQLException {
+        try (Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery("SELECT EXISTS (SELECT 1 FROM " + table + ")")) {
+            rs.next();
+            return !rs.getBoolean(1);
+        }
+    }
+
+    // Splits the billItems JSON of every row of table into bill_item rows linked through idColumn
+    private static int splitLines(Connection connection, String table, String idColumn) throws SQLException {
+        int rows = 0;
+        int lastId = 0;
+        try (PreparedStatement select = connection.prepareStatement("SELECT " + idColumn + ", hospital_id, bill_items"
+                + " FROM " + table + " WHERE " + idColumn + " > ? ORDER BY " + idColumn + " LIMIT " + PAGE_SIZE);
+                PreparedStatement insert = connection.prepareStatement("INSERT INTO bill_item (hospital_id, "
+                        + idColumn + ", line_no, service_id, item_name, category, quantity, unit_price, rate_type,"
+                        + " total, auto_added, is_custom) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            int page;
+            do {
+                page = 0;
+                select.setInt(1, lastId);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getInt(1);
+                        int hospitalId = rs.getInt(2);
+                        for (BillItem line : BillItemService.parse(rs.getString(3))) {
+                            insert.setInt(1, hospitalId);
+                            insert.setInt(2, lastId);
+                            insert.setObject(3, line.getLineNo());
+                            insert.setObject(4, line.getServiceId());
+                            insert.setString(5, line.getItemName());
+                            insert.setString(6, line.getCategory());
+                            insert.setObject(7, line.getQuantity());
+                            insert.setObject(8, line.getUnitPrice());
+                            insert.setString(9, line.getRateType());
+                            insert.setObject(10, line.getTotal());
+                            insert.setObject(11, line.getAutoAdded());
+                            insert.setObject(12, line.getIsCustom());
+                            insert.addBatch();
+                        }
+                        page++;
+                    }
+                }
+                insert.executeBatch();
+                rows += page;
+            } while (page == PAGE_SIZE);
+        }
+        return rows;
+    }
+}
@@ -40,6 +40,10 @@ public class Appointment {
     // "New", "Followup", etc.
     private String appointmentType;
 
+    // Doctor queue order, kept in step with appointmentType: 0 for emergencies, 1 otherwise
+    @Column(nullable = false)
+    private Integer queueRank;
+
     // "Initiated", "CheckedIn", "Cancelled", "Completed"
     private String appointmentStatus;
 
@@ -62,10 +66,16 @@ public class Appointment {
         if (appointmentStatus == null) {
             appointmentStatus = "initiated";
         }
+        queueRank = queueRankOf(appointmentType);
     }
 
     @PreUpdate
     protected void onUpdate() {
         modifiedOn = LocalDateTime.now();
+        queueRank = queueRankOf(appointmentType);
+    }
+
+    public static int queueRankOf(String appointmentType) {
+        return appointmentType != null && appointmentType.toLowerCase().contains("emergency") ? 0 : 1;
     }
 }
@@ -6,7 +6,10 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "attendance")
+@Table(name = "attendance", indexes = {
+        @Index(name = "idx_attendance_timestamp", columnList = "hospitalId, timestamp, attendanceId"),
+        @Index(name = "idx_attendance_employee", columnList = "hospitalId, employeeId, timestamp, attendanceId")
+})
 @Data
 @NoArgsConstructor
 public class Attendance {
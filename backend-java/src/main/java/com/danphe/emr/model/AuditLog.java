@@ -6,7 +6,13 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "audit_log")
+@Table(name = "audit_log", indexes = {
+        @Index(name = "idx_audit_log_timestamp", columnList = "hospitalId, timestamp, logId"),
+        @Index(name = "idx_audit_log_module", columnList = "hospitalId, module, timestamp, logId"),
+        @Index(name = "idx_audit_log_action", columnList = "hospitalId, action, timestamp, logId"),
+        @Index(name = "idx_audit_log_severity", columnList = "hospitalId, severity, timestamp, logId"),
+        @Index(name = "idx_audit_log_stats", columnList = "hospitalId, timestamp, module, action, severity")
+})
 @Data
 @NoArgsConstructor
 public class AuditLog {
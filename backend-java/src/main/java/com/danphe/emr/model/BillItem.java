@@ -0,0 +1,48 @@
+package com.danphe.emr.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One line of a bill. Rows with finalBillId == null belong to an OPD/IPD bill;
+// rows with finalBillId set are the merged copy held by a final bill.
+@Entity
+@Table(name = "bill_item", indexes = {
+        @Index(name = "idx_bill_item_bill", columnList = "billId"),
+        @Index(name = "idx_bill_item_final_bill", columnList = "finalBillId"),
+        @Index(name = "idx_bill_item_hospital_category", columnList = "hospitalId, category")
+})
+@Data
+@NoArgsConstructor
+public class BillItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long itemId;
+
+    @Column(nullable = false)
+    private Integer hospitalId;
+
+    private Integer billId;
+
+    private Integer finalBillId;
+
+    // Position within the bill, preserves the order items were entered in
+    private Integer lineNo;
+
+    // Null for custom items not taken from the service catalog
+    private Integer serviceId;
+
+    private String itemName;
+    private String category;
+    private Double quantity;
+    private Double unitPrice;
+
+    // per_visit / per_day / fixed
+    private String rateType;
+
+    private Double total;
+
+    private Boolean autoAdded;
+    private Boolean isCustom;
+}
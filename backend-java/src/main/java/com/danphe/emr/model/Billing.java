@@ -6,7 +6,10 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "billing")
+@Table(name = "billing", indexes = {
+        @Index(name = "idx_billing_created", columnList = "hospitalId, createdAt, billId"),
+        @Index(name = "idx_billing_patient", columnList = "hospitalId, patientId, createdAt, billId")
+})
 @Data
 @NoArgsConstructor
 public class Billing {
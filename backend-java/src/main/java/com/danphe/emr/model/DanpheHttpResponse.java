@@ -1,8 +1,13 @@
 package com.danphe.emr.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
 @Data
 public class DanpheHttpResponse<T> {
 
@@ -15,6 +20,11 @@ public class DanpheHttpResponse<T> {
     @JsonProperty("ErrorMessage")
     private String errorMessage;
 
+    // Set on paged lists when more rows follow; pass it back as ?cursor=
+    @JsonProperty("NextCursor")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+
     public DanpheHttpResponse() {
         this.status = "OK";
     }
@@ -26,6 +36,21 @@ public class DanpheHttpResponse<T> {
         return response;
     }
 
+    /**
+     * One keyset page. {@code rows} must have been fetched with
+     * {@link PageCursor#fetch(int)}: the extra row is dropped and only
+     * signals that a next page exists.
+     */
+    public static <E> DanpheHttpResponse<List<E>> page(List<E> rows, int size, Function<E, PageCursor> cursorOf) {
+        if (rows.size() <= size) {
+            return ok(rows);
+        }
+        List<E> page = new ArrayList<>(rows.subList(0, size));
+        DanpheHttpResponse<List<E>> response = ok(page);
+        response.setNextCursor(cursorOf.apply(page.get(size - 1)).encode());
+        return response;
+    }
+
     public static <T> DanpheHttpResponse<T> error(String message) {
         DanpheHttpResponse<T> response = new DanpheHttpResponse<>();
         response.setStatus("Failed");
@@ -5,7 +5,9 @@ import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "EmployeeLog")
+@Table(name = "EmployeeLog", indexes = {
+        @Index(name = "idx_employee_log_timestamp", columnList = "hospitalId, timestamp, logId")
+})
 @Data
 public class EmployeeLog {
     @Id
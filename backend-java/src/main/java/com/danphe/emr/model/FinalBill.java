@@ -6,7 +6,10 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "final_bill")
+@Table(name = "final_bill", indexes = {
+        @Index(name = "idx_final_bill_created", columnList = "hospitalId, createdAt, finalBillId"),
+        @Index(name = "idx_final_bill_patient", columnList = "hospitalId, patientId, createdAt, finalBillId")
+})
 @Data
 @NoArgsConstructor
 public class FinalBill {
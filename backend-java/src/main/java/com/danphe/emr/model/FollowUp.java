@@ -7,7 +7,10 @@ import java.time.LocalDateTime;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "follow_up")
+@Table(name = "follow_up", indexes = {
+        @Index(name = "idx_follow_up_date", columnList = "hospitalId, followUpDate, followUpId"),
+        @Index(name = "idx_follow_up_doctor", columnList = "hospitalId, doctorId, followUpDate, followUpId")
+})
 @Data
 @NoArgsConstructor
 public class FollowUp {
@@ -34,7 +34,7 @@ public class HospitalSettings {
     // Bill prefix code e.g. "APL" for Apollo
     private String hospitalCode;
 
-    // Running bill counter
+    // Legacy running bill counter; only seeds the "bill" number_sequence row
     private Integer lastBillNumber;
 
     private LocalDateTime createdOn;
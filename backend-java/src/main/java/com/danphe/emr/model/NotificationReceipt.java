@@ -0,0 +1,31 @@
+package com.danphe.emr.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+// A user's read mark on a role-targeted notification; role broadcasts are
+// shared rows, so read state is kept per user here instead of on the notification.
+@Entity
+@Table(name = "notification_receipt", uniqueConstraints = @UniqueConstraint(name = "uk_notification_receipt", columnNames = {
+        "notificationId", "userId" }))
+@Data
+@NoArgsConstructor
+public class NotificationReceipt {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long receiptId;
+
+    @Column(nullable = false)
+    private Long notificationId;
+
+    @Column(nullable = false)
+    private Integer hospitalId;
+
+    @Column(nullable = false)
+    private Integer userId;
+
+    private LocalDateTime readOn;
+}
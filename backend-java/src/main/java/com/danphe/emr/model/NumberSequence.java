@@ -0,0 +1,28 @@
+package com.danphe.emr.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Per-hospital counter for human-readable numbers (bill numbers etc.).
+// nextValue is the first value not yet reserved by any app instance.
+@Entity
+@Table(name = "number_sequence", uniqueConstraints = @UniqueConstraint(name = "uk_number_sequence", columnNames = {
+        "hospitalId", "sequenceName" }))
+@Data
+@NoArgsConstructor
+public class NumberSequence {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long sequenceId;
+
+    @Column(nullable = false)
+    private Integer hospitalId;
+
+    @Column(nullable = false, length = 50)
+    private String sequenceName;
+
+    @Column(nullable = false)
+    private Long nextValue;
+}
@@ -0,0 +1,76 @@
+package com.danphe.emr.model;
+
+import com.danphe.emr.exception.InvalidCursorException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Keyset position for list endpoints: the sort key and id of the last row a
+ * client has seen. The next page is read as "rows after this one" straight
+ * off a (hospitalId, sortKey, id) index, so no page costs more than its size
+ * however deep the client scrolls. Clients treat the encoded form as opaque.
+ *
+ * {@link #FIRST} (both parts null) means "start from the top".
+ */
+public record PageCursor(LocalDateTime key, Long id) {
+
+    public static final int DEFAULT_SIZE = 50;
+    public static final int MAX_SIZE = 200;
+
+    public static final PageCursor FIRST = new PageCursor(null, null);
+
+    public static int size(Integer requested) {
+        return requested == null || requested <= 0 ? DEFAULT_SIZE : Math.min(requested, MAX_SIZE);
+    }
+
+    // One row more than the page: its presence is what tells us there is a next page
+    public static Pageable fetch(int size) {
+        return PageRequest.of(0, size + 1);
+    }
+
+    public static PageCursor of(LocalDateTime key, Number id) {
+        return new PageCursor(key, id.longValue());
+    }
+
+    // For lists ordered by id alone
+    public static PageCursor ofId(Number id) {
+        return new PageCursor(null, id.longValue());
+    }
+
+    public static PageCursor of(LocalDate key, Number id) {
+        return new PageCursor(key != null ? key.atStartOfDay() : null, id.longValue());
+    }
+
+    public Integer intId() {
+        return id != null ? id.intValue() : null;
+    }
+
+    public LocalDate dateKey() {
+        return key != null ? key.toLocalDate() : null;
+    }
+
+    public String encode() {
+        String raw = (key != null ? key.toString() : "") + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return FIRST;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            String key = raw.substring(0, sep);
+            return new PageCursor(key.isEmpty() ? null : LocalDateTime.parse(key),
+                    Long.parseLong(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+}
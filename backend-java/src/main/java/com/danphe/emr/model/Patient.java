@@ -8,7 +8,15 @@ import java.time.LocalDateTime;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "patient")
+// Composite indexes back the prefix/exact lookups of PatientSearchService;
+// uk_patient_code also serves code lookups
+@Table(name = "patient", uniqueConstraints = @UniqueConstraint(name = "uk_patient_code", columnNames = {
+        "hospitalId", "patientCode" }), indexes = {
+        @Index(name = "idx_patient_first_name", columnList = "hospitalId, firstName, lastName"),
+        @Index(name = "idx_patient_last_name", columnList = "hospitalId, lastName, firstName"),
+        @Index(name = "idx_patient_phone", columnList = "hospitalId, phoneNumber"),
+        @Index(name = "idx_patient_recent", columnList = "hospitalId, patientId")
+})
 @Data
 @NoArgsConstructor
 public class Patient {
@@ -0,0 +1,56 @@
+package com.danphe.emr.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+// Read model behind the doctor's patient profile header, one row per patient.
+// Kept in step by ClinicalSummaryService as clinical records are written;
+// allergies and riskFlags hold the distinct values, comma-separated, in first-seen order.
+@Entity
+@Table(name = "patient_clinical_summary", uniqueConstraints = @UniqueConstraint(name = "uk_clinical_summary_patient", columnNames = {
+        "hospitalId", "patientId" }))
+@Data
+@NoArgsConstructor
+public class PatientClinicalSummary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long summaryId;
+
+    @Column(nullable = false)
+    private Integer hospitalId;
+
+    @Column(nullable = false)
+    private Integer patientId;
+
+    @Column(columnDefinition = "TEXT")
+    private String allergies;
+
+    @Column(columnDefinition = "TEXT")
+    private String riskFlags;
+
+    // Latest consultation note or prescription
+    private LocalDateTime lastVisitOn;
+
+    // Clinical encounters: consultation notes and prescriptions
+    @Column(nullable = false)
+    private Integer visitCount = 0;
+
+    @Column(nullable = false)
+    private Integer admissionCount = 0;
+
+    // Follow-ups still "scheduled"
+    @Column(nullable = false)
+    private Integer openFollowUps = 0;
+
+    // Lab results still "pending"
+    @Column(nullable = false)
+    private Integer pendingLabs = 0;
+
+    // Null until the row has been built from the patient's records
+    private LocalDateTime builtOn;
+
+    private LocalDateTime updatedOn;
+}
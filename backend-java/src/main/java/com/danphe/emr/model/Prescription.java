@@ -7,7 +7,10 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "prescription")
+@Table(name = "prescription", indexes = {
+        @Index(name = "idx_prescription_created", columnList = "hospitalId, createdOn, prescriptionId"),
+        @Index(name = "idx_prescription_doctor", columnList = "hospitalId, doctorId, createdOn, prescriptionId")
+})
 @Data
 @NoArgsConstructor
 public class Prescription {
@@ -0,0 +1,45 @@
+package com.danphe.emr.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDate;
+
+// Daily pre-aggregated revenue per hospital / bill type / payment status / category.
+// Rows with category = ALL_CATEGORIES hold bill-level totals (grandTotal);
+// the other rows hold line-item totals for that category.
+@Entity
+@Table(name = "revenue_rollup", uniqueConstraints = @UniqueConstraint(name = "uk_revenue_rollup_key", columnNames = {
+        "hospitalId", "rollupDate", "billType", "paymentStatus", "category" }))
+@Data
+@NoArgsConstructor
+public class RevenueRollup {
+
+    public static final String ALL_CATEGORIES = "*";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long rollupId;
+
+    @Column(nullable = false)
+    private Integer hospitalId;
+
+    @Column(nullable = false)
+    private LocalDate rollupDate;
+
+    @Column(nullable = false, length = 50)
+    private String billType;
+
+    @Column(nullable = false, length = 50)
+    private String paymentStatus;
+
+    @Column(nullable = false, length = 100)
+    private String category;
+
+    // Number of bills contributing to this row
+    @Column(nullable = false)
+    private Long billCount;
+
+    @Column(nullable = false)
+    private Double amount;
+}
@@ -0,0 +1,30 @@
+package com.danphe.emr.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Maintained unread-notification count per user, so the badge is a single-row read.
+// role is the user's role when the row was built; role broadcasts increment by it.
+@Entity
+@Table(name = "unread_counter", uniqueConstraints = @UniqueConstraint(name = "uk_unread_counter", columnNames = {
+        "hospitalId", "userId" }), indexes = @Index(name = "idx_unread_counter_role", columnList = "hospitalId, role"))
+@Data
+@NoArgsConstructor
+public class UnreadCounter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long counterId;
+
+    @Column(nullable = false)
+    private Integer hospitalId;
+
+    @Column(nullable = false)
+    private Integer userId;
+
+    private String role;
+
+    @Column(nullable = false)
+    private Long unread;
+}
@@ -23,4 +23,11 @@ public interface AdmissionRepository extends JpaRepository<Admission, Integer> {
                         LocalDateTime toDate);
 
         List<Admission> findByHospitalIdAndPatientIdOrderByAdmissionDateDesc(Integer hospitalId, Integer patientId);
+
+        long countByHospitalIdAndAdmissionStatus(Integer hospitalId, String status);
+
+        long countByHospitalIdAndAdmissionStatusAndAdmittingDoctorId(Integer hospitalId, String status,
+                        Integer admittingDoctorId);
+
+        long countByHospitalIdAndPatientId(Integer hospitalId, Integer patientId);
 }
@@ -2,6 +2,7 @@ package com.danphe.emr.repository;
 
 import com.danphe.emr.model.Appointment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -17,8 +18,36 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Intege
                         LocalDateTime from, LocalDateTime to,
                         Integer performerId);
 
+        // Today's queue in display order: emergencies first, then by time
+        @Query("SELECT a FROM Appointment a WHERE a.hospitalId = :hospitalId "
+                        + "AND a.appointmentDate BETWEEN :from AND :to "
+                        + "ORDER BY a.queueRank, a.appointmentDate, a.appointmentId")
+        List<Appointment> findQueue(Integer hospitalId, LocalDateTime from, LocalDateTime to);
+
+        @Query("SELECT a FROM Appointment a WHERE a.hospitalId = :hospitalId AND a.performerId = :performerId "
+                        + "AND a.appointmentDate BETWEEN :from AND :to "
+                        + "ORDER BY a.queueRank, a.appointmentDate, a.appointmentId")
+        List<Appointment> findQueueForPerformer(Integer hospitalId, Integer performerId, LocalDateTime from,
+                        LocalDateTime to);
+
         java.util.Optional<Appointment> findByHospitalIdAndAppointmentDateAndPerformerIdAndAppointmentStatusNot(
                         Integer hospitalId, LocalDateTime date, Integer performerId, String status);
 
         List<Appointment> findByHospitalIdAndPatientIdOrderByAppointmentDateDesc(Integer hospitalId, Integer patientId);
+
+        long countByHospitalIdAndAppointmentDateBetween(Integer hospitalId, LocalDateTime from, LocalDateTime to);
+
+        long countByHospitalIdAndAppointmentDateBetweenAndPerformerId(Integer hospitalId, LocalDateTime from,
+                        LocalDateTime to, Integer performerId);
+
+        // performerId == null counts every performer
+        @Query("SELECT COALESCE(a.appointmentStatus, 'unknown') AS groupKey, COUNT(a) AS total FROM Appointment a "
+                        + "WHERE a.hospitalId = :hospitalId AND a.appointmentDate BETWEEN :from AND :to "
+                        + "AND (:performerId IS NULL OR a.performerId = :performerId) GROUP BY a.appointmentStatus")
+        List<GroupCount> countByStatus(Integer hospitalId, LocalDateTime from, LocalDateTime to, Integer performerId);
+
+        @Query("SELECT COALESCE(a.appointmentType, 'unknown') AS groupKey, COUNT(a) AS total FROM Appointment a "
+                        + "WHERE a.hospitalId = :hospitalId AND a.appointmentDate BETWEEN :from AND :to "
+                        + "AND (:performerId IS NULL OR a.performerId = :performerId) GROUP BY a.appointmentType")
+        List<GroupCount> countByType(Integer hospitalId, LocalDateTime from, LocalDateTime to, Integer performerId);
 }
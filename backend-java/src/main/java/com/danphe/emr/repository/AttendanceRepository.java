@@ -1,14 +1,43 @@
 package com.danphe.emr.repository;
 
 import com.danphe.emr.model.Attendance;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface AttendanceRepository extends JpaRepository<Attendance, Integer> {
     List<Attendance> findByHospitalId(Integer hospitalId);
 
-    List<Attendance> findByHospitalIdAndEmployeeIdOrderByTimestampDesc(Integer hospitalId, Integer employeeId);
+    // One chunk of a hospital-wide clear (see BulkMutationService)
+    @Modifying
+    @Query(value = "DELETE FROM attendance WHERE hospital_id = :hospitalId LIMIT :limit", nativeQuery = true)
+    int deleteChunk(Integer hospitalId, int limit);
+
+    Optional<Attendance> findFirstByHospitalIdAndEmployeeIdOrderByTimestampDescAttendanceIdDesc(Integer hospitalId,
+            Integer employeeId);
+
+    // Employees whose latest record is a ClockIn (the same rule ScanRecord toggles on), with that record;
+    // each candidate is checked against idx_attendance_employee
+    @Query("SELECT a FROM Attendance a WHERE a.hospitalId = :hospitalId AND a.type = 'ClockIn'"
+            + " AND NOT EXISTS (SELECT b.attendanceId FROM Attendance b WHERE b.hospitalId = a.hospitalId"
+            + " AND b.employeeId = a.employeeId AND (b.timestamp > a.timestamp"
+            + " OR (b.timestamp = a.timestamp AND b.attendanceId > a.attendanceId)))"
+            + " ORDER BY a.timestamp, a.attendanceId")
+    List<Attendance> findOpenShifts(Integer hospitalId);
+
+    // Keyset page, newest first; a null employeeId matches all, a null cursor starts at the top
+    @Query("SELECT a FROM Attendance a WHERE a.hospitalId = :hospitalId"
+            + " AND (:employeeId IS NULL OR a.employeeId = :employeeId)"
+            + " AND (:afterTimestamp IS NULL OR a.timestamp < :afterTimestamp"
+            + " OR (a.timestamp = :afterTimestamp AND a.attendanceId < :afterId))"
+            + " ORDER BY a.timestamp DESC, a.attendanceId DESC")
+    List<Attendance> findPage(Integer hospitalId, Integer employeeId, LocalDateTime afterTimestamp, Integer afterId,
+            Pageable page);
 }
@@ -2,24 +2,29 @@ package com.danphe.emr.repository;
 
 import com.danphe.emr.model.AuditLog;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
+// Filtered lists go through JpaSpecificationExecutor with AuditLogSpecs
 @Repository
-public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
+public interface AuditLogRepository extends JpaRepository<AuditLog, Long>, JpaSpecificationExecutor<AuditLog> {
 
-    List<AuditLog> findByHospitalIdOrderByTimestampDesc(Integer hospitalId);
+    // Stats window counts, answered from idx_audit_log_stats
+    long countByHospitalIdAndTimestampBetween(Integer hospitalId, LocalDateTime from, LocalDateTime to);
 
-    List<AuditLog> findByHospitalIdAndModuleOrderByTimestampDesc(Integer hospitalId, String module);
+    @Query("SELECT COALESCE(l.module, 'unknown') AS groupKey, COUNT(l) AS total FROM AuditLog l "
+            + "WHERE l.hospitalId = :hospitalId AND l.timestamp BETWEEN :from AND :to GROUP BY l.module")
+    List<GroupCount> countByModule(Integer hospitalId, LocalDateTime from, LocalDateTime to);
 
-    List<AuditLog> findByHospitalIdAndActionOrderByTimestampDesc(Integer hospitalId, String action);
+    @Query("SELECT COALESCE(l.action, 'unknown') AS groupKey, COUNT(l) AS total FROM AuditLog l "
+            + "WHERE l.hospitalId = :hospitalId AND l.timestamp BETWEEN :from AND :to GROUP BY l.action")
+    List<GroupCount> countByAction(Integer hospitalId, LocalDateTime from, LocalDateTime to);
 
-    List<AuditLog> findByHospitalIdAndTimestampBetweenOrderByTimestampDesc(Integer hospitalId, LocalDateTime start,
-            LocalDateTime end);
-
-    List<AuditLog> findByHospitalIdAndSeverityOrderByTimestampDesc(Integer hospitalId, String severity);
-
-    List<AuditLog> findTop200ByHospitalIdOrderByTimestampDesc(Integer hospitalId);
+    @Query("SELECT COALESCE(l.severity, 'unknown') AS groupKey, COUNT(l) AS total FROM AuditLog l "
+            + "WHERE l.hospitalId = :hospitalId AND l.timestamp BETWEEN :from AND :to GROUP BY l.severity")
+    List<GroupCount> countBySeverity(Integer hospitalId, LocalDateTime from, LocalDateTime to);
 }
@@ -0,0 +1,68 @@
+package com.danphe.emr.repository;
+
+import com.danphe.emr.model.AuditLog;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Composable audit log filters for {@link AuditLogRepository}. A null or
+ * blank value yields a null Specification, which {@link Specification#and}
+ * ignores, so callers chain every filter and only the given ones apply.
+ */
+public final class AuditLogSpecs {
+
+    // Keyset order: newest first, logId breaks timestamp ties
+    public static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("timestamp"), Sort.Order.desc("logId"));
+
+    private AuditLogSpecs() {
+    }
+
+    public static Specification<AuditLog> hospital(Integer hospitalId) {
+        return (root, query, cb) -> cb.equal(root.get("hospitalId"), hospitalId);
+    }
+
+    public static Specification<AuditLog> module(String module) {
+        return equalTo("module", module);
+    }
+
+    public static Specification<AuditLog> action(String action) {
+        return equalTo("action", action);
+    }
+
+    public static Specification<AuditLog> severity(String severity) {
+        return equalTo("severity", severity);
+    }
+
+    public static Specification<AuditLog> userId(Integer userId) {
+        return userId == null ? null : (root, query, cb) -> cb.equal(root.get("userId"), userId);
+    }
+
+    public static Specification<AuditLog> entityId(String entityId) {
+        return equalTo("entityId", entityId);
+    }
+
+    public static Specification<AuditLog> from(LocalDateTime from) {
+        return from == null ? null
+                : (root, query, cb) -> cb.greaterThanOrEqualTo(root.<LocalDateTime>get("timestamp"), from);
+    }
+
+    public static Specification<AuditLog> to(LocalDateTime to) {
+        return to == null ? null : (root, query, cb) -> cb.lessThanOrEqualTo(root.<LocalDateTime>get("timestamp"), to);
+    }
+
+    // Rows after the keyset cursor in NEWEST_FIRST order; a null cursor starts at the top
+    public static Specification<AuditLog> after(LocalDateTime timestamp, Long logId) {
+        if (timestamp == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.<LocalDateTime>get("timestamp"), timestamp),
+                cb.and(cb.equal(root.get("timestamp"), timestamp), cb.lessThan(root.<Long>get("logId"), logId)));
+    }
+
+    private static Specification<AuditLog> equalTo(String attribute, String value) {
+        return value == null || value.isBlank() ? null : (root, query, cb) -> cb.equal(root.get(attribute), value);
+    }
+}
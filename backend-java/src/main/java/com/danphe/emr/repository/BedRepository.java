@@ -2,6 +2,7 @@ package com.danphe.emr.repository;
 
 import com.danphe.emr.model.Bed;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -13,4 +14,8 @@ public interface BedRepository extends JpaRepository<Bed, Integer> {
     List<Bed> findByHospitalIdAndStatusAndIsActive(Integer hospitalId, String status, Boolean isActive);
 
     List<Bed> findByHospitalIdAndIsActive(Integer hospitalId, Boolean isActive);
+
+    @Query("SELECT COALESCE(b.status, 'unknown') AS groupKey, COUNT(b) AS total FROM Bed b "
+            + "WHERE b.hospitalId = :hospitalId GROUP BY b.status")
+    List<GroupCount> countByStatus(Integer hospitalId);
 }
@@ -0,0 +1,37 @@
+package com.danphe.emr.repository;
+
+import com.danphe.emr.model.BillItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BillItemRepository extends JpaRepository<BillItem, Long> {
+
+    List<BillItem> findByFinalBillIdOrderByLineNo(Integer finalBillId);
+
+    @Modifying
+    @Query("DELETE FROM BillItem i WHERE i.billId = :billId AND i.finalBillId IS NULL")
+    int deleteBillLines(Integer billId);
+
+    // Per-category totals of a single bill (feeds the revenue rollup)
+    @Query("SELECT COALESCE(NULLIF(TRIM(i.category), ''), 'General') AS category, SUM(i.total) AS amount "
+            + "FROM BillItem i WHERE i.billId = :billId AND i.finalBillId IS NULL "
+            + "GROUP BY COALESCE(NULLIF(TRIM(i.category), ''), 'General')")
+    List<RevenueRollupRepository.CategoryTotal> sumByCategoryForBill(Integer billId);
+
+    // Merges the lines of the source bills into a final bill without leaving the database
+    @Modifying
+    @Query(value = "INSERT INTO bill_item (hospital_id, bill_id, final_bill_id, line_no, service_id, item_name, category, "
+            + "quantity, unit_price, rate_type, total, auto_added, is_custom) "
+            + "SELECT i.hospital_id, i.bill_id, :finalBillId, "
+            + "ROW_NUMBER() OVER (ORDER BY b.created_at DESC, i.bill_id DESC, i.line_no), "
+            + "i.service_id, i.item_name, i.category, i.quantity, i.unit_price, i.rate_type, i.total, i.auto_added, i.is_custom "
+            + "FROM bill_item i JOIN billing b ON b.bill_id = i.bill_id "
+            + "WHERE i.hospital_id = :hospitalId AND i.final_bill_id IS NULL AND i.bill_id IN (:billIds)", nativeQuery = true)
+    int copyToFinalBill(Integer finalBillId, Integer hospitalId, Collection<Integer> billIds);
+}
@@ -1,9 +1,14 @@
 package com.danphe.emr.repository;
 
 import com.danphe.emr.model.Billing;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,17 +17,26 @@ public interface BillingRepository extends JpaRepository<Billing, Integer> {
 
     List<Billing> findByHospitalId(Integer hospitalId);
 
-    List<Billing> findByHospitalIdOrderByCreatedAtDesc(Integer hospitalId);
-
-    List<Billing> findByHospitalIdAndBillTypeOrderByCreatedAtDesc(Integer hospitalId, String billType);
-
     List<Billing> findByHospitalIdAndPatientIdOrderByCreatedAtDesc(Integer hospitalId, Integer patientId);
 
-    List<Billing> findByHospitalIdAndPatientIdAndBillTypeOrderByCreatedAtDesc(Integer hospitalId, Integer patientId,
-            String billType);
+    // Keyset page, newest first; null filters match all, a null cursor starts at the top
+    @Query("SELECT b FROM Billing b WHERE b.hospitalId = :hospitalId"
+            + " AND (:patientId IS NULL OR b.patientId = :patientId)"
+            + " AND (:billType IS NULL OR b.billType = :billType)"
+            + " AND (:afterCreatedAt IS NULL OR b.createdAt < :afterCreatedAt"
+            + " OR (b.createdAt = :afterCreatedAt AND b.billId < :afterId))"
+            + " ORDER BY b.createdAt DESC, b.billId DESC")
+    List<Billing> findPage(Integer hospitalId, Integer patientId, String billType, LocalDateTime afterCreatedAt,
+            Integer afterId, Pageable page);
 
     Optional<Billing> findByHospitalIdAndBillId(Integer hospitalId, Integer billId);
 
+    // Row lock until the transaction ends, so an edit's revenue rollup delta is taken from the
+    // values it actually replaces and concurrent edits of one bill apply theirs in turn
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Billing b WHERE b.hospitalId = :hospitalId AND b.billId = :billId")
+    Optional<Billing> lockByHospitalIdAndBillId(Integer hospitalId, Integer billId);
+
     long countByHospitalId(Integer hospitalId);
 
     long countByHospitalIdAndPaymentStatus(Integer hospitalId, String paymentStatus);
@@ -1,11 +1,18 @@
 package com.danphe.emr.repository;
 
 import com.danphe.emr.model.EmployeeLog;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface EmployeeLogRepository extends JpaRepository<EmployeeLog, Integer> {
-    List<EmployeeLog> findByHospitalIdOrderByTimestampDesc(Integer hospitalId);
-
-    List<EmployeeLog> findAllByOrderByTimestampDesc();
+    // Keyset page, newest first; a null cursor starts at the top
+    @Query("SELECT l FROM EmployeeLog l WHERE l.hospitalId = :hospitalId"
+            + " AND (:afterTimestamp IS NULL OR l.timestamp < :afterTimestamp"
+            + " OR (l.timestamp = :afterTimestamp AND l.logId < :afterId))"
+            + " ORDER BY l.timestamp DESC, l.logId DESC")
+    List<EmployeeLog> findPage(Integer hospitalId, LocalDateTime afterTimestamp, Integer afterId, Pageable page);
 }
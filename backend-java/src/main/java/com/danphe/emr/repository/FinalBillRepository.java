@@ -1,18 +1,26 @@
 package com.danphe.emr.repository;
 
 import com.danphe.emr.model.FinalBill;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface FinalBillRepository extends JpaRepository<FinalBill, Integer> {
 
-    List<FinalBill> findByHospitalIdOrderByCreatedAtDesc(Integer hospitalId);
-
-    List<FinalBill> findByHospitalIdAndPatientIdOrderByCreatedAtDesc(Integer hospitalId, Integer patientId);
+    // Keyset page, newest first; a null patientId matches all, a null cursor starts at the top
+    @Query("SELECT f FROM FinalBill f WHERE f.hospitalId = :hospitalId"
+            + " AND (:patientId IS NULL OR f.patientId = :patientId)"
+            + " AND (:afterCreatedAt IS NULL OR f.createdAt < :afterCreatedAt"
+            + " OR (f.createdAt = :afterCreatedAt AND f.finalBillId < :afterId))"
+            + " ORDER BY f.createdAt DESC, f.finalBillId DESC")
+    List<FinalBill> findPage(Integer hospitalId, Integer patientId, LocalDateTime afterCreatedAt, Integer afterId,
+            Pageable page);
 
     Optional<FinalBill> findByHospitalIdAndFinalBillId(Integer hospitalId, Integer finalBillId);
 }
@@ -1,7 +1,9 @@
 package com.danphe.emr.repository;
 
 import com.danphe.emr.model.FollowUp;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
@@ -10,12 +12,29 @@ import java.util.List;
 @Repository
 public interface FollowUpRepository extends JpaRepository<FollowUp, Integer> {
 
-    List<FollowUp> findByHospitalIdAndDoctorIdOrderByFollowUpDateAsc(Integer hospitalId, Integer doctorId);
-
     List<FollowUp> findByHospitalIdAndDoctorIdAndFollowUpDate(Integer hospitalId, Integer doctorId, LocalDate date);
 
-    List<FollowUp> findByHospitalIdAndDoctorIdAndStatusOrderByFollowUpDateAsc(Integer hospitalId, Integer doctorId,
-            String status);
+    // Keyset page over dated follow-ups, soonest first; null filters match all, a null cursor starts at the top.
+    // Undated ones are listed after all dated ones (findUndatedPage)
+    @Query("SELECT f FROM FollowUp f WHERE f.hospitalId = :hospitalId AND f.followUpDate IS NOT NULL"
+            + " AND (:doctorId IS NULL OR f.doctorId = :doctorId)"
+            + " AND (:status IS NULL OR f.status = :status)"
+            + " AND (:afterDate IS NULL OR f.followUpDate > :afterDate"
+            + " OR (f.followUpDate = :afterDate AND f.followUpId > :afterId))"
+            + " ORDER BY f.followUpDate ASC, f.followUpId ASC")
+    List<FollowUp> findPage(Integer hospitalId, Integer doctorId, String status, LocalDate afterDate, Integer afterId,
+            Pageable page);
+
+    // Keyset page over follow-ups without a date, by id
+    @Query("SELECT f FROM FollowUp f WHERE f.hospitalId = :hospitalId AND f.followUpDate IS NULL"
+            + " AND (:doctorId IS NULL OR f.doctorId = :doctorId)"
+            + " AND (:status IS NULL OR f.status = :status)"
+            + " AND (:afterId IS NULL OR f.followUpId > :afterId)"
+            + " ORDER BY f.followUpId ASC")
+    List<FollowUp> findUndatedPage(Integer hospitalId, Integer doctorId, String status, Integer afterId,
+            Pageable page);
 
     List<FollowUp> findByHospitalIdAndPatientIdOrderByFollowUpDateDesc(Integer hospitalId, Integer patientId);
+
+    long countByHospitalIdAndPatientIdAndStatus(Integer hospitalId, Integer patientId, String status);
 }
@@ -0,0 +1,8 @@
+package com.danphe.emr.repository;
+
+// Row of a grouped COUNT(*) query: the group value and how many rows fall in it
+public interface GroupCount {
+    String getGroupKey();
+
+    Long getTotal();
+}
@@ -2,8 +2,10 @@ package com.danphe.emr.repository;
 
 import com.danphe.emr.model.MedicalRecord;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -19,4 +21,25 @@ public interface MedicalRecordRepository extends JpaRepository<MedicalRecord, In
 
     List<MedicalRecord> findByHospitalIdAndPatientIdAndRecordTypeOrderByCreatedOnDesc(Integer hospitalId,
             Integer patientId, String recordType);
+
+    long countByHospitalIdAndPatientIdAndRecordType(Integer hospitalId, Integer patientId, String recordType);
+
+    long countByHospitalIdAndPatientIdAndRecordTypeAndLabStatus(Integer hospitalId, Integer patientId,
+            String recordType, String labStatus);
+
+    @Query("SELECT MAX(r.createdOn) FROM MedicalRecord r WHERE r.hospitalId = :hospitalId"
+            + " AND r.patientId = :patientId AND r.recordType = :recordType")
+    LocalDateTime lastCreatedOn(Integer hospitalId, Integer patientId, String recordType);
+
+    // Only the flag columns, oldest first, for rebuilding a clinical summary
+    @Query("SELECT r.allergies AS allergies, r.riskFlags AS riskFlags FROM MedicalRecord r"
+            + " WHERE r.hospitalId = :hospitalId AND r.patientId = :patientId"
+            + " AND (r.allergies IS NOT NULL OR r.riskFlags IS NOT NULL) ORDER BY r.createdOn, r.recordId")
+    List<ClinicalFlags> findFlags(Integer hospitalId, Integer patientId);
+
+    interface ClinicalFlags {
+        String getAllergies();
+
+        String getRiskFlags();
+    }
 }
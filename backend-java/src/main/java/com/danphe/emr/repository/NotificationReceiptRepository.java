@@ -0,0 +1,35 @@
+package com.danphe.emr.repository;
+
+import com.danphe.emr.model.NotificationReceipt;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NotificationReceiptRepository extends JpaRepository<NotificationReceipt, Long> {
+
+    // 1 when this marked the notification read, 0 when the user had already read it
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO notification_receipt (notification_id, hospital_id, user_id, read_on) "
+            + "VALUES (:notificationId, :hospitalId, :userId, :readOn)", nativeQuery = true)
+    int markRead(Long notificationId, Integer hospitalId, Integer userId, LocalDateTime readOn);
+
+    // One chunk of read-all for role broadcasts: receipts for up to limit the user has not read yet
+    // (broadcasts read on the shared row before receipts existed need none)
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO notification_receipt (notification_id, hospital_id, user_id, read_on) "
+            + "SELECT n.notification_id, n.hospital_id, :userId, :readOn FROM notification n "
+            + "WHERE n.hospital_id = :hospitalId AND n.target_role = :role AND n.is_read = false AND NOT EXISTS ("
+            + "SELECT 1 FROM notification_receipt r WHERE r.notification_id = n.notification_id"
+            + " AND r.user_id = :userId) LIMIT :limit", nativeQuery = true)
+    int markReadChunk(Integer hospitalId, Integer userId, String role, LocalDateTime readOn, int limit);
+
+    @Query("SELECT r.notificationId FROM NotificationReceipt r WHERE r.userId = :userId"
+            + " AND r.notificationId IN :notificationIds")
+    List<Long> findReadIds(Integer userId, Collection<Long> notificationIds);
+}
@@ -1,9 +1,13 @@
 package com.danphe.emr.repository;
 
 import com.danphe.emr.model.Notification;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -23,4 +27,33 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     List<Notification> findTop50ByHospitalIdAndTargetUserIdOrderByCreatedOnDesc(Integer hospitalId, Integer userId);
 
     List<Notification> findTop50ByHospitalIdAndTargetRoleOrderByCreatedOnDesc(Integer hospitalId, String role);
+
+    // Stream replay: what the user or their role received after the given notification, oldest first
+    @Query("SELECT n FROM Notification n WHERE n.hospitalId = :hospitalId"
+            + " AND (n.targetUserId = :userId OR n.targetRole = :role) AND n.notificationId > :afterId"
+            + " ORDER BY n.notificationId ASC")
+    List<Notification> findForUserAfter(Integer hospitalId, Integer userId, String role, Long afterId, Pageable page);
+
+    // Newest notification the user or their role received (stream resync)
+    @Query("SELECT MAX(n.notificationId) FROM Notification n WHERE n.hospitalId = :hospitalId"
+            + " AND (n.targetUserId = :userId OR n.targetRole = :role)")
+    Long findLatestIdForUser(Integer hospitalId, Integer userId, String role);
+
+    // Building an unread counter: direct notifications still unread ...
+    long countByHospitalIdAndTargetUserIdAndTargetRoleIsNullAndIsRead(Integer hospitalId, Integer userId,
+            Boolean isRead);
+
+    // ... plus role broadcasts the user has no receipt for. A broadcast with isRead set was marked read on
+    // the shared row before receipts existed and stays read for everyone
+    @Query("SELECT COUNT(n) FROM Notification n WHERE n.hospitalId = :hospitalId AND n.targetRole = :role"
+            + " AND n.isRead = false AND NOT EXISTS (SELECT 1 FROM NotificationReceipt r WHERE r.notificationId = n.notificationId"
+            + " AND r.userId = :userId)")
+    long countUnreadBroadcasts(Integer hospitalId, String role, Integer userId);
+
+    // One chunk of read-all for direct notifications (see BulkMutationService)
+    @Modifying
+    @Query(value = "UPDATE notification SET is_read = true, read_on = :readOn WHERE hospital_id = :hospitalId"
+            + " AND target_user_id = :userId AND target_role IS NULL AND is_read = false LIMIT :limit",
+            nativeQuery = true)
+    int markReadChunk(Integer hospitalId, Integer userId, LocalDateTime readOn, int limit);
 }
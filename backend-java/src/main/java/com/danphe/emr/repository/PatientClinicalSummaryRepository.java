@@ -0,0 +1,28 @@
+package com.danphe.emr.repository;
+
+import com.danphe.emr.model.PatientClinicalSummary;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface PatientClinicalSummaryRepository extends JpaRepository<PatientClinicalSummary, Long> {
+
+    Optional<PatientClinicalSummary> findByHospitalIdAndPatientId(Integer hospitalId, Integer patientId);
+
+    // Row lock for read-modify-write; concurrent writers for the same patient queue here
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM PatientClinicalSummary s WHERE s.hospitalId = :hospitalId AND s.patientId = :patientId")
+    Optional<PatientClinicalSummary> lockByHospitalIdAndPatientId(Integer hospitalId, Integer patientId);
+
+    // Creates an unbuilt row if there is none, without failing when another writer got there first
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO patient_clinical_summary (hospital_id, patient_id, visit_count, admission_count, "
+            + "open_follow_ups, pending_labs) VALUES (:hospitalId, :patientId, 0, 0, 0, 0)", nativeQuery = true)
+    int insertIfAbsent(Integer hospitalId, Integer patientId);
+}
@@ -1,23 +1,52 @@
 package com.danphe.emr.repository;
 
 import com.danphe.emr.model.Patient;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface PatientRepository extends JpaRepository<Patient, Integer> {
 
-        @Query("SELECT p FROM Patient p WHERE p.hospitalId = :hospitalId AND (p.firstName LIKE :search OR p.lastName LIKE :search OR p.patientCode LIKE :search OR p.phoneNumber LIKE :search)")
-        List<Patient> searchPatients(String search, Integer hospitalId);
+        // Index-backed lookups used by PatientSearchService (StartingWith escapes LIKE wildcards)
+        List<Patient> findByHospitalIdAndPhoneNumber(Integer hospitalId, String phoneNumber, Pageable pageable);
+
+        List<Patient> findByHospitalIdAndPhoneNumberStartingWithOrderByPhoneNumber(Integer hospitalId, String prefix,
+                        Pageable pageable);
+
+        List<Patient> findByHospitalIdAndPatientCodeStartingWithOrderByPatientCode(Integer hospitalId, String prefix,
+                        Pageable pageable);
+
+        List<Patient> findByHospitalIdAndFirstNameStartingWithOrderByFirstNameAscLastNameAsc(Integer hospitalId,
+                        String prefix, Pageable pageable);
+
+        List<Patient> findByHospitalIdAndLastNameStartingWithOrderByLastNameAscFirstNameAsc(Integer hospitalId,
+                        String prefix, Pageable pageable);
+
+        List<Patient> findByHospitalIdAndFirstNameStartingWithAndLastNameStartingWithOrderByFirstNameAscLastNameAsc(
+                        Integer hospitalId, String firstPrefix, String lastPrefix, Pageable pageable);
+
+        List<Patient> findByHospitalIdOrderByPatientIdDesc(Integer hospitalId, Pageable pageable);
+
+        // Next keyset page of the newest-first patient list
+        List<Patient> findByHospitalIdAndPatientIdLessThanOrderByPatientIdDesc(Integer hospitalId, Integer patientId,
+                        Pageable pageable);
 
         java.util.Optional<Patient> findByHospitalIdAndPatientId(Integer hospitalId, Integer patientId);
 
-        @Query("SELECT MAX(p.patientId) FROM Patient p")
-        Integer getMaxPatientId(); // Global max might be needed for internal ID gen, but patientCode should be
-                                   // scoped? Keeping global for now or safe.
+        // Batched name/code lookup for list enrichment (one query per page instead of one per row)
+        @Query("SELECT p.patientId AS patientId, p.firstName AS firstName, p.lastName AS lastName, p.patientCode AS patientCode FROM Patient p WHERE p.hospitalId = :hospitalId AND p.patientId IN :patientIds")
+        List<PatientSummary> findSummariesByHospitalIdAndPatientIdIn(Integer hospitalId,
+                        Collection<Integer> patientIds);
+
+        // Highest numeric PATnnnnn code of a hospital (0 if none); seeds its patient sequence
+        @Query(value = "SELECT COALESCE(MAX(CAST(SUBSTRING(patient_code, 4) AS UNSIGNED)), 0) FROM patient"
+                        + " WHERE hospital_id = :hospitalId AND patient_code REGEXP '^PAT[0-9]+$'", nativeQuery = true)
+        long maxPatientCodeNumber(Integer hospitalId);
 
         List<Patient> findByHospitalIdAndCreatedOnBetween(Integer hospitalId, java.time.LocalDateTime start,
                         java.time.LocalDateTime end);
@@ -26,4 +55,6 @@ public interface PatientRepository extends JpaRepository<Patient, Integer> {
                         java.time.LocalDateTime end);
 
         long countByHospitalId(Integer hospitalId);
+
+        boolean existsByHospitalIdAndPatientId(Integer hospitalId, Integer patientId);
 }
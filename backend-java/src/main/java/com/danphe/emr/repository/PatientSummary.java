@@ -0,0 +1,18 @@
+package com.danphe.emr.repository;
+
+// Lightweight projection used to enrich list rows with patient names/codes
+// without loading the full Patient entity.
+public interface PatientSummary {
+
+    Integer getPatientId();
+
+    String getFirstName();
+
+    String getLastName();
+
+    String getPatientCode();
+
+    default String getFullName() {
+        return getFirstName() + " " + getLastName();
+    }
+}
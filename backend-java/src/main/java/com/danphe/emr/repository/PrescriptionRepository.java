@@ -1,18 +1,33 @@
 package com.danphe.emr.repository;
 
 import com.danphe.emr.model.Prescription;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface PrescriptionRepository extends JpaRepository<Prescription, Integer> {
 
-    List<Prescription> findByHospitalIdAndDoctorIdOrderByCreatedOnDesc(Integer hospitalId, Integer doctorId);
+    // Keyset page, newest first; a null doctorId matches all, a null cursor starts at the top
+    @Query("SELECT p FROM Prescription p WHERE p.hospitalId = :hospitalId"
+            + " AND (:doctorId IS NULL OR p.doctorId = :doctorId)"
+            + " AND (:afterCreatedOn IS NULL OR p.createdOn < :afterCreatedOn"
+            + " OR (p.createdOn = :afterCreatedOn AND p.prescriptionId < :afterId))"
+            + " ORDER BY p.createdOn DESC, p.prescriptionId DESC")
+    List<Prescription> findPage(Integer hospitalId, Integer doctorId, LocalDateTime afterCreatedOn, Integer afterId,
+            Pageable page);
 
     List<Prescription> findByHospitalIdAndPatientIdOrderByCreatedOnDesc(Integer hospitalId, Integer patientId);
 
     List<Prescription> findByHospitalIdAndDoctorIdAndStatusOrderByCreatedOnDesc(Integer hospitalId, Integer doctorId,
             String status);
+
+    long countByHospitalIdAndPatientId(Integer hospitalId, Integer patientId);
+
+    @Query("SELECT MAX(p.createdOn) FROM Prescription p WHERE p.hospitalId = :hospitalId AND p.patientId = :patientId")
+    LocalDateTime lastCreatedOn(Integer hospitalId, Integer patientId);
 }
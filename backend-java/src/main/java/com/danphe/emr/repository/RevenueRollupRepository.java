@@ -0,0 +1,87 @@
+package com.danphe.emr.repository;
+
+import com.danphe.emr.model.RevenueRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface RevenueRollupRepository extends JpaRepository<RevenueRollup, Long> {
+
+    // Atomic upsert: concurrent bill writes never lose an increment
+    @Modifying
+    @Query(value = "INSERT INTO revenue_rollup (hospital_id, rollup_date, bill_type, payment_status, category, bill_count, amount) "
+            + "VALUES (:hospitalId, :rollupDate, :billType, :paymentStatus, :category, :billCount, :amount) "
+            + "ON DUPLICATE KEY UPDATE bill_count = bill_count + VALUES(bill_count), amount = amount + VALUES(amount)", nativeQuery = true)
+    int increment(Integer hospitalId, LocalDate rollupDate, String billType, String paymentStatus, String category,
+            long billCount, double amount);
+
+    @Modifying
+    @Query("DELETE FROM RevenueRollup r WHERE r.hospitalId = :hospitalId")
+    int deleteByHospitalId(Integer hospitalId);
+
+    // Rebuild: bill-level rows straight from the billing table
+    @Modifying
+    @Query(value = "INSERT INTO revenue_rollup (hospital_id, rollup_date, bill_type, payment_status, category, bill_count, amount) "
+            + "SELECT b.hospital_id, COALESCE(DATE(b.created_at), CURRENT_DATE), "
+            + "COALESCE(NULLIF(TRIM(b.bill_type), ''), 'Unknown'), COALESCE(NULLIF(TRIM(b.payment_status), ''), 'Unpaid'), "
+            + "'" + RevenueRollup.ALL_CATEGORIES + "', COUNT(*), COALESCE(SUM(b.grand_total), 0) "
+            + "FROM billing b WHERE b.hospital_id = :hospitalId GROUP BY 1, 2, 3, 4", nativeQuery = true)
+    int insertBillTotals(Integer hospitalId);
+
+    // Rebuild: category rows aggregated from the bill's line items
+    @Modifying
+    @Query(value = "INSERT INTO revenue_rollup (hospital_id, rollup_date, bill_type, payment_status, category, bill_count, amount) "
+            + "SELECT b.hospital_id, COALESCE(DATE(b.created_at), CURRENT_DATE), "
+            + "COALESCE(NULLIF(TRIM(b.bill_type), ''), 'Unknown'), COALESCE(NULLIF(TRIM(b.payment_status), ''), 'Unpaid'), "
+            + "COALESCE(NULLIF(TRIM(i.category), ''), 'General'), COUNT(DISTINCT b.bill_id), COALESCE(SUM(i.total), 0) "
+            + "FROM bill_item i JOIN billing b ON b.bill_id = i.bill_id "
+            + "WHERE b.hospital_id = :hospitalId AND i.final_bill_id IS NULL GROUP BY 1, 2, 3, 4, 5", nativeQuery = true)
+    int insertCategoryTotals(Integer hospitalId);
+
+    @Query("SELECT r.paymentStatus AS paymentStatus, SUM(r.billCount) AS billCount, SUM(r.amount) AS amount "
+            + "FROM RevenueRollup r WHERE r.hospitalId = :hospitalId AND r.category = '" + RevenueRollup.ALL_CATEGORIES
+            + "' GROUP BY r.paymentStatus")
+    List<StatusTotal> sumByPaymentStatus(Integer hospitalId);
+
+    @Query("SELECT YEAR(r.rollupDate) AS year, MONTH(r.rollupDate) AS month, r.paymentStatus AS paymentStatus, "
+            + "SUM(r.billCount) AS billCount, SUM(r.amount) AS amount FROM RevenueRollup r "
+            + "WHERE r.hospitalId = :hospitalId AND r.category = '" + RevenueRollup.ALL_CATEGORIES + "' "
+            + "AND r.rollupDate >= :from GROUP BY YEAR(r.rollupDate), MONTH(r.rollupDate), r.paymentStatus")
+    List<MonthlyTotal> sumByMonthSince(Integer hospitalId, LocalDate from);
+
+    @Query("SELECT r.category AS category, SUM(r.amount) AS amount FROM RevenueRollup r "
+            + "WHERE r.hospitalId = :hospitalId AND r.category <> '" + RevenueRollup.ALL_CATEGORIES + "' "
+            + "GROUP BY r.category ORDER BY SUM(r.amount) DESC")
+    List<CategoryTotal> sumByCategory(Integer hospitalId);
+
+    interface StatusTotal {
+        String getPaymentStatus();
+
+        Long getBillCount();
+
+        Double getAmount();
+    }
+
+    interface MonthlyTotal {
+        Integer getYear();
+
+        Integer getMonth();
+
+        String getPaymentStatus();
+
+        Long getBillCount();
+
+        Double getAmount();
+    }
+
+    interface CategoryTotal {
+        String getCategory();
+
+        Double getAmount();
+    }
+}
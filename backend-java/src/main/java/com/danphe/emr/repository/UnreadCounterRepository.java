@@ -0,0 +1,44 @@
+package com.danphe.emr.repository;
+
+import com.danphe.emr.model.UnreadCounter;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface UnreadCounterRepository extends JpaRepository<UnreadCounter, Long> {
+
+    Optional<UnreadCounter> findByHospitalIdAndUserId(Integer hospitalId, Integer userId);
+
+    // Empty row for a user who has none; 0 when one exists already (never overwritten)
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO unread_counter (hospital_id, user_id, role, unread) "
+            + "VALUES (:hospitalId, :userId, :role, 0)", nativeQuery = true)
+    int createIfAbsent(Integer hospitalId, Integer userId, String role);
+
+    // Row lock until the transaction ends; addForUser/addForRole on the row wait for it
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM UnreadCounter c WHERE c.hospitalId = :hospitalId AND c.userId = :userId")
+    Optional<UnreadCounter> lockByHospitalIdAndUserId(Integer hospitalId, Integer userId);
+
+    @Modifying
+    @Query("UPDATE UnreadCounter c SET c.role = :role, c.unread = :unread"
+            + " WHERE c.hospitalId = :hospitalId AND c.userId = :userId")
+    int reset(Integer hospitalId, Integer userId, String role, long unread);
+
+    // Atomic in the database, never below zero; users without a row yet are skipped
+    @Modifying
+    @Query("UPDATE UnreadCounter c SET c.unread = CASE WHEN c.unread + :delta < 0 THEN 0 ELSE c.unread + :delta END"
+            + " WHERE c.hospitalId = :hospitalId AND c.userId = :userId")
+    int addForUser(Integer hospitalId, Integer userId, long delta);
+
+    @Modifying
+    @Query("UPDATE UnreadCounter c SET c.unread = CASE WHEN c.unread + :delta < 0 THEN 0 ELSE c.unread + :delta END"
+            + " WHERE c.hospitalId = :hospitalId AND c.role = :role")
+    int addForRole(Integer hospitalId, String role, long delta);
+}
@@ -7,6 +7,7 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,7 +22,10 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     private JwtUtils jwtUtils;
 
     @Autowired
-    private UserDetailsServiceImpl userDetailsService;
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private StreamTicketService streamTickets;
 
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
@@ -30,11 +34,24 @@ public class AuthTokenFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
-                System.out.println("Auth Filter: Valid token for [" + username + "] - " + request.getRequestURI());
+            Claims claims = null;
+            if (jwt != null) {
+                claims = jwtUtils.parseJwtToken(jwt);
+                // A stream ticket only opens an event stream; it is not a session token
+                if (claims != null && StreamTicketService.isTicket(claims)) {
+                    claims = null;
+                }
+            } else if (request.getRequestURI().endsWith("/Stream") && request.getParameter("ticket") != null) {
+                // Event streams are opened by EventSource, which cannot send headers
+                claims = streamTickets.redeem(request.getParameter("ticket"));
+                if (claims == null) {
+                    logger.debug("Invalid or used stream ticket for {}", request.getRequestURI());
+                }
+            }
+            if (claims != null) {
+                logger.debug("Valid token for [{}]", claims.getSubject());
 
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                UserDetails userDetails = principalCache.resolve(claims);
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userDetails,
                         null,
@@ -43,10 +60,10 @@ public class AuthTokenFilter extends OncePerRequestFilter {
 
                 SecurityContextHolder.getContext().setAuthentication(authentication);
             } else if (jwt != null) {
-                System.out.println("Auth Filter: Invalid token provided for " + request.getRequestURI());
+                logger.debug("Invalid token provided for {}", request.getRequestURI());
             }
         } catch (Exception e) {
-            logger.error("Cannot set user authentication: {}", e);
+            logger.error("Cannot set user authentication", e);
         }
 
         filterChain.doFilter(request, response);
@@ -4,6 +4,9 @@ import com.danphe.emr.model.User;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
@@ -14,26 +17,49 @@ import java.util.Date;
 @Component
 public class JwtUtils {
 
+    private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
+
     @Value("${app.jwt.secret}")
     private String jwtSecret;
 
     @Value("${app.jwt.expiration-ms}")
     private int jwtExpirationMs;
 
+    // Built once; both are immutable and safe to share across request threads
+    private Key signingKey;
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        jwtParser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+    }
+
     public String generateJwtToken(Authentication authentication) {
         UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+        return principalClaims(userPrincipal, jwtExpirationMs).compact();
+    }
+
+    // Short-lived token for opening one event stream; see StreamTicketService
+    public String generateStreamTicket(UserDetailsImpl userPrincipal, String ticketId, long ttlMs) {
+        return principalClaims(userPrincipal, ttlMs)
+                .setId(ticketId)
+                .claim(StreamTicketService.USE_CLAIM, StreamTicketService.USE_STREAM)
+                .compact();
+    }
 
+    private JwtBuilder principalClaims(UserDetailsImpl userPrincipal, long ttlMs) {
         return Jwts.builder()
                 .setSubject((userPrincipal.getUsername()))
+                .claim("userId", userPrincipal.getId())
                 .claim("role", userPrincipal.getRole())
                 .claim("employeeId", userPrincipal.getEmployeeId())
                 .claim("doctorId", userPrincipal.getDoctorId())
                 .claim("hospitalId", userPrincipal.getHospitalId())
                 .claim("assignedModules", userPrincipal.getAssignedModules())
                 .setIssuedAt(new Date())
-                .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(key(), SignatureAlgorithm.HS256)
-                .compact();
+                .setExpiration(new Date((new Date()).getTime() + ttlMs))
+                .signWith(signingKey, SignatureAlgorithm.HS256);
     }
 
     // Helper to generate token for manual login checking if needed
@@ -42,34 +68,25 @@ public class JwtUtils {
                 .setSubject(username)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(key(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    private Key key() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
-    }
-
-    public String getUserNameFromJwtToken(String token) {
-        return Jwts.parserBuilder().setSigningKey(key()).build()
-                .parseClaimsJws(token).getBody().getSubject();
-    }
-
-    public boolean validateJwtToken(String authToken) {
+    // Verifies the token once and returns its claims, or null when it is not valid
+    public Claims parseJwtToken(String token) {
         try {
-            Jwts.parserBuilder().setSigningKey(key()).build().parseClaimsJws(authToken);
-            return true;
+            return jwtParser.parseClaimsJws(token).getBody();
         } catch (MalformedJwtException e) {
-            System.err.println("Invalid JWT token: " + e.getMessage());
+            logger.warn("Invalid JWT token: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
-            System.err.println("JWT token is expired: " + e.getMessage());
+            logger.debug("JWT token is expired: {}", e.getMessage());
         } catch (UnsupportedJwtException e) {
-            System.err.println("JWT token is unsupported: " + e.getMessage());
+            logger.warn("JWT token is unsupported: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
-            System.err.println("JWT claims string is empty: " + e.getMessage());
+            logger.warn("JWT claims string is empty: {}", e.getMessage());
         } catch (Exception e) {
-            System.err.println("JWT validation error: " + e.getMessage());
+            logger.warn("JWT validation error: {}", e.getMessage());
         }
-        return false;
+        return null;
     }
 }
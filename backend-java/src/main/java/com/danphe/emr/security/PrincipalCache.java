@@ -0,0 +1,140 @@
+package com.danphe.emr.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the principal for a verified JWT without touching the database on
+ * every request.
+ *
+ * Entries are keyed by username + token issue time, so a fresh login always
+ * resolves a fresh principal. With principal-source=database the first request
+ * of a token goes through {@link UserDetailsServiceImpl}; with
+ * principal-source=token the principal is built from the signed claims.
+ *
+ * Admin changes call {@link #invalidateEmployee}/{@link #invalidateHospital}.
+ * That drops cached entries and forces every token issued before the change
+ * back through the database once. Invalidation is local to this instance.
+ *
+ * With principal-source=database, other replicas pick up the change when
+ * their entries expire (ttl), because every miss reloads from the database.
+ * With principal-source=token, tokens are not revocable: the record of the
+ * change lives only in this instance's memory, so other replicas, and this
+ * one after a restart, keep accepting the claims of a token issued before
+ * the change until the token itself expires (app.jwt.expiration-ms). Use
+ * token mode only where that delay is acceptable.
+ */
+@Component
+public class PrincipalCache {
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Value("${app.auth.principal-source:database}")
+    private String principalSource;
+
+    private final Cache<Key, UserDetailsImpl> cache;
+
+    // Tokens issued before these instants must be re-checked against the database (this instance only)
+    private final Map<Integer, Long> employeeChangedAt = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> hospitalChangedAt = new ConcurrentHashMap<>();
+
+    private record Key(String username, long issuedAt) {
+    }
+
+    public PrincipalCache(@Value("${app.auth.principal-cache.max-size:10000}") long maxSize,
+            @Value("${app.auth.principal-cache.ttl:5m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public UserDetailsImpl resolve(Claims claims) {
+        String username = claims.getSubject();
+        long issuedAt = claims.getIssuedAt() != null ? claims.getIssuedAt().getTime() : 0;
+        Key key = new Key(username, issuedAt);
+
+        UserDetailsImpl principal = cache.getIfPresent(key);
+        if (principal != null) {
+            return principal;
+        }
+
+        if ("token".equalsIgnoreCase(principalSource) && claims.get("userId") != null
+                && !changedSince(claims, issuedAt)) {
+            principal = fromClaims(claims);
+        } else {
+            principal = (UserDetailsImpl) userDetailsService.loadUserByUsername(username);
+        }
+        cache.put(key, principal);
+        return principal;
+    }
+
+    public void invalidateEmployee(Integer employeeId) {
+        if (employeeId == null) {
+            return;
+        }
+        nowAndAfterCommit(() -> {
+            employeeChangedAt.put(employeeId, System.currentTimeMillis());
+            cache.asMap().values().removeIf(p -> employeeId.equals(p.getEmployeeId()));
+        });
+    }
+
+    public void invalidateHospital(Integer hospitalId) {
+        if (hospitalId == null) {
+            return;
+        }
+        nowAndAfterCommit(() -> {
+            hospitalChangedAt.put(hospitalId, System.currentTimeMillis());
+            cache.asMap().values().removeIf(p -> hospitalId.equals(p.getHospitalId()));
+        });
+    }
+
+    // Repeated after commit so a request that reloaded stale rows mid-transaction is dropped too
+    private static void nowAndAfterCommit(Runnable invalidation) {
+        invalidation.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidation.run();
+                }
+            });
+        }
+    }
+
+    private boolean changedSince(Claims claims, long issuedAt) {
+        Integer employeeId = claims.get("employeeId", Integer.class);
+        Integer hospitalId = claims.get("hospitalId", Integer.class);
+        Long emp = employeeId != null ? employeeChangedAt.get(employeeId) : null;
+        Long hosp = hospitalId != null ? hospitalChangedAt.get(hospitalId) : null;
+        return (emp != null && emp >= issuedAt) || (hosp != null && hosp >= issuedAt);
+    }
+
+    private static UserDetailsImpl fromClaims(Claims claims) {
+        String role = Objects.requireNonNullElse(claims.get("role", String.class), "Staff");
+        return new UserDetailsImpl(
+                claims.get("userId", Integer.class),
+                claims.get("employeeId", Integer.class),
+                claims.get("doctorId", Integer.class),
+                claims.get("hospitalId", Integer.class),
+                claims.getSubject(),
+                null,
+                role,
+                claims.get("assignedModules", String.class),
+                Collections.singletonList(new SimpleGrantedAuthority(role)));
+    }
+}
@@ -1,23 +1,99 @@
 package com.danphe.emr.security;
 
+import com.danphe.emr.config.RequestStats;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
 import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
+/**
+ * Writes one summary line per request (method, path, status, latency, DB
+ * query count and DB time) and tags every log line of the request with a
+ * correlation ID. Runs ahead of the security chain so auth logging carries
+ * the same ID.
+ */
 @Component
-public class RequestLoggingFilter implements Filter {
-    @Override
-    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
-            throws IOException, ServletException {
-        HttpServletRequest req = (HttpServletRequest) request;
-        HttpServletResponse res = (HttpServletResponse) response;
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestLoggingFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestLoggingFilter.class);
+
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+    public static final String REQUEST_ID_MDC = "requestId";
+
+    private static final Pattern SAFE_REQUEST_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
 
-        System.out.println("DEBUG: Incoming Request: " + req.getMethod() + " " + req.getRequestURI());
+    // Fraction of requests that log every SQL statement (0 = off, 1 = all)
+    @Value("${app.logging.sql-sample-rate:0}")
+    private double sqlSampleRate;
 
-        chain.doFilter(request, response);
+    // When enabled, "X-Debug-Sql: true" turns SQL logging on for that request
+    @Value("${app.logging.sql-debug-header:false}")
+    private boolean sqlDebugHeader;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String requestId = request.getHeader(REQUEST_ID_HEADER);
+        if (requestId == null || !SAFE_REQUEST_ID.matcher(requestId).matches()) {
+            requestId = UUID.randomUUID().toString();
+        }
+        MDC.put(REQUEST_ID_MDC, requestId);
+        response.setHeader(REQUEST_ID_HEADER, requestId);
+
+        boolean logSql = (sqlSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sqlSampleRate)
+                || (sqlDebugHeader && "true".equalsIgnoreCase(request.getHeader("X-Debug-Sql")));
+        RequestStats stats = RequestStats.start(logSql);
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long durationMs = (System.nanoTime() - start) / 1_000_000;
+            logger.info("method={} path={} status={} durationMs={} dbQueries={} dbMs={}",
+                    request.getMethod(), request.getRequestURI(), response.getStatus(), durationMs,
+                    stats.getQueryCount(), stats.getDbMillis());
+            recordDbMetrics(request, stats);
+            RequestStats.end();
+            MDC.remove(REQUEST_ID_MDC);
+        }
+    }
 
-        System.out.println("DEBUG: Outgoing Response: " + res.getStatus() + " for " + req.getRequestURI());
+    // Queries and DB time per endpoint, tagged with the route template (not the raw path)
+    private void recordDbMetrics(HttpServletRequest request, RequestStats stats) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (meterRegistry == null || pattern == null) {
+            return;
+        }
+        DistributionSummary.builder("http.server.requests.db.queries")
+                .tag("method", request.getMethod())
+                .tag("uri", pattern.toString())
+                .register(meterRegistry)
+                .record(stats.getQueryCount());
+        Timer.builder("http.server.requests.db.time")
+                .tag("method", request.getMethod())
+                .tag("uri", pattern.toString())
+                .register(meterRegistry)
+                .record(stats.getDbMillis(), TimeUnit.MILLISECONDS);
     }
 }
@@ -0,0 +1,58 @@
+package com.danphe.emr.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Tickets for opening Server-Sent Event streams.
+ *
+ * EventSource cannot send an Authorization header, so a stream URL has to
+ * carry its credential, and URLs end up in proxy access logs. Instead of the
+ * session JWT the client fetches a ticket right before connecting: a signed
+ * token with the same principal claims, valid for ttl and accepted only once
+ * per instance and only on /Stream URLs. A logged ticket is therefore useless
+ * by the time anyone reads the log.
+ */
+@Component
+public class StreamTicketService {
+
+    static final String USE_CLAIM = "use";
+    static final String USE_STREAM = "stream";
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    private final Duration ttl;
+
+    // Ticket ids already redeemed; kept until the ticket itself has expired
+    private final Cache<String, Boolean> redeemed;
+
+    public StreamTicketService(@Value("${app.auth.stream-ticket.ttl:30s}") Duration ttl) {
+        this.ttl = ttl;
+        this.redeemed = Caffeine.newBuilder().expireAfterWrite(ttl.multipliedBy(2)).build();
+    }
+
+    public String issue(UserDetailsImpl user) {
+        return jwtUtils.generateStreamTicket(user, UUID.randomUUID().toString(), ttl.toMillis());
+    }
+
+    // Claims of a valid, unused ticket (which is now used up), otherwise null
+    public Claims redeem(String ticket) {
+        Claims claims = jwtUtils.parseJwtToken(ticket);
+        if (claims == null || !isTicket(claims) || claims.getId() == null) {
+            return null;
+        }
+        return redeemed.asMap().putIfAbsent(claims.getId(), Boolean.TRUE) == null ? claims : null;
+    }
+
+    public static boolean isTicket(Claims claims) {
+        return USE_STREAM.equals(claims.get(USE_CLAIM));
+    }
+}
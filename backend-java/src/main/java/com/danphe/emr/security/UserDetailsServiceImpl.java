@@ -4,6 +4,8 @@ import com.danphe.emr.model.User;
 import com.danphe.emr.repository.UserRepository;
 import com.danphe.emr.repository.HospitalRepository;
 import com.danphe.emr.repository.EmployeeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -16,6 +18,8 @@ import jakarta.annotation.Nonnull;
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
 
+    private static final Logger logger = LoggerFactory.getLogger(UserDetailsServiceImpl.class);
+
     @Autowired
     UserRepository userRepository;
 
@@ -28,10 +32,10 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     @Override
     @Transactional
     public UserDetails loadUserByUsername(@Nonnull String username) throws UsernameNotFoundException {
-        System.out.println("UserDetailsService: loading [" + username + "]");
+        logger.debug("Loading user [{}]", username);
         User user = userRepository.findByUserName(username)
                 .orElseThrow(() -> {
-                    System.out.println("UserDetailsService: [" + username + "] not found!");
+                    logger.debug("User [{}] not found", username);
                     return new UsernameNotFoundException("User Not Found with username: " + username);
                 });
 
@@ -51,7 +55,7 @@ public class UserDetailsServiceImpl implements UserDetailsService {
             // Only global admins (trikaar_admin or admin) can have no hospital assignment
             if (!"trikaar_admin".equalsIgnoreCase(user.getUserName())
                     && !"admin".equalsIgnoreCase(user.getUserName())) {
-                System.out.println("Login Denied: User [" + username + "] is not assigned to any hospital.");
+                logger.info("Login denied: user [{}] is not assigned to any hospital", username);
                 throw new UsernameNotFoundException("Secure Login Error: No hospital assignment found.");
             }
         } else {
@@ -60,7 +64,7 @@ public class UserDetailsServiceImpl implements UserDetailsService {
                     .orElseThrow(() -> new UsernameNotFoundException("Assigned hospital not found."));
 
             if (!Boolean.TRUE.equals(hospital.getIsActive())) {
-                System.out.println("Login Blocked: Hospital [" + hospital.getName() + "] is deactivated.");
+                logger.info("Login blocked: hospital [{}] is deactivated", hospital.getName());
                 throw new UsernameNotFoundException("Hospital deactivated. Please contact support.");
             }
         }
@@ -70,7 +74,7 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         if (empId != null) {
             emp = employeeRepository.findById(empId).orElse(null);
         }
-        System.out.println("UserDetailsService: Found. Role=" + (emp != null ? emp.getRole() : "N/A"));
+        logger.debug("User [{}] found, role={}", username, emp != null ? emp.getRole() : "N/A");
 
         return UserDetailsImpl.build(user, emp);
     }
@@ -1,16 +1,21 @@
 package com.danphe.emr.security;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.crypto.password.NoOpPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 
 @Configuration
@@ -46,12 +51,45 @@ public class WebSecurityConfig {
         return NoOpPasswordEncoder.getInstance();
     }
 
+    // Actuator endpoints are not tenant APIs: they use their own HTTP basic account
+    // (app.metrics.*) and never accept application JWTs. Health stays open for probes.
     @Bean
+    @Order(1)
+    public SecurityFilterChain actuatorFilterChain(HttpSecurity http,
+            @Value("${app.metrics.username:metrics}") String metricsUser,
+            @Value("${app.metrics.password:}") String metricsPassword) throws Exception {
+        DaoAuthenticationProvider metricsProvider = new DaoAuthenticationProvider();
+        metricsProvider.setUserDetailsService(new InMemoryUserDetailsManager(
+                User.withUsername(metricsUser).password(metricsPassword).roles("METRICS").build()));
+        metricsProvider.setPasswordEncoder(passwordEncoder());
+
+        http.securityMatcher("/actuator/**")
+                .csrf(csrf -> csrf.disable())
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .authorizeHttpRequests(auth -> {
+                    auth.requestMatchers("/actuator/health", "/actuator/health/**").permitAll();
+                    if (metricsPassword.isBlank()) {
+                        auth.anyRequest().denyAll();
+                    } else {
+                        auth.anyRequest().hasRole("METRICS");
+                    }
+                })
+                .authenticationManager(new ProviderManager(metricsProvider))
+                .httpBasic(basic -> {
+                });
+
+        return http.build();
+    }
+
+    @Bean
+    @Order(2)
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http.cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .csrf(csrf -> csrf.disable())
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        // Async dispatches (event streams completing) belong to an already authorized request
+                        .dispatcherTypeMatchers(jakarta.servlet.DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/Account/**").permitAll()
                         .requestMatchers("/api/**").authenticated()
                         .anyRequest().permitAll());
@@ -0,0 +1,509 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.AuditLog;
+import com.danphe.emr.security.SecurityUtil;
+import com.danphe.emr.security.UserDetailsImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Writes audit entries off the request thread.
+ *
+ * {@link #log} builds the entry (user, hospital, client address are only
+ * known on the request thread) and puts it on a bounded queue once the
+ * caller's transaction commits. A single background thread drains the queue
+ * in JDBC batches of up to batch-size rows, or whatever arrived within
+ * flush-interval, each batch in one transaction.
+ *
+ * When the queue is full the caller waits up to offer-timeout, then the
+ * overflow policy applies: "spill" appends the entry to the spill file,
+ * "drop" discards it. Batches that fail because the database is unavailable
+ * are spilled too; spill files are replayed into the table after the next
+ * successful flush. A batch whose data the database rejects is retried row by
+ * row and the offending rows go to the quarantine file, which is not
+ * replayed, so one bad entry cannot hold back the others. On shutdown the
+ * queue is flushed, and what cannot be written is spilled.
+ */
+@Service
+public class AuditLogWriter implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogWriter.class);
+
+    private static final String INSERT_SQL = "INSERT INTO audit_log (hospital_id, user_id, user_name, user_role,"
+            + " action, module, entity_id, entity_name, description, change_data, ip_address, user_agent,"
+            + " severity, timestamp) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SPILL_FILE = "audit-spill.jsonl";
+    private static final String REPLAY_PREFIX = "audit-replay-";
+    private static final String QUARANTINE_FILE = "audit-quarantine.jsonl";
+    private static final int MAX_VARCHAR = 255;
+
+    public enum OverflowPolicy {
+        SPILL, DROP
+    }
+
+    // An entry whose changeData (if any) is built on the writer thread, off the caller's path
+    private record Pending(AuditLog log, Supplier<String> changeData) {
+
+        AuditLog resolve() {
+            if (changeData != null && log.getChangeData() == null) {
+                try {
+                    log.setChangeData(changeData.get());
+                } catch (RuntimeException e) {
+                    logger.warn("Audit change data for {} {} failed: {}", log.getModule(), log.getEntityId(),
+                            e.getMessage());
+                }
+            }
+            return log;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate batchTx;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<Pending> queue;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Duration offerTimeout;
+    private final Duration shutdownTimeout;
+    private final OverflowPolicy overflowPolicy;
+    private final Path spillDir;
+    private final Object spillLock = new Object();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final Counter written;
+    private final Counter spilledOverflow;
+    private final Counter spilledWriteFailed;
+    private final Counter dropped;
+    private final Counter quarantined;
+    private final Timer flushTimer;
+
+    public AuditLogWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper, ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${app.audit.queue-capacity:10000}") int queueCapacity,
+            @Value("${app.audit.batch-size:200}") int batchSize,
+            @Value("${app.audit.flush-interval:500ms}") Duration flushInterval,
+            @Value("${app.audit.offer-timeout:20ms}") Duration offerTimeout,
+            @Value("${app.audit.shutdown-timeout:10s}") Duration shutdownTimeout,
+            @Value("${app.audit.overflow-policy:spill}") String overflowPolicy,
+            @Value("${app.audit.spill-dir:audit-spill}") String spillDir) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchTx = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.offerTimeout = offerTimeout;
+        this.shutdownTimeout = shutdownTimeout;
+        this.overflowPolicy = OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase());
+        this.spillDir = Paths.get(spillDir).toAbsolutePath().normalize();
+
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        this.written = registry == null ? null
+                : Counter.builder("audit.written").description("Audit entries inserted").register(registry);
+        this.spilledOverflow = counter(registry, "audit.spilled", "reason", "overflow",
+                "Audit entries written to the spill file");
+        this.spilledWriteFailed = counter(registry, "audit.spilled", "reason", "write_failed",
+                "Audit entries written to the spill file");
+        this.dropped = counter(registry, "audit.dropped", "policy", this.overflowPolicy.name().toLowerCase(),
+                "Audit entries lost (queue full under the drop policy, or the spill file unwritable)");
+        this.quarantined = registry == null ? null : Counter.builder("audit.quarantined")
+                .description("Audit entries the database rejected, moved to the quarantine file").register(registry);
+        this.flushTimer = registry == null ? null : Timer.builder("audit.flush")
+                .description("Time to insert one audit batch").register(registry);
+        if (registry != null) {
+            Gauge.builder("audit.queue.size", queue, BlockingQueue::size)
+                    .description("Audit entries waiting to be written").register(registry);
+        }
+
+        this.flusher = new Thread(this::run, "audit-writer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    private static Counter counter(MeterRegistry registry, String name, String tag, String value, String description) {
+        return registry == null ? null
+                : Counter.builder(name).tag(tag, value).description(description).register(registry);
+    }
+
+    private static void increment(Counter counter, double amount) {
+        if (counter != null && amount > 0) {
+            counter.increment(amount);
+        }
+    }
+
+    // Records an action by the current user; written after the caller's transaction (if any) commits
+    public void log(String action, String module, String entityId, String entityName, String description) {
+        try {
+            AuditLog log = newEntry(action, module, entityId, entityName, description);
+            SseConnections.afterCommit(() -> enqueue(log));
+        } catch (Exception e) {
+            logger.warn("Audit log failed: {}", e.getMessage());
+        }
+    }
+
+    // An entry stamped with the current user, hospital and request; call on the request thread
+    public AuditLog newEntry(String action, String module, String entityId, String entityName, String description) {
+        UserDetailsImpl user = SecurityUtil.getCurrentUser();
+
+        AuditLog log = new AuditLog();
+        log.setHospitalId(SecurityUtil.getCurrentHospitalId());
+        log.setUserName(user != null ? user.getUsername() : "System");
+        log.setUserRole(user != null ? user.getRole() : "System");
+        log.setUserId(user != null ? user.getId() : null);
+        log.setAction(action);
+        log.setModule(module);
+        log.setEntityId(entityId);
+        log.setEntityName(entityName);
+        log.setDescription(description);
+        log.setSeverity("info");
+        log.setTimestamp(LocalDateTime.now());
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            HttpServletRequest request = attributes.getRequest();
+            log.setIpAddress(request.getRemoteAddr());
+            log.setUserAgent(truncate(request.getHeader("User-Agent")));
+        }
+        return log;
+    }
+
+    public void enqueue(AuditLog log) {
+        enqueue(log, null);
+    }
+
+    // changeData, when given, is called on the writer thread to fill in AuditLog.changeData
+    public void enqueue(AuditLog log, Supplier<String> changeData) {
+        if (log.getTimestamp() == null) {
+            log.setTimestamp(LocalDateTime.now());
+        }
+        if (log.getSeverity() == null) {
+            log.setSeverity("info");
+        }
+        Pending pending = new Pending(log, changeData);
+        boolean queued = running && queue.offer(pending);
+        if (!queued && running && !offerTimeout.isZero()) {
+            // Brief backpressure on the caller before giving up on the queue
+            try {
+                queued = queue.offer(pending, offerTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (queued) {
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.SPILL || !running) {
+            if (spill(List.of(pending.resolve()))) {
+                increment(spilledOverflow, 1);
+            }
+        } else {
+            increment(dropped, 1);
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Fill the batch with whatever else arrives within the flush interval
+                long deadline = System.nanoTime() + flushInterval.toNanos();
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                if (flush(batch)) {
+                    replaySpilled();
+                }
+            } catch (InterruptedException e) {
+                // Shutdown: write what was collected, then keep draining until the queue is empty
+                flush(batch);
+            } catch (RuntimeException e) {
+                logger.warn("Audit writer error: {}", e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // True when the batch reached the database; otherwise it is spilled
+    private boolean flush(List<Pending> pending) {
+        if (pending.isEmpty()) {
+            return true;
+        }
+        List<AuditLog> batch = pending.stream().map(Pending::resolve).toList();
+        long start = System.nanoTime();
+        try {
+            List<AuditLog> unwritten = write(batch);
+            if (unwritten.isEmpty()) {
+                return true;
+            }
+            logger.warn("Spilling {} audit entries to disk", unwritten.size());
+            if (spill(unwritten)) {
+                increment(spilledWriteFailed, unwritten.size());
+            }
+            return false;
+        } finally {
+            if (flushTimer != null) {
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Inserts the batch. When the database rejects its data, falls back to one
+     * row at a time and quarantines the rows it still rejects. Returns the rows
+     * left unwritten because the database failed (empty when every row was
+     * inserted or quarantined).
+     */
+    private List<AuditLog> write(List<AuditLog> batch) {
+        try {
+            insert(batch);
+            increment(written, batch.size());
+            return List.of();
+        } catch (DataIntegrityViolationException e) {
+            logger.warn("Audit batch of {} rejected, retrying row by row: {}", batch.size(), e.getMessage());
+        } catch (RuntimeException e) {
+            logger.warn("Audit batch of {} failed: {}", batch.size(), e.getMessage());
+            return batch;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            AuditLog entry = batch.get(i);
+            try {
+                insert(List.of(entry));
+                increment(written, 1);
+            } catch (DataIntegrityViolationException e) {
+                quarantine(entry, e);
+            } catch (RuntimeException e) {
+                // Rows before this one are committed; only the rest is unwritten
+                logger.warn("Audit row-by-row insert failed: {}", e.getMessage());
+                return batch.subList(i, batch.size());
+            }
+        }
+        return List.of();
+    }
+
+    private void insert(List<AuditLog> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (AuditLog l : batch) {
+            rows.add(new Object[] { l.getHospitalId(), l.getUserId(), l.getUserName(), l.getUserRole(),
+                    l.getAction(), l.getModule(), l.getEntityId(), l.getEntityName(), l.getDescription(),
+                    l.getChangeData(), l.getIpAddress(), l.getUserAgent(), l.getSeverity(),
+                    Timestamp.valueOf(l.getTimestamp()) });
+        }
+        // One transaction per batch, so a failed batch leaves nothing behind to duplicate on replay
+        batchTx.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, rows));
+    }
+
+    // Appends entries as JSON lines; false (and counted as dropped) if the file cannot be written
+    private boolean spill(List<AuditLog> entries) {
+        List<String> lines = new ArrayList<>(entries.size());
+        try {
+            for (AuditLog entry : entries) {
+                lines.add(objectMapper.writeValueAsString(entry));
+            }
+        } catch (IOException e) {
+            logger.error("Audit spill failed, {} entries lost: {}", entries.size(), e.getMessage());
+            increment(dropped, entries.size());
+            return false;
+        }
+        return append(SPILL_FILE, lines, entries.size());
+    }
+
+    // Kept with the database's reason for an operator to fix and re-insert by hand; never replayed
+    private void quarantine(AuditLog entry, DataIntegrityViolationException e) {
+        logger.error("Audit entry {} {} rejected by the database, quarantined: {}", entry.getModule(),
+                entry.getEntityId(), e.getMostSpecificCause().getMessage());
+        ObjectNode line = objectMapper.valueToTree(entry);
+        line.put("quarantineReason", e.getMostSpecificCause().getMessage());
+        if (append(QUARANTINE_FILE, List.of(line.toString()), 1)) {
+            increment(quarantined, 1);
+        }
+    }
+
+    private boolean append(String fileName, List<String> lines, int entries) {
+        synchronized (spillLock) {
+            try {
+                Files.createDirectories(spillDir);
+                try (BufferedWriter out = Files.newBufferedWriter(spillDir.resolve(fileName),
+                        StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (String line : lines) {
+                        out.write(line);
+                        out.newLine();
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                logger.error("Audit write to {} failed, {} entries lost: {}", fileName, entries, e.getMessage());
+                increment(dropped, entries);
+                return false;
+            }
+        }
+    }
+
+    // Moves the spill file aside and inserts it batch by batch; unwritten lines go back to the spill file
+    private void replaySpilled() {
+        List<Path> files = new ArrayList<>();
+        synchronized (spillLock) {
+            Path spill = spillDir.resolve(SPILL_FILE);
+            try {
+                if (Files.exists(spill)) {
+                    Files.move(spill, spillDir.resolve(REPLAY_PREFIX + System.currentTimeMillis() + ".jsonl"));
+                }
+                if (Files.isDirectory(spillDir)) {
+                    try (DirectoryStream<Path> stream = Files.newDirectoryStream(spillDir, REPLAY_PREFIX + "*")) {
+                        stream.forEach(files::add);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Audit spill replay skipped: {}", e.getMessage());
+                return;
+            }
+        }
+        files.sort(null);
+        for (Path file : files) {
+            if (!replay(file)) {
+                return;
+            }
+        }
+    }
+
+    private boolean replay(Path file) {
+        List<AuditLog> batch = new ArrayList<>(batchSize);
+        int replayed = 0;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                AuditLog entry = parse(line, file);
+                if (entry != null) {
+                    batch.add(entry);
+                }
+                if (batch.size() >= batchSize) {
+                    if (!replayBatch(batch, in)) {
+                        deleteQuietly(file);
+                        return false;
+                    }
+                    replayed += batch.size();
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                if (!replayBatch(batch, in)) {
+                    deleteQuietly(file);
+                    return false;
+                }
+                replayed += batch.size();
+            }
+        } catch (IOException e) {
+            // Leave the file for the next attempt rather than lose it
+            logger.warn("Audit spill file {} unreadable: {}", file.getFileName(), e.getMessage());
+            return false;
+        }
+        deleteQuietly(file);
+        logger.info("Replayed {} spilled audit entries", replayed);
+        return true;
+    }
+
+    // On failure the unwritten rows and the rest of the file are spilled again, so committed rows are not repeated
+    private boolean replayBatch(List<AuditLog> batch, BufferedReader rest) throws IOException {
+        List<AuditLog> unwritten = write(batch);
+        if (unwritten.isEmpty()) {
+            return true;
+        }
+        logger.warn("Audit spill replay stopped, will retry");
+        List<AuditLog> remaining = new ArrayList<>(unwritten);
+        String line;
+        while ((line = rest.readLine()) != null) {
+            AuditLog entry = parse(line, null);
+            if (entry != null) {
+                remaining.add(entry);
+            }
+        }
+        spill(remaining);
+        return false;
+    }
+
+    // A corrupt line is skipped rather than blocking every later replay
+    private AuditLog parse(String line, Path file) {
+        if (line.isBlank()) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(line, AuditLog.class);
+        } catch (IOException e) {
+            logger.warn("Skipping unreadable audit spill line{}: {}", file != null ? " in " + file.getFileName() : "",
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static String truncate(String value) {
+        return value != null && value.length() > MAX_VARCHAR ? value.substring(0, MAX_VARCHAR) : value;
+    }
+
+    // Runs before the DataSource closes: the flusher drains the queue, anything left is spilled
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(shutdownTimeout.toMillis());
+        List<Pending> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        List<AuditLog> left = pending.stream().map(Pending::resolve).toList();
+        if (!left.isEmpty() && spill(left)) {
+            logger.warn("Audit writer stopped with {} entries unwritten; spilled to {}", left.size(), spillDir);
+            increment(spilledWriteFailed, left.size());
+        }
+    }
+}
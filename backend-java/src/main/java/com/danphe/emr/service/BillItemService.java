@@ -0,0 +1,126 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.BillItem;
+import com.danphe.emr.model.Billing;
+import com.danphe.emr.model.FinalBill;
+import com.danphe.emr.repository.BillItemRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Maintains the normalized bill_item rows behind Billing/FinalBill.
+ *
+ * The billItems JSON sent by the client is parsed once, when the bill is saved.
+ * Everything downstream (category revenue, final-bill merging) works on the
+ * rows in SQL. The JSON column is kept for API compatibility. Bills saved
+ * before bill_item existed were split by migration V7.
+ */
+@Service
+public class BillItemService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BillItemService.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Autowired
+    private BillItemRepository billItemRepository;
+
+    // Replaces the stored lines of a bill with the ones in its billItems JSON
+    public void saveLines(Billing bill) {
+        billItemRepository.deleteBillLines(bill.getBillId());
+        List<BillItem> lines = parse(bill.getBillItems());
+        for (BillItem line : lines) {
+            line.setHospitalId(bill.getHospitalId());
+            line.setBillId(bill.getBillId());
+        }
+        billItemRepository.saveAll(lines);
+    }
+
+    // Copies the lines of the source bills onto the final bill and returns them as billItems JSON
+    public String mergeIntoFinalBill(FinalBill finalBill, Collection<Integer> billIds) {
+        billItemRepository.copyToFinalBill(finalBill.getFinalBillId(), finalBill.getHospitalId(), billIds);
+        return toJson(billItemRepository.findByFinalBillIdOrderByLineNo(finalBill.getFinalBillId()));
+    }
+
+    public static List<BillItem> parse(String billItems) {
+        List<BillItem> lines = new ArrayList<>();
+        if (billItems == null || billItems.isBlank()) {
+            return lines;
+        }
+        try {
+            List<?> items = MAPPER.readValue(billItems, List.class);
+            for (Object item : items) {
+                if (item instanceof Map<?, ?> it) {
+                    BillItem line = new BillItem();
+                    line.setLineNo(lines.size() + 1);
+                    line.setServiceId(toInteger(it.get("serviceId")));
+                    line.setItemName(toText(it.get("itemName")));
+                    line.setCategory(toText(it.get("category")));
+                    line.setQuantity(toDouble(it.get("quantity")));
+                    line.setUnitPrice(toDouble(it.get("unitPrice")));
+                    line.setRateType(toText(it.get("rateType")));
+                    Double total = toDouble(it.get("total"));
+                    line.setTotal(total != null ? total : 0);
+                    line.setAutoAdded(toBoolean(it.get("autoAdded")));
+                    line.setIsCustom(toBoolean(it.get("isCustom")));
+                    lines.add(line);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Unparseable billItems skipped: {}", e.getMessage());
+        }
+        return lines;
+    }
+
+    public String toJson(List<BillItem> lines) {
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (BillItem line : lines) {
+            Map<String, Object> it = new LinkedHashMap<>();
+            it.put("serviceId", line.getServiceId());
+            it.put("itemName", line.getItemName());
+            it.put("category", line.getCategory());
+            it.put("quantity", line.getQuantity());
+            it.put("unitPrice", line.getUnitPrice());
+            it.put("rateType", line.getRateType());
+            it.put("total", line.getTotal());
+            if (line.getAutoAdded() != null)
+                it.put("autoAdded", line.getAutoAdded());
+            if (line.getIsCustom() != null)
+                it.put("isCustom", line.getIsCustom());
+            items.add(it);
+        }
+        try {
+            return MAPPER.writeValueAsString(items);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not serialize bill items", e);
+        }
+    }
+
+    private static String toText(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static Double toDouble(Object value) {
+        if (value instanceof Number n)
+            return n.doubleValue();
+        try {
+            return value != null && !value.toString().isBlank() ? Double.parseDouble(value.toString()) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Integer toInteger(Object value) {
+        Double d = toDouble(value);
+        return d != null ? d.intValue() : null;
+    }
+
+    private static Boolean toBoolean(Object value) {
+        return value != null ? Boolean.valueOf(value.toString()) : null;
+    }
+}
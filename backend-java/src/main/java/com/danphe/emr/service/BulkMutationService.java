@@ -0,0 +1,54 @@
+package com.danphe.emr.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Runs a set-based UPDATE/DELETE in bounded chunks, each in its own short
+ * transaction, so clearing or marking a very large tenant never holds one
+ * long transaction (and its row locks and undo) or loads rows as entities.
+ *
+ * The chunk statement gets the chunk size, must touch at most that many rows
+ * that still match (UPDATE ... LIMIT, DELETE ... LIMIT) and returns how many
+ * it touched; chunks repeat until one comes back short.
+ */
+@Service
+public class BulkMutationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkMutationService.class);
+
+    private final TransactionTemplate chunkTx;
+
+    @Value("${app.bulk.chunk-size:1000}")
+    private int chunkSize;
+
+    public BulkMutationService(PlatformTransactionManager transactionManager) {
+        this.chunkTx = new TransactionTemplate(transactionManager);
+        // Each chunk commits on its own, even when the caller has a transaction open
+        this.chunkTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // Total rows affected across all chunks
+    public long inChunks(String operation, IntUnaryOperator chunk) {
+        long total = 0;
+        int chunks = 0;
+        int affected;
+        do {
+            Integer result = chunkTx.execute(status -> chunk.applyAsInt(chunkSize));
+            affected = result != null ? result : 0;
+            total += affected;
+            chunks++;
+        } while (affected >= chunkSize);
+        if (chunks > 1) {
+            logger.info("{}: {} rows in {} chunks", operation, total, chunks);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,168 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.*;
+import com.danphe.emr.repository.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Maintains patient_clinical_summary, the one-row-per-patient read model the
+ * doctor's patient profile header is served from, so opening a profile no
+ * longer reloads every medical record to rebuild allergy and risk-flag sets.
+ *
+ * Writers call the matching {@code record*} method after saving, inside their
+ * own transaction. The row is locked while it is changed; a row that has never
+ * been built is first rebuilt from the patient's records (which already include
+ * the write being recorded), after that only the change is applied.
+ */
+@Service
+public class ClinicalSummaryService {
+
+    public static final String FOLLOW_UP_OPEN = "scheduled";
+    public static final String LAB_PENDING = "pending";
+
+    private static final String CONSULTATION = "consultation";
+    private static final String LAB_RESULT = "lab_result";
+
+    @Autowired
+    private PatientClinicalSummaryRepository summaryRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @Autowired
+    private FollowUpRepository followUpRepository;
+
+    @Autowired
+    private AdmissionRepository admissionRepository;
+
+    // Summary for the profile header; built on first use for patients that predate the table
+    @Transactional
+    public Optional<PatientClinicalSummary> get(Integer hospitalId, Integer patientId) {
+        Optional<PatientClinicalSummary> existing = summaryRepository.findByHospitalIdAndPatientId(hospitalId,
+                patientId);
+        if (existing.isPresent() && existing.get().getBuiltOn() != null) {
+            return existing;
+        }
+        if (!patientRepository.existsByHospitalIdAndPatientId(hospitalId, patientId)) {
+            return Optional.empty();
+        }
+        return Optional.of(update(hospitalId, patientId, s -> {
+        }));
+    }
+
+    @Transactional
+    public void recordMedicalRecord(MedicalRecord record) {
+        update(record.getHospitalId(), record.getPatientId(), s -> {
+            s.setAllergies(mergeFlags(s.getAllergies(), record.getAllergies()));
+            s.setRiskFlags(mergeFlags(s.getRiskFlags(), record.getRiskFlags()));
+            if (CONSULTATION.equals(record.getRecordType())) {
+                s.setVisitCount(s.getVisitCount() + 1);
+                s.setLastVisitOn(latest(s.getLastVisitOn(), record.getCreatedOn()));
+            }
+            if (LAB_RESULT.equals(record.getRecordType()) && LAB_PENDING.equals(record.getLabStatus())) {
+                s.setPendingLabs(s.getPendingLabs() + 1);
+            }
+        });
+    }
+
+    @Transactional
+    public void recordPrescription(Prescription prescription) {
+        update(prescription.getHospitalId(), prescription.getPatientId(), s -> {
+            s.setVisitCount(s.getVisitCount() + 1);
+            s.setLastVisitOn(latest(s.getLastVisitOn(), prescription.getCreatedOn()));
+        });
+    }
+
+    // previousStatus is null for a new follow-up
+    @Transactional
+    public void recordFollowUp(FollowUp followUp, String previousStatus) {
+        int delta = (FOLLOW_UP_OPEN.equals(followUp.getStatus()) ? 1 : 0)
+                - (FOLLOW_UP_OPEN.equals(previousStatus) ? 1 : 0);
+        if (previousStatus != null && delta == 0) {
+            return;
+        }
+        update(followUp.getHospitalId(), followUp.getPatientId(),
+                s -> s.setOpenFollowUps(Math.max(0, s.getOpenFollowUps() + delta)));
+    }
+
+    @Transactional
+    public void recordAdmission(Admission admission) {
+        update(admission.getHospitalId(), admission.getPatientId(),
+                s -> s.setAdmissionCount(s.getAdmissionCount() + 1));
+    }
+
+    private PatientClinicalSummary update(Integer hospitalId, Integer patientId,
+            Consumer<PatientClinicalSummary> change) {
+        summaryRepository.insertIfAbsent(hospitalId, patientId);
+        PatientClinicalSummary summary = summaryRepository.lockByHospitalIdAndPatientId(hospitalId, patientId)
+                .orElseThrow();
+        if (summary.getBuiltOn() == null) {
+            rebuild(summary);
+        } else {
+            change.accept(summary);
+        }
+        summary.setUpdatedOn(LocalDateTime.now());
+        return summaryRepository.save(summary);
+    }
+
+    private void rebuild(PatientClinicalSummary s) {
+        Integer h = s.getHospitalId();
+        Integer p = s.getPatientId();
+
+        String allergies = null;
+        String riskFlags = null;
+        for (MedicalRecordRepository.ClinicalFlags f : medicalRecordRepository.findFlags(h, p)) {
+            allergies = mergeFlags(allergies, f.getAllergies());
+            riskFlags = mergeFlags(riskFlags, f.getRiskFlags());
+        }
+        s.setAllergies(allergies);
+        s.setRiskFlags(riskFlags);
+
+        s.setVisitCount((int) (medicalRecordRepository.countByHospitalIdAndPatientIdAndRecordType(h, p, CONSULTATION)
+                + prescriptionRepository.countByHospitalIdAndPatientId(h, p)));
+        s.setLastVisitOn(latest(medicalRecordRepository.lastCreatedOn(h, p, CONSULTATION),
+                prescriptionRepository.lastCreatedOn(h, p)));
+        s.setPendingLabs((int) medicalRecordRepository.countByHospitalIdAndPatientIdAndRecordTypeAndLabStatus(h, p,
+                LAB_RESULT, LAB_PENDING));
+        s.setOpenFollowUps((int) followUpRepository.countByHospitalIdAndPatientIdAndStatus(h, p, FOLLOW_UP_OPEN));
+        s.setAdmissionCount((int) admissionRepository.countByHospitalIdAndPatientId(h, p));
+        s.setBuiltOn(LocalDateTime.now());
+    }
+
+    // Comma-separated values of both, distinct, existing ones first
+    private static String mergeFlags(String existing, String incoming) {
+        if (incoming == null || incoming.isBlank()) {
+            return existing;
+        }
+        Set<String> values = splitFlags(existing);
+        values.addAll(splitFlags(incoming));
+        return values.isEmpty() ? null : String.join(",", values);
+    }
+
+    public static Set<String> splitFlags(String raw) {
+        Set<String> values = new LinkedHashSet<>();
+        if (raw != null && !raw.isBlank()) {
+            Arrays.stream(raw.split(",")).map(String::trim).filter(v -> !v.isEmpty()).forEach(values::add);
+        }
+        return values;
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.isAfter(b) ? a : b;
+    }
+}
@@ -0,0 +1,208 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.config.RequestStats;
+import com.danphe.emr.config.StatementDeadline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the independent queries behind a composite screen (patient profile,
+ * billing history) side by side, so the screen takes as long as its slowest
+ * query rather than the sum of all of them.
+ *
+ * Usage: open a {@link Composite} in try-with-resources, {@code submit} each
+ * query with a fallback, then read the parts. A part that fails or misses its
+ * deadline yields its fallback and is listed in {@link Composite#errors()};
+ * closing the composite cancels anything still running, so no query outlives
+ * the request that started it.
+ *
+ * A part's timeout runs from when it starts, not from when it was queued, and
+ * is also set as the JDBC query timeout of its statements (see
+ * {@link StatementDeadline}), so a timed-out query is stopped by the driver
+ * and frees its worker and connection. A part that waits longer than its
+ * timeout to start is dropped without running. The pool defaults to enough
+ * threads for the widest screen's parts to run at once. When the pool and
+ * its queue are full the part runs inline on the request thread, still under
+ * its query timeout.
+ */
+@Service
+public class CompositeQueryExecutor implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompositeQueryExecutor.class);
+
+    // Parts submitted by the widest screen (the patient profile)
+    static final int WIDEST_SCREEN_PARTS = 6;
+
+    private final ThreadPoolExecutor pool;
+    private final Duration defaultTimeout;
+
+    // poolSize 0 (the default): one profile's parts at once, more with a large database pool
+    public CompositeQueryExecutor(@Value("${app.composite-query.pool-size:0}") int poolSize,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int dbPoolSize,
+            @Value("${app.composite-query.timeout:3s}") Duration defaultTimeout) {
+        if (poolSize <= 0) {
+            poolSize = Math.max(WIDEST_SCREEN_PARTS, dbPoolSize / 4);
+        }
+        AtomicInteger threadNo = new AtomicInteger();
+        // Bounded: a rejected part is run inline by submit, not by a rejection policy
+        this.pool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(poolSize * 16), r -> {
+                    Thread t = new Thread(r, "composite-query-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.pool.allowCoreThreadTimeOut(true);
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    public Composite open() {
+        return new Composite();
+    }
+
+    public final class Composite implements AutoCloseable {
+
+        private final List<Part<?>> parts = new ArrayList<>();
+        private final Map<String, String> errors = new LinkedHashMap<>();
+        private final RequestStats stats = RequestStats.current();
+        private final Map<String, String> mdc = MDC.getCopyOfContextMap();
+
+        public <T> Part<T> submit(String name, Supplier<T> query, T fallback) {
+            return submit(name, query, fallback, defaultTimeout);
+        }
+
+        public <T> Part<T> submit(String name, Supplier<T> query, T fallback, Duration timeout) {
+            long timeoutNanos = timeout.toNanos();
+            Start start = new Start();
+            FutureTask<T> future = new FutureTask<>(() -> {
+                long deadline = start.begin(timeoutNanos);
+                // Same request ID in logs and same DB counters as the request thread; whatever the
+                // running thread had before is put back afterwards
+                RequestStats previousStats = RequestStats.current();
+                Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+                Long previousDeadline = StatementDeadline.current();
+                RequestStats.attach(stats);
+                if (mdc != null) {
+                    MDC.setContextMap(mdc);
+                }
+                StatementDeadline.set(deadline);
+                try {
+                    return query.get();
+                } finally {
+                    StatementDeadline.set(previousDeadline);
+                    RequestStats.attach(previousStats);
+                    if (previousMdc != null) {
+                        MDC.setContextMap(previousMdc);
+                    } else {
+                        MDC.clear();
+                    }
+                }
+            });
+            long queuedUntil = System.nanoTime() + timeoutNanos;
+            try {
+                pool.execute(future);
+            } catch (RejectedExecutionException e) {
+                // Saturated: run it here rather than fail the section
+                logger.debug("Composite query pool full, running part {} inline", name);
+                future.run();
+            }
+            Part<T> part = new Part<>(name, future, fallback, start, queuedUntil);
+            parts.add(part);
+            return part;
+        }
+
+        // Parts that failed or timed out, by name; empty when everything arrived
+        public Map<String, String> errors() {
+            parts.forEach(Part::get);
+            return Collections.unmodifiableMap(errors);
+        }
+
+        @Override
+        public void close() {
+            for (Part<?> part : parts) {
+                part.future.cancel(true);
+            }
+        }
+
+        public final class Part<T> {
+
+            private final String name;
+            private final Future<T> future;
+            private final T fallback;
+            private final Start start;
+            private final long queuedUntil;
+            private boolean resolved;
+            private T value;
+
+            private Part(String name, Future<T> future, T fallback, Start start, long queuedUntil) {
+                this.name = name;
+                this.future = future;
+                this.fallback = fallback;
+                this.start = start;
+                this.queuedUntil = queuedUntil;
+            }
+
+            public boolean failed() {
+                get();
+                return errors.containsKey(name);
+            }
+
+            // Waits for the part to start and then until its deadline at most; never throws
+            public T get() {
+                if (resolved) {
+                    return value;
+                }
+                resolved = true;
+                value = fallback;
+                try {
+                    if (!start.started.await(Math.max(0, queuedUntil - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                        // Never ran; cancelling now means it never will
+                        future.cancel(false);
+                        errors.put(name, "timeout");
+                        logger.warn("Composite query part {} did not start in time", name);
+                        return value;
+                    }
+                    value = future.get(Math.max(0, start.deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    future.cancel(true);
+                    errors.put(name, "timeout");
+                    logger.warn("Composite query part {} timed out", name);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    errors.put(name, "interrupted");
+                } catch (ExecutionException | CancellationException e) {
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    errors.put(name, "failed");
+                    logger.warn("Composite query part {} failed", name, cause);
+                }
+                return value;
+            }
+        }
+    }
+
+    // When a part began running; its deadline counts from there
+    private static final class Start {
+        final CountDownLatch started = new CountDownLatch(1);
+        volatile long deadline;
+
+        long begin(long timeoutNanos) {
+            deadline = System.nanoTime() + timeoutNanos;
+            started.countDown();
+            return deadline;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+}
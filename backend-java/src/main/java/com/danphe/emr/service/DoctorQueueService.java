@@ -0,0 +1,425 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.Appointment;
+import com.danphe.emr.model.Hospital;
+import com.danphe.emr.repository.AppointmentRepository;
+import com.danphe.emr.repository.HospitalRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Live updates for the doctor queue screen. GET /Queue itself is one query on
+ * the appointment table, ordered by the stored queue_rank (emergencies first)
+ * and then appointment time; this service keeps a per-doctor copy of today's
+ * queue in the same order only to work out the events it pushes to subscribed
+ * screens: "snapshot" (on connect), "inserted", "status" and "moved".
+ *
+ * The copy is loaded from the database at startup and again the first time a
+ * hospital is touched on a new day, and is changed in place by addAppointment
+ * and status updates made through this instance. Writes made through another
+ * instance (or directly in the database) are picked up by reconciling against
+ * the database every reconcile-interval while a hospital has open screens,
+ * and whenever a screen connects; a copy that differs is replaced and its
+ * screens get a fresh snapshot.
+ *
+ * Each hospital's day is guarded by its own ReentrantLock rather than
+ * synchronized, so virtual threads waiting on it do not pin their carrier.
+ */
+@Service
+public class DoctorQueueService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(DoctorQueueService.class);
+
+    public static final String EVENT_SNAPSHOT = "snapshot";
+    public static final String EVENT_INSERTED = "inserted";
+    public static final String EVENT_STATUS = "status";
+    public static final String EVENT_MOVED = "moved";
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private HospitalRepository hospitalRepository;
+
+    @Autowired
+    private SseConnections sseConnections;
+
+    @Value("${app.doctor-queue.stream.timeout:30m}")
+    private Duration timeout;
+
+    @Value("${app.doctor-queue.stream.buffer-size:128}")
+    private int bufferSize;
+
+    @Value("${app.doctor-queue.reconcile-interval:30s}")
+    private Duration reconcileInterval;
+
+    private final Map<Integer, HospitalDay> hospitals = new ConcurrentHashMap<>();
+
+    // One loader per hospital at a time; the load query runs under this, not under a map bin lock
+    private final Map<Integer, ReentrantLock> loadLocks = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "doctor-queue-reconcile");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(2)
+    public void loadToday() {
+        int appointments = 0;
+        for (Hospital hospital : hospitalRepository.findAll()) {
+            appointments += day(hospital.getHospitalId()).size();
+        }
+        logger.info("Doctor queues loaded: {} appointments today across {} hospitals", appointments,
+                hospitals.size());
+        reconciler.scheduleWithFixedDelay(this::reconcileWatched, reconcileInterval.toMillis(),
+                reconcileInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        reconciler.shutdownNow();
+    }
+
+    // Today's queue in display order, read from the database; doctorId null means every doctor
+    public List<Appointment> queue(Integer hospitalId, Integer doctorId) {
+        LocalDate today = LocalDate.now();
+        LocalDateTime from = today.atStartOfDay();
+        LocalDateTime to = LocalDateTime.of(today, LocalTime.MAX);
+        return doctorId != null
+                ? appointmentRepository.findQueueForPerformer(hospitalId, doctorId, from, to)
+                : appointmentRepository.findQueue(hospitalId, from, to);
+    }
+
+    public SseEmitter subscribe(Integer hospitalId, Integer doctorId) {
+        Subscriber sub = new Subscriber(doctorId);
+        sub.connection = sseConnections.open("doctor-queue", timeout, bufferSize, () -> {
+            // Subscribers are carried over to later days, so it is registered on the current one
+            HospitalDay now = hospitals.get(hospitalId);
+            if (now != null) {
+                now.subscribers.remove(sub);
+            }
+        });
+        // The copy may be stale if nobody was watching; the snapshot should match GET /Queue
+        reconcile(hospitalId);
+        // Snapshot and registration under the same lock, so no change falls between them
+        while (true) {
+            HospitalDay day = day(hospitalId);
+            day.lock.lock();
+            try {
+                if (day.retired) {
+                    // Replaced by the next day since day() returned; register there instead
+                    continue;
+                }
+                day.subscribers.add(sub);
+                sub.connection.offer(SseEmitter.event().name(EVENT_SNAPSHOT).reconnectTime(5000)
+                        .data(day.appointments(doctorId), MediaType.APPLICATION_JSON));
+                return sub.connection.emitter();
+            } finally {
+                day.lock.unlock();
+            }
+        }
+    }
+
+    public void appointmentAdded(Appointment appointment) {
+        if (appointment.getHospitalId() == null || !isToday(appointment)) {
+            return;
+        }
+        SseConnections.afterCommit(() -> {
+            HospitalDay day = day(appointment.getHospitalId());
+            day.lock.lock();
+            try {
+                if (day.byId.containsKey(appointment.getAppointmentId())) {
+                    return;
+                }
+                Entry entry = new Entry(appointment);
+                day.byId.put(entry.id, entry);
+                queueOf(day, entry.doctorKey).add(entry);
+                day.version++;
+                int position = positionOf(day, entry);
+                day.publish(entry.doctorKey, () -> event(EVENT_INSERTED,
+                        Map.of("appointment", appointment, "position", position)));
+            } finally {
+                day.lock.unlock();
+            }
+        });
+    }
+
+    public void statusChanged(Appointment appointment) {
+        if (appointment.getHospitalId() == null || !isToday(appointment)) {
+            return;
+        }
+        SseConnections.afterCommit(() -> {
+            HospitalDay day = day(appointment.getHospitalId());
+            day.lock.lock();
+            try {
+                Entry old = day.byId.get(appointment.getAppointmentId());
+                if (old == null) {
+                    return;
+                }
+                int from = positionOf(day, old);
+                TreeSet<Entry> queue = queueOf(day, old.doctorKey);
+                queue.remove(old);
+                Entry entry = new Entry(appointment);
+                day.byId.put(entry.id, entry);
+                queueOf(day, entry.doctorKey).add(entry);
+                day.version++;
+                int to = positionOf(day, entry);
+
+                day.publish(entry.doctorKey, () -> event(EVENT_STATUS, statusPayload(appointment)));
+                if (from != to) {
+                    day.publish(entry.doctorKey, () -> event(EVENT_MOVED,
+                            Map.of("appointmentId", entry.id, "position", to)));
+                }
+            } finally {
+                day.lock.unlock();
+            }
+        });
+    }
+
+    // Runs on the reconciler thread; a failure for one hospital is retried on the next round
+    void reconcileWatched() {
+        for (Map.Entry<Integer, HospitalDay> e : hospitals.entrySet()) {
+            if (e.getValue().subscribers.isEmpty()) {
+                continue;
+            }
+            try {
+                reconcile(e.getKey());
+            } catch (RuntimeException ex) {
+                logger.warn("Doctor queue reconcile failed for hospital {}", e.getKey(), ex);
+            }
+        }
+    }
+
+    // Replaces the hospital's copy with the database's when they differ and sends its screens a snapshot
+    void reconcile(Integer hospitalId) {
+        HospitalDay day = day(hospitalId);
+        long seen;
+        day.lock.lock();
+        try {
+            seen = day.version;
+        } finally {
+            day.lock.unlock();
+        }
+        List<Appointment> stored = load(hospitalId, day.date);
+
+        day.lock.lock();
+        try {
+            if (day.retired || day.version != seen) {
+                // Changed here while loading; the load may be older than that change, so try next round
+                return;
+            }
+            Map<Integer, Entry> fresh = new HashMap<>();
+            for (Appointment a : stored) {
+                Entry entry = new Entry(a);
+                fresh.put(entry.id, entry);
+            }
+            if (day.matches(fresh)) {
+                return;
+            }
+            day.byId.clear();
+            day.queues.clear();
+            for (Entry entry : fresh.values()) {
+                day.byId.put(entry.id, entry);
+                queueOf(day, entry.doctorKey).add(entry);
+            }
+            day.version++;
+            for (Subscriber sub : day.subscribers) {
+                sub.connection.offer(event(EVENT_SNAPSHOT, day.appointments(sub.doctorId)));
+            }
+        } finally {
+            day.lock.unlock();
+        }
+    }
+
+    private List<Appointment> load(Integer hospitalId, LocalDate date) {
+        return appointmentRepository.findByHospitalIdAndAppointmentDateBetween(hospitalId, date.atStartOfDay(),
+                LocalDateTime.of(date, LocalTime.MAX));
+    }
+
+    private static Map<String, Object> statusPayload(Appointment a) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("appointmentId", a.getAppointmentId());
+        payload.put("status", a.getAppointmentStatus());
+        return payload;
+    }
+
+    private static SseEmitter.SseEventBuilder event(String name, Object data) {
+        return SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON);
+    }
+
+    // The hospital's state for today, loaded from the database when missing or from an earlier day
+    private HospitalDay day(Integer hospitalId) {
+        LocalDate today = LocalDate.now();
+        HospitalDay current = hospitals.get(hospitalId);
+        if (current != null && current.date.equals(today)) {
+            return current;
+        }
+        ReentrantLock loading = loadLocks.computeIfAbsent(hospitalId, h -> new ReentrantLock());
+        loading.lock();
+        try {
+            current = hospitals.get(hospitalId);
+            if (current != null && current.date.equals(today)) {
+                return current;
+            }
+            HospitalDay loaded = new HospitalDay(today);
+            for (Appointment a : load(hospitalId, today)) {
+                Entry entry = new Entry(a);
+                loaded.byId.put(entry.id, entry);
+                queueOf(loaded, entry.doctorKey).add(entry);
+            }
+            if (current == null) {
+                hospitals.put(hospitalId, loaded);
+                return loaded;
+            }
+
+            // Screens still open from yesterday move over and start again with today's list
+            current.lock.lock();
+            try {
+                current.retired = true;
+                loaded.subscribers.addAll(current.subscribers);
+                hospitals.put(hospitalId, loaded);
+            } finally {
+                current.lock.unlock();
+            }
+            loaded.lock.lock();
+            try {
+                for (Subscriber sub : loaded.subscribers) {
+                    sub.connection.offer(event(EVENT_SNAPSHOT, loaded.appointments(sub.doctorId)));
+                }
+            } finally {
+                loaded.lock.unlock();
+            }
+            return loaded;
+        } finally {
+            loading.unlock();
+        }
+    }
+
+    private static TreeSet<Entry> queueOf(HospitalDay day, int doctorKey) {
+        return day.queues.computeIfAbsent(doctorKey, k -> new TreeSet<>(Entry.ORDER));
+    }
+
+    // Position within the doctor's own queue
+    private static int positionOf(HospitalDay day, Entry entry) {
+        return queueOf(day, entry.doctorKey).headSet(entry).size();
+    }
+
+    private static boolean isToday(Appointment a) {
+        return a.getAppointmentDate() != null && a.getAppointmentDate().toLocalDate().equals(LocalDate.now());
+    }
+
+    private static final class HospitalDay {
+
+        final LocalDate date;
+        // Guards queues, byId, version and retired; subscribers is also read without it
+        final ReentrantLock lock = new ReentrantLock();
+        // Set once the next day has replaced this one and taken over its subscribers
+        boolean retired;
+        // Bumped on every change, so a reconcile can tell the copy moved on while it was loading
+        long version;
+        // Keyed by performerId, 0 for appointments without a doctor
+        final Map<Integer, TreeSet<Entry>> queues = new HashMap<>();
+        final Map<Integer, Entry> byId = new HashMap<>();
+        final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+        HospitalDay(LocalDate date) {
+            this.date = date;
+        }
+
+        int size() {
+            return byId.size();
+        }
+
+        boolean matches(Map<Integer, Entry> stored) {
+            if (stored.size() != byId.size()) {
+                return false;
+            }
+            for (Entry entry : stored.values()) {
+                Entry mine = byId.get(entry.id);
+                if (mine == null || !mine.sameAs(entry)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        List<Appointment> appointments(Integer doctorId) {
+            Collection<Entry> entries = doctorId != null
+                    ? queues.getOrDefault(doctorId, new TreeSet<>(Entry.ORDER))
+                    : byId.values().stream().sorted(Entry.ORDER).toList();
+            return entries.stream().map(e -> e.appointment).toList();
+        }
+
+        // Sends to the doctor's own screens and to hospital-wide ones
+        void publish(int doctorKey, Supplier<SseEmitter.SseEventBuilder> event) {
+            for (Subscriber sub : subscribers) {
+                if (sub.doctorId == null || sub.doctorId == doctorKey) {
+                    sub.connection.offer(event.get());
+                }
+            }
+        }
+    }
+
+    private static final class Subscriber {
+
+        final Integer doctorId;
+        SseConnections.Connection connection;
+
+        Subscriber(Integer doctorId) {
+            this.doctorId = doctorId;
+        }
+    }
+
+    private static final class Entry {
+
+        // Same order as AppointmentRepository.findQueue
+        static final Comparator<Entry> ORDER = Comparator.<Entry>comparingInt(e -> e.queueRank)
+                .thenComparing(e -> e.date)
+                .thenComparingInt(e -> e.id);
+
+        final Appointment appointment;
+        final int id;
+        final int doctorKey;
+        final int queueRank;
+        final String status;
+        final LocalDateTime date;
+
+        Entry(Appointment a) {
+            this.appointment = a;
+            this.id = a.getAppointmentId();
+            this.doctorKey = a.getPerformerId() != null ? a.getPerformerId() : 0;
+            this.queueRank = Appointment.queueRankOf(a.getAppointmentType());
+            this.status = a.getAppointmentStatus();
+            this.date = a.getAppointmentDate();
+        }
+
+        // The fields that decide an appointment's place and status on the screen
+        boolean sameAs(Entry other) {
+            return doctorKey == other.doctorKey && queueRank == other.queueRank
+                    && Objects.equals(status, other.status) && Objects.equals(date, other.date);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.AuditLog;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Audits inserts, updates and deletes of the entities listed in
+ * {@code app.audit.entities} (simple class names; empty turns capture off).
+ *
+ * Hibernate calls these listeners after the transaction commits, still on the
+ * request thread, so the entry gets the user, hospital and client address
+ * from the request. Only the changed property names and copied values are
+ * taken there; the {field: {old, new}} JSON for AuditLog.changeData is built
+ * by {@link AuditLogWriter} on its own thread. Fields in
+ * {@code app.audit.redact-fields} are recorded as changed without values.
+ * Time spent on the request thread is the audit.capture timer, per entity.
+ */
+@Service
+public class EntityAuditListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+        PostCommitDeleteEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntityAuditListener.class);
+
+    private static final String REDACTED = "[redacted]";
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private AuditLogWriter auditLogWriter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${app.audit.entities:Billing,Patient,Admission,Prescription,Employee,User}")
+    private Set<String> entities;
+
+    @Value("${app.audit.redact-fields:password}")
+    private Set<String> redactFields;
+
+    private final Map<String, Timer> timers = new HashMap<>();
+
+    @PostConstruct
+    public void register() {
+        entities = entities.stream().map(String::trim).filter(e -> !e.isEmpty()).collect(Collectors.toSet());
+        redactFields = redactFields.stream().map(f -> f.trim().toLowerCase()).collect(Collectors.toSet());
+        if (entities.isEmpty()) {
+            return;
+        }
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            for (String entity : entities) {
+                timers.put(entity, Timer.builder("audit.capture").tag("entity", entity)
+                        .description("Request-thread time spent capturing an entity change for the audit log")
+                        .register(registry));
+            }
+        }
+        EventListenerRegistry listeners = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        listeners.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        listeners.appendListeners(EventType.POST_COMMIT_DELETE, this);
+        logger.info("Entity audit enabled for {}", entities);
+    }
+
+    // Hibernate only queues post-commit events for these entities, so the rest cost nothing
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return entities.contains(module(persister));
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        capture("CREATE", event.getPersister(), event.getId(), null, event.getState(), null);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        capture("UPDATE", event.getPersister(), event.getId(), event.getOldState(), event.getState(),
+                event.getDirtyProperties());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        capture("DELETE", event.getPersister(), event.getId(), event.getDeletedState(), null, null);
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // Rolled back: nothing happened to audit
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    // oldState null for inserts, newState null for deletes; dirty may be null when Hibernate did not compute it
+    private void capture(String action, EntityPersister persister, Object id, Object[] oldState, Object[] newState,
+            int[] dirty) {
+        String module = module(persister);
+        long start = System.nanoTime();
+        try {
+            String[] names = persister.getPropertyNames();
+            int[] changed = changedProperties(names.length, oldState, newState, dirty);
+            if (changed.length == 0) {
+                return;
+            }
+            // Values are copied now; the entity may change again after this returns
+            String[] fields = new String[changed.length];
+            Object[] before = new Object[changed.length];
+            Object[] after = new Object[changed.length];
+            for (int i = 0; i < changed.length; i++) {
+                int p = changed[i];
+                fields[i] = names[p];
+                boolean redact = redactFields.contains(names[p].toLowerCase());
+                before[i] = oldState == null ? null : redact ? REDACTED : oldState[p];
+                after[i] = newState == null ? null : redact ? REDACTED : newState[p];
+            }
+
+            String description = "UPDATE".equals(action) ? module + " updated: " + String.join(", ", fields)
+                    : "CREATE".equals(action) ? module + " created" : module + " deleted";
+            AuditLog entry = auditLogWriter.newEntry(action, module, String.valueOf(id), null, description);
+            if (entry.getHospitalId() == null) {
+                // System work outside a request: take the tenant from the row itself
+                Object[] state = newState != null ? newState : oldState;
+                int h = Arrays.asList(names).indexOf("hospitalId");
+                if (h >= 0 && state[h] instanceof Integer hospitalId) {
+                    entry.setHospitalId(hospitalId);
+                }
+            }
+            auditLogWriter.enqueue(entry, () -> changeJson(fields, oldState != null ? before : null,
+                    newState != null ? after : null));
+        } catch (RuntimeException e) {
+            // Never fail the caller over its audit trail
+            logger.warn("Audit capture for {} {} failed: {}", module, id, e.getMessage());
+        } finally {
+            Timer timer = timers.get(module);
+            if (timer != null) {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    // Updates: properties whose value changed; inserts and deletes: every non-null property
+    private static int[] changedProperties(int count, Object[] oldState, Object[] newState, int[] dirty) {
+        if (oldState != null && newState != null) {
+            if (dirty != null) {
+                return dirty;
+            }
+            return IntStream.range(0, count)
+                    .filter(p -> !Objects.equals(oldState[p], newState[p])).toArray();
+        }
+        Object[] state = newState != null ? newState : oldState;
+        return IntStream.range(0, count).filter(p -> state[p] != null).toArray();
+    }
+
+    // Runs on the audit writer thread
+    private String changeJson(String[] fields, Object[] before, Object[] after) {
+        Map<String, Map<String, Object>> changes = new LinkedHashMap<>();
+        for (int i = 0; i < fields.length; i++) {
+            Map<String, Object> change = new LinkedHashMap<>();
+            if (before != null) {
+                change.put("old", before[i]);
+            }
+            if (after != null) {
+                change.put("new", after[i]);
+            }
+            changes.put(fields[i], change);
+        }
+        try {
+            return objectMapper.writeValueAsString(changes);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e.getOriginalMessage(), e);
+        }
+    }
+
+    private static String module(EntityPersister persister) {
+        String name = persister.getEntityName();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+}
@@ -0,0 +1,146 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.Notification;
+import com.danphe.emr.repository.NotificationRepository;
+import com.danphe.emr.security.UserDetailsImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Pushes notifications and unread-count changes to open browser sessions over
+ * Server-Sent Events, replacing the periodic unread-count poll.
+ *
+ * Connections are grouped by hospital and matched to a notification by target
+ * user or target role. Every event ID is a notificationId, so a client that
+ * reconnects (including one dropped by {@link SseConnections} for falling too
+ * far behind) sends Last-Event-ID and is replayed what it missed from the table.
+ * When it missed more than a replay fits, it gets a resync event instead, whose
+ * ID is the newest notificationId, and reloads its list over HTTP.
+ */
+@Service
+public class NotificationStreamService {
+
+    public static final String EVENT_NOTIFICATION = "notification";
+    public static final String EVENT_UNREAD = "unread";
+    public static final String EVENT_RESYNC = "resync";
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private SseConnections sseConnections;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Value("${app.notifications.stream.timeout:30m}")
+    private Duration timeout;
+
+    @Value("${app.notifications.stream.buffer-size:64}")
+    private int bufferSize;
+
+    private final Map<Integer, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    // Opens a stream for the user; lastEventId (nullable) is the last notificationId the client saw
+    public SseEmitter subscribe(UserDetailsImpl user, Long lastEventId) {
+        Subscriber sub = new Subscriber(user.getHospitalId(), user.getId(), user.getRole());
+        sub.connection = sseConnections.open("notifications", timeout, bufferSize, () -> remove(sub));
+        // Registered before the replay query, so nothing published meanwhile is missed;
+        // a notification may then arrive twice and clients dedupe by notificationId
+        subscribers.computeIfAbsent(sub.hospitalId, h -> ConcurrentHashMap.newKeySet()).add(sub);
+
+        // Replay at most half an outbox so the reconnect itself cannot overflow it; skipping the rest
+        // would lose it for good (Last-Event-ID moves past), so then the client refetches instead
+        if (lastEventId != null) {
+            int replayLimit = Math.max(1, bufferSize / 2);
+            List<Notification> missed = notificationRepository.findForUserAfter(sub.hospitalId, sub.userId,
+                    sub.role, lastEventId, PageRequest.of(0, replayLimit + 1));
+            if (missed.size() > replayLimit) {
+                Long latest = notificationRepository.findLatestIdForUser(sub.hospitalId, sub.userId, sub.role);
+                sub.offer(SseEmitter.event().id(String.valueOf(latest)).name(EVENT_RESYNC)
+                        .data(Map.of("replayLimit", replayLimit), MediaType.APPLICATION_JSON));
+            } else {
+                missed.forEach(n -> sub.offer(notificationEvent(n)));
+            }
+        }
+        sub.offer(SseEmitter.event().name(EVENT_UNREAD).reconnectTime(5000)
+                .data(Map.of("unread", unreadCounterService.unreadCount(sub.hospitalId, sub.userId, sub.role)),
+                        MediaType.APPLICATION_JSON));
+        return sub.connection.emitter();
+    }
+
+    // Sends a saved notification to its targets once the surrounding transaction (if any) commits
+    public void publish(Notification n) {
+        SseConnections.afterCommit(() -> forTargets(n, sub -> sub.offer(notificationEvent(n))));
+    }
+
+    // Tells the user's open streams that their unread count moved by delta
+    public void unreadChanged(Integer hospitalId, Integer userId, long delta) {
+        SseConnections.afterCommit(() -> forHospital(hospitalId, sub -> {
+            if (userId.equals(sub.userId)) {
+                sub.offer(unreadDelta(delta));
+            }
+        }));
+    }
+
+    private void forTargets(Notification n, Consumer<Subscriber> action) {
+        forHospital(n.getHospitalId(), sub -> {
+            boolean targeted = (n.getTargetUserId() != null && n.getTargetUserId().equals(sub.userId))
+                    || (n.getTargetRole() != null && n.getTargetRole().equals(sub.role));
+            if (targeted) {
+                action.accept(sub);
+            }
+        });
+    }
+
+    private void forHospital(Integer hospitalId, Consumer<Subscriber> action) {
+        Set<Subscriber> set = hospitalId != null ? subscribers.get(hospitalId) : null;
+        if (set != null) {
+            set.forEach(action);
+        }
+    }
+
+    // Builders are single-use, so every connection gets its own
+    private static SseEmitter.SseEventBuilder notificationEvent(Notification n) {
+        return SseEmitter.event().id(String.valueOf(n.getNotificationId())).name(EVENT_NOTIFICATION)
+                .data(n, MediaType.APPLICATION_JSON);
+    }
+
+    private static SseEmitter.SseEventBuilder unreadDelta(long delta) {
+        return SseEmitter.event().name(EVENT_UNREAD).data(Map.of("delta", delta), MediaType.APPLICATION_JSON);
+    }
+
+    private void remove(Subscriber sub) {
+        subscribers.computeIfPresent(sub.hospitalId, (h, set) -> {
+            set.remove(sub);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static final class Subscriber {
+
+        final Integer hospitalId;
+        final Integer userId;
+        final String role;
+        SseConnections.Connection connection;
+
+        Subscriber(Integer hospitalId, Integer userId, String role) {
+            this.hospitalId = hospitalId;
+            this.userId = userId;
+            this.role = role;
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            connection.offer(event);
+        }
+    }
+}
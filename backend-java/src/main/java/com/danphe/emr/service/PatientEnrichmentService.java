@@ -0,0 +1,109 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.*;
+import com.danphe.emr.repository.PatientRepository;
+import com.danphe.emr.repository.PatientSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Fills the transient patient name/code fields on list results.
+ *
+ * Collects the distinct patient IDs of a result set and resolves them with a
+ * single projection query (chunked for very large lists), so a list endpoint
+ * costs a fixed number of queries regardless of how many rows it returns.
+ */
+@Service
+public class PatientEnrichmentService {
+
+    // Keeps the IN (...) list well below driver/optimizer limits
+    private static final int CHUNK_SIZE = 1000;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    public Map<Integer, PatientSummary> loadSummaries(Integer hospitalId, Collection<Integer> patientIds) {
+        Map<Integer, PatientSummary> result = new HashMap<>();
+        if (hospitalId == null || patientIds == null || patientIds.isEmpty()) {
+            return result;
+        }
+
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(patientIds));
+        ids.removeIf(Objects::isNull);
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + CHUNK_SIZE, ids.size()));
+            for (PatientSummary s : patientRepository.findSummariesByHospitalIdAndPatientIdIn(hospitalId, chunk)) {
+                result.put(s.getPatientId(), s);
+            }
+        }
+        return result;
+    }
+
+    public <T> void enrich(Integer hospitalId, List<T> rows, Function<T, Integer> patientIdOf,
+            BiConsumer<T, PatientSummary> apply) {
+        if (rows == null || rows.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> ids = new HashSet<>();
+        for (T row : rows) {
+            Integer id = patientIdOf.apply(row);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+
+        Map<Integer, PatientSummary> summaries = loadSummaries(hospitalId, ids);
+        for (T row : rows) {
+            PatientSummary s = summaries.get(patientIdOf.apply(row));
+            if (s != null) {
+                apply.accept(row, s);
+            }
+        }
+    }
+
+    public void enrichBills(Integer hospitalId, List<Billing> bills) {
+        enrich(hospitalId, bills, Billing::getPatientId, (b, s) -> {
+            b.setPatientName(s.getFullName());
+            b.setPatientCode(s.getPatientCode());
+        });
+    }
+
+    public void enrichFinalBills(Integer hospitalId, List<FinalBill> bills) {
+        enrich(hospitalId, bills, FinalBill::getPatientId, (b, s) -> b.setPatientName(s.getFullName()));
+    }
+
+    public void enrichAdmissions(Integer hospitalId, List<Admission> admissions) {
+        enrich(hospitalId, admissions, Admission::getPatientId, (a, s) -> {
+            a.setPatientName(s.getFullName());
+            a.setPatientCode(s.getPatientCode());
+        });
+    }
+
+    // Appointments carry a patient snapshot; only rows missing it are looked up
+    public void enrichAppointments(Integer hospitalId, List<Appointment> appointments) {
+        List<Appointment> missing = new ArrayList<>();
+        for (Appointment a : appointments) {
+            if (a.getPatientId() != null && a.getPatientCode() == null) {
+                missing.add(a);
+            }
+        }
+        enrich(hospitalId, missing, Appointment::getPatientId, (a, s) -> {
+            a.setPatientCode(s.getPatientCode());
+            a.setFirstName(s.getFirstName());
+            a.setLastName(s.getLastName());
+        });
+    }
+
+    public void enrichPrescriptions(Integer hospitalId, List<Prescription> prescriptions) {
+        enrich(hospitalId, prescriptions, Prescription::getPatientId, (p, s) -> p.setPatientName(s.getFullName()));
+    }
+
+    public void enrichFollowUps(Integer hospitalId, List<FollowUp> followUps) {
+        enrich(hospitalId, followUps, FollowUp::getPatientId, (f, s) -> f.setPatientName(s.getFullName()));
+    }
+}
@@ -0,0 +1,33 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.repository.PatientRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Per-hospital patient numbers (patientNo / PATnnnnn codes), served from the
+ * shared {@link SequenceAllocator} so concurrent registrations and replicas
+ * never hand out the same number. A hospital's sequence starts after the
+ * highest code it already has; uniqueness per hospital is enforced by
+ * uk_patient_code (migration V3).
+ */
+@Service
+public class PatientNumberService {
+
+    public static final String PATIENT_SEQUENCE = "patient";
+
+    @Autowired
+    private SequenceAllocator sequenceAllocator;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    public int next(Integer hospitalId) {
+        return (int) sequenceAllocator.next(hospitalId, PATIENT_SEQUENCE,
+                () -> patientRepository.maxPatientCodeNumber(hospitalId) + 1L);
+    }
+
+    public static String codeOf(int patientNo) {
+        return "PAT" + String.format("%05d", patientNo);
+    }
+}
@@ -0,0 +1,95 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.Patient;
+import com.danphe.emr.repository.PatientRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Patient lookup for search boxes.
+ *
+ * Every lookup is an index range scan on one of the (hospitalId, column)
+ * composite indexes of the patient table, bounded by the result limit. There
+ * are no leading-wildcard LIKEs, so cost depends on the limit, not on how
+ * many patients a hospital has. Results are ranked: exact code/phone
+ * matches, then code/phone prefixes, then full-name, first-name and
+ * last-name prefix matches.
+ */
+@Service
+public class PatientSearchService {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 200;
+
+    private static final int RANK_EXACT = 0;
+    private static final int RANK_ID_PREFIX = 1;
+    private static final int RANK_FULL_NAME = 2;
+    private static final int RANK_FIRST_NAME = 3;
+    private static final int RANK_LAST_NAME = 4;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    public List<Patient> search(Integer hospitalId, String query, Integer limit) {
+        int max = limit == null || limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        Pageable page = PageRequest.of(0, max);
+        String q = query == null ? "" : query.trim().replaceAll("\\s+", " ");
+
+        // Empty search box: most recently registered patients
+        if (q.isEmpty()) {
+            return patientRepository.findByHospitalIdOrderByPatientIdDesc(hospitalId, page);
+        }
+
+        Map<Integer, Patient> byId = new LinkedHashMap<>();
+        Map<Integer, Integer> rank = new HashMap<>();
+
+        if (q.chars().allMatch(Character::isDigit)) {
+            collect(byId, rank, patientRepository.findByHospitalIdAndPhoneNumber(hospitalId, q, page), RANK_EXACT);
+            collect(byId, rank,
+                    patientRepository.findByHospitalIdAndPhoneNumberStartingWithOrderByPhoneNumber(hospitalId, q, page),
+                    RANK_ID_PREFIX);
+        }
+
+        if (!q.contains(" ")) {
+            for (Patient p : patientRepository.findByHospitalIdAndPatientCodeStartingWithOrderByPatientCode(hospitalId,
+                    q, page)) {
+                collect(byId, rank, List.of(p), q.equalsIgnoreCase(p.getPatientCode()) ? RANK_EXACT : RANK_ID_PREFIX);
+            }
+        }
+
+        String[] tokens = q.split(" ");
+        if (tokens.length >= 2) {
+            String last = String.join(" ", Arrays.copyOfRange(tokens, 1, tokens.length));
+            collect(byId, rank, patientRepository
+                    .findByHospitalIdAndFirstNameStartingWithAndLastNameStartingWithOrderByFirstNameAscLastNameAsc(
+                            hospitalId, tokens[0], last, page),
+                    RANK_FULL_NAME);
+        }
+        collect(byId, rank,
+                patientRepository.findByHospitalIdAndFirstNameStartingWithOrderByFirstNameAscLastNameAsc(hospitalId, q,
+                        page),
+                RANK_FIRST_NAME);
+        collect(byId, rank,
+                patientRepository.findByHospitalIdAndLastNameStartingWithOrderByLastNameAscFirstNameAsc(hospitalId, q,
+                        page),
+                RANK_LAST_NAME);
+
+        // Stable sort keeps the index order within a rank
+        List<Patient> results = new ArrayList<>(byId.values());
+        results.sort(Comparator.comparingInt(p -> rank.get(p.getPatientId())));
+        return results.size() > max ? new ArrayList<>(results.subList(0, max)) : results;
+    }
+
+    // Keeps the best (lowest) rank per patient
+    private static void collect(Map<Integer, Patient> byId, Map<Integer, Integer> rank, List<Patient> found,
+            int r) {
+        for (Patient p : found) {
+            byId.putIfAbsent(p.getPatientId(), p);
+            rank.merge(p.getPatientId(), r, Math::min);
+        }
+    }
+}
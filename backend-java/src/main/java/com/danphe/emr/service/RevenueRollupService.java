@@ -0,0 +1,112 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.Billing;
+import com.danphe.emr.model.RevenueRollup;
+import com.danphe.emr.repository.BillItemRepository;
+import com.danphe.emr.repository.RevenueRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Keeps the daily revenue_rollup table in step with billing writes so that
+ * dashboard revenue figures are read from a handful of pre-aggregated rows
+ * instead of the full billing table.
+ *
+ * Writers capture a {@link Contribution} of the bill before and after a change
+ * and apply the difference inside their own transaction. Bills saved before
+ * the table existed were rolled up by migration V7; {@link #rebuild} recomputes
+ * a hospital's rows from scratch.
+ */
+@Service
+public class RevenueRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RevenueRollupService.class);
+
+    @Autowired
+    private RevenueRollupRepository rollupRepository;
+
+    @Autowired
+    private BillItemRepository billItemRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // What a single bill adds to the rollup
+    public record Contribution(Integer hospitalId, LocalDate date, String billType, String paymentStatus,
+            double grandTotal, Map<String, Double> categoryTotals) {
+    }
+
+    public Contribution contributionOf(Billing bill) {
+        return contributionOf(bill, categoryTotals(bill.getBillId()));
+    }
+
+    // For changes that leave the bill's lines untouched, reuse the category totals already read
+    public Contribution contributionOf(Billing bill, Map<String, Double> categoryTotals) {
+        LocalDate date = bill.getCreatedAt() != null ? bill.getCreatedAt().toLocalDate() : LocalDate.now();
+        return new Contribution(
+                bill.getHospitalId(),
+                date,
+                normalize(bill.getBillType(), "Unknown"),
+                normalize(bill.getPaymentStatus(), "Unpaid"),
+                bill.getGrandTotal() != null ? bill.getGrandTotal() : 0,
+                categoryTotals);
+    }
+
+    public void record(Billing bill) {
+        apply(contributionOf(bill), 1);
+    }
+
+    public void replace(Contribution before, Contribution after) {
+        if (before.equals(after)) {
+            return;
+        }
+        apply(before, -1);
+        apply(after, 1);
+    }
+
+    private void apply(Contribution c, int sign) {
+        rollupRepository.increment(c.hospitalId(), c.date(), c.billType(), c.paymentStatus(),
+                RevenueRollup.ALL_CATEGORIES, sign, sign * c.grandTotal());
+        for (Map.Entry<String, Double> e : c.categoryTotals().entrySet()) {
+            rollupRepository.increment(c.hospitalId(), c.date(), c.billType(), c.paymentStatus(), e.getKey(), sign,
+                    sign * e.getValue());
+        }
+    }
+
+    // Category totals of the bill's stored line items
+    private Map<String, Double> categoryTotals(Integer billId) {
+        Map<String, Double> totals = new TreeMap<>();
+        if (billId == null) {
+            return totals;
+        }
+        for (var t : billItemRepository.sumByCategoryForBill(billId)) {
+            totals.put(t.getCategory(), t.getAmount() != null ? t.getAmount() : 0);
+        }
+        return totals;
+    }
+
+    private static String normalize(String value, String fallback) {
+        return (value == null || value.isBlank()) ? fallback : value.trim();
+    }
+
+    // =========================================================================
+    // REBUILD
+    // =========================================================================
+
+    // Recomputes one hospital's rollup with two INSERT ... SELECT aggregations, in one transaction
+    // (the repair path if the rollup ever drifts from the bills); returns the rows written
+    public int rebuild(Integer hospitalId) {
+        Integer rows = transactionTemplate.execute(status -> {
+            rollupRepository.deleteByHospitalId(hospitalId);
+            return rollupRepository.insertBillTotals(hospitalId) + rollupRepository.insertCategoryTotals(hospitalId);
+        });
+        logger.info("Revenue rollup rebuilt for hospital {}: {} rows", hospitalId, rows);
+        return rows != null ? rows : 0;
+    }
+}
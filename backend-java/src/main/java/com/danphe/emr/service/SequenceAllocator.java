@@ -0,0 +1,78 @@
+package com.danphe.emr.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Hands out per-hospital running numbers (hi/lo style).
+ *
+ * Each app instance reserves a block of values from number_sequence with one
+ * atomic UPDATE in its own short transaction (on {@link SequenceBlockStore}'s
+ * own connections, so callers may hold a transaction), then serves the block
+ * from memory.
+ * Instances never share a block, so numbers are unique across replicas. Numbers
+ * are increasing per instance but may interleave between instances, and the
+ * unused tail of a block is skipped when an instance restarts.
+ */
+@Service
+public class SequenceAllocator {
+
+    private final SequenceBlockStore store;
+
+    private final long blockSize;
+
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    // Only held while refilling an exhausted block; never while serving from memory
+    private final Map<String, ReentrantLock> refillLocks = new ConcurrentHashMap<>();
+
+    private static final class Block {
+        final AtomicLong next;
+        final long limit;
+
+        Block(long first, long limit) {
+            this.next = new AtomicLong(first);
+            this.limit = limit;
+        }
+    }
+
+    public SequenceAllocator(SequenceBlockStore store, @Value("${app.sequence.block-size:20}") long blockSize) {
+        this.store = store;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Next value of the hospital's sequence. {@code firstValue} is only consulted
+     * when the sequence row does not exist yet.
+     */
+    public long next(Integer hospitalId, String sequenceName, LongSupplier firstValue) {
+        String key = hospitalId + ":" + sequenceName;
+        while (true) {
+            Block block = blocks.get(key);
+            if (block != null) {
+                long value = block.next.getAndIncrement();
+                if (value < block.limit) {
+                    return value;
+                }
+            }
+
+            ReentrantLock lock = refillLocks.computeIfAbsent(key, k -> new ReentrantLock());
+            lock.lock();
+            try {
+                // Another thread may have refilled while we waited
+                if (blocks.get(key) == block) {
+                    long first = store.reserve(hospitalId, sequenceName, blockSize, firstValue);
+                    blocks.put(key, new Block(first, first + blockSize));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
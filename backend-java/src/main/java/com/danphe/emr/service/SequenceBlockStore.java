@@ -0,0 +1,85 @@
+package com.danphe.emr.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Reserves blocks of number_sequence values for {@link SequenceAllocator}.
+ *
+ * Reservations run on a small pool of their own rather than the application
+ * pool. Callers allocate numbers inside their own transaction, so they already
+ * hold an application connection; if the reservation needed a second one from
+ * the same pool, a burst of about pool-size callers could each hold one while
+ * waiting for another and never get it.
+ */
+@Service
+public class SequenceBlockStore {
+
+    private final HikariDataSource pool;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate reserveTx;
+
+    public SequenceBlockStore(DataSourceProperties properties,
+            @Value("${app.sequence.pool-size:2}") int poolSize,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        this.pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName("sequence");
+        pool.setMaximumPoolSize(poolSize);
+        // Blocks are refilled rarely; don't keep connections open between refills
+        pool.setMinimumIdle(0);
+        meterRegistry.ifAvailable(registry -> pool.setMetricsTrackerFactory(
+                new MicrometerMetricsTrackerFactory(registry)));
+        this.jdbcTemplate = new JdbcTemplate(pool);
+        this.reserveTx = new TransactionTemplate(new DataSourceTransactionManager(pool));
+    }
+
+    /**
+     * Reserves {@code blockSize} values of the hospital's sequence and returns the
+     * first. {@code firstValue} is only consulted when the sequence row does not
+     * exist yet.
+     */
+    public long reserve(Integer hospitalId, String sequenceName, long blockSize, LongSupplier firstValue) {
+        Long first = advance(hospitalId, sequenceName, blockSize, null);
+        if (first == null) {
+            // The seed query runs on the caller's connection, before one is taken from this pool
+            first = advance(hospitalId, sequenceName, blockSize, firstValue.getAsLong());
+        }
+        return first;
+    }
+
+    // Null when the row does not exist and no seed was given
+    private Long advance(Integer hospitalId, String sequenceName, long blockSize, Long seed) {
+        return reserveTx.execute(status -> {
+            if (seed != null) {
+                // A concurrent creator wins silently
+                jdbcTemplate.update("INSERT IGNORE INTO number_sequence (hospital_id, sequence_name, next_value) "
+                        + "VALUES (?, ?, ?)", hospitalId, sequenceName, seed);
+            }
+            // Single-statement increment; the row lock is held only until this transaction commits
+            int updated = jdbcTemplate.update("UPDATE number_sequence SET next_value = next_value + ? "
+                    + "WHERE hospital_id = ? AND sequence_name = ?", blockSize, hospitalId, sequenceName);
+            if (updated == 0) {
+                return null;
+            }
+            Long next = jdbcTemplate.queryForObject("SELECT next_value FROM number_sequence "
+                    + "WHERE hospital_id = ? AND sequence_name = ?", Long.class, hospitalId, sequenceName);
+            return next - blockSize;
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        pool.close();
+    }
+}
@@ -0,0 +1,233 @@
+package com.danphe.emr.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared plumbing for the app's Server-Sent Event streams (notifications,
+ * doctor queue). Each {@link Connection} has a bounded outbox drained by a
+ * sender pool, so publishers never block on a client's socket; a client that
+ * falls a full outbox behind is disconnected rather than buffered without
+ * limit, and catches up when it reconnects. Every open connection gets a
+ * heartbeat comment to keep it alive through proxies and to detect dead ones.
+ *
+ * A send blocks while the client's TCP window is full. The pool keeps a few
+ * warm threads and grows past them instead of queueing, so a stalled client
+ * only ever holds its own sender thread, never delivery to other streams; a
+ * connection whose send takes longer than the send timeout is dropped, and
+ * its thread is released when the container's write timeout fails the write.
+ */
+@Service
+public class SseConnections implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(SseConnections.class);
+
+    private final Set<Connection> open = ConcurrentHashMap.newKeySet();
+    private final ExecutorService sender;
+    private final ScheduledExecutorService heartbeat;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> dropped = new ConcurrentHashMap<>();
+
+    private final long sendTimeoutNanos;
+
+    public SseConnections(ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${app.sse.heartbeat:25s}") Duration heartbeatInterval,
+            @Value("${app.sse.sender-threads:4}") int senderThreads,
+            @Value("${app.sse.send-timeout:10s}") Duration sendTimeout) {
+        this.meterRegistry = meterRegistry.getIfAvailable();
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+
+        AtomicInteger threadNo = new AtomicInteger();
+        // senderThreads stay warm; a drain that finds them all busy gets a new thread (at most one
+        // per draining connection), which retires after a minute idle
+        this.sender = new ThreadPoolExecutor(senderThreads, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+                    Thread t = new Thread(r, "sse-sender-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sse-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        this.heartbeat.scheduleWithFixedDelay(() -> open.forEach(c -> c.offer(SseEmitter.event().comment("heartbeat"))),
+                heartbeatInterval.toMillis(), heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+        long checkMillis = Math.max(100, sendTimeout.toMillis() / 2);
+        this.heartbeat.scheduleWithFixedDelay(this::dropStalledSends, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // stream names the feature in logs and metrics; onClose runs once however the connection ends
+    public Connection open(String stream, Duration timeout, int bufferSize, Runnable onClose) {
+        Counter droppedCounter = meterRegistry == null ? null : dropped.computeIfAbsent(stream, this::registerMeters);
+        Connection connection = new Connection(stream, timeout, bufferSize, onClose, droppedCounter);
+        open.add(connection);
+        return connection;
+    }
+
+    // Publishers push only what was committed: inside a transaction, action runs after commit
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    void dropStalledSends() {
+        long now = System.nanoTime();
+        for (Connection c : open) {
+            long since = c.sendingSince;
+            if (since != 0 && now - since > sendTimeoutNanos) {
+                logger.info("Closing {} stream: a send has been blocked for over {}ms", c.stream,
+                        TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+                c.drop();
+            }
+        }
+    }
+
+    private Counter registerMeters(String stream) {
+        Gauge.builder("sse.connections", open, s -> s.stream().filter(c -> c.stream.equals(stream)).count())
+                .tag("stream", stream)
+                .description("Open Server-Sent Event connections")
+                .register(meterRegistry);
+        return Counter.builder("sse.dropped").tag("stream", stream)
+                .description("Connections closed because the client fell a full buffer behind or stopped reading")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void destroy() {
+        heartbeat.shutdownNow();
+        open.forEach(Connection::close);
+        sender.shutdownNow();
+    }
+
+    public final class Connection {
+
+        private final String stream;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> outbox;
+        private final Runnable onClose;
+        private final Counter droppedCounter;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        // System.nanoTime() when the send in progress started, 0 when none is
+        private volatile long sendingSince;
+
+        private Connection(String stream, Duration timeout, int bufferSize, Runnable onClose, Counter droppedCounter) {
+            this.stream = stream;
+            this.emitter = new SseEmitter(timeout.toMillis());
+            this.outbox = new ArrayBlockingQueue<>(bufferSize);
+            this.onClose = onClose;
+            this.droppedCounter = droppedCounter;
+            emitter.onCompletion(this::closed);
+            emitter.onTimeout(this::closed);
+            emitter.onError(e -> closed());
+        }
+
+        public SseEmitter emitter() {
+            return emitter;
+        }
+
+        // Event builders are single-use: pass each connection its own
+        public void offer(SseEmitter.SseEventBuilder event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!outbox.offer(event)) {
+                logger.info("Closing {} stream: client is {} events behind", stream, outbox.size());
+                drop();
+                return;
+            }
+            scheduleDrain();
+        }
+
+        // Counted as dropped. The emitter is completed by the drain, after any send blocked in it
+        // returns: its methods share one lock, so completing here could block the caller too
+        private void drop() {
+            if (droppedCounter != null && !closed.get()) {
+                droppedCounter.increment();
+            }
+            closed();
+            outbox.clear();
+            scheduleDrain();
+        }
+
+        public void close() {
+            closed();
+            outbox.clear();
+            if (completed.compareAndSet(false, true)) {
+                emitter.complete();
+            }
+        }
+
+        private void closed() {
+            if (closed.compareAndSet(false, true)) {
+                open.remove(this);
+                onClose.run();
+            }
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        // One drain per connection at a time, so events keep their order
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed.get() && (event = outbox.poll()) != null) {
+                    sendingSince = System.nanoTime();
+                    try {
+                        emitter.send(event);
+                    } finally {
+                        sendingSince = 0;
+                    }
+                }
+                if (closed.get() && completed.compareAndSet(false, true)) {
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client went away; the container completes the emitter
+                completed.set(true);
+                closed();
+            } finally {
+                draining.set(false);
+            }
+            if (closed.get() ? !completed.get() : !outbox.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+    }
+}
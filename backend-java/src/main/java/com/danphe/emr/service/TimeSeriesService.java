@@ -0,0 +1,165 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.RevenueRollup;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+/**
+ * Bucketed counts/sums for dashboard charts.
+ *
+ * Each metric is one GROUP BY query over an indexed date column, whatever the
+ * range or granularity; empty buckets are filled in here so charts always get
+ * a continuous series.
+ */
+@Service
+public class TimeSeriesService {
+
+    // Keeps gap filling bounded (e.g. ~3 years of days)
+    private static final int MAX_BUCKETS = 1100;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    public enum Granularity {
+        DAY, WEEK, MONTH;
+
+        // SQL expression mapping a date/datetime column to the first day of its bucket
+        String bucketSql(String column) {
+            return switch (this) {
+                case DAY -> "DATE(" + column + ")";
+                case WEEK -> "DATE_SUB(DATE(" + column + "), INTERVAL WEEKDAY(" + column + ") DAY)";
+                case MONTH -> "DATE_SUB(DATE(" + column + "), INTERVAL DAYOFMONTH(" + column + ") - 1 DAY)";
+            };
+        }
+
+        LocalDate align(LocalDate date) {
+            return switch (this) {
+                case DAY -> date;
+                case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH -> date.withDayOfMonth(1);
+            };
+        }
+
+        // Whole buckets from an aligned start to a day, for the MAX_BUCKETS guard
+        long bucketsBetween(LocalDate first, LocalDate to) {
+            return switch (this) {
+                case DAY -> ChronoUnit.DAYS.between(first, to);
+                case WEEK -> ChronoUnit.WEEKS.between(first, to);
+                case MONTH -> ChronoUnit.MONTHS.between(first, to);
+            };
+        }
+
+        LocalDate next(LocalDate bucket) {
+            return switch (this) {
+                case DAY -> bucket.plusDays(1);
+                case WEEK -> bucket.plusWeeks(1);
+                case MONTH -> bucket.plusMonths(1);
+            };
+        }
+
+        public static Granularity parse(String value) {
+            return value == null ? DAY : valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    public enum Metric {
+        PATIENTS("patient", "created_on", "COUNT(*)", ""),
+        APPOINTMENTS("appointment", "appointment_date", "COUNT(*)", ""),
+        ADMISSIONS("admission", "admission_date", "COUNT(*)", ""),
+        REVENUE("revenue_rollup", "rollup_date", "SUM(amount)",
+                " AND category = '" + RevenueRollup.ALL_CATEGORIES + "'");
+
+        private final String table;
+        private final String column;
+        private final String aggregate;
+        private final String filter;
+
+        Metric(String table, String column, String aggregate, String filter) {
+            this.table = table;
+            this.column = column;
+            this.aggregate = aggregate;
+            this.filter = filter;
+        }
+
+        boolean isSum() {
+            return aggregate.startsWith("SUM");
+        }
+
+        public String key() {
+            return name().toLowerCase();
+        }
+
+        public static Metric parse(String value) {
+            return valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    /**
+     * Gap-filled series for one metric; keys are bucket start dates in order.
+     * {@code from} and {@code to} are inclusive calendar days.
+     */
+    public LinkedHashMap<LocalDate, Number> series(Integer hospitalId, Metric metric, LocalDate from, LocalDate to,
+            Granularity granularity) {
+        LocalDate first = granularity.align(from);
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Range end is before its start");
+        }
+        if (granularity.bucketsBetween(first, to) > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Range too large for " + granularity.name().toLowerCase()
+                    + " granularity");
+        }
+
+        String bucket = granularity.bucketSql(metric.column);
+        String sql = "SELECT " + bucket + " AS bucket, " + metric.aggregate + " AS value FROM " + metric.table
+                + " WHERE hospital_id = :hospitalId AND " + metric.column + " >= :from AND " + metric.column
+                + " < :toExclusive" + metric.filter + " GROUP BY " + bucket;
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("hospitalId", hospitalId)
+                .addValue("from", Date.valueOf(from))
+                .addValue("toExclusive", Date.valueOf(to.plusDays(1)));
+
+        Map<LocalDate, Number> found = new HashMap<>();
+        jdbc.query(sql, params, rs -> {
+            found.put(rs.getDate("bucket").toLocalDate(), (Number) rs.getObject("value"));
+        });
+
+        LinkedHashMap<LocalDate, Number> result = new LinkedHashMap<>();
+        for (LocalDate b = first; !b.isAfter(to); b = granularity.next(b)) {
+            Number v = found.get(b);
+            if (metric.isSum()) {
+                result.put(b, v != null ? v.doubleValue() : 0.0);
+            } else {
+                result.put(b, v != null ? v.longValue() : 0L);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Several metrics over the same buckets, as chart rows:
+     * [{date, <metric>: value, ...}, ...].
+     */
+    public List<Map<String, Object>> rows(Integer hospitalId, Collection<Metric> metrics, LocalDate from, LocalDate to,
+            Granularity granularity) {
+        Map<LocalDate, Map<String, Object>> rows = new LinkedHashMap<>();
+        for (Metric metric : metrics) {
+            series(hospitalId, metric, from, to, granularity).forEach((bucket, value) -> rows
+                    .computeIfAbsent(bucket, b -> {
+                        Map<String, Object> row = new HashMap<>();
+                        row.put("date", b.toString());
+                        return row;
+                    })
+                    .put(metric.key(), value));
+        }
+        return new ArrayList<>(rows.values());
+    }
+}
@@ -0,0 +1,187 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.Notification;
+import com.danphe.emr.model.UnreadCounter;
+import com.danphe.emr.repository.NotificationReceiptRepository;
+import com.danphe.emr.repository.NotificationRepository;
+import com.danphe.emr.repository.UnreadCounterRepository;
+import com.danphe.emr.security.UserDetailsImpl;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Read state and unread badges for notifications.
+ *
+ * Direct notifications keep their own isRead flag; role broadcasts are one
+ * shared row, so each user's read mark is a notification_receipt. Broadcasts
+ * whose shared isRead was set before receipts existed count as read for
+ * everyone. Every user's
+ * unread total lives in an unread_counter row that create/read/read-all adjust
+ * with atomic UPDATEs, fronted by a short-lived in-memory cache, so the badge
+ * never counts over the notification table. A counter row is built by counting
+ * once, the first time a user (or a user whose role changed) asks for it, while
+ * holding the row's lock so concurrent adjustments are neither lost nor counted
+ * twice.
+ */
+@Service
+public class UnreadCounterService {
+
+    @Autowired
+    private UnreadCounterRepository counterRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private NotificationReceiptRepository receiptRepository;
+
+    @Autowired
+    private BulkMutationService bulkMutationService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private record Key(Integer hospitalId, Integer userId) {
+    }
+
+    private record Cached(String role, long unread) {
+    }
+
+    private final Cache<Key, Cached> cache;
+
+    // The TTL bounds how long a change made by another instance can go unseen
+    public UnreadCounterService(@Value("${app.notifications.unread-cache.max-size:10000}") long maxSize,
+            @Value("${app.notifications.unread-cache.ttl:30s}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public static boolean isBroadcast(Notification n) {
+        return n.getTargetRole() != null;
+    }
+
+    // Not transactional itself: build() must start its own transaction (see there)
+    public long unreadCount(Integer hospitalId, Integer userId, String role) {
+        Key key = new Key(hospitalId, userId);
+        Cached cached = cache.getIfPresent(key);
+        if (cached != null && Objects.equals(cached.role(), role)) {
+            return cached.unread();
+        }
+        Optional<UnreadCounter> row = counterRepository.findByHospitalIdAndUserId(hospitalId, userId);
+        long unread = row.isPresent() && Objects.equals(row.get().getRole(), role) ? row.get().getUnread()
+                : build(hospitalId, userId, role);
+        cache.put(key, new Cached(role, unread));
+        return unread;
+    }
+
+    // Counts with the counter row locked. A create or read committed before the lock is in the
+    // count (the transaction's first plain read comes after the lock); one that reaches the row
+    // later waits for this transaction and then applies its delta on top of the count.
+    private long build(Integer hospitalId, Integer userId, String role) {
+        return transactionTemplate.execute(status -> {
+            boolean created = counterRepository.createIfAbsent(hospitalId, userId, role) > 0;
+            UnreadCounter locked = counterRepository.lockByHospitalIdAndUserId(hospitalId, userId).orElseThrow();
+            if (!created && Objects.equals(locked.getRole(), role)) {
+                // Built meanwhile by another request or instance
+                return locked.getUnread();
+            }
+            long unread = notificationRepository.countByHospitalIdAndTargetUserIdAndTargetRoleIsNullAndIsRead(
+                    hospitalId, userId, false) + notificationRepository.countUnreadBroadcasts(hospitalId, role, userId);
+            counterRepository.reset(hospitalId, userId, role, unread);
+            return unread;
+        });
+    }
+
+    // Call in the transaction that saved the notification
+    public void created(Notification n) {
+        if (isBroadcast(n)) {
+            counterRepository.addForRole(n.getHospitalId(), n.getTargetRole(), 1);
+            SseConnections.afterCommit(() -> evictRole(n.getHospitalId(), n.getTargetRole()));
+        } else if (n.getTargetUserId() != null) {
+            counterRepository.addForUser(n.getHospitalId(), n.getTargetUserId(), 1);
+            SseConnections.afterCommit(() -> evict(n.getHospitalId(), n.getTargetUserId()));
+        }
+    }
+
+    // True when this call changed the user's unread state
+    @Transactional
+    public boolean markRead(Notification n, UserDetailsImpl user) {
+        LocalDateTime now = LocalDateTime.now();
+        boolean changed;
+        if (isBroadcast(n)) {
+            changed = !Boolean.TRUE.equals(n.getIsRead())
+                    && receiptRepository.markRead(n.getNotificationId(), n.getHospitalId(), user.getId(), now) > 0;
+        } else {
+            changed = !Boolean.TRUE.equals(n.getIsRead());
+            if (changed) {
+                n.setIsRead(true);
+                n.setReadOn(now);
+                notificationRepository.save(n);
+            }
+        }
+        if (changed) {
+            counterRepository.addForUser(n.getHospitalId(), user.getId(), -1);
+            SseConnections.afterCommit(() -> evict(n.getHospitalId(), user.getId()));
+        }
+        return changed;
+    }
+
+    // Marks the user's direct notifications and their role's broadcasts read, in chunks that each
+    // move the counter by what they marked; returns how many changed
+    public long markAllRead(UserDetailsImpl user) {
+        Integer hospitalId = user.getHospitalId();
+        Integer userId = user.getId();
+        LocalDateTime now = LocalDateTime.now();
+        long changed = bulkMutationService.inChunks("Read all (direct)", limit -> {
+            int n = notificationRepository.markReadChunk(hospitalId, userId, now, limit);
+            counterRepository.addForUser(hospitalId, userId, -n);
+            return n;
+        });
+        if (user.getRole() != null) {
+            changed += bulkMutationService.inChunks("Read all (broadcast)", limit -> {
+                int n = receiptRepository.markReadChunk(hospitalId, userId, user.getRole(), now, limit);
+                counterRepository.addForUser(hospitalId, userId, -n);
+                return n;
+            });
+        }
+        evict(hospitalId, userId);
+        return changed;
+    }
+
+    // Sets isRead on role broadcasts to this user's own read state (for display only); legacy
+    // broadcasts already read on the shared row stay read
+    public void applyReadState(List<Notification> notifications, UserDetailsImpl user) {
+        List<Long> broadcastIds = notifications.stream()
+                .filter(n -> isBroadcast(n) && !Boolean.TRUE.equals(n.getIsRead()))
+                .map(Notification::getNotificationId).toList();
+        if (broadcastIds.isEmpty()) {
+            return;
+        }
+        Set<Long> read = new HashSet<>(receiptRepository.findReadIds(user.getId(), broadcastIds));
+        for (Notification n : notifications) {
+            if (isBroadcast(n) && read.contains(n.getNotificationId())) {
+                n.setIsRead(true);
+            }
+        }
+    }
+
+    private void evict(Integer hospitalId, Integer userId) {
+        cache.invalidate(new Key(hospitalId, userId));
+    }
+
+    private void evictRole(Integer hospitalId, String role) {
+        cache.asMap().entrySet().removeIf(e -> e.getKey().hospitalId().equals(hospitalId)
+                && Objects.equals(e.getValue().role(), role));
+    }
+}
@@ -0,0 +1,408 @@
+-- Baseline schema: every table as the JPA entities defined it under ddl-auto=update.
+-- IF NOT EXISTS lets databases created by ddl-auto adopt this history unchanged;
+-- indexes and unique keys follow in V2.
+
+create table if not exists admission (
+    patient_admission_id integer not null auto_increment,
+    admission_date datetime(6) not null,
+    admission_notes varchar(2000),
+    admission_orders varchar(2000),
+    admission_status varchar(255),
+    admitting_doctor_id integer,
+    bed_id integer,
+    bill_status_on_discharge varchar(255),
+    cancelled_by integer,
+    cancelled_on datetime(6),
+    cancelled_remark varchar(255),
+    care_of_person_name varchar(255),
+    care_of_person_phone_no varchar(255),
+    care_of_person_relation varchar(255),
+    created_by integer,
+    created_on datetime(6),
+    discharge_date datetime(6),
+    discharge_remarks varchar(255),
+    discharged_by integer,
+    hospital_id integer,
+    modified_by integer,
+    modified_on datetime(6),
+    patient_id integer,
+    patient_visit_id integer,
+    primary key (patient_admission_id)
+) engine=InnoDB;
+
+create table if not exists appointment (
+    appointment_id integer not null auto_increment,
+    age varchar(255),
+    appointment_date datetime(6) not null,
+    appointment_status varchar(255),
+    appointment_type varchar(255),
+    cancelled_by integer,
+    cancelled_on datetime(6),
+    cancelled_remarks varchar(255),
+    contact_number varchar(255),
+    created_by integer,
+    created_on datetime(6),
+    department_id integer,
+    first_name varchar(255),
+    gender varchar(255),
+    hospital_id integer,
+    last_name varchar(255),
+    middle_name varchar(255),
+    modified_by integer,
+    modified_on datetime(6),
+    patient_code varchar(255),
+    patient_id integer,
+    performer_id integer,
+    performer_name varchar(255),
+    reason varchar(255),
+    primary key (appointment_id)
+) engine=InnoDB;
+
+create table if not exists attendance (
+    attendance_id integer not null auto_increment,
+    employee_id integer,
+    hospital_id integer,
+    location varchar(255),
+    remarks varchar(255),
+    timestamp datetime(6),
+    type varchar(255),
+    primary key (attendance_id)
+) engine=InnoDB;
+
+create table if not exists audit_log (
+    log_id bigint not null auto_increment,
+    action varchar(255),
+    change_data TEXT,
+    description TEXT,
+    entity_id varchar(255),
+    entity_name varchar(255),
+    hospital_id integer,
+    ip_address varchar(255),
+    module varchar(255),
+    severity varchar(255),
+    timestamp datetime(6),
+    user_agent varchar(255),
+    user_id integer,
+    user_name varchar(255),
+    user_role varchar(255),
+    primary key (log_id)
+) engine=InnoDB;
+
+create table if not exists bed (
+    bed_id integer not null auto_increment,
+    bed_number varchar(255),
+    floor varchar(255),
+    hospital_id integer,
+    is_active bit,
+    price_per_day float(53),
+    status varchar(255),
+    ward varchar(255),
+    primary key (bed_id)
+) engine=InnoDB;
+
+create table if not exists bill_item (
+    item_id bigint not null auto_increment,
+    auto_added bit,
+    bill_id integer,
+    category varchar(255),
+    final_bill_id integer,
+    hospital_id integer not null,
+    is_custom bit,
+    item_name varchar(255),
+    line_no integer,
+    quantity float(53),
+    rate_type varchar(255),
+    service_id integer,
+    total float(53),
+    unit_price float(53),
+    primary key (item_id)
+) engine=InnoDB;
+
+create table if not exists billing (
+    bill_id integer not null auto_increment,
+    bill_items TEXT,
+    bill_number varchar(255),
+    bill_type varchar(255) not null,
+    created_at datetime(6),
+    created_by integer,
+    discount_amount float(53),
+    discount_percent float(53),
+    grand_total float(53),
+    hospital_id integer not null,
+    modified_at datetime(6),
+    paid_amount float(53),
+    patient_id integer not null,
+    payment_mode varchar(255),
+    payment_status varchar(255),
+    subtotal float(53),
+    tax_amount float(53),
+    tax_percent float(53),
+    primary key (bill_id)
+) engine=InnoDB;
+
+create table if not exists doctor (
+    doctor_id integer not null auto_increment,
+    department varchar(255),
+    email varchar(255),
+    employee_id integer,
+    end_time varchar(255),
+    full_name varchar(255),
+    hospital_id integer,
+    is_active bit,
+    phone_number varchar(255),
+    specialization varchar(255),
+    start_time varchar(255),
+    primary key (doctor_id)
+) engine=InnoDB;
+
+create table if not exists employee (
+    employee_id integer not null auto_increment,
+    access_level varchar(255),
+    admin_notes varchar(1000),
+    assigned_modules varchar(255),
+    assigned_ward varchar(255),
+    created_on datetime(6),
+    department varchar(255),
+    doctor_id integer,
+    duty_days varchar(255),
+    email varchar(255),
+    first_name varchar(255),
+    hospital_id integer,
+    is_active bit,
+    last_name varchar(255),
+    phone_number varchar(255),
+    role varchar(255),
+    shift_timing varchar(255),
+    status varchar(255),
+    user_name varchar(255),
+    primary key (employee_id)
+) engine=InnoDB;
+
+create table if not exists employee_log (
+    log_id integer not null auto_increment,
+    action varchar(255),
+    details varchar(2000),
+    employee_id integer,
+    employee_name varchar(255),
+    hospital_id integer,
+    performed_by varchar(255),
+    timestamp datetime(6),
+    primary key (log_id)
+) engine=InnoDB;
+
+create table if not exists final_bill (
+    final_bill_id integer not null auto_increment,
+    bill_items TEXT,
+    bill_number varchar(255),
+    created_at datetime(6),
+    created_by integer,
+    discount_amount float(53),
+    discount_percent float(53),
+    grand_total float(53),
+    hospital_id integer not null,
+    paid_amount float(53),
+    patient_id integer not null,
+    payment_mode varchar(255),
+    payment_status varchar(255),
+    source_bill_ids varchar(255),
+    subtotal float(53),
+    tax_amount float(53),
+    tax_percent float(53),
+    primary key (final_bill_id)
+) engine=InnoDB;
+
+create table if not exists follow_up (
+    follow_up_id integer not null auto_increment,
+    appointment_id integer,
+    care_instructions varchar(2000),
+    created_by integer,
+    created_on datetime(6),
+    doctor_id integer,
+    follow_up_date date,
+    hospital_id integer,
+    modified_on datetime(6),
+    patient_id integer,
+    prescription_id integer,
+    priority varchar(255),
+    reason varchar(500),
+    status varchar(255),
+    treatment_plan TEXT,
+    primary key (follow_up_id)
+) engine=InnoDB;
+
+create table if not exists hospital (
+    hospital_id integer not null auto_increment,
+    address varchar(255),
+    contact_number varchar(255),
+    created_on datetime(6),
+    email varchar(255),
+    is_active bit,
+    logo_path varchar(255),
+    name varchar(255) not null,
+    subscription_expiry datetime(6),
+    primary key (hospital_id)
+) engine=InnoDB;
+
+create table if not exists hospital_settings (
+    settings_id integer not null auto_increment,
+    address varchar(255),
+    created_on datetime(6),
+    email varchar(255),
+    footer_text varchar(2000),
+    gst_number varchar(255),
+    hospital_code varchar(255),
+    hospital_id integer not null,
+    hospital_name varchar(255),
+    last_bill_number integer,
+    logo_path varchar(255),
+    modified_on datetime(6),
+    phone_number varchar(255),
+    registration_number varchar(255),
+    signature_image_path varchar(255),
+    primary key (settings_id)
+) engine=InnoDB;
+
+create table if not exists medical_record (
+    record_id integer not null auto_increment,
+    allergies varchar(1000),
+    appointment_id integer,
+    attachment_name varchar(255),
+    attachment_url varchar(1000),
+    created_by integer,
+    created_on datetime(6),
+    description TEXT,
+    doctor_id integer,
+    findings TEXT,
+    hospital_id integer,
+    lab_result varchar(255),
+    lab_status varchar(255),
+    lab_test_name varchar(255),
+    modified_on datetime(6),
+    patient_id integer,
+    record_type varchar(255),
+    risk_flags varchar(1000),
+    title varchar(500),
+    primary key (record_id)
+) engine=InnoDB;
+
+create table if not exists notification (
+    notification_id bigint not null auto_increment,
+    created_on datetime(6),
+    hospital_id integer,
+    is_read bit,
+    message varchar(2000),
+    priority varchar(255),
+    read_on datetime(6),
+    related_entity_id varchar(255),
+    related_module varchar(255),
+    target_role varchar(255),
+    target_user_id integer,
+    title varchar(255),
+    type varchar(255),
+    primary key (notification_id)
+) engine=InnoDB;
+
+create table if not exists number_sequence (
+    sequence_id bigint not null auto_increment,
+    hospital_id integer not null,
+    next_value bigint not null,
+    sequence_name varchar(50) not null,
+    primary key (sequence_id)
+) engine=InnoDB;
+
+create table if not exists patient (
+    patient_id integer not null auto_increment,
+    address varchar(255),
+    age varchar(255),
+    blood_group varchar(255),
+    country_id varchar(255),
+    country_sub_division_id varchar(255),
+    created_by integer,
+    created_on datetime(6),
+    date_of_birth date,
+    email varchar(255),
+    empi varchar(255),
+    first_name varchar(255),
+    gender varchar(255),
+    hospital_id integer,
+    is_active bit,
+    is_dob_verified bit,
+    last_name varchar(255),
+    marital_status varchar(255),
+    middle_name varchar(255),
+    modified_by integer,
+    modified_on datetime(6),
+    pan_number varchar(255),
+    patient_code varchar(50),
+    patient_no integer not null,
+    phone_number varchar(255),
+    primary key (patient_id)
+) engine=InnoDB;
+
+create table if not exists prescription (
+    prescription_id integer not null auto_increment,
+    allergy_warnings varchar(1000),
+    appointment_id integer,
+    clinical_notes varchar(2000),
+    created_by integer,
+    created_on datetime(6),
+    diagnosis varchar(2000),
+    doctor_id integer,
+    follow_up_date date,
+    follow_up_notes varchar(500),
+    hospital_id integer,
+    medicines TEXT,
+    modified_by integer,
+    modified_on datetime(6),
+    patient_height float(53),
+    patient_id integer,
+    patient_weight float(53),
+    status varchar(255),
+    template_name varchar(255),
+    primary key (prescription_id)
+) engine=InnoDB;
+
+create table if not exists rbac_user (
+    user_id integer not null auto_increment,
+    created_by integer,
+    created_on datetime(6),
+    email varchar(255),
+    employee_id integer,
+    hospital_id integer,
+    is_active bit,
+    landing_page_route_id integer,
+    modified_by integer,
+    modified_on datetime(6),
+    needs_password_update bit,
+    password varchar(255),
+    user_name varchar(255) not null,
+    primary key (user_id)
+) engine=InnoDB;
+
+create table if not exists revenue_rollup (
+    rollup_id bigint not null auto_increment,
+    amount float(53) not null,
+    bill_count bigint not null,
+    bill_type varchar(50) not null,
+    category varchar(100) not null,
+    hospital_id integer not null,
+    payment_status varchar(50) not null,
+    rollup_date date not null,
+    primary key (rollup_id)
+) engine=InnoDB;
+
+create table if not exists service_catalog (
+    service_id integer not null auto_increment,
+    category varchar(255) not null,
+    created_on datetime(6),
+    department varchar(255),
+    description varchar(500),
+    hospital_id integer not null,
+    is_active bit,
+    modified_on datetime(6),
+    rate float(53) not null,
+    rate_type varchar(255),
+    service_name varchar(255) not null,
+    sub_category varchar(255),
+    primary key (service_id)
+) engine=InnoDB;
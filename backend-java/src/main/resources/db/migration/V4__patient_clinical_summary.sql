@@ -0,0 +1,20 @@
+-- One row per patient behind the doctor's profile header (allergies, risk flags,
+-- last visit and counts). Rows are built from the patient's records on first use
+-- and then kept current by ClinicalSummaryService, so no backfill is needed here.
+
+create table patient_clinical_summary (
+    summary_id bigint not null auto_increment,
+    hospital_id integer not null,
+    patient_id integer not null,
+    allergies text,
+    risk_flags text,
+    last_visit_on datetime(6),
+    visit_count integer not null,
+    admission_count integer not null,
+    open_follow_ups integer not null,
+    pending_labs integer not null,
+    built_on datetime(6),
+    updated_on datetime(6),
+    primary key (summary_id),
+    constraint uk_clinical_summary_patient unique (hospital_id, patient_id)
+) engine=InnoDB;
@@ -0,0 +1,27 @@
+-- Per-user read receipts for role-targeted notifications, and maintained unread
+-- counters per user. Counter rows are built on a user's first unread lookup, so
+-- neither table needs a backfill.
+
+create table notification_receipt (
+    receipt_id bigint not null auto_increment,
+    notification_id bigint not null,
+    hospital_id integer not null,
+    user_id integer not null,
+    read_on datetime(6),
+    primary key (receipt_id),
+    constraint uk_notification_receipt unique (notification_id, user_id)
+) engine=InnoDB;
+
+create table unread_counter (
+    counter_id bigint not null auto_increment,
+    hospital_id integer not null,
+    user_id integer not null,
+    role varchar(255),
+    unread bigint not null,
+    primary key (counter_id),
+    constraint uk_unread_counter unique (hospital_id, user_id),
+    index idx_unread_counter_role (hospital_id, role)
+) engine=InnoDB;
+
+-- Unread counts for user-targeted notifications when a counter is built
+create index idx_notification_user_unread on notification (hospital_id, target_user_id, is_read);
@@ -0,0 +1,8 @@
+-- The doctor queue's sort key, stored with the appointment so GET /Queue is a
+-- single query ordered in the database: 0 for emergencies, 1 otherwise, then by
+-- appointment time. The day's rows are found through idx_appointment_performer
+-- (or idx_appointment_date for hospital-wide screens) and sorted there.
+
+alter table appointment add column queue_rank integer not null default 1;
+
+update appointment set queue_rank = 0 where lower(appointment_type) like '%emergency%';
@@ -0,0 +1,56 @@
+package com.danphe.emr.config;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+
+class DataSourceProxyConfigTest {
+
+    private final DataSourceProxyConfig.RequestStatsListener listener = new DataSourceProxyConfig.RequestStatsListener();
+
+    @AfterEach
+    void tearDown() {
+        StatementDeadline.set(null);
+    }
+
+    private static ExecutionInfo executionOf(Statement statement) {
+        ExecutionInfo info = new ExecutionInfo();
+        info.setStatement(statement);
+        return info;
+    }
+
+    @Test
+    void statementsGetTheRemainingTimeAsQueryTimeout() throws Exception {
+        Statement statement = mock(Statement.class);
+        StatementDeadline.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(2500));
+
+        listener.beforeQuery(executionOf(statement), List.of());
+
+        verify(statement).setQueryTimeout(3);
+    }
+
+    @Test
+    void aPassedDeadlineStillLeavesOneSecond() throws Exception {
+        Statement statement = mock(Statement.class);
+        StatementDeadline.set(System.nanoTime() - TimeUnit.SECONDS.toNanos(5));
+
+        listener.beforeQuery(executionOf(statement), List.of());
+
+        verify(statement).setQueryTimeout(1);
+    }
+
+    @Test
+    void statementsWithoutADeadlineAreLeftAlone() throws Exception {
+        Statement statement = mock(Statement.class);
+
+        listener.beforeQuery(executionOf(statement), List.of());
+
+        verifyNoInteractions(statement);
+    }
+}
@@ -0,0 +1,148 @@
+package com.danphe.emr.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ReplicaRouterTest {
+
+    private final List<ReplicaRouter> routers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        routers.forEach(ReplicaRouter::destroy);
+    }
+
+    @Test
+    void writesGoToThePrimary() throws SQLException {
+        ReplicaRouter router = router(Map.of("replica-1", replicaWithLag(0L)));
+
+        assertEquals(ReplicaRouter.PRIMARY, router.route());
+    }
+
+    @Test
+    void readOnlyWorkRotatesOverHealthyReplicas() throws SQLException {
+        Map<String, HikariDataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", replicaWithLag(0L));
+        replicas.put("replica-2", replicaWithLag(2L));
+        ReplicaRouter router = router(replicas);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertEquals(List.of("replica-1", "replica-2", "replica-1"),
+                List.of(router.route(), router.route(), router.route()));
+    }
+
+    @Test
+    void laggingStoppedOrUnreplicatedReplicasAreSkipped() throws SQLException {
+        Map<String, HikariDataSource> replicas = new LinkedHashMap<>();
+        replicas.put("lagging", replicaWithLag(60L));
+        replicas.put("stopped", replicaWithLag(null));
+        replicas.put("no-status", replicaWithoutStatus());
+        ReplicaRouter router = router(replicas);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertEquals(ReplicaRouter.PRIMARY, router.route());
+    }
+
+    @Test
+    void unreachableReplicaIsSkipped() throws SQLException {
+        HikariDataSource down = mock(HikariDataSource.class);
+        when(down.getConnection()).thenThrow(new SQLException("Connection refused"));
+        Map<String, HikariDataSource> replicas = new LinkedHashMap<>();
+        replicas.put("down", down);
+        replicas.put("up", replicaWithLag(1L));
+        ReplicaRouter router = router(replicas);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertEquals("up", router.route());
+        assertEquals("up", router.route());
+    }
+
+    @Test
+    void lagIsReadFromTheStatusRow() throws SQLException {
+        assertEquals(7L, ReplicaRouter.lagSeconds(statement(status(7L)), "SHOW REPLICA STATUS",
+                "Seconds_Behind_Source"));
+    }
+
+    @Test
+    void nullLagMeansReplicationStopped() throws SQLException {
+        assertNull(ReplicaRouter.lagSeconds(statement(status(null)), "SHOW REPLICA STATUS",
+                "Seconds_Behind_Source"));
+    }
+
+    @Test
+    void missingStatusRowIsUnknownNotCurrent() throws SQLException {
+        assertNull(ReplicaRouter.lagSeconds(statement(noStatus()), "SHOW REPLICA STATUS",
+                "Seconds_Behind_Source"));
+    }
+
+    @Test
+    void olderServersFallBackToSlaveStatus() throws SQLException {
+        Statement st = mock(Statement.class);
+        when(st.executeQuery("SHOW REPLICA STATUS")).thenThrow(new SQLException("syntax error"));
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.next()).thenReturn(true);
+        when(rs.getLong("Seconds_Behind_Master")).thenReturn(4L);
+        when(st.executeQuery("SHOW SLAVE STATUS")).thenReturn(rs);
+
+        assertEquals(4L, ReplicaRouter.lagSeconds(dataSource(st)));
+    }
+
+    private ReplicaRouter router(Map<String, HikariDataSource> replicas) {
+        ReplicaRouter router = new ReplicaRouter(mock(HikariDataSource.class), replicas, Duration.ofSeconds(5),
+                Duration.ofHours(1));
+        routers.add(router);
+        return router;
+    }
+
+    private static HikariDataSource replicaWithLag(Long lag) throws SQLException {
+        return dataSource(statement(status(lag)));
+    }
+
+    private static HikariDataSource replicaWithoutStatus() throws SQLException {
+        return dataSource(statement(noStatus()));
+    }
+
+    private static HikariDataSource dataSource(Statement st) throws SQLException {
+        Connection con = mock(Connection.class);
+        when(con.createStatement()).thenReturn(st);
+        HikariDataSource ds = mock(HikariDataSource.class);
+        when(ds.getConnection()).thenReturn(con);
+        return ds;
+    }
+
+    private static Statement statement(ResultSet rs) throws SQLException {
+        Statement st = mock(Statement.class);
+        when(st.executeQuery(anyString())).thenReturn(rs);
+        return st;
+    }
+
+    private static ResultSet status(Long lag) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.next()).thenReturn(true);
+        when(rs.getLong("Seconds_Behind_Source")).thenReturn(lag != null ? lag : 0L);
+        when(rs.wasNull()).thenReturn(lag == null);
+        return rs;
+    }
+
+    private static ResultSet noStatus() throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.next()).thenReturn(false);
+        return rs;
+    }
+}
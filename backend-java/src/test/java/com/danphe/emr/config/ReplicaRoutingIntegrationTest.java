@@ -0,0 +1,118 @@
+package com.danphe.emr.config;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The read/write split as the application wires it: JpaTransactionManager over
+ * the datasource-proxy wrapper, over the LazyConnectionDataSourceProxy, over
+ * the routing DataSource, with the primary and one replica as two separate H2
+ * databases that each say which one they are.
+ *
+ * H2 has no SHOW REPLICA STATUS, so the replica is put into rotation directly
+ * (the lag probe is covered by ReplicaRouterTest) and the monitor is kept from
+ * running again during the test.
+ */
+@SpringBootTest(properties = {
+        "app.datasource.replica.urls=" + ReplicaRoutingIntegrationTest.REPLICA_URL,
+        "app.datasource.replica.check-interval=1h"
+})
+@ActiveProfiles("test")
+class ReplicaRoutingIntegrationTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica-routing-test;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ReplicaRouter replicaRouter;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        // Outside a transaction the application DataSource is the primary
+        try (Connection con = dataSource.getConnection()) {
+            mark(con, "primary");
+        }
+        try (Connection con = DriverManager.getConnection(REPLICA_URL, "sa", "")) {
+            mark(con, "replica");
+        }
+        ReflectionTestUtils.setField(replicaRouter, "healthy", List.of("replica-1"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestStats.end();
+    }
+
+    private static void mark(Connection con, String name) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS routing_marker (name VARCHAR(20))");
+            st.execute("DELETE FROM routing_marker");
+            st.execute("INSERT INTO routing_marker VALUES ('" + name + "')");
+        }
+    }
+
+    private String servedBy(boolean readOnly) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(readOnly);
+        return tx.execute(status -> (String) entityManager
+                .createNativeQuery("SELECT name FROM routing_marker").getSingleResult());
+    }
+
+    @Test
+    void applicationDataSourceIsWrappedByTheQueryProxy() {
+        assertTrue(dataSource instanceof ProxyDataSource, dataSource.getClass().getName());
+    }
+
+    @Test
+    void readOnlyTransactionIsServedByTheReplica() {
+        assertEquals("replica", servedBy(true));
+    }
+
+    @Test
+    void readWriteTransactionIsServedByThePrimary() {
+        assertEquals("primary", servedBy(false));
+    }
+
+    @Test
+    void readOnlyWorkFallsBackToThePrimaryWithoutAHealthyReplica() {
+        ReflectionTestUtils.setField(replicaRouter, "healthy", List.of());
+
+        assertEquals("primary", servedBy(true));
+    }
+
+    @Test
+    void replicaStatementsAreStillCountedForTheRequest() {
+        RequestStats stats = RequestStats.start(false);
+
+        servedBy(true);
+
+        assertEquals(1, stats.getQueryCount());
+    }
+}
@@ -0,0 +1,148 @@
+package com.danphe.emr.controller;
+
+import com.danphe.emr.model.DanpheHttpResponse;
+import com.danphe.emr.repository.AuditLogRepository;
+import com.danphe.emr.repository.GroupCount;
+import com.danphe.emr.security.UserDetailsImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AuditLogControllerTest {
+
+    private AuditLogRepository auditLogRepository;
+    private AuditLogController controller;
+
+    @BeforeEach
+    void setUp() {
+        auditLogRepository = mock(AuditLogRepository.class);
+        controller = new AuditLogController();
+        ReflectionTestUtils.setField(controller, "auditLogRepository", auditLogRepository);
+        UserDetailsImpl admin = new UserDetailsImpl(1, null, null, 3, "admin", "secret", "Admin", null, List.of());
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(admin, null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static GroupCount group(String key, long total) {
+        return new GroupCount() {
+            @Override
+            public String getGroupKey() {
+                return key;
+            }
+
+            @Override
+            public Long getTotal() {
+                return total;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> stats(String dateFrom, String dateTo) {
+        DanpheHttpResponse<?> response = (DanpheHttpResponse<?>) controller.getStats(dateFrom, dateTo).getBody();
+        assertEquals("OK", response.getStatus(), response.getErrorMessage());
+        return (Map<String, Object>) response.getResults();
+    }
+
+    // The window the counts were asked for
+    private LocalDateTime[] window() {
+        ArgumentCaptor<LocalDateTime> from = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> to = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(auditLogRepository).countByHospitalIdAndTimestampBetween(eq(3), from.capture(), to.capture());
+        verify(auditLogRepository).countByModule(3, from.getValue(), to.getValue());
+        return new LocalDateTime[] { from.getValue(), to.getValue() };
+    }
+
+    @Test
+    void defaultWindowIsTheLastThirtyDaysUpToNow() {
+        LocalDateTime before = LocalDateTime.now();
+        stats(null, null);
+        LocalDateTime after = LocalDateTime.now();
+
+        LocalDateTime[] window = window();
+        assertFalse(window[1].isBefore(before));
+        assertFalse(window[1].isAfter(after));
+        // Thirty calendar days including today, from midnight
+        assertEquals(window[1].toLocalDate().minusDays(29).atStartOfDay(), window[0]);
+    }
+
+    @Test
+    void givenDatesCoverWholeDays() {
+        stats("2026-03-01", "2026-03-10");
+
+        LocalDateTime[] window = window();
+        assertEquals(LocalDate.of(2026, 3, 1).atStartOfDay(), window[0]);
+        assertEquals(LocalDate.of(2026, 3, 10).atTime(LocalTime.MAX), window[1]);
+    }
+
+    @Test
+    void onlyAnEndDateCountsBackThirtyDaysFromIt() {
+        stats(null, "2026-03-10");
+
+        LocalDateTime[] window = window();
+        assertEquals(LocalDate.of(2026, 2, 9).atStartOfDay(), window[0]);
+        assertEquals(LocalDate.of(2026, 3, 10).atTime(LocalTime.MAX), window[1]);
+    }
+
+    @Test
+    void onlyAStartDateRunsToNow() {
+        LocalDateTime before = LocalDateTime.now();
+        stats("2026-03-01", null);
+
+        LocalDateTime[] window = window();
+        assertEquals(LocalDate.of(2026, 3, 1).atStartOfDay(), window[0]);
+        assertFalse(window[1].isBefore(before));
+    }
+
+    @Test
+    void singleDayWindowIsAllowed() {
+        stats("2026-03-10", "2026-03-10");
+
+        LocalDateTime[] window = window();
+        assertEquals(LocalDate.of(2026, 3, 10).atStartOfDay(), window[0]);
+        assertEquals(LocalDate.of(2026, 3, 10).atTime(LocalTime.MAX), window[1]);
+    }
+
+    @Test
+    void startAfterEndIsRejectedWithoutQuerying() {
+        DanpheHttpResponse<?> response = (DanpheHttpResponse<?>) controller.getStats("2026-03-11", "2026-03-10")
+                .getBody();
+
+        assertEquals("Failed", response.getStatus());
+        verifyNoInteractions(auditLogRepository);
+    }
+
+    @Test
+    void groupsAreReturnedAsMaps() {
+        when(auditLogRepository.countByHospitalIdAndTimestampBetween(eq(3), any(), any())).thenReturn(7L);
+        when(auditLogRepository.countByModule(eq(3), any(), any()))
+                .thenReturn(List.of(group("Billing", 5), group("unknown", 2)));
+        when(auditLogRepository.countBySeverity(eq(3), any(), any())).thenReturn(List.of(group("info", 7)));
+
+        Map<String, Object> stats = stats("2026-03-01", "2026-03-10");
+
+        assertEquals(7L, stats.get("total"));
+        assertEquals(Map.of("Billing", 5L, "unknown", 2L), stats.get("byModule"));
+        assertEquals(Map.of(), stats.get("byAction"));
+        assertEquals(Map.of("info", 7L), stats.get("bySeverity"));
+    }
+}
@@ -0,0 +1,140 @@
+package com.danphe.emr.controller;
+
+import com.danphe.emr.model.FollowUp;
+import com.danphe.emr.model.PageCursor;
+import com.danphe.emr.repository.FollowUpRepository;
+import com.danphe.emr.security.UserDetailsImpl;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * GET /api/DoctorPortal/FollowUps lists dated follow-ups soonest first and then
+ * the undated ones by id, with the cursor carrying over from one to the other.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class FollowUpPagingTest {
+
+    private static final Integer HOSPITAL = 301;
+    private static final LocalDate D = LocalDate.of(2026, 4, 1);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private FollowUpRepository followUpRepository;
+
+    // ids in the order the endpoint should list them
+    private final List<Integer> expected = new ArrayList<>();
+
+    @BeforeAll
+    void seed() {
+        // Saved out of order, so the listing order is not just insertion order
+        Integer undated1 = save(HOSPITAL, null, "scheduled");
+        Integer later = save(HOSPITAL, D.plusDays(1), "scheduled");
+        Integer tieA = save(HOSPITAL, D, "scheduled");
+        Integer undated2 = save(HOSPITAL, null, "completed");
+        Integer tieB = save(HOSPITAL, D, "completed");
+        Integer undated3 = save(HOSPITAL, null, "scheduled");
+        save(HOSPITAL + 1, D, "scheduled");
+        save(HOSPITAL + 1, null, "scheduled");
+        expected.addAll(List.of(tieA, tieB, later, undated1, undated2, undated3));
+    }
+
+    private Integer save(Integer hospitalId, LocalDate date, String status) {
+        FollowUp f = new FollowUp();
+        f.setHospitalId(hospitalId);
+        f.setFollowUpDate(date);
+        f.setStatus(status);
+        return followUpRepository.save(f).getFollowUpId();
+    }
+
+    private JsonNode fetch(MockHttpServletRequestBuilder request) throws Exception {
+        UserDetailsImpl staff = new UserDetailsImpl(1, null, null, HOSPITAL, "staff", "secret", "Admin", null,
+                List.of());
+        String json = mockMvc.perform(request.with(user(staff))).andReturn().getResponse().getContentAsString();
+        JsonNode response = objectMapper.readTree(json);
+        assertEquals("OK", response.path("Status").asText(), json);
+        return response;
+    }
+
+    private static List<Integer> ids(JsonNode response) {
+        List<Integer> ids = new ArrayList<>();
+        response.path("Results").forEach(f -> ids.add(f.path("followUpId").asInt()));
+        return ids;
+    }
+
+    // Every page, following NextCursor until there is none
+    private List<List<Integer>> pageThrough(String status, int size) throws Exception {
+        List<List<Integer>> pages = new ArrayList<>();
+        String cursor = null;
+        do {
+            MockHttpServletRequestBuilder request = get("/api/DoctorPortal/FollowUps").param("size", "" + size);
+            if (status != null) {
+                request.param("status", status);
+            }
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+            JsonNode response = fetch(request);
+            pages.add(ids(response));
+            cursor = response.path("NextCursor").isTextual() ? response.path("NextCursor").asText() : null;
+        } while (cursor != null);
+        return pages;
+    }
+
+    @Test
+    void datedPagesRunOnIntoTheUndatedTail() throws Exception {
+        List<List<Integer>> pages = pageThrough(null, 2);
+
+        // The middle page holds the last dated follow-up and the first undated one
+        assertEquals(List.of(expected.subList(0, 2), expected.subList(2, 4), expected.subList(4, 6)), pages);
+    }
+
+    @Test
+    void pageSizesThatDoNotDivideTheListStillCoverItOnce() throws Exception {
+        List<Integer> all = new ArrayList<>();
+        pageThrough(null, 4).forEach(all::addAll);
+
+        assertEquals(expected, all);
+    }
+
+    @Test
+    void cursorWithAnIdButNoDateStaysInTheUndatedTail() throws Exception {
+        String cursor = PageCursor.ofId(expected.get(3)).encode();
+
+        JsonNode response = fetch(get("/api/DoctorPortal/FollowUps").param("cursor", cursor));
+
+        assertEquals(expected.subList(4, 6), ids(response));
+    }
+
+    @Test
+    void statusFilterAppliesToBothParts() throws Exception {
+        List<Integer> all = new ArrayList<>();
+        pageThrough("scheduled", 1).forEach(all::addAll);
+
+        assertEquals(List.of(expected.get(0), expected.get(2), expected.get(3), expected.get(5)), all);
+    }
+}
@@ -0,0 +1,192 @@
+package com.danphe.emr.controller;
+
+import com.danphe.emr.model.*;
+import com.danphe.emr.repository.*;
+import com.danphe.emr.security.UserDetailsImpl;
+import com.danphe.emr.service.PatientNumberService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The patient list endpoints look up patient names for a whole page at once,
+ * so the number of queries a request makes (as counted by the DataSource proxy
+ * into RequestStats) does not grow with the rows it returns.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ListEndpointQueryCountTest {
+
+    private static final int N = 5;
+    // Hospital FEW has N rows of each kind, MANY has 10·N
+    private static final Integer FEW = 101;
+    private static final Integer MANY = 102;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private BillingRepository billingRepository;
+
+    @Autowired
+    private FinalBillRepository finalBillRepository;
+
+    @Autowired
+    private AdmissionRepository admissionRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @Autowired
+    private FollowUpRepository followUpRepository;
+
+    @BeforeAll
+    void seed() {
+        seed(FEW, N);
+        seed(MANY, 10 * N);
+    }
+
+    // One patient per row, so every row needs a different name looked up
+    private void seed(Integer hospitalId, int rows) {
+        LocalDateTime today = LocalDate.now().atTime(9, 0);
+        for (int i = 1; i <= rows; i++) {
+            Patient p = new Patient();
+            p.setHospitalId(hospitalId);
+            p.setPatientNo(i);
+            p.setPatientCode(PatientNumberService.codeOf(i));
+            p.setFirstName("First" + i);
+            p.setLastName("Last" + i);
+            p.setGender("Female");
+            p.setPhoneNumber("9800000000");
+            Integer patientId = patientRepository.save(p).getPatientId();
+
+            Billing b = new Billing();
+            b.setHospitalId(hospitalId);
+            b.setPatientId(patientId);
+            b.setBillType("OPD");
+            billingRepository.save(b);
+
+            FinalBill f = new FinalBill();
+            f.setHospitalId(hospitalId);
+            f.setPatientId(patientId);
+            finalBillRepository.save(f);
+
+            Admission a = new Admission();
+            a.setHospitalId(hospitalId);
+            a.setPatientId(patientId);
+            a.setAdmissionDate(today);
+            a.setAdmissionStatus("admitted");
+            admissionRepository.save(a);
+
+            Appointment ap = new Appointment();
+            ap.setHospitalId(hospitalId);
+            ap.setPatientId(patientId);
+            ap.setAppointmentDate(today.plusMinutes(i));
+            appointmentRepository.save(ap);
+
+            Prescription rx = new Prescription();
+            rx.setHospitalId(hospitalId);
+            rx.setPatientId(patientId);
+            prescriptionRepository.save(rx);
+
+            FollowUp fu = new FollowUp();
+            fu.setHospitalId(hospitalId);
+            fu.setPatientId(patientId);
+            fu.setFollowUpDate(LocalDate.now().plusDays(i));
+            followUpRepository.save(fu);
+        }
+    }
+
+    private static UserDetailsImpl staff(Integer hospitalId) {
+        return new UserDetailsImpl(1, null, null, hospitalId, "staff", "secret", "Admin", null, List.of());
+    }
+
+    // Queries the request made, from the per-endpoint summary RequestLoggingFilter records
+    private long queries(Integer hospitalId, String uri, String route, String nameField, int expectedRows)
+            throws Exception {
+        double before = total(route);
+        mockMvc.perform(get(uri).with(user(staff(hospitalId))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.Results.length()").value(expectedRows))
+                .andExpect(jsonPath("$.Results[" + (expectedRows - 1) + "]." + nameField).isNotEmpty());
+        return Math.round(total(route) - before);
+    }
+
+    private double total(String route) {
+        DistributionSummary summary = meterRegistry.find("http.server.requests.db.queries").tag("method", "GET")
+                .tag("uri", route).summary();
+        return summary != null ? summary.totalAmount() : 0;
+    }
+
+    private void assertQueries(long expected, String uri, String route) throws Exception {
+        assertQueries(expected, uri, route, "patientName");
+    }
+
+    // nameField is the enriched field the response must carry for its last row
+    private void assertQueries(long expected, String uri, String route, String nameField) throws Exception {
+        assertEquals(expected, queries(FEW, uri, route, nameField, N), "with " + N + " rows");
+        assertEquals(expected, queries(MANY, uri, route, nameField, 10 * N), "with " + 10 * N + " rows");
+    }
+
+    @Test
+    void bills() throws Exception {
+        // The page, then one lookup of the page's patients
+        assertQueries(2, "/api/Billing?size=100", "/api/Billing");
+    }
+
+    @Test
+    void finalBills() throws Exception {
+        assertQueries(2, "/api/Billing/FinalBills?size=100", "/api/Billing/FinalBills");
+    }
+
+    @Test
+    void admittedPatients() throws Exception {
+        assertQueries(2, "/api/Admission/AdmittedPatients", "/api/Admission/AdmittedPatients");
+    }
+
+    @Test
+    void appointments() throws Exception {
+        LocalDate today = LocalDate.now();
+        assertQueries(2, "/api/Appointment/Appointments?FromDate=" + today.atStartOfDay() + "&ToDate="
+                + today.plusDays(1).atStartOfDay(), "/api/Appointment/Appointments", "firstName");
+    }
+
+    @Test
+    void prescriptions() throws Exception {
+        assertQueries(2, "/api/DoctorPortal/Prescriptions?size=100", "/api/DoctorPortal/Prescriptions");
+    }
+
+    @Test
+    void followUps() throws Exception {
+        // Dated page, the undated tail it did not fill, then the patients
+        assertQueries(3, "/api/DoctorPortal/FollowUps?size=100", "/api/DoctorPortal/FollowUps");
+    }
+}
@@ -0,0 +1,88 @@
+package com.danphe.emr.model;
+
+import com.danphe.emr.exception.InvalidCursorException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCursorTest {
+
+    private static String encodeRaw(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void encodedCursorDecodesToTheSamePosition() {
+        PageCursor cursor = PageCursor.of(LocalDateTime.of(2026, 3, 10, 12, 30, 15, 123_000_000), 42);
+
+        assertEquals(cursor, PageCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void dateKeyRoundTripsAsStartOfDay() {
+        PageCursor decoded = PageCursor.decode(PageCursor.of(LocalDate.of(2026, 3, 10), 7).encode());
+
+        assertEquals(LocalDate.of(2026, 3, 10), decoded.dateKey());
+        assertEquals(7, decoded.intId());
+    }
+
+    @Test
+    void missingOrBlankCursorStartsFromTheTop() {
+        assertSame(PageCursor.FIRST, PageCursor.decode(null));
+        assertSame(PageCursor.FIRST, PageCursor.decode(""));
+        assertSame(PageCursor.FIRST, PageCursor.decode("  "));
+    }
+
+    @Test
+    void idOnlyCursorHasNoKey() {
+        PageCursor decoded = PageCursor.decode(PageCursor.ofId(9).encode());
+
+        assertNull(decoded.key());
+        assertNull(decoded.dateKey());
+        assertEquals(9L, decoded.id());
+    }
+
+    @Test
+    void nullDateKeepsTheIdWithoutAKey() {
+        PageCursor decoded = PageCursor.decode(PageCursor.of((LocalDate) null, 11).encode());
+
+        assertEquals(new PageCursor(null, 11L), decoded);
+    }
+
+    @Test
+    void surroundingWhitespaceIsIgnored() {
+        PageCursor cursor = PageCursor.of(LocalDateTime.of(2026, 3, 10, 9, 0), 3);
+
+        assertEquals(cursor, PageCursor.decode(" " + cursor.encode() + "\n"));
+    }
+
+    @Test
+    void malformedCursorsAreRejected() {
+        assertThrows(InvalidCursorException.class, () -> PageCursor.decode("not base64!"));
+        // Valid base64 but not key|id
+        assertThrows(InvalidCursorException.class, () -> PageCursor.decode(encodeRaw("42")));
+        assertThrows(InvalidCursorException.class, () -> PageCursor.decode(encodeRaw("2026-03-10T09:00|x")));
+        assertThrows(InvalidCursorException.class, () -> PageCursor.decode(encodeRaw("yesterday|42")));
+        assertThrows(InvalidCursorException.class, () -> PageCursor.decode(encodeRaw("|")));
+    }
+
+    @Test
+    void requestedSizeIsDefaultedAndCapped() {
+        assertEquals(PageCursor.DEFAULT_SIZE, PageCursor.size(null));
+        assertEquals(PageCursor.DEFAULT_SIZE, PageCursor.size(0));
+        assertEquals(PageCursor.DEFAULT_SIZE, PageCursor.size(-5));
+        assertEquals(20, PageCursor.size(20));
+        assertEquals(PageCursor.MAX_SIZE, PageCursor.size(PageCursor.MAX_SIZE + 1));
+    }
+
+    @Test
+    void fetchAsksForOneRowMoreThanThePage() {
+        assertEquals(21, PageCursor.fetch(20).getPageSize());
+        assertEquals(0, PageCursor.fetch(20).getPageNumber());
+    }
+}
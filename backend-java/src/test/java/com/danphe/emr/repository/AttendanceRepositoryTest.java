@@ -0,0 +1,70 @@
+package com.danphe.emr.repository;
+
+import com.danphe.emr.model.Attendance;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class AttendanceRepositoryTest {
+
+    private static final LocalDateTime T = LocalDateTime.of(2026, 3, 10, 8, 0);
+
+    @Autowired
+    private AttendanceRepository attendanceRepository;
+
+    private Integer record(Integer hospitalId, Integer employeeId, String type, LocalDateTime timestamp) {
+        Attendance a = new Attendance();
+        a.setHospitalId(hospitalId);
+        a.setEmployeeId(employeeId);
+        a.setType(type);
+        a.setTimestamp(timestamp);
+        return attendanceRepository.save(a).getAttendanceId();
+    }
+
+    private List<Integer> openShifts(Integer hospitalId) {
+        return attendanceRepository.findOpenShifts(hospitalId).stream().map(Attendance::getAttendanceId).toList();
+    }
+
+    @Test
+    void openShiftIsTheLatestClockInWithNothingAfterIt() {
+        // Clocked in weeks ago and never out; well beyond any page of the recent log
+        Integer longShift = record(1, 10, "ClockIn", T.minusWeeks(3));
+        // Clocked in and out, then in again
+        record(1, 11, "ClockIn", T);
+        record(1, 11, "ClockOut", T.plusHours(8));
+        Integer secondShift = record(1, 11, "ClockIn", T.plusHours(9));
+        // Finished shift
+        record(1, 12, "ClockIn", T);
+        record(1, 12, "ClockOut", T.plusHours(1));
+        // Another hospital
+        record(2, 10, "ClockIn", T);
+
+        assertEquals(List.of(longShift, secondShift), openShifts(1));
+    }
+
+    @Test
+    void clockOutAtTheSameInstantIsOrderedById() {
+        record(1, 20, "ClockIn", T);
+        record(1, 20, "ClockOut", T);
+        record(1, 21, "ClockOut", T);
+        Integer reopened = record(1, 21, "ClockIn", T);
+
+        assertEquals(List.of(reopened), openShifts(1));
+    }
+
+    @Test
+    void repeatedClockInCountsOnlyTheLatest() {
+        record(1, 30, "ClockIn", T);
+        Integer latest = record(1, 30, "ClockIn", T.plusHours(2));
+
+        assertEquals(List.of(latest), openShifts(1));
+    }
+}
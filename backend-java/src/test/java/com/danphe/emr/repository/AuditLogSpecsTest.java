@@ -0,0 +1,110 @@
+package com.danphe.emr.repository;
+
+import com.danphe.emr.model.AuditLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AuditLogSpecs filters combined with the keyset cursor, paged the way the
+ * audit log screen pages them (NEWEST_FIRST, one extra row per page).
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+class AuditLogSpecsTest {
+
+    private static final LocalDateTime T = LocalDateTime.of(2026, 3, 10, 12, 0);
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // ids of the Billing rows of hospital 1, in the order they were inserted
+    private final List<Long> billing = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // Five Billing rows share T; others either side of it, and noise that no filter should let through
+        billing.add(insert(1, "Billing", "UPDATE", T.minusMinutes(1)));
+        for (int i = 0; i < 5; i++) {
+            billing.add(insert(1, "Billing", i % 2 == 0 ? "UPDATE" : "CREATE", T));
+            insert(1, "Patient", "UPDATE", T);
+        }
+        billing.add(insert(1, "Billing", "DELETE", T.plusMinutes(1)));
+        insert(2, "Billing", "UPDATE", T);
+    }
+
+    // Written with JDBC like AuditLogWriter does; the entity's @PrePersist would stamp the current time
+    private long insert(Integer hospitalId, String module, String action, LocalDateTime timestamp) {
+        jdbcTemplate.update("INSERT INTO audit_log (hospital_id, module, action, severity, timestamp) "
+                + "VALUES (?, ?, ?, 'info', ?)", hospitalId, module, action, timestamp);
+        return jdbcTemplate.queryForObject("SELECT MAX(log_id) FROM audit_log", Long.class);
+    }
+
+    // Every page of the filtered list, following the cursor as the controller hands it out
+    private List<Long> pageThrough(Specification<AuditLog> filters, int pageSize) {
+        List<Long> ids = new ArrayList<>();
+        LocalDateTime afterTimestamp = null;
+        Long afterId = null;
+        while (true) {
+            List<AuditLog> rows = auditLogRepository.findBy(filters.and(AuditLogSpecs.after(afterTimestamp, afterId)),
+                    q -> q.sortBy(AuditLogSpecs.NEWEST_FIRST).limit(pageSize + 1).all());
+            List<AuditLog> page = rows.subList(0, Math.min(pageSize, rows.size()));
+            page.forEach(l -> ids.add(l.getLogId()));
+            if (rows.size() <= pageSize) {
+                return ids;
+            }
+            AuditLog last = page.get(page.size() - 1);
+            afterTimestamp = last.getTimestamp();
+            afterId = last.getLogId();
+        }
+    }
+
+    @Test
+    void pagesThroughATimestampTieWithoutSkippingOrRepeating() {
+        List<Long> ids = pageThrough(AuditLogSpecs.hospital(1).and(AuditLogSpecs.module("Billing")), 2);
+
+        // Newest first; rows sharing T by id, descending
+        List<Long> expected = List.of(billing.get(6), billing.get(5), billing.get(4), billing.get(3),
+                billing.get(2), billing.get(1), billing.get(0));
+        assertEquals(expected, ids);
+    }
+
+    @Test
+    void filtersStillApplyOnLaterPages() {
+        List<Long> ids = pageThrough(AuditLogSpecs.hospital(1).and(AuditLogSpecs.module("Billing"))
+                .and(AuditLogSpecs.action("UPDATE")), 1);
+
+        assertEquals(List.of(billing.get(5), billing.get(3), billing.get(1), billing.get(0)), ids);
+    }
+
+    @Test
+    void dateRangeIsInclusiveAtBothEnds() {
+        List<Long> ids = pageThrough(AuditLogSpecs.hospital(1).and(AuditLogSpecs.module("Billing"))
+                .and(AuditLogSpecs.from(T)).and(AuditLogSpecs.to(T)), 2);
+
+        assertEquals(List.of(billing.get(5), billing.get(4), billing.get(3), billing.get(2), billing.get(1)), ids);
+    }
+
+    @Test
+    void blankFiltersAreIgnored() {
+        List<Long> all = pageThrough(AuditLogSpecs.hospital(1), 3);
+        List<Long> blank = pageThrough(AuditLogSpecs.hospital(1).and(AuditLogSpecs.module(" "))
+                .and(AuditLogSpecs.action(null)).and(AuditLogSpecs.userId(null)), 3);
+
+        assertEquals(12, all.size());
+        assertEquals(all, blank);
+    }
+}
@@ -0,0 +1,61 @@
+package com.danphe.emr.security;
+
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamTicketServiceTest {
+
+    private JwtUtils jwtUtils;
+    private StreamTicketService tickets;
+    private final UserDetailsImpl user = new UserDetailsImpl(7, 70, null, 1, "nurse.kim", "x", "Nurse", null,
+            List.of());
+
+    @BeforeEach
+    void setUp() {
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "0123456789abcdef0123456789abcdef0123456789abcdef");
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 60000);
+        jwtUtils.init();
+        tickets = new StreamTicketService(Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(tickets, "jwtUtils", jwtUtils);
+    }
+
+    @Test
+    void ticketCarriesThePrincipalAndWorksOnce() {
+        String ticket = tickets.issue(user);
+
+        Claims claims = tickets.redeem(ticket);
+        assertNotNull(claims);
+        assertEquals("nurse.kim", claims.getSubject());
+        assertEquals(1, claims.get("hospitalId"));
+        assertNull(tickets.redeem(ticket));
+    }
+
+    @Test
+    void sessionTokenIsNotATicket() {
+        String session = jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(user, null));
+
+        assertNull(tickets.redeem(session));
+    }
+
+    @Test
+    void ticketIsNotASessionToken() {
+        assertTrue(StreamTicketService.isTicket(jwtUtils.parseJwtToken(tickets.issue(user))));
+    }
+
+    @Test
+    void expiredTicketIsRejected() {
+        String expired = jwtUtils.generateStreamTicket(user, "t-1", -1000);
+
+        assertNull(tickets.redeem(expired));
+    }
+}
@@ -0,0 +1,142 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.AuditLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AuditLogWriterTest {
+
+    private Path spillDir;
+    private JdbcTemplate jdbcTemplate;
+    private AuditLogWriter writer;
+
+    // Module values of the rows the fake database committed
+    private final List<String> inserted = new ArrayList<>();
+    private volatile boolean databaseDown;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws IOException {
+        spillDir = Files.createTempDirectory("audit-spill");
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(call -> {
+            if (databaseDown) {
+                throw new DataAccessResourceFailureException("Communications link failure");
+            }
+            List<Object[]> rows = call.getArgument(1);
+            for (Object[] row : rows) {
+                if ("Bad".equals(row[5])) {
+                    throw new DataIntegrityViolationException("Data too long for column 'module'");
+                }
+            }
+            synchronized (inserted) {
+                rows.forEach(row -> inserted.add((String) row[5]));
+            }
+            return new int[rows.size()];
+        });
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        ObjectProvider<MeterRegistry> noRegistry = mock(ObjectProvider.class);
+        writer = new AuditLogWriter(jdbcTemplate, mock(PlatformTransactionManager.class), objectMapper, noRegistry,
+                100, 10, Duration.ofMillis(50), Duration.ofMillis(20), Duration.ofSeconds(5), "spill",
+                spillDir.toString());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        writer.destroy();
+        try (Stream<Path> files = Files.walk(spillDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    void rejectedRowIsQuarantinedAndTheRestOfTheBatchIsWritten() throws Exception {
+        writer.enqueue(entry("Billing"));
+        writer.enqueue(entry("Bad"));
+        writer.enqueue(entry("Patient"));
+
+        awaitInserted(2);
+        assertEquals(List.of("Billing", "Patient"), inserted);
+        List<String> quarantined = awaitLines("audit-quarantine.jsonl", 1);
+        assertTrue(quarantined.get(0).contains("\"module\":\"Bad\""));
+        assertTrue(quarantined.get(0).contains("quarantineReason"));
+        assertFalse(Files.exists(spillDir.resolve("audit-spill.jsonl")));
+    }
+
+    @Test
+    void spilledBadRowDoesNotBlockReplayOfTheOthers() throws Exception {
+        databaseDown = true;
+        writer.enqueue(entry("Billing"));
+        writer.enqueue(entry("Bad"));
+        awaitLines("audit-spill.jsonl", 2);
+
+        databaseDown = false;
+        writer.enqueue(entry("Patient"));
+
+        // The next successful flush replays the spill file; the bad row is quarantined, not re-spilled
+        awaitInserted(2);
+        awaitLines("audit-quarantine.jsonl", 1);
+        assertTrue(inserted.containsAll(List.of("Billing", "Patient")));
+        assertFalse(Files.exists(spillDir.resolve("audit-spill.jsonl")));
+    }
+
+    private static AuditLog entry(String module) {
+        AuditLog log = new AuditLog();
+        log.setAction("UPDATE");
+        log.setModule(module);
+        log.setEntityId("1");
+        log.setUserName("System");
+        return log;
+    }
+
+    private void awaitInserted(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            synchronized (inserted) {
+                if (inserted.size() >= count) {
+                    return;
+                }
+            }
+            Thread.sleep(20);
+        }
+        fail("Expected " + count + " inserted rows, got " + inserted);
+    }
+
+    private List<String> awaitLines(String file, int count) throws Exception {
+        Path path = spillDir.resolve(file);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            if (Files.exists(path)) {
+                List<String> lines = Files.readAllLines(path);
+                if (lines.size() >= count) {
+                    return lines;
+                }
+            }
+            Thread.sleep(20);
+        }
+        fail("Expected " + count + " lines in " + file);
+        return List.of();
+    }
+}
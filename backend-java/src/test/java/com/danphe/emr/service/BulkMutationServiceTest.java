@@ -0,0 +1,68 @@
+package com.danphe.emr.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BulkMutationServiceTest {
+
+    private PlatformTransactionManager transactionManager;
+    private BulkMutationService service;
+
+    @BeforeEach
+    void setUp() {
+        transactionManager = mock(PlatformTransactionManager.class);
+        service = new BulkMutationService(transactionManager);
+        ReflectionTestUtils.setField(service, "chunkSize", 100);
+    }
+
+    @Test
+    void repeatsUntilAChunkComesBackShort() {
+        // 250 matching rows, touched at most a chunk at a time
+        AtomicInteger remaining = new AtomicInteger(250);
+        List<Integer> limits = new ArrayList<>();
+
+        long total = service.inChunks("test", limit -> {
+            limits.add(limit);
+            int n = Math.min(limit, remaining.get());
+            remaining.addAndGet(-n);
+            return n;
+        });
+
+        assertEquals(250, total);
+        assertEquals(List.of(100, 100, 100), limits);
+    }
+
+    @Test
+    void exactMultipleEndsWithAnEmptyChunk() {
+        AtomicInteger remaining = new AtomicInteger(200);
+
+        long total = service.inChunks("test", limit -> {
+            int n = Math.min(limit, remaining.get());
+            remaining.addAndGet(-n);
+            return n;
+        });
+
+        assertEquals(200, total);
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void eachChunkRunsInItsOwnNewTransaction() {
+        service.inChunks("test", limit -> 0);
+
+        verify(transactionManager).getTransaction(argThat(
+                d -> d.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        verify(transactionManager).commit(any());
+    }
+}
@@ -0,0 +1,220 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.*;
+import com.danphe.emr.repository.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ClinicalSummaryServiceTest {
+
+    private static final Integer HOSPITAL = 1;
+    private static final Integer PATIENT = 7;
+
+    private PatientClinicalSummaryRepository summaryRepository;
+    private PatientRepository patientRepository;
+    private MedicalRecordRepository medicalRecordRepository;
+    private PrescriptionRepository prescriptionRepository;
+    private FollowUpRepository followUpRepository;
+    private AdmissionRepository admissionRepository;
+    private ClinicalSummaryService service;
+
+    // The single patient_clinical_summary row; null until insertIfAbsent creates it
+    private PatientClinicalSummary row;
+
+    @BeforeEach
+    void setUp() {
+        summaryRepository = mock(PatientClinicalSummaryRepository.class);
+        patientRepository = mock(PatientRepository.class);
+        medicalRecordRepository = mock(MedicalRecordRepository.class);
+        prescriptionRepository = mock(PrescriptionRepository.class);
+        followUpRepository = mock(FollowUpRepository.class);
+        admissionRepository = mock(AdmissionRepository.class);
+
+        when(summaryRepository.insertIfAbsent(HOSPITAL, PATIENT)).thenAnswer(call -> {
+            if (row != null) {
+                return 0;
+            }
+            row = new PatientClinicalSummary();
+            row.setHospitalId(HOSPITAL);
+            row.setPatientId(PATIENT);
+            return 1;
+        });
+        when(summaryRepository.lockByHospitalIdAndPatientId(HOSPITAL, PATIENT))
+                .thenAnswer(call -> Optional.ofNullable(row));
+        when(summaryRepository.findByHospitalIdAndPatientId(HOSPITAL, PATIENT))
+                .thenAnswer(call -> Optional.ofNullable(row));
+        when(summaryRepository.save(any())).thenAnswer(call -> call.getArgument(0));
+
+        service = new ClinicalSummaryService();
+        ReflectionTestUtils.setField(service, "summaryRepository", summaryRepository);
+        ReflectionTestUtils.setField(service, "patientRepository", patientRepository);
+        ReflectionTestUtils.setField(service, "medicalRecordRepository", medicalRecordRepository);
+        ReflectionTestUtils.setField(service, "prescriptionRepository", prescriptionRepository);
+        ReflectionTestUtils.setField(service, "followUpRepository", followUpRepository);
+        ReflectionTestUtils.setField(service, "admissionRepository", admissionRepository);
+    }
+
+    private static MedicalRecordRepository.ClinicalFlags flags(String allergies, String riskFlags) {
+        return new MedicalRecordRepository.ClinicalFlags() {
+            @Override
+            public String getAllergies() {
+                return allergies;
+            }
+
+            @Override
+            public String getRiskFlags() {
+                return riskFlags;
+            }
+        };
+    }
+
+    private static MedicalRecord record(String type, String allergies, String riskFlags, LocalDateTime createdOn) {
+        MedicalRecord r = new MedicalRecord();
+        r.setHospitalId(HOSPITAL);
+        r.setPatientId(PATIENT);
+        r.setRecordType(type);
+        r.setAllergies(allergies);
+        r.setRiskFlags(riskFlags);
+        r.setCreatedOn(createdOn);
+        return r;
+    }
+
+    private static FollowUp followUp(String status) {
+        FollowUp f = new FollowUp();
+        f.setHospitalId(HOSPITAL);
+        f.setPatientId(PATIENT);
+        f.setStatus(status);
+        return f;
+    }
+
+    private void givenBuiltRow() {
+        row = new PatientClinicalSummary();
+        row.setHospitalId(HOSPITAL);
+        row.setPatientId(PATIENT);
+        row.setAllergies("penicillin");
+        row.setVisitCount(2);
+        row.setLastVisitOn(LocalDateTime.of(2024, 1, 1, 9, 0));
+        row.setBuiltOn(LocalDateTime.of(2024, 1, 1, 9, 0));
+    }
+
+    @Test
+    void firstWriteRebuildsFromThePatientsRecords() {
+        LocalDateTime consulted = LocalDateTime.of(2024, 3, 1, 10, 0);
+        LocalDateTime prescribed = LocalDateTime.of(2024, 3, 2, 11, 0);
+        when(medicalRecordRepository.findFlags(HOSPITAL, PATIENT)).thenReturn(List.of(
+                flags("penicillin, sulfa", "diabetic"), flags("sulfa,latex", null)));
+        when(medicalRecordRepository.countByHospitalIdAndPatientIdAndRecordType(HOSPITAL, PATIENT, "consultation"))
+                .thenReturn(3L);
+        when(prescriptionRepository.countByHospitalIdAndPatientId(HOSPITAL, PATIENT)).thenReturn(2L);
+        when(medicalRecordRepository.lastCreatedOn(HOSPITAL, PATIENT, "consultation")).thenReturn(consulted);
+        when(prescriptionRepository.lastCreatedOn(HOSPITAL, PATIENT)).thenReturn(prescribed);
+        when(medicalRecordRepository.countByHospitalIdAndPatientIdAndRecordTypeAndLabStatus(HOSPITAL, PATIENT,
+                "lab_result", "pending")).thenReturn(1L);
+        when(followUpRepository.countByHospitalIdAndPatientIdAndStatus(HOSPITAL, PATIENT, "scheduled"))
+                .thenReturn(4L);
+        when(admissionRepository.countByHospitalIdAndPatientId(HOSPITAL, PATIENT)).thenReturn(1L);
+
+        // The record being written is already among the counted ones, so it is not applied again
+        service.recordMedicalRecord(record("consultation", "sulfa", null, consulted));
+
+        assertEquals("penicillin,sulfa,latex", row.getAllergies());
+        assertEquals("diabetic", row.getRiskFlags());
+        assertEquals(5, row.getVisitCount());
+        assertEquals(prescribed, row.getLastVisitOn());
+        assertEquals(1, row.getPendingLabs());
+        assertEquals(4, row.getOpenFollowUps());
+        assertEquals(1, row.getAdmissionCount());
+        assertNotNull(row.getBuiltOn());
+    }
+
+    @Test
+    void builtRowOnlyGetsTheIncrement() {
+        givenBuiltRow();
+        LocalDateTime consulted = LocalDateTime.of(2024, 5, 1, 10, 0);
+
+        service.recordMedicalRecord(record("consultation", "Sulfa, penicillin", "pregnant", consulted));
+
+        assertEquals("penicillin,Sulfa", row.getAllergies());
+        assertEquals("pregnant", row.getRiskFlags());
+        assertEquals(3, row.getVisitCount());
+        assertEquals(consulted, row.getLastVisitOn());
+        verify(medicalRecordRepository, never()).findFlags(any(), any());
+        verify(summaryRepository).lockByHospitalIdAndPatientId(HOSPITAL, PATIENT);
+    }
+
+    @Test
+    void pendingLabAndOlderPrescriptionAreCounted() {
+        givenBuiltRow();
+        MedicalRecord lab = record("lab_result", null, null, LocalDateTime.of(2024, 2, 1, 8, 0));
+        lab.setLabStatus("pending");
+        Prescription older = new Prescription();
+        older.setHospitalId(HOSPITAL);
+        older.setPatientId(PATIENT);
+        older.setCreatedOn(LocalDateTime.of(2023, 12, 1, 8, 0));
+
+        service.recordMedicalRecord(lab);
+        service.recordPrescription(older);
+
+        assertEquals(1, row.getPendingLabs());
+        assertEquals(3, row.getVisitCount());
+        // An older encounter does not move the last visit back
+        assertEquals(LocalDateTime.of(2024, 1, 1, 9, 0), row.getLastVisitOn());
+    }
+
+    @Test
+    void followUpStatusChangesMoveTheOpenCount() {
+        givenBuiltRow();
+
+        service.recordFollowUp(followUp("scheduled"), null);
+        service.recordFollowUp(followUp("scheduled"), null);
+        assertEquals(2, row.getOpenFollowUps());
+
+        service.recordFollowUp(followUp("completed"), "scheduled");
+        assertEquals(1, row.getOpenFollowUps());
+
+        // Neither side open: nothing to record, the row is not even locked
+        clearInvocations(summaryRepository);
+        service.recordFollowUp(followUp("cancelled"), "completed");
+        assertEquals(1, row.getOpenFollowUps());
+        verify(summaryRepository, never()).lockByHospitalIdAndPatientId(any(), any());
+    }
+
+    @Test
+    void admissionsAreCounted() {
+        givenBuiltRow();
+        Admission admission = new Admission();
+        admission.setHospitalId(HOSPITAL);
+        admission.setPatientId(PATIENT);
+
+        service.recordAdmission(admission);
+        service.recordAdmission(admission);
+
+        assertEquals(2, row.getAdmissionCount());
+    }
+
+    @Test
+    void getBuildsTheRowOnceForAnExistingPatient() {
+        when(patientRepository.existsByHospitalIdAndPatientId(HOSPITAL, PATIENT)).thenReturn(true);
+        when(prescriptionRepository.countByHospitalIdAndPatientId(HOSPITAL, PATIENT)).thenReturn(6L);
+
+        assertEquals(6, service.get(HOSPITAL, PATIENT).orElseThrow().getVisitCount());
+        assertEquals(6, service.get(HOSPITAL, PATIENT).orElseThrow().getVisitCount());
+
+        verify(prescriptionRepository, times(1)).countByHospitalIdAndPatientId(HOSPITAL, PATIENT);
+    }
+
+    @Test
+    void getReturnsEmptyForAnUnknownPatient() {
+        assertTrue(service.get(HOSPITAL, PATIENT).isEmpty());
+        verify(summaryRepository, never()).insertIfAbsent(any(), any());
+    }
+}
@@ -0,0 +1,97 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.config.StatementDeadline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompositeQueryExecutorTest {
+
+    private CompositeQueryExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        executor.destroy();
+    }
+
+    private static String sleepThen(long millis, String value) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return value;
+    }
+
+    @Test
+    void defaultPoolRunsAWholeProfileAtOnce() {
+        executor = new CompositeQueryExecutor(0, 10, Duration.ofMillis(600));
+
+        try (CompositeQueryExecutor.Composite q = executor.open()) {
+            List<CompositeQueryExecutor.Composite.Part<String>> parts = new ArrayList<>();
+            for (int i = 0; i < CompositeQueryExecutor.WIDEST_SCREEN_PARTS; i++) {
+                parts.add(q.submit("part" + i, () -> sleepThen(300, "ok"), "fallback"));
+            }
+            // Side by side: in rounds of two, the last ones would finish past their deadline
+            parts.forEach(p -> assertEquals("ok", p.get()));
+            assertTrue(q.errors().isEmpty());
+        }
+    }
+
+    @Test
+    void timeSpentQueuedDoesNotCountAgainstThePart() {
+        executor = new CompositeQueryExecutor(1, 10, Duration.ofMillis(500));
+
+        try (CompositeQueryExecutor.Composite q = executor.open()) {
+            var first = q.submit("first", () -> sleepThen(300, "a"), "fallback");
+            // Starts at ~300ms and finishes at ~600ms, past 500ms from submission
+            var second = q.submit("second", () -> sleepThen(300, "b"), "fallback");
+
+            assertEquals("a", first.get());
+            assertEquals("b", second.get());
+            assertTrue(q.errors().isEmpty());
+        }
+    }
+
+    @Test
+    void partThatCannotStartInTimeIsDroppedWithoutRunning() {
+        executor = new CompositeQueryExecutor(1, 10, Duration.ofMillis(200));
+        AtomicBoolean ran = new AtomicBoolean();
+
+        try (CompositeQueryExecutor.Composite q = executor.open()) {
+            var blocker = q.submit("blocker", () -> sleepThen(1000, "a"), "fallback");
+            var starved = q.submit("starved", () -> {
+                ran.set(true);
+                return "b";
+            }, "fallback");
+
+            assertEquals("fallback", starved.get());
+            assertEquals("timeout", q.errors().get("starved"));
+            assertEquals("fallback", blocker.get());
+        }
+        sleepThen(1000, null);
+        assertFalse(ran.get());
+    }
+
+    @Test
+    void partRunsUnderAStatementDeadlineThatIsClearedAfterwards() {
+        executor = new CompositeQueryExecutor(2, 10, Duration.ofSeconds(3));
+
+        try (CompositeQueryExecutor.Composite q = executor.open()) {
+            long submitted = System.nanoTime();
+            Long deadline = q.submit("deadline", StatementDeadline::current, null).get();
+
+            assertNotNull(deadline);
+            long left = deadline - submitted;
+            assertTrue(left > TimeUnit.SECONDS.toNanos(2) && left <= TimeUnit.SECONDS.toNanos(4));
+        }
+        assertNull(StatementDeadline.current());
+    }
+}
@@ -0,0 +1,243 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.Appointment;
+import com.danphe.emr.repository.AppointmentRepository;
+import com.danphe.emr.repository.HospitalRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.lang.reflect.Constructor;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DoctorQueueServiceTest {
+
+    private static final Integer HOSPITAL = 1;
+    private static final Integer DOCTOR = 7;
+    private static final Pattern EVENT_NAME = Pattern.compile("event:(\\w+)\n");
+
+    private AppointmentRepository appointmentRepository;
+    private SseConnections connections;
+    private DoctorQueueService service;
+
+    // What the database holds for today
+    private List<Appointment> stored;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        stored = new ArrayList<>(List.of(appointment(1, 9, 0, "New", "initiated"),
+                appointment(2, 10, 0, "New", "initiated")));
+        appointmentRepository = mock(AppointmentRepository.class);
+        when(appointmentRepository.findByHospitalIdAndAppointmentDateBetween(eq(HOSPITAL), any(), any()))
+                .thenAnswer(call -> new ArrayList<>(stored));
+        connections = new SseConnections(mock(ObjectProvider.class), Duration.ofMinutes(5), 1, Duration.ofSeconds(10));
+
+        service = new DoctorQueueService();
+        ReflectionTestUtils.setField(service, "appointmentRepository", appointmentRepository);
+        ReflectionTestUtils.setField(service, "hospitalRepository", mock(HospitalRepository.class));
+        ReflectionTestUtils.setField(service, "sseConnections", connections);
+        ReflectionTestUtils.setField(service, "timeout", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(service, "bufferSize", 32);
+        ReflectionTestUtils.setField(service, "reconcileInterval", Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.destroy();
+        connections.destroy();
+    }
+
+    private static Appointment appointment(int id, int hour, int minute, String type, String status) {
+        Appointment a = new Appointment();
+        a.setAppointmentId(id);
+        a.setHospitalId(HOSPITAL);
+        a.setPerformerId(DOCTOR);
+        a.setAppointmentDate(LocalDate.now().atTime(hour, minute));
+        a.setAppointmentType(type);
+        a.setAppointmentStatus(status);
+        return a;
+    }
+
+    private static List<Integer> ids(Object snapshot) {
+        List<Integer> ids = new ArrayList<>();
+        for (Object a : (List<?>) snapshot) {
+            ids.add(((Appointment) a).getAppointmentId());
+        }
+        return ids;
+    }
+
+    // A screen's view of its stream: event names with their data, in the order sent
+    private static final class Screen {
+
+        final List<Map.Entry<String, Object>> events = Collections.synchronizedList(new ArrayList<>());
+
+        Screen(SseEmitter emitter) throws Exception {
+            Class<?> type = Class.forName(
+                    "org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter$Handler");
+            Object handler = mock(type, call -> {
+                if (call.getMethod().getName().equals("send") && call.getArguments().length == 1) {
+                    String name = null;
+                    for (Object item : (Collection<?>) call.getArgument(0)) {
+                        Object data = ReflectionTestUtils.invokeMethod(item, "getData");
+                        Matcher m = data instanceof String s ? EVENT_NAME.matcher(s) : null;
+                        if (m != null && m.find()) {
+                            name = m.group(1);
+                        } else if (name != null && !(data instanceof String)) {
+                            events.add(Map.entry(name, data));
+                            name = null;
+                        }
+                    }
+                }
+                return null;
+            });
+            ReflectionTestUtils.invokeMethod(emitter, "initialize", handler);
+        }
+
+        // The n-th event (0-based), waiting for the sender to deliver it
+        Map.Entry<String, Object> event(int n) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 2000;
+            while (events.size() <= n && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(events.size() > n, "event " + n + " of " + events);
+            return events.get(n);
+        }
+
+        void expectNoMoreThan(int count) throws InterruptedException {
+            Thread.sleep(200);
+            assertEquals(count, events.size(), () -> "events " + events);
+        }
+    }
+
+    @Test
+    void queueIsReadFromTheDatabaseInDisplayOrder() {
+        List<Appointment> mine = List.of(appointment(1, 9, 0, "New", "initiated"));
+        when(appointmentRepository.findQueueForPerformer(eq(HOSPITAL), eq(DOCTOR), any(), any())).thenReturn(mine);
+
+        assertSame(mine, service.queue(HOSPITAL, DOCTOR));
+        service.queue(HOSPITAL, null);
+
+        verify(appointmentRepository).findQueue(eq(HOSPITAL), any(), any());
+        // The in-memory copy is only for pushing events; reading the queue does not build it
+        verify(appointmentRepository, never()).findByHospitalIdAndAppointmentDateBetween(any(), any(), any());
+    }
+
+    @Test
+    void insertedAppointmentIsReportedAtItsPlaceInTheQueue() throws Exception {
+        Screen screen = new Screen(service.subscribe(HOSPITAL, DOCTOR));
+        assertEquals(List.of(1, 2), ids(screen.event(0).getValue()));
+
+        // Emergencies go first whatever their time; others by time
+        Appointment emergency = appointment(3, 11, 0, "Emergency", "initiated");
+        service.appointmentAdded(emergency);
+        Appointment between = appointment(4, 9, 30, "New", "initiated");
+        service.appointmentAdded(between);
+
+        Map.Entry<String, Object> first = screen.event(1);
+        assertEquals(DoctorQueueService.EVENT_INSERTED, first.getKey());
+        assertEquals(Map.of("appointment", emergency, "position", 0), first.getValue());
+        Map.Entry<String, Object> second = screen.event(2);
+        assertEquals(Map.of("appointment", between, "position", 2), second.getValue());
+    }
+
+    @Test
+    void statusChangeKeepsTheAppointmentInPlace() throws Exception {
+        Screen screen = new Screen(service.subscribe(HOSPITAL, DOCTOR));
+        screen.event(0);
+
+        // The queue is ordered by emergency and time only, as before it was kept in memory
+        service.statusChanged(appointment(2, 10, 0, "New", "InConsultation"));
+
+        Map.Entry<String, Object> status = screen.event(1);
+        assertEquals(DoctorQueueService.EVENT_STATUS, status.getKey());
+        assertEquals(Map.of("appointmentId", 2, "status", "InConsultation"), status.getValue());
+        screen.expectNoMoreThan(2);
+    }
+
+    @Test
+    void updateThatChangesTheOrderReportsTheMove() throws Exception {
+        Screen screen = new Screen(service.subscribe(HOSPITAL, DOCTOR));
+        screen.event(0);
+
+        service.statusChanged(appointment(2, 10, 0, "Emergency", "CheckedIn"));
+
+        assertEquals(DoctorQueueService.EVENT_STATUS, screen.event(1).getKey());
+        Map.Entry<String, Object> moved = screen.event(2);
+        assertEquals(DoctorQueueService.EVENT_MOVED, moved.getKey());
+        assertEquals(Map.of("appointmentId", 2, "position", 0), moved.getValue());
+    }
+
+    @Test
+    void otherDoctorsChangesAreNotSent() throws Exception {
+        Screen screen = new Screen(service.subscribe(HOSPITAL, DOCTOR));
+        screen.event(0);
+
+        Appointment other = appointment(5, 9, 0, "New", "initiated");
+        other.setPerformerId(8);
+        service.appointmentAdded(other);
+
+        screen.expectNoMoreThan(1);
+    }
+
+    @Test
+    void changesFromElsewhereReachScreensOnReconcile() throws Exception {
+        Screen screen = new Screen(service.subscribe(HOSPITAL, DOCTOR));
+        screen.event(0);
+
+        // Nothing changed: no snapshot
+        service.reconcileWatched();
+        screen.expectNoMoreThan(1);
+
+        // Booked through another instance
+        stored.add(appointment(6, 8, 0, "New", "initiated"));
+        service.reconcileWatched();
+
+        Map.Entry<String, Object> snapshot = screen.event(1);
+        assertEquals(DoctorQueueService.EVENT_SNAPSHOT, snapshot.getKey());
+        assertEquals(List.of(6, 1, 2), ids(snapshot.getValue()));
+    }
+
+    @Test
+    void newDayReloadsTheQueueAndResendsASnapshot() throws Exception {
+        Screen screen = new Screen(service.subscribe(HOSPITAL, DOCTOR));
+        screen.event(0);
+        backdateTheLoadedDay();
+
+        stored = new ArrayList<>(List.of(appointment(11, 8, 0, "New", "initiated"),
+                appointment(12, 12, 0, "Emergency", "initiated"), appointment(13, 9, 0, "New", "CheckedIn")));
+        Appointment added = appointment(14, 10, 0, "New", "initiated");
+        service.appointmentAdded(added);
+
+        // The screen carried over from yesterday starts again from today's list, then gets the insert
+        Map.Entry<String, Object> snapshot = screen.event(1);
+        assertEquals(DoctorQueueService.EVENT_SNAPSHOT, snapshot.getKey());
+        assertEquals(List.of(12, 11, 13), ids(snapshot.getValue()));
+        assertEquals(Map.of("appointment", added, "position", 3), screen.event(2).getValue());
+    }
+
+    // Swaps the hospital's loaded day for one dated yesterday that has the same screens open
+    @SuppressWarnings("unchecked")
+    private void backdateTheLoadedDay() throws Exception {
+        Map<Integer, Object> hospitals = (Map<Integer, Object>) ReflectionTestUtils.getField(service, "hospitals");
+        Object today = hospitals.get(HOSPITAL);
+        Constructor<?> newDay = Class.forName(DoctorQueueService.class.getName() + "$HospitalDay")
+                .getDeclaredConstructor(LocalDate.class);
+        newDay.setAccessible(true);
+        Object yesterday = newDay.newInstance(LocalDate.now().minusDays(1));
+        ((Set<Object>) ReflectionTestUtils.getField(yesterday, "subscribers"))
+                .addAll((Set<Object>) ReflectionTestUtils.getField(today, "subscribers"));
+        hospitals.put(HOSPITAL, yesterday);
+    }
+}
@@ -0,0 +1,138 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.User;
+import com.danphe.emr.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Audit capture end to end on a real EntityManager: Hibernate's post-commit
+ * events, the diff taken on the committing thread and the JSON written to
+ * audit_log by the background writer. Tests commit their own transactions,
+ * since nothing is audited for work that is rolled back.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({ EntityAuditListener.class, AuditLogWriter.class, JacksonAutoConfiguration.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EntityAuditListenerTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Integer createUser(String userName) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            User u = new User();
+            u.setHospitalId(5);
+            u.setUserName(userName);
+            u.setPassword("first-secret");
+            u.setEmail("old@example.org");
+            u.setIsActive(true);
+            return userRepository.save(u).getUserId();
+        });
+    }
+
+    // The change JSON of the entry, once the writer has flushed it
+    private JsonNode changeData(String action, Integer userId) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            List<String> rows = jdbcTemplate.queryForList("SELECT change_data FROM audit_log "
+                    + "WHERE module = 'User' AND action = ? AND entity_id = ?", String.class, action,
+                    String.valueOf(userId));
+            if (!rows.isEmpty()) {
+                assertEquals(1, rows.size());
+                return objectMapper.readTree(rows.get(0));
+            }
+            assertTrue(System.currentTimeMillis() < deadline, "no " + action + " entry for user " + userId);
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    void updateRecordsOnlyChangedFieldsWithOldAndNewValues() throws Exception {
+        Integer userId = createUser("audit-update");
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            User u = userRepository.findById(userId).orElseThrow();
+            u.setEmail("new@example.org");
+            u.setIsActive(false);
+        });
+
+        JsonNode changes = changeData("UPDATE", userId);
+        assertEquals("old@example.org", changes.path("email").path("old").asText());
+        assertEquals("new@example.org", changes.path("email").path("new").asText());
+        assertTrue(changes.path("isActive").path("old").asBoolean());
+        assertFalse(changes.path("isActive").path("new").asBoolean());
+        // Untouched fields are left out
+        assertFalse(changes.has("userName"));
+        assertFalse(changes.has("password"));
+        Integer hospitalId = jdbcTemplate.queryForObject("SELECT hospital_id FROM audit_log "
+                + "WHERE module = 'User' AND action = 'UPDATE' AND entity_id = ?", Integer.class,
+                String.valueOf(userId));
+        assertEquals(5, hospitalId);
+    }
+
+    @Test
+    void redactedFieldIsRecordedAsChangedWithoutItsValues() throws Exception {
+        Integer userId = createUser("audit-redact");
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> userRepository
+                .findById(userId).orElseThrow().setPassword("second-secret"));
+
+        JsonNode changes = changeData("UPDATE", userId);
+        assertEquals("[redacted]", changes.path("password").path("old").asText());
+        assertEquals("[redacted]", changes.path("password").path("new").asText());
+        assertFalse(changes.toString().contains("secret"), changes.toString());
+    }
+
+    @Test
+    void createRecordsTheNewValuesWithTheRedactedFieldMasked() throws Exception {
+        Integer userId = createUser("audit-create");
+
+        JsonNode changes = changeData("CREATE", userId);
+        assertEquals("audit-create", changes.path("userName").path("new").asText());
+        assertFalse(changes.path("userName").has("old"));
+        assertEquals("[redacted]", changes.path("password").path("new").asText());
+    }
+
+    @Test
+    void rolledBackChangesAreNotAudited() throws Exception {
+        Integer userId = createUser("audit-rollback");
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            userRepository.findById(userId).orElseThrow().setEmail("never@example.org");
+            userRepository.flush();
+            status.setRollbackOnly();
+        });
+        // A later committed change proves the writer has caught up past the rolled-back one
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> userRepository
+                .findById(userId).orElseThrow().setIsActive(false));
+
+        JsonNode changes = changeData("UPDATE", userId);
+        assertFalse(changes.has("email"), changes.toString());
+    }
+}
@@ -0,0 +1,117 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.Notification;
+import com.danphe.emr.repository.NotificationRepository;
+import com.danphe.emr.security.UserDetailsImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class NotificationStreamServiceTest {
+
+    private static final UserDetailsImpl USER = new UserDetailsImpl(42, null, null, 1, "user", "secret", "Doctor",
+            null, List.of());
+
+    private NotificationRepository notificationRepository;
+    private SseConnections connections;
+    private NotificationStreamService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        notificationRepository = mock(NotificationRepository.class);
+        connections = new SseConnections(mock(ObjectProvider.class), Duration.ofMinutes(5), 1, Duration.ofSeconds(10));
+        UnreadCounterService unreadCounterService = mock(UnreadCounterService.class);
+
+        service = new NotificationStreamService();
+        ReflectionTestUtils.setField(service, "notificationRepository", notificationRepository);
+        ReflectionTestUtils.setField(service, "sseConnections", connections);
+        ReflectionTestUtils.setField(service, "unreadCounterService", unreadCounterService);
+        ReflectionTestUtils.setField(service, "timeout", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(service, "bufferSize", 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connections.destroy();
+    }
+
+    private static List<Notification> notifications(long fromId, long toId) {
+        return LongStream.rangeClosed(fromId, toId).mapToObj(id -> {
+            Notification n = new Notification();
+            n.setNotificationId(id);
+            n.setHospitalId(1);
+            n.setTargetUserId(42);
+            return n;
+        }).toList();
+    }
+
+    // Text of everything the emitter sent, once a (mock) servlet response is attached
+    private static String sent(SseEmitter emitter) throws Exception {
+        List<String> out = new ArrayList<>();
+        Class<?> type = Class.forName(
+                "org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter$Handler");
+        Object handler = mock(type, call -> {
+            if (call.getMethod().getName().equals("send") && call.getArguments().length == 1) {
+                for (Object item : (Collection<?>) call.getArgument(0)) {
+                    out.add(String.valueOf((Object) ReflectionTestUtils.invokeMethod(item, "getData")));
+                }
+            }
+            return null;
+        });
+        // Let the sender move the outbox into the emitter, which holds it until initialized
+        Thread.sleep(200);
+        ReflectionTestUtils.invokeMethod(emitter, "initialize", handler);
+        return String.join("", out);
+    }
+
+    @Test
+    void missedNotificationsThatFitAreReplayed() throws Exception {
+        when(notificationRepository.findForUserAfter(1, 42, "Doctor", 10L, PageRequest.of(0, 5)))
+                .thenReturn(notifications(11, 14));
+
+        String sent = sent(service.subscribe(USER, 10L));
+
+        for (long id = 11; id <= 14; id++) {
+            assertTrue(sent.contains("id:" + id + "\n"), "replayed " + id);
+        }
+        assertFalse(sent.contains("event:resync"));
+    }
+
+    @Test
+    void moreMissedThanAReplayFitsAsksTheClientToRefetch() throws Exception {
+        // Half an outbox of 8 is 4; a fifth row means there are more
+        when(notificationRepository.findForUserAfter(1, 42, "Doctor", 10L, PageRequest.of(0, 5)))
+                .thenReturn(notifications(11, 15));
+        when(notificationRepository.findLatestIdForUser(1, 42, "Doctor")).thenReturn(90L);
+
+        String sent = sent(service.subscribe(USER, 10L));
+
+        // Nothing partial is replayed; the resync moves the client's Last-Event-ID to the newest
+        assertTrue(sent.contains("id:90\nevent:resync\n"));
+        assertFalse(sent.contains("id:11\n"));
+    }
+
+    @Test
+    void freshConnectionReplaysNothing() throws Exception {
+        String sent = sent(service.subscribe(USER, null));
+
+        assertTrue(sent.contains("event:unread"));
+        verify(notificationRepository, never()).findForUserAfter(any(), any(), any(), any(), any());
+    }
+}
@@ -0,0 +1,98 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.Billing;
+import com.danphe.emr.repository.PatientRepository;
+import com.danphe.emr.repository.PatientSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PatientEnrichmentServiceTest {
+
+    private PatientRepository patientRepository;
+    private PatientEnrichmentService service;
+
+    @BeforeEach
+    void setUp() {
+        patientRepository = mock(PatientRepository.class);
+        when(patientRepository.findSummariesByHospitalIdAndPatientIdIn(eq(1), anyCollection())).thenAnswer(call -> {
+            Collection<Integer> ids = call.getArgument(1);
+            return ids.stream().map(PatientEnrichmentServiceTest::summary).toList();
+        });
+        service = new PatientEnrichmentService();
+        ReflectionTestUtils.setField(service, "patientRepository", patientRepository);
+    }
+
+    private static PatientSummary summary(Integer id) {
+        return new PatientSummary() {
+            @Override
+            public Integer getPatientId() {
+                return id;
+            }
+
+            @Override
+            public String getFirstName() {
+                return "First" + id;
+            }
+
+            @Override
+            public String getLastName() {
+                return "Last" + id;
+            }
+
+            @Override
+            public String getPatientCode() {
+                return PatientNumberService.codeOf(id);
+            }
+        };
+    }
+
+    private static List<Billing> bills(int count, int patients) {
+        List<Billing> bills = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Billing b = new Billing();
+            b.setPatientId(i % patients + 1);
+            bills.add(b);
+        }
+        return bills;
+    }
+
+    @Test
+    void oneQueryRegardlessOfHowManyRowsShareThePatients() {
+        List<Billing> few = bills(3, 3);
+        List<Billing> many = bills(900, 300);
+
+        service.enrichBills(1, few);
+        service.enrichBills(1, many);
+
+        verify(patientRepository, times(2)).findSummariesByHospitalIdAndPatientIdIn(eq(1), anyCollection());
+        assertEquals("First1 Last1", few.get(0).getPatientName());
+        assertEquals("PAT00300", many.get(899).getPatientCode());
+    }
+
+    @Test
+    void veryLargeListsAreQueriedInChunks() {
+        service.enrichBills(1, bills(2500, 2500));
+
+        // 1000 ids per IN list
+        verify(patientRepository, times(3)).findSummariesByHospitalIdAndPatientIdIn(eq(1), anyCollection());
+    }
+
+    @Test
+    void rowsWithoutAPatientAreSkipped() {
+        Billing walkIn = new Billing();
+
+        service.enrichBills(1, List.of(walkIn));
+
+        assertNull(walkIn.getPatientName());
+        verifyNoInteractions(patientRepository);
+    }
+}
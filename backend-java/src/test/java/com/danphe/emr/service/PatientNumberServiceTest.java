@@ -0,0 +1,96 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.repository.PatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PatientNumberServiceTest {
+
+    // Stands in for number_sequence, shared by every "replica"
+    private final Map<String, Long> rows = new ConcurrentHashMap<>();
+    private SequenceBlockStore store;
+    private PatientRepository patientRepository;
+
+    @BeforeEach
+    void setUp() {
+        store = mock(SequenceBlockStore.class);
+        when(store.reserve(anyInt(), anyString(), anyLong(), any())).thenAnswer(call -> {
+            String key = call.getArgument(0) + ":" + call.getArgument(1);
+            long blockSize = call.getArgument(2);
+            LongSupplier firstValue = call.getArgument(3);
+            rows.computeIfAbsent(key, k -> firstValue.getAsLong());
+            return rows.merge(key, blockSize, Long::sum) - blockSize;
+        });
+        patientRepository = mock(PatientRepository.class);
+    }
+
+    private PatientNumberService replica() {
+        PatientNumberService service = new PatientNumberService();
+        ReflectionTestUtils.setField(service, "sequenceAllocator", new SequenceAllocator(store, 20));
+        ReflectionTestUtils.setField(service, "patientRepository", patientRepository);
+        return service;
+    }
+
+    @Test
+    void concurrentRegistrationsOnTwoReplicasGetDistinctCodes() throws Exception {
+        when(patientRepository.maxPatientCodeNumber(1)).thenReturn(0L);
+        List<PatientNumberService> replicas = List.of(replica(), replica());
+        int registrations = 4000;
+        Set<String> codes = ConcurrentHashMap.newKeySet();
+
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < registrations; i++) {
+                PatientNumberService replica = replicas.get(i % replicas.size());
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return PatientNumberService.codeOf(replica.next(1));
+                }));
+            }
+            start.countDown();
+            for (Future<String> f : futures) {
+                codes.add(f.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(registrations, codes.size());
+    }
+
+    @Test
+    void numbersContinueAfterTheHighestExistingCode() {
+        when(patientRepository.maxPatientCodeNumber(1)).thenReturn(1234L);
+        PatientNumberService service = replica();
+
+        assertEquals("PAT01235", PatientNumberService.codeOf(service.next(1)));
+        assertEquals("PAT01236", PatientNumberService.codeOf(service.next(1)));
+        // Seeded once, from the first reservation only
+        verify(patientRepository, times(1)).maxPatientCodeNumber(1);
+    }
+
+    @Test
+    void hospitalsHaveTheirOwnNumbers() {
+        when(patientRepository.maxPatientCodeNumber(1)).thenReturn(10L);
+        when(patientRepository.maxPatientCodeNumber(2)).thenReturn(0L);
+        PatientNumberService service = replica();
+
+        assertEquals(11, service.next(1));
+        assertEquals(1, service.next(2));
+        assertEquals(12, service.next(1));
+    }
+}
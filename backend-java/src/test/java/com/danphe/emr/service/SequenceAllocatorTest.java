@@ -0,0 +1,110 @@
+package com.danphe.emr.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SequenceAllocatorTest {
+
+    private static final long BLOCK_SIZE = 20;
+
+    // Stands in for number_sequence: next_value per hospital and sequence
+    private final Map<String, Long> rows = new ConcurrentHashMap<>();
+    private final AtomicInteger reservations = new AtomicInteger();
+    private SequenceBlockStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = mock(SequenceBlockStore.class);
+        when(store.reserve(anyInt(), anyString(), anyLong(), any())).thenAnswer(call -> {
+            String key = call.getArgument(0) + ":" + call.getArgument(1);
+            long blockSize = call.getArgument(2);
+            LongSupplier firstValue = call.getArgument(3);
+            reservations.incrementAndGet();
+            // INSERT IGNORE + atomic UPDATE, as the database does it
+            rows.putIfAbsent(key, firstValue.getAsLong());
+            return rows.merge(key, blockSize, Long::sum) - blockSize;
+        });
+    }
+
+    @Test
+    void numbersAreUniqueAcrossInstancesUnderConcurrency() throws Exception {
+        List<SequenceAllocator> instances = List.of(new SequenceAllocator(store, BLOCK_SIZE),
+                new SequenceAllocator(store, BLOCK_SIZE));
+        int threads = 16;
+        int perThread = 500;
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                SequenceAllocator allocator = instances.get(t % instances.size());
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        if (!seen.add(allocator.next(1, "bill", () -> 1L))) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(0, duplicates.get());
+        assertEquals(threads * perThread, seen.size());
+        // One reservation per block per instance, not one per number
+        assertTrue(reservations.get() <= threads * perThread / BLOCK_SIZE + instances.size());
+    }
+
+    @Test
+    void firstBlockStartsAtTheSeedAndBlocksDoNotOverlap() {
+        SequenceAllocator first = new SequenceAllocator(store, BLOCK_SIZE);
+        SequenceAllocator second = new SequenceAllocator(store, BLOCK_SIZE);
+
+        assertEquals(101, first.next(1, "bill", () -> 101L));
+        assertEquals(102, first.next(1, "bill", () -> 101L));
+        // The second instance gets the next block, not the rest of the first one
+        assertEquals(121, second.next(1, "bill", () -> 101L));
+    }
+
+    @Test
+    void sequencesAreKeptPerHospital() {
+        SequenceAllocator allocator = new SequenceAllocator(store, BLOCK_SIZE);
+
+        assertEquals(1, allocator.next(1, "bill", () -> 1L));
+        assertEquals(1, allocator.next(2, "bill", () -> 1L));
+        assertEquals(500, allocator.next(1, "patient", () -> 500L));
+        assertEquals(2, allocator.next(2, "bill", () -> 1L));
+    }
+
+    @Test
+    void refillsWhenTheBlockIsUsedUp() {
+        SequenceAllocator allocator = new SequenceAllocator(store, 2);
+
+        assertEquals(1, allocator.next(1, "bill", () -> 1L));
+        assertEquals(2, allocator.next(1, "bill", () -> 1L));
+        assertEquals(3, allocator.next(1, "bill", () -> 1L));
+        verify(store, times(2)).reserve(eq(1), eq("bill"), eq(2L), any());
+    }
+}
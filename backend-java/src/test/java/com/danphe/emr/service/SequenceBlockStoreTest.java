@@ -0,0 +1,143 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.Patient;
+import com.danphe.emr.repository.PatientRepository;
+import com.danphe.emr.security.UserDetailsImpl;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Sequence blocks reserved from a real number_sequence table (H2 in MySQL
+ * mode), on the store's own small pool, by several allocators at once as
+ * several app instances would.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class SequenceBlockStoreTest {
+
+    @Autowired
+    private SequenceBlockStore store;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private long nextValue(Integer hospitalId, String sequenceName) {
+        return jdbcTemplate.queryForObject("SELECT next_value FROM number_sequence "
+                + "WHERE hospital_id = ? AND sequence_name = ?", Long.class, hospitalId, sequenceName);
+    }
+
+    @Test
+    void seedOnlyStartsANewSequence() {
+        assertEquals(100, store.reserve(201, "test", 5, () -> 100));
+        assertEquals(105, store.reserve(201, "test", 5, () -> 999));
+        assertEquals(110, nextValue(201, "test"));
+    }
+
+    @Test
+    void twoAllocatorsNeverHandOutTheSameNumber() throws Exception {
+        // Two app instances sharing the table, each serving its own blocks
+        List<SequenceAllocator> instances = List.of(new SequenceAllocator(store, 7), new SequenceAllocator(store, 7));
+        int threads = 8;
+        int perThread = 100;
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        List<Long> duplicates = Collections.synchronizedList(new ArrayList<>());
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                SequenceAllocator allocator = instances.get(t % 2);
+                done.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        long n = allocator.next(202, "test", () -> 1);
+                        if (!seen.add(n)) {
+                            duplicates.add(n);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : done) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(List.of(), duplicates);
+        assertEquals(threads * perThread, seen.size());
+        // Everything handed out was reserved; at most each instance's unused block tail is skipped
+        long next = nextValue(202, "test");
+        assertTrue(Collections.max(seen) < next);
+        assertTrue(next - 1 - seen.size() < 2 * 7, "skipped " + (next - 1 - seen.size()));
+    }
+
+    @Test
+    void parallelCreateBillGetsDistinctNumbers() throws Exception {
+        Patient p = new Patient();
+        p.setHospitalId(203);
+        p.setPatientNo(1);
+        p.setFirstName("First");
+        p.setLastName("Last");
+        p.setGender("Male");
+        p.setPhoneNumber("9800000000");
+        Integer patientId = patientRepository.save(p).getPatientId();
+        UserDetailsImpl clerk = new UserDetailsImpl(1, 1, null, 203, "clerk", "secret", "Billing", null, List.of());
+        String body = "{\"billType\":\"OPD\",\"patientId\":" + patientId + ",\"subtotal\":100}";
+
+        // More callers than the sequence pool has connections, each inside its own transaction
+        int bills = 24;
+        ExecutorService pool = Executors.newFixedThreadPool(12);
+        List<String> numbers = Collections.synchronizedList(new ArrayList<>());
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int i = 0; i < bills; i++) {
+                done.add(pool.submit(() -> {
+                    String json = mockMvc.perform(post("/api/Billing").with(user(clerk))
+                            .contentType(MediaType.APPLICATION_JSON).content(body))
+                            .andReturn().getResponse().getContentAsString();
+                    JsonNode response = objectMapper.readTree(json);
+                    assertEquals("OK", response.path("Status").asText(), json);
+                    numbers.add(response.path("Results").path("billNumber").asText());
+                    return null;
+                }));
+            }
+            for (Future<?> f : done) {
+                f.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(bills, new HashSet<>(numbers).size(), numbers.toString());
+        assertTrue(numbers.stream().allMatch(n -> n.matches("BILL-HSP-\\d{5}")), numbers.toString());
+    }
+}
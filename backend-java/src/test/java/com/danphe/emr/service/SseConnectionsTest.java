@@ -0,0 +1,112 @@
+package com.danphe.emr.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SseConnectionsTest {
+
+    private SseConnections connections;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<MeterRegistry> noRegistry = mock(ObjectProvider.class);
+        // One warm sender thread; a send blocked for over 200ms drops its connection
+        connections = new SseConnections(noRegistry, Duration.ofMinutes(5), 1, Duration.ofMillis(200));
+    }
+
+    @AfterEach
+    void tearDown() {
+        connections.destroy();
+    }
+
+    // The servlet side of an emitter (ResponseBodyEmitter.Handler is package-private)
+    private static Object attachHandler(SseEmitter emitter, CountDownLatch blockUntil) throws Exception {
+        Class<?> type = Class.forName(
+                "org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter$Handler");
+        Object handler = mock(type, call -> {
+            if (call.getMethod().getName().equals("send") && blockUntil != null) {
+                blockUntil.await();
+            }
+            return null;
+        });
+        ReflectionTestUtils.invokeMethod(emitter, "initialize", handler);
+        return handler;
+    }
+
+    private static void sendsTo(Object handler, int times) throws Exception {
+        var send = handler.getClass().getMethod("send", Set.class);
+        send.invoke(verify(handler, timeout(2000).times(times)), anySet());
+    }
+
+    private static void completes(Object handler) throws Exception {
+        handler.getClass().getMethod("complete").invoke(verify(handler, timeout(2000)));
+    }
+
+    @Test
+    void stalledClientDoesNotHoldUpOtherStreams() throws Exception {
+        CountDownLatch stalled = new CountDownLatch(1);
+        AtomicInteger closedStreams = new AtomicInteger();
+        SseConnections.Connection slow = connections.open("test", Duration.ofMinutes(5), 8,
+                closedStreams::incrementAndGet);
+        SseConnections.Connection fast = connections.open("test", Duration.ofMinutes(5), 8, () -> {
+        });
+        Object slowHandler = attachHandler(slow.emitter(), stalled);
+        Object fastHandler = attachHandler(fast.emitter(), null);
+        try {
+            slow.offer(SseEmitter.event().data("a"));
+            // The only warm sender thread is now blocked in the slow client's send
+            sendsTo(slowHandler, 1);
+
+            fast.offer(SseEmitter.event().data("b"));
+            sendsTo(fastHandler, 1);
+
+            // The blocked send passes the send timeout and the slow connection is dropped
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (closedStreams.get() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(1, closedStreams.get());
+        } finally {
+            stalled.countDown();
+        }
+        // Once the write gives up, the drain completes the emitter
+        completes(slowHandler);
+    }
+
+    @Test
+    void clientAFullBufferBehindIsDropped() throws Exception {
+        CountDownLatch stalled = new CountDownLatch(1);
+        AtomicInteger closedStreams = new AtomicInteger();
+        SseConnections.Connection slow = connections.open("test", Duration.ofMinutes(5), 2,
+                closedStreams::incrementAndGet);
+        Object slowHandler = attachHandler(slow.emitter(), stalled);
+        try {
+            slow.offer(SseEmitter.event().data("1"));
+            sendsTo(slowHandler, 1);
+            slow.offer(SseEmitter.event().data("2"));
+            slow.offer(SseEmitter.event().data("3"));
+            // Outbox of two is full: the publisher is not blocked, the connection is dropped
+            slow.offer(SseEmitter.event().data("4"));
+            assertEquals(1, closedStreams.get());
+        } finally {
+            stalled.countDown();
+        }
+        completes(slowHandler);
+    }
+}
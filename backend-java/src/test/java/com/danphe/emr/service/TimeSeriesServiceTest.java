@@ -0,0 +1,37 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.service.TimeSeriesService.Granularity;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TimeSeriesServiceTest {
+
+    @Test
+    void bucketsAreCountedInTheGranularitysOwnUnit() {
+        LocalDate from = LocalDate.of(2000, 1, 1);
+        LocalDate to = LocalDate.of(2024, 12, 31);
+
+        assertEquals(9131, Granularity.DAY.bucketsBetween(from, to));
+        assertEquals(1305, Granularity.WEEK.bucketsBetween(Granularity.WEEK.align(from), to));
+        assertEquals(299, Granularity.MONTH.bucketsBetween(Granularity.MONTH.align(from), to));
+    }
+
+    @Test
+    void monthRangesAreOnlyRejectedPastTheBucketLimit() {
+        TimeSeriesService service = new TimeSeriesService();
+        ReflectionTestUtils.setField(service, "jdbc", mock(NamedParameterJdbcTemplate.class));
+        LocalDate from = LocalDate.of(1900, 1, 1);
+
+        // 25 years is 300 monthly buckets, far below the limit, though about 1300 weeks long
+        assertEquals(300, service.series(1, TimeSeriesService.Metric.PATIENTS, from, from.plusYears(25).minusDays(1),
+                Granularity.MONTH).size());
+        assertThrows(IllegalArgumentException.class, () -> service.series(1, TimeSeriesService.Metric.PATIENTS,
+                from, from.plusYears(100), Granularity.MONTH));
+    }
+}
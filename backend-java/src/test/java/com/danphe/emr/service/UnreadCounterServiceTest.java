@@ -0,0 +1,253 @@
+package com.danphe.emr.service;
+
+import com.danphe.emr.model.Notification;
+import com.danphe.emr.model.UnreadCounter;
+import com.danphe.emr.repository.NotificationReceiptRepository;
+import com.danphe.emr.repository.NotificationRepository;
+import com.danphe.emr.repository.UnreadCounterRepository;
+import com.danphe.emr.security.UserDetailsImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UnreadCounterServiceTest {
+
+    private static final Integer HOSPITAL = 1;
+    private static final Integer USER = 42;
+
+    private UnreadCounterRepository counterRepository;
+    private NotificationRepository notificationRepository;
+    private NotificationReceiptRepository receiptRepository;
+    private UnreadCounterService service;
+
+    // The user's unread_counter row; null until createIfAbsent creates it
+    private UnreadCounter row;
+
+    @BeforeEach
+    void setUp() {
+        counterRepository = mock(UnreadCounterRepository.class);
+        notificationRepository = mock(NotificationRepository.class);
+        receiptRepository = mock(NotificationReceiptRepository.class);
+
+        when(counterRepository.findByHospitalIdAndUserId(HOSPITAL, USER)).thenAnswer(call -> Optional.ofNullable(row));
+        when(counterRepository.lockByHospitalIdAndUserId(HOSPITAL, USER)).thenAnswer(call -> Optional.ofNullable(row));
+        when(counterRepository.createIfAbsent(eq(HOSPITAL), eq(USER), any())).thenAnswer(call -> {
+            if (row != null) {
+                return 0;
+            }
+            row = counter(call.getArgument(2), 0);
+            return 1;
+        });
+        when(counterRepository.reset(eq(HOSPITAL), eq(USER), any(), anyLong())).thenAnswer(call -> {
+            row.setRole(call.getArgument(2));
+            row.setUnread(call.getArgument(3));
+            return 1;
+        });
+        when(counterRepository.addForUser(eq(HOSPITAL), eq(USER), anyLong())).thenAnswer(call -> {
+            if (row == null) {
+                return 0;
+            }
+            long delta = call.getArgument(2);
+            row.setUnread(Math.max(0, row.getUnread() + delta));
+            return 1;
+        });
+
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(call -> ((TransactionCallback<?>) call.getArgument(0)).doInTransaction(null));
+
+        BulkMutationService bulkMutationService = new BulkMutationService(mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(bulkMutationService, "chunkSize", 2);
+
+        service = new UnreadCounterService(100, Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(service, "counterRepository", counterRepository);
+        ReflectionTestUtils.setField(service, "notificationRepository", notificationRepository);
+        ReflectionTestUtils.setField(service, "receiptRepository", receiptRepository);
+        ReflectionTestUtils.setField(service, "bulkMutationService", bulkMutationService);
+        ReflectionTestUtils.setField(service, "transactionTemplate", transactionTemplate);
+    }
+
+    private static UnreadCounter counter(String role, long unread) {
+        UnreadCounter c = new UnreadCounter();
+        c.setHospitalId(HOSPITAL);
+        c.setUserId(USER);
+        c.setRole(role);
+        c.setUnread(unread);
+        return c;
+    }
+
+    private static UserDetailsImpl user(String role) {
+        return new UserDetailsImpl(USER, null, null, HOSPITAL, "user", "secret", role, null, List.of());
+    }
+
+    private static Notification direct(boolean read) {
+        Notification n = new Notification();
+        n.setNotificationId(5L);
+        n.setHospitalId(HOSPITAL);
+        n.setTargetUserId(USER);
+        n.setIsRead(read);
+        return n;
+    }
+
+    private void givenUnread(long direct, long broadcasts) {
+        when(notificationRepository.countByHospitalIdAndTargetUserIdAndTargetRoleIsNullAndIsRead(HOSPITAL, USER, false))
+                .thenReturn(direct);
+        when(notificationRepository.countUnreadBroadcasts(eq(HOSPITAL), any(), eq(USER))).thenReturn(broadcasts);
+    }
+
+    @Test
+    void firstReadCountsOnceAndIsThenServedFromTheCache() {
+        givenUnread(3, 2);
+
+        assertEquals(5, service.unreadCount(HOSPITAL, USER, "Doctor"));
+        assertEquals(5, service.unreadCount(HOSPITAL, USER, "Doctor"));
+
+        assertEquals(5, row.getUnread());
+        verify(counterRepository, times(1)).findByHospitalIdAndUserId(HOSPITAL, USER);
+        verify(notificationRepository, times(1)).countUnreadBroadcasts(HOSPITAL, "Doctor", USER);
+    }
+
+    @Test
+    void storedRowIsUsedWithoutCounting() {
+        row = counter("Doctor", 7);
+
+        assertEquals(7, service.unreadCount(HOSPITAL, USER, "Doctor"));
+
+        verify(counterRepository, never()).lockByHospitalIdAndUserId(any(), any());
+        verifyNoInteractions(notificationRepository);
+    }
+
+    @Test
+    void roleChangeRebuildsTheRow() {
+        row = counter("Doctor", 7);
+        givenUnread(1, 4);
+
+        assertEquals(5, service.unreadCount(HOSPITAL, USER, "Nurse"));
+
+        assertEquals("Nurse", row.getRole());
+        assertEquals(5, row.getUnread());
+        verify(counterRepository).lockByHospitalIdAndUserId(HOSPITAL, USER);
+    }
+
+    @Test
+    void rowBuiltByAnotherRequestWhileWaitingIsNotCountedAgain() {
+        // Not there at the first read, then built before this request got the lock
+        when(counterRepository.findByHospitalIdAndUserId(HOSPITAL, USER)).thenReturn(Optional.empty());
+        row = counter("Doctor", 9);
+
+        assertEquals(9, service.unreadCount(HOSPITAL, USER, "Doctor"));
+
+        verify(counterRepository, never()).reset(any(), any(), any(), anyLong());
+        verifyNoInteractions(notificationRepository);
+    }
+
+    @Test
+    void createdNotificationIncrementsAndEvicts() {
+        row = counter("Doctor", 2);
+        assertEquals(2, service.unreadCount(HOSPITAL, USER, "Doctor"));
+
+        service.created(direct(false));
+
+        assertEquals(3, service.unreadCount(HOSPITAL, USER, "Doctor"));
+    }
+
+    @Test
+    void createdBroadcastIncrementsTheRole() {
+        Notification n = new Notification();
+        n.setHospitalId(HOSPITAL);
+        n.setTargetRole("Nurse");
+
+        service.created(n);
+
+        verify(counterRepository).addForRole(HOSPITAL, "Nurse", 1);
+        verify(counterRepository, never()).addForUser(any(), any(), anyLong());
+    }
+
+    @Test
+    void markReadDecrementsOnlyWhenItChangedSomething() {
+        row = counter("Doctor", 2);
+        when(notificationRepository.save(any())).thenAnswer(call -> call.getArgument(0));
+
+        assertFalse(service.markRead(direct(true), user("Doctor")));
+        assertEquals(2, row.getUnread());
+
+        assertTrue(service.markRead(direct(false), user("Doctor")));
+        assertEquals(1, row.getUnread());
+    }
+
+    @Test
+    void markReadOfAnAlreadyReadBroadcastLeavesTheCounter() {
+        row = counter("Doctor", 2);
+        Notification n = new Notification();
+        n.setNotificationId(8L);
+        n.setHospitalId(HOSPITAL);
+        n.setTargetRole("Doctor");
+        when(receiptRepository.markRead(eq(8L), eq(HOSPITAL), eq(USER), any())).thenReturn(0);
+
+        assertFalse(service.markRead(n, user("Doctor")));
+
+        assertEquals(2, row.getUnread());
+    }
+
+    @Test
+    void legacyBroadcastReadOnTheSharedRowStaysRead() {
+        row = counter("Doctor", 2);
+        Notification n = new Notification();
+        n.setNotificationId(8L);
+        n.setHospitalId(HOSPITAL);
+        n.setTargetRole("Doctor");
+        n.setIsRead(true);
+
+        assertFalse(service.markRead(n, user("Doctor")));
+
+        assertEquals(2, row.getUnread());
+        verifyNoInteractions(receiptRepository);
+    }
+
+    @Test
+    void readStateKeepsLegacyReadBroadcastsAndAddsReceipts() {
+        Notification legacy = new Notification();
+        legacy.setNotificationId(1L);
+        legacy.setTargetRole("Doctor");
+        legacy.setIsRead(true);
+        Notification receipted = new Notification();
+        receipted.setNotificationId(2L);
+        receipted.setTargetRole("Doctor");
+        receipted.setIsRead(false);
+        Notification unread = new Notification();
+        unread.setNotificationId(3L);
+        unread.setTargetRole("Doctor");
+        unread.setIsRead(false);
+        when(receiptRepository.findReadIds(USER, List.of(2L, 3L))).thenReturn(List.of(2L));
+
+        service.applyReadState(List.of(legacy, receipted, unread), user("Doctor"));
+
+        assertTrue(legacy.getIsRead());
+        assertTrue(receipted.getIsRead());
+        assertFalse(unread.getIsRead());
+    }
+
+    @Test
+    void markAllReadMovesTheCounterChunkByChunk() {
+        row = counter("Doctor", 8);
+        when(notificationRepository.markReadChunk(eq(HOSPITAL), eq(USER), any(), eq(2))).thenReturn(2, 2, 1);
+        when(receiptRepository.markReadChunk(eq(HOSPITAL), eq(USER), eq("Doctor"), any(), eq(2))).thenReturn(2, 0);
+
+        assertEquals(7, service.markAllRead(user("Doctor")));
+
+        assertEquals(1, row.getUnread());
+        verify(notificationRepository, times(3)).markReadChunk(eq(HOSPITAL), eq(USER), any(), eq(2));
+        verify(receiptRepository, times(2)).markReadChunk(eq(HOSPITAL), eq(USER), eq("Doctor"), any(), eq(2));
+    }
+}
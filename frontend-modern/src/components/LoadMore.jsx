@@ -0,0 +1,23 @@
+import React from 'react';
+
+// Keyset-paged endpoints return NextCursor while more rows follow; pass it back as ?cursor=
+export const withCursor = (url, cursor) =>
+    cursor ? `${url}${url.includes('?') ? '&' : '?'}cursor=${encodeURIComponent(cursor)}` : url;
+
+// Footer for paged lists: shown only while the server reports another page
+const LoadMore = ({ cursor, loading, onClick }) => {
+    if (!cursor) return null;
+    return (
+        <div className="flex justify-center py-4">
+            <button
+                onClick={onClick}
+                disabled={loading}
+                className="px-5 py-2 rounded-xl text-sm font-semibold bg-gray-100 text-gray-700 hover:bg-gray-200 disabled:opacity-50 transition-colors"
+            >
+                {loading ? 'Loading...' : 'Load more'}
+            </button>
+        </div>
+    );
+};
+
+export default LoadMore;
@@ -0,0 +1,51 @@
+import axios from 'axios';
+
+// EventSource cannot send the Authorization header, so each connection carries a short-lived,
+// single-use ticket (the session token in a URL would end up in proxy logs). A used ticket cannot
+// reconnect, so instead of the browser's own retry the stream is reopened with a fresh ticket,
+// resuming after the last event id seen. Returns a function that closes the stream for good.
+export const openEventStream = (path, listeners) => {
+    let source;
+    let retryTimer;
+    let stopped = false;
+    let lastEventId = null;
+
+    const connect = async () => {
+        let ticket = null;
+        try {
+            const res = await axios.post('/api/Account/StreamTicket');
+            ticket = res.data.Results?.ticket;
+        } catch (e) {
+            console.error('Failed to get stream ticket', e);
+        }
+        if (stopped) return;
+        if (!ticket) {
+            retryTimer = setTimeout(connect, 30000);
+            return;
+        }
+
+        const params = new URLSearchParams({ ticket });
+        if (lastEventId) params.set('lastEventId', lastEventId);
+        let opened = false;
+        source = new EventSource(`${path}?${params}`);
+        source.onopen = () => { opened = true; };
+        Object.entries(listeners).forEach(([type, handler]) => {
+            source.addEventListener(type, (e) => {
+                if (e.lastEventId) lastEventId = e.lastEventId;
+                handler(e);
+            });
+        });
+        source.onerror = () => {
+            source.close();
+            // Dropped or recycled by the server: reconnect soon; never opened (e.g. rejected): back off
+            if (!stopped) retryTimer = setTimeout(connect, opened ? 1000 : 30000);
+        };
+    };
+
+    connect();
+    return () => {
+        stopped = true;
+        clearTimeout(retryTimer);
+        if (source) source.close();
+    };
+};
@@ -1,6 +1,7 @@
 import React, { useState, useEffect, useRef } from 'react';
 import { Outlet, useNavigate } from 'react-router-dom';
 import axios from 'axios';
+import { openEventStream } from '../eventStream';
 import {
     HeartPulse,
     LayoutDashboard,
@@ -53,19 +54,31 @@ const DashboardLayout = () => {
     const [notifications, setNotifications] = useState([]);
     const [notifLoading, setNotifLoading] = useState(false);
     const notifRef = useRef(null);
+    // Ids already shown; a reconnect replay can deliver the same notification again
+    const seenNotificationIds = useRef(new Set());
     const userRole = localStorage.getItem('role') || 'Staff';
     const userName = localStorage.getItem('userName') || 'System User';
 
+    // Live notifications over SSE; reconnects resume after the last event seen
     useEffect(() => {
-        const fetchUnread = async () => {
-            try {
-                const res = await axios.get('/api/Notifications/UnreadCount');
-                if (res.data.Results) setUnreadCount(res.data.Results.unread || 0);
-            } catch (e) { /* silent */ }
-        };
-        fetchUnread();
-        const interval = setInterval(fetchUnread, 30000);
-        return () => clearInterval(interval);
+        if (!localStorage.getItem('token')) return;
+        return openEventStream('/api/Notifications/Stream', {
+            unread: (e) => {
+                const data = JSON.parse(e.data);
+                if (data.unread !== undefined) setUnreadCount(data.unread);
+                else setUnreadCount(prev => Math.max(0, prev + (data.delta || 0)));
+            },
+            notification: (e) => {
+                const n = JSON.parse(e.data);
+                // Only a notification not seen before moves the badge
+                if (seenNotificationIds.current.has(n.notificationId)) return;
+                seenNotificationIds.current.add(n.notificationId);
+                setNotifications(prev => [n, ...prev]);
+                if (!n.isRead) setUnreadCount(prev => prev + 1);
+            },
+            // Missed more than the server replays: reload the list (the unread count follows)
+            resync: () => fetchNotifications(),
+        });
     }, []);
 
     // Close dropdown on outside click
@@ -83,7 +96,10 @@ const DashboardLayout = () => {
         setNotifLoading(true);
         try {
             const res = await axios.get('/api/Notifications');
-            if (res.data.Results) setNotifications(res.data.Results);
+            if (res.data.Results) {
+                res.data.Results.forEach(n => seenNotificationIds.current.add(n.notificationId));
+                setNotifications(res.data.Results);
+            }
         } catch (e) {
             console.error('Failed to fetch notifications', e);
         } finally {
@@ -103,7 +119,7 @@ const DashboardLayout = () => {
             setNotifications(prev => prev.map(n =>
                 n.notificationId === id ? { ...n, isRead: true } : n
             ));
-            setUnreadCount(prev => Math.max(0, prev - 1));
+            // The unread count follows the stream's "unread" event
         } catch (e) { console.error('Failed to mark as read', e); }
     };
 
@@ -112,7 +128,6 @@ const DashboardLayout = () => {
         try {
             await axios.put('/api/Notifications/ReadAll');
             setNotifications(prev => prev.map(n => ({ ...n, isRead: true })));
-            setUnreadCount(0);
         } catch (e) { console.error('Failed to mark all read', e); }
     };
 
@@ -1,6 +1,7 @@
 import React, { useState, useEffect, useCallback } from 'react';
 import axios from 'axios';
 import { useToast } from '../../components/Toast';
+import LoadMore, { withCursor } from '../../components/LoadMore';
 import {
     Receipt, Plus, Search, Download, Eye, X, CheckCircle,
     Clock, TrendingUp, AlertCircle, Package, User, FileText,
@@ -29,6 +30,12 @@ const BillingDashboard = () => {
     const [patientHistory, setPatientHistory] = useState(null);
     const [loadingHistory, setLoadingHistory] = useState(false);
 
+    // Next-page cursors for the bill lists (null when the last page is loaded)
+    const [billsCursor, setBillsCursor] = useState(null);
+    const [loadingMoreBills, setLoadingMoreBills] = useState(false);
+    const [finalCursor, setFinalCursor] = useState(null);
+    const [loadingMoreFinal, setLoadingMoreFinal] = useState(false);
+
     // Service catalog
     const [serviceCatalog, setServiceCatalog] = useState([]);
     const [catalogSearch, setCatalogSearch] = useState('');
@@ -43,20 +50,27 @@ const BillingDashboard = () => {
     const [paymentMode, setPaymentMode] = useState('');
 
     // ========== DATA FETCHING ==========
-    const fetchBills = useCallback(async () => {
+    // No cursor reloads the first page; a cursor appends the next one
+    const fetchBills = useCallback(async (cursor = null) => {
         try {
-            setLoading(true);
-            const res = await axios.get('/api/Billing');
-            if (res.data.Results) setBills(res.data.Results);
-        } catch (e) { console.error(e); } finally { setLoading(false); }
+            if (cursor) setLoadingMoreBills(true); else setLoading(true);
+            const res = await axios.get(withCursor('/api/Billing', cursor));
+            if (res.data.Results) setBills(prev => cursor ? [...prev, ...res.data.Results] : res.data.Results);
+            setBillsCursor(res.data.NextCursor || null);
+        } catch (e) { console.error(e); } finally { setLoading(false); setLoadingMoreBills(false); }
     }, []);
 
     const fetchSummary = async () => {
         try { const res = await axios.get('/api/Billing/Summary'); if (res.data.Results) setSummary(res.data.Results); } catch (e) { }
     };
 
-    const fetchFinalBills = async () => {
-        try { const res = await axios.get('/api/Billing/FinalBills'); if (res.data.Results) setFinalBills(res.data.Results); } catch (e) { }
+    const fetchFinalBills = async (cursor = null) => {
+        try {
+            setLoadingMoreFinal(!!cursor);
+            const res = await axios.get(withCursor('/api/Billing/FinalBills', cursor));
+            if (res.data.Results) setFinalBills(prev => cursor ? [...prev, ...res.data.Results] : res.data.Results);
+            setFinalCursor(res.data.NextCursor || null);
+        } catch (e) { } finally { setLoadingMoreFinal(false); }
     };
 
     const fetchCatalog = async () => {
@@ -650,6 +664,7 @@ const downloadPDF = async (bill) => {
                             </tbody>
                         </table>
                     </div>
+                    {!loading && <LoadMore cursor={billsCursor} loading={loadingMoreBills} onClick={() => fetchBills(billsCursor)} />}
                 </div>
             )}
 
@@ -678,6 +693,7 @@ const downloadPDF = async (bill) => {
                             </tbody>
                         </table>
                     </div>
+                    <LoadMore cursor={finalCursor} loading={loadingMoreFinal} onClick={() => fetchFinalBills(finalCursor)} />
                 </div>
             )}
         </div>
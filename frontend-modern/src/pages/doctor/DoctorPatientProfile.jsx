@@ -128,7 +128,17 @@ const DoctorPatientProfile = () => {
         return <div className="text-center py-12 text-gray-500">Patient not found</div>;
     }
 
-    const { patient, allergies = [], riskFlags = [], medicalHistory = [], prescriptions = [], followUps = [], activeAdmission } = profile;
+    // Sections the server could not load come back null and are listed in `unavailable`;
+    // they must never be shown as "none recorded"
+    const unavailable = new Set(profile.unavailable || []);
+    const { patient, activeAdmission } = profile;
+    const allergies = profile.allergies || [];
+    const riskFlags = profile.riskFlags || [];
+    const medicalHistory = profile.medicalHistory || [];
+    const prescriptions = profile.prescriptions || [];
+    const followUps = profile.followUps || [];
+    const allergiesUnavailable = unavailable.has('allergies') || profile.allergies == null;
+    const riskFlagsUnavailable = unavailable.has('riskFlags') || profile.riskFlags == null;
 
     const tabs = [
         { key: 'history', label: 'Medical History', icon: <FileText size={16} /> },
@@ -182,12 +192,14 @@ const DoctorPatientProfile = () => {
             <div className="grid grid-cols-1 md:grid-cols-2 gap-4">
                 {/* Allergies */}
                 <motion.div initial={{ opacity: 0, x: -10 }} animate={{ opacity: 1, x: 0 }} transition={{ delay: 0.1 }}
-                    className={`rounded-2xl p-5 ring-1 ${allergies.length > 0 ? 'bg-red-50 ring-red-200' : 'bg-gray-50 ring-gray-100'}`}>
+                    className={`rounded-2xl p-5 ring-1 ${allergies.length > 0 || allergiesUnavailable ? 'bg-red-50 ring-red-200' : 'bg-gray-50 ring-gray-100'}`}>
                     <div className="flex items-center gap-2 mb-2">
-                        <AlertTriangle size={18} className={allergies.length > 0 ? 'text-red-500' : 'text-gray-400'} />
-                        <h3 className={`text-sm font-bold uppercase tracking-wider ${allergies.length > 0 ? 'text-red-700' : 'text-gray-500'}`}>Allergies</h3>
+                        <AlertTriangle size={18} className={allergies.length > 0 || allergiesUnavailable ? 'text-red-500' : 'text-gray-400'} />
+                        <h3 className={`text-sm font-bold uppercase tracking-wider ${allergies.length > 0 || allergiesUnavailable ? 'text-red-700' : 'text-gray-500'}`}>Allergies</h3>
                     </div>
-                    {allergies.length > 0 ? (
+                    {allergiesUnavailable ? (
+                        <p className="text-sm font-bold text-red-700">Allergy information unavailable — could not be loaded. Check the patient's records before prescribing.</p>
+                    ) : allergies.length > 0 ? (
                         <div className="flex flex-wrap gap-2">
                             {[...allergies].map((a, i) => (
                                 <span key={i} className="px-3 py-1 bg-red-100 text-red-700 rounded-full text-xs font-bold">{a}</span>
@@ -200,12 +212,14 @@ const DoctorPatientProfile = () => {
 
                 {/* Risk Flags */}
                 <motion.div initial={{ opacity: 0, x: 10 }} animate={{ opacity: 1, x: 0 }} transition={{ delay: 0.15 }}
-                    className={`rounded-2xl p-5 ring-1 ${riskFlags.length > 0 ? 'bg-amber-50 ring-amber-200' : 'bg-gray-50 ring-gray-100'}`}>
+                    className={`rounded-2xl p-5 ring-1 ${riskFlags.length > 0 || riskFlagsUnavailable ? 'bg-amber-50 ring-amber-200' : 'bg-gray-50 ring-gray-100'}`}>
                     <div className="flex items-center gap-2 mb-2">
-                        <Shield size={18} className={riskFlags.length > 0 ? 'text-amber-600' : 'text-gray-400'} />
-                        <h3 className={`text-sm font-bold uppercase tracking-wider ${riskFlags.length > 0 ? 'text-amber-700' : 'text-gray-500'}`}>Risk Flags</h3>
+                        <Shield size={18} className={riskFlags.length > 0 || riskFlagsUnavailable ? 'text-amber-600' : 'text-gray-400'} />
+                        <h3 className={`text-sm font-bold uppercase tracking-wider ${riskFlags.length > 0 || riskFlagsUnavailable ? 'text-amber-700' : 'text-gray-500'}`}>Risk Flags</h3>
                     </div>
-                    {riskFlags.length > 0 ? (
+                    {riskFlagsUnavailable ? (
+                        <p className="text-sm font-bold text-amber-700">Risk flags unavailable — could not be loaded.</p>
+                    ) : riskFlags.length > 0 ? (
                         <div className="flex flex-wrap gap-2">
                             {[...riskFlags].map((f, i) => (
                                 <span key={i} className="px-3 py-1 bg-amber-100 text-amber-700 rounded-full text-xs font-bold">{f}</span>
@@ -233,7 +247,11 @@ const DoctorPatientProfile = () => {
             {/* Tab Content */}
             {activeTab === 'history' && (
                 <div className="space-y-3">
-                    {medicalHistory.length === 0 ? (
+                    {unavailable.has('medicalHistory') ? (
+                        <div className="text-center py-12 text-red-600">
+                            <p className="font-semibold">Medical records could not be loaded. Reload to try again.</p>
+                        </div>
+                    ) : medicalHistory.length === 0 ? (
                         <div className="text-center py-12 text-gray-400">
                             <FileText size={40} className="mx-auto mb-2 opacity-40" />
                             <p className="font-semibold">No medical records yet</p>
@@ -286,7 +304,11 @@ const DoctorPatientProfile = () => {
 
             {activeTab === 'prescriptions' && (
                 <div className="space-y-3">
-                    {prescriptions.length === 0 ? (
+                    {unavailable.has('prescriptions') ? (
+                        <div className="text-center py-12 text-red-600">
+                            <p className="font-semibold">Prescriptions could not be loaded. Reload to try again.</p>
+                        </div>
+                    ) : prescriptions.length === 0 ? (
                         <div className="text-center py-12 text-gray-400">
                             <Pill size={40} className="mx-auto mb-2 opacity-40" />
                             <p className="font-semibold">No prescriptions recorded</p>
@@ -312,7 +334,11 @@ const DoctorPatientProfile = () => {
 
             {activeTab === 'followups' && (
                 <div className="space-y-3">
-                    {followUps.length === 0 ? (
+                    {unavailable.has('followUps') ? (
+                        <div className="text-center py-12 text-red-600">
+                            <p className="font-semibold">Follow-ups could not be loaded. Reload to try again.</p>
+                        </div>
+                    ) : followUps.length === 0 ? (
                         <div className="text-center py-12 text-gray-400">
                             <Clock size={40} className="mx-auto mb-2 opacity-40" />
                             <p className="font-semibold">No follow-ups scheduled</p>
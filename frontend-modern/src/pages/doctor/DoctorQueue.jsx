@@ -2,6 +2,7 @@ import React, { useEffect, useState, useCallback } from 'react';
 import { useNavigate } from 'react-router-dom';
 import axios from 'axios';
 import { motion, AnimatePresence } from 'framer-motion';
+import { openEventStream } from '../../eventStream';
 import {
     Play, Phone, AlertTriangle, CheckCircle, Clock,
     User, Search, RefreshCw, ChevronRight, Zap,
@@ -53,7 +54,25 @@ const DoctorQueue = () => {
         }
     };
 
-    useEffect(() => { fetchQueue(); const interval = setInterval(fetchQueue, 30000); return () => clearInterval(interval); }, []);
+    // Live queue over SSE: a snapshot on (re)connect, then incremental changes
+    useEffect(() => {
+        if (!localStorage.getItem('token')) { fetchQueue(); return; }
+        return openEventStream('/api/DoctorPortal/Queue/Stream', {
+            snapshot: (e) => {
+                setQueue(JSON.parse(e.data));
+                setLoading(false);
+            },
+            inserted: (e) => {
+                const { appointment } = JSON.parse(e.data);
+                setQueue(prev => prev.some(a => a.appointmentId === appointment.appointmentId) ? prev : [...prev, appointment]);
+            },
+            status: (e) => {
+                const { appointmentId, status } = JSON.parse(e.data);
+                setQueue(prev => prev.map(a => a.appointmentId === appointmentId ? { ...a, appointmentStatus: status } : a));
+            },
+            // 'moved' only reports the new position; the list below is sorted with the same rules
+        });
+    }, []);
 
     const updateStatus = async (appointmentId, newStatus, patientName) => {
         setUpdating(appointmentId);
@@ -6,6 +6,7 @@ import {
     FileText, Search, Filter, ChevronDown, Edit3, Heart
 } from 'lucide-react';
 import { useToast } from '../../components/Toast';
+import LoadMore, { withCursor } from '../../components/LoadMore';
 
 const priorityConfig = {
     routine: { label: 'Routine', color: 'bg-blue-100 text-blue-700', ring: 'ring-blue-200' },
@@ -39,17 +40,23 @@ const FollowUpCare = () => {
         status: 'scheduled',
     });
 
+    const [nextCursor, setNextCursor] = useState(null);
+    const [loadingMore, setLoadingMore] = useState(false);
+
     useEffect(() => { fetchFollowUps(); }, []);
 
-    const fetchFollowUps = async () => {
-        setLoading(true);
+    // No cursor reloads the first page; a cursor appends the next one
+    const fetchFollowUps = async (cursor = null) => {
+        if (cursor) setLoadingMore(true); else setLoading(true);
         try {
-            const res = await axios.get('/api/DoctorPortal/FollowUps');
-            if (res.data.Results) setFollowUps(res.data.Results);
+            const res = await axios.get(withCursor('/api/DoctorPortal/FollowUps', cursor));
+            if (res.data.Results) setFollowUps(prev => cursor ? [...prev, ...res.data.Results] : res.data.Results);
+            setNextCursor(res.data.NextCursor || null);
         } catch (e) {
             console.error('Failed to fetch follow-ups', e);
         } finally {
             setLoading(false);
+            setLoadingMore(false);
         }
     };
 
@@ -406,6 +413,7 @@ const FollowUpCare = () => {
                     })}
                 </div>
             )}
+            {!loading && <LoadMore cursor={nextCursor} loading={loadingMore} onClick={() => fetchFollowUps(nextCursor)} />}
         </div>
     );
 };
@@ -7,6 +7,7 @@ import {
     AlertTriangle, FileText, Trash2, Save, RefreshCw,
     CheckCircle, User, Settings, Copy, ChevronDown
 } from 'lucide-react';
+import LoadMore, { withCursor } from '../../components/LoadMore';
 
 const MEDICINE_DB = [
     'Amoxicillin', 'Azithromycin', 'Paracetamol', 'Ibuprofen', 'Cetirizine',
@@ -133,21 +134,27 @@ const PrescriptionManagement = () => {
         setTimeout(() => setToast(null), 4000);
     }, []);
 
+    const [nextCursor, setNextCursor] = useState(null);
+    const [loadingMore, setLoadingMore] = useState(false);
+
     useEffect(() => { fetchPrescriptions(); }, []);
 
     useEffect(() => {
         localStorage.setItem('prescriptionTemplates', JSON.stringify(templates));
     }, [templates]);
 
-    const fetchPrescriptions = async () => {
-        setLoading(true);
+    // No cursor reloads the first page; a cursor appends the next one
+    const fetchPrescriptions = async (cursor = null) => {
+        if (cursor) setLoadingMore(true); else setLoading(true);
         try {
-            const res = await axios.get('/api/DoctorPortal/Prescriptions');
-            if (res.data.Results) setPrescriptions(res.data.Results);
+            const res = await axios.get(withCursor('/api/DoctorPortal/Prescriptions', cursor));
+            if (res.data.Results) setPrescriptions(prev => cursor ? [...prev, ...res.data.Results] : res.data.Results);
+            setNextCursor(res.data.NextCursor || null);
         } catch (e) {
             console.error('Failed to fetch prescriptions', e);
         } finally {
             setLoading(false);
+            setLoadingMore(false);
         }
     };
 
@@ -953,6 +960,7 @@ const PrescriptionManagement = () => {
                                 </motion.div>
                             );
                         })}
+                        <LoadMore cursor={nextCursor} loading={loadingMore} onClick={() => fetchPrescriptions(nextCursor)} />
                     </div>
                 )
             )}
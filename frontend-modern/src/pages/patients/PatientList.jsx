@@ -2,6 +2,7 @@ import React, { useEffect, useState } from 'react';
 import { Search, Plus, User, Phone, MapPin } from 'lucide-react';
 import axios from 'axios';
 import { useNavigate } from 'react-router-dom';
+import LoadMore, { withCursor } from '../../components/LoadMore';
 
 const PatientList = () => {
     const [patients, setPatients] = useState([]);
@@ -17,18 +18,23 @@ const PatientList = () => {
     }, [searchTerm]);
 
     const [searching, setSearching] = useState(false);
+    // The plain list is paged (NextCursor); searches return one ranked result set
+    const [nextCursor, setNextCursor] = useState(null);
+    const [loadingMore, setLoadingMore] = useState(false);
 
-    const fetchPatients = async () => {
-        setSearching(true);
+    const fetchPatients = async (cursor = null) => {
+        if (cursor) setLoadingMore(true); else setSearching(true);
         try {
-            const response = await axios.get(`/api/Patient?search=${searchTerm}`);
+            const response = await axios.get(withCursor(`/api/Patient?search=${encodeURIComponent(searchTerm)}`, cursor));
             if (response.data.Results) {
-                setPatients(response.data.Results);
+                setPatients(prev => cursor ? [...prev, ...response.data.Results] : response.data.Results);
             }
+            setNextCursor(response.data.NextCursor || null);
         } catch (error) {
             console.error("Error fetching patients:", error);
         } finally {
             setSearching(false);
+            setLoadingMore(false);
         }
     };
 
@@ -133,6 +139,7 @@ const PatientList = () => {
                         </tbody>
                     </table>
                 </div>
+                <LoadMore cursor={nextCursor} loading={loadingMore} onClick={() => fetchPatients(nextCursor)} />
             </div>
         </div>
     );
@@ -61,16 +61,20 @@ const Attendance = () => {
 
     const refreshAllData = async () => {
         try {
-            const [attRes, empRes] = await Promise.all([
-                axios.get('/api/Attendance/All'),
+            // Who is on shift comes from its own query; the recent log only feeds the completed list
+            const [attRes, openRes, empRes] = await Promise.all([
+                axios.get('/api/Attendance/All?size=200'),
+                axios.get('/api/Attendance/OpenShifts'),
                 axios.get('/api/Employee/Employees')
             ]);
 
-            if (attRes.data && attRes.data.Status === 'OK' && empRes.data && empRes.data.Status === 'OK') {
+            if (attRes.data && attRes.data.Status === 'OK' && openRes.data && openRes.data.Status === 'OK'
+                && empRes.data && empRes.data.Status === 'OK') {
                 const logs = Array.isArray(attRes.data.Results) ? attRes.data.Results : [];
+                const open = Array.isArray(openRes.data.Results) ? openRes.data.Results : [];
                 const emps = Array.isArray(empRes.data.Results) ? empRes.data.Results : [];
                 setEmployees(emps);
-                processAttendanceLogic(logs, emps);
+                processAttendanceLogic(logs, open, emps);
             }
         } catch (e) {
             console.error("Data refresh failed", e);
@@ -78,7 +82,7 @@ const Attendance = () => {
         }
     };
 
-    const processAttendanceLogic = (logs, emps) => {
+    const processAttendanceLogic = (logs, open, emps) => {
         if (!emps.length) return;
         const empMap = {};
         emps.forEach(e => empMap[e.employeeId] = e);
@@ -119,7 +123,7 @@ const Attendance = () => {
             }
         });
 
-        const activeList = Object.values(active)
+        const activeList = open
             .filter(log => empMap[log.employeeId])
             .map(log => ({
                 ...empMap[log.employeeId],
@@ -252,7 +256,7 @@ const Attendance = () => {
             const res = await axios.delete('/api/Attendance/ClearAll');
             if (res.data && res.data.Status === 'OK') {
                 refreshAllData();
-                toast.success("Attendance System Reset Successfully.");
+                toast.success(`Attendance System Reset Successfully (${res.data.Results?.deleted ?? 0} records removed).`);
             }
         } catch (e) { console.error(e); }
         finally { setLoading(false); }
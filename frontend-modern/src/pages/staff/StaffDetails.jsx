@@ -31,7 +31,7 @@ const StaffDetails = () => {
             setLoading(true);
             const [staffRes, attRes] = await Promise.all([
                 axios.get(`/api/Employee/${id}`),
-                axios.get('/api/Attendance/All')
+                axios.get(`/api/Attendance/Employee/${id}?size=200`)
             ]);
 
             if (staffRes.data.Results) {
@@ -39,9 +39,8 @@ const StaffDetails = () => {
             }
 
             if (attRes.data.Results) {
-                // Filter attendance for this specific staff ID
-                const filtered = attRes.data.Results.filter(l => l.employeeId === parseInt(id));
-                setAttendance(filtered.sort((a, b) => new Date(b.timestamp) - new Date(a.timestamp)));
+                // Already scoped to this staff member, newest first
+                setAttendance(attRes.data.Results);
             }
         } catch (err) {
             console.error("Error fetching staff details", err);
@@ -2,6 +2,7 @@ import React, { useState, useEffect } from 'react';
 import { Search, UserPlus, Mail, Phone, MoreHorizontal, UserCheck, UserX, Camera } from 'lucide-react';
 import axios from 'axios';
 import { useNavigate } from 'react-router-dom';
+import LoadMore, { withCursor } from '../../components/LoadMore';
 
 const StaffList = () => {
     const navigate = useNavigate();
@@ -9,6 +10,8 @@ const StaffList = () => {
     const [logs, setLogs] = useState([]);
     const [loading, setLoading] = useState(true);
     const [loadingLogs, setLoadingLogs] = useState(false);
+    const [logsCursor, setLogsCursor] = useState(null);
+    const [loadingMoreLogs, setLoadingMoreLogs] = useState(false);
     const [searchTerm, setSearchTerm] = useState('');
     const [activeTab, setActiveTab] = useState('All');
 
@@ -41,17 +44,20 @@ const StaffList = () => {
         }
     };
 
-    const fetchLogs = async () => {
+    // No cursor reloads the first page; a cursor appends the next one
+    const fetchLogs = async (cursor = null) => {
         try {
-            setLoadingLogs(true);
-            const res = await axios.get('/api/Employee/Logs');
+            if (cursor) setLoadingMoreLogs(true); else setLoadingLogs(true);
+            const res = await axios.get(withCursor('/api/Employee/Logs', cursor));
             if (res.data.Results) {
-                setLogs(res.data.Results);
+                setLogs(prev => cursor ? [...prev, ...res.data.Results] : res.data.Results);
             }
+            setLogsCursor(res.data.NextCursor || null);
         } catch (err) {
             console.error("Failed to fetch logs", err);
         } finally {
             setLoadingLogs(false);
+            setLoadingMoreLogs(false);
         }
     };
 
@@ -101,6 +107,7 @@ const StaffList = () => {
             )) : (
                 <div className="py-20 text-center text-gray-400">No activity logs found.</div>
             )}
+            {!loadingLogs && <LoadMore cursor={logsCursor} loading={loadingMoreLogs} onClick={() => fetchLogs(logsCursor)} />}
         </div>
     );
 